@@ -4,6 +4,7 @@ import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import com.rohjans.utils.DBEngine;
 import com.rohjans.utils.Helpers;
 
 import java.io.IOException;
@@ -34,4 +35,10 @@ public class Main extends Application {
         stage.show();
     }
 
+    @Override
+    public void stop() {
+        //Give the pooled connections back to the database
+        DBEngine.shutdown();
+    }
+
 }
@@ -7,14 +7,19 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.chart.PieChart;
-import javafx.scene.control.TreeItem;
+import javafx.scene.control.Label;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
-import com.rohjans.models.File.FileDTO;
-import com.rohjans.models.ItemDTO;
+import com.rohjans.models.Blob.ContentStorageStats;
+import com.rohjans.models.Blob.IBlobRepository;
+import com.rohjans.models.Folder.FolderDTO;
+import com.rohjans.models.FolderStats.FolderUsage;
+import com.rohjans.models.FolderStats.IFolderStatsRepository;
 import com.rohjans.utils.Helpers;
 
 import java.io.IOException;
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
 
 /**
  * This is a class that represents the view controller for the MetricsView.
@@ -34,6 +39,12 @@ public class MetricsViewController {
     @FXML
     private PieChart metricsChart;
 
+    /**
+     * Label with the space the file contents take up before and after compression.
+     */
+    @FXML
+    private Label lblContentStorage;
+
 
     /*
      * Methods
@@ -51,28 +62,60 @@ public class MetricsViewController {
         return loader.getController();
     }
 
+    /**
+     * This method reads the metrics shown by the view, it runs queries so it's meant for a database thread.
+     * <p>
+     * The usage is kept up to date by the database, so reading it doesn't depend on the size of the PFS.
+     *
+     * @param statsRepository Repository used to read the folder usage.
+     * @param blobRepository Repository used to read the space taken up by the contents.
+     * @param folderId ID of the selected folder.
+     * @return The metrics.
+     */
+    public static Metrics readMetrics(IFolderStatsRepository statsRepository, IBlobRepository blobRepository, UUID folderId) {
+        return new Metrics(statsRepository.findUsage(null), statsRepository.findUsage(folderId),
+                blobRepository.findStorageStats());
+    }
+
     /**
      * This method shows the view on the main stage.
      *
-     * @param treeRoot Root item of the PFS tree view.
-     * @param selectedDirectory Selected tree item to calculate the chart based on.
+     * @param selectedFolder Selected folder to calculate the chart based on.
+     * @param metrics Metrics read from the database.
      */
-    public void show(TreeItem<ItemDTO> treeRoot, TreeItem<ItemDTO> selectedDirectory) {
+    public void show(FolderDTO selectedFolder, Metrics metrics) {
         /* --- Pie Chart Loading --- */
-        long totalSize = calcDirSize(treeRoot); //Get total PFS size
-        long selectionSize = calcDirSize(selectedDirectory); //Get selection size
+        FolderUsage total = metrics.total(); //Total PFS size
+        FolderUsage selection = metrics.selection(); //Selection size
+
+        long totalSize = total.totalSize().longValue();
+        long selectionSize = selection == null ? 0 : selection.totalSize().longValue();
 
         //Build data object
         ObservableList<PieChart.Data> chartData = FXCollections.observableArrayList(
-                new PieChart.Data(selectedDirectory.getValue().getName(), selectionSize),
+                new PieChart.Data(selectedFolder.getName(), selectionSize),
                 new PieChart.Data("Others", totalSize - selectionSize)
         );
 
         //Add data to pie chart
         metricsChart.setData(chartData);
         metricsChart.setTitle("Space taken up by selected folder");
+        if(selection != null) {
+            String lastChange = selection.lastChange() == null ? "never" : DateTimeFormatter.ISO_LOCAL_DATE_TIME
+                    .format(selection.lastChange().withNano(0)).replace('T', ' ');
+
+            metricsChart.setTitle("Space taken up by selected folder\n" + selection.fileCount() + " files, "
+                    + selection.folderCount() + " sub folders, last changed " + lastChange);
+        }
         /* -------------------------- */
 
+        //Contents are shared by the files that have the same one, so this is only known for the whole PFS
+        ContentStorageStats storage = metrics.storage();
+        long saved = storage.logicalSize() == 0 ? 0 : 100 - storage.storedSize() * 100 / storage.logicalSize();
+        lblContentStorage.setText(storage.contents() + " distinct contents (" + storage.compressedContents()
+                + " compressed): " + storage.logicalSize() + " bytes, " + storage.storedSize() + " bytes stored ("
+                + saved + "% saved)");
+
         Stage stage = new Stage();
         stage.initModality(Modality.WINDOW_MODAL);
         stage.setTitle("Storage Metrics");
@@ -81,24 +124,6 @@ public class MetricsViewController {
         stage.showAndWait();
     }
 
-    /**
-     * This method that calculates the size of a given directory.
-     *
-     * @param dir Directory to calculate the size.
-     * @return Total size of the directory
-     */
-    private long calcDirSize(TreeItem<ItemDTO> dir) {
-        long size = 0;
-
-        //If it's a file, add size and return (since files don't have children)
-        if(dir.getValue() instanceof FileDTO file) return file.getLongFileSize();
-
-        for(TreeItem<ItemDTO> child: dir.getChildren())
-            size += calcDirSize(child);
-
-        return size;
-    }
-
 
     /*
      * UI Events
@@ -111,4 +136,13 @@ public class MetricsViewController {
     public void onOk() {
         ((Stage) metricsViewRoot.getScene().getWindow()).close();
     }
+
+    /**
+     * This is a "class" (it's defined as a record) that holds the metrics shown by the view.
+     *
+     * @param total Usage of the whole PFS.
+     * @param selection Usage of the selected folder, or null if it has none.
+     * @param storage Space taken up by the contents.
+     */
+    public record Metrics(FolderUsage total, FolderUsage selection, ContentStorageStats storage) {}
 }
@@ -1,38 +1,72 @@
 package com.rohjans.controllers;
 
+import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
+import javafx.collections.ObservableList;
 import javafx.event.Event;
 import javafx.event.EventHandler;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
-import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.control.*;
+import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseEvent;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import org.jooq.DSLContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.rohjans.models.Blob.BlobRepository;
+import com.rohjans.models.ChangeEvent;
+import com.rohjans.models.File.AsyncFileRepository;
 import com.rohjans.models.File.FileDTO;
 import com.rohjans.models.File.FileMapper;
 import com.rohjans.models.File.FileRepository;
+import com.rohjans.models.File.IAsyncFileRepository;
+import com.rohjans.models.Folder.AsyncFolderRepository;
 import com.rohjans.models.Folder.FolderDTO;
 import com.rohjans.models.Folder.FolderMapper;
 import com.rohjans.models.Folder.FolderRepository;
+import com.rohjans.models.Folder.IAsyncFolderRepository;
+import com.rohjans.models.FolderStats.FolderStatsRepository;
 import com.rohjans.models.ItemDTO;
+import com.rohjans.models.StaleItemException;
+import com.rohjans.models.UnsavedUpdateException;
+import com.rohjans.ui.BackgroundTasks;
+import com.rohjans.ui.BackgroundTasks.Cancellation;
 import com.rohjans.ui.IconPanel;
+import com.rohjans.ui.LazyTreeItem;
 import com.rohjans.utils.DBEngine;
 import com.rohjans.utils.Helpers;
+import com.rohjans.utils.ListViewItem;
 import com.rohjans.utils.PasswordManager;
+import com.rohjans.utils.WriteBehindQueue;
+import com.rohjans.utils.backup.BackupProgress;
+import com.rohjans.utils.backup.BinaryBackupFormat;
+import com.rohjans.utils.backup.ParallelBackupEngine;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.sql.SQLException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * This is a class that represents the view controller for the PFSController, in other words, the main app controller.
@@ -88,6 +122,18 @@ public class PFSController implements Initializable {
     @FXML
     private TextArea txtFileContent;
 
+    /**
+     * Indicator shown while database work is running in the background.
+     */
+    @FXML
+    private ProgressIndicator busyIndicator;
+
+    /**
+     * Button that cancels the database work running in the background.
+     */
+    @FXML
+    private Button btnCancelBusy;
+
     /* ---- Database ---- */
     /**
      * Database file repository instance.
@@ -98,6 +144,52 @@ public class PFSController implements Initializable {
      * Database folder repository instance.
      */
     private FolderRepository folderRepository;
+
+    /**
+     * Database blob repository instance, used to fetch file contents when they are needed.
+     */
+    private BlobRepository blobRepository;
+
+    /**
+     * Database folder statistics repository instance.
+     */
+    private FolderStatsRepository folderStatsRepository;
+
+    /**
+     * Queue that writes the changes to the database in the background, so the UI doesn't wait for them.
+     */
+    private WriteBehindQueue writeQueue;
+
+    /**
+     * Asynchronous database file repository instance, used for the reads that would freeze the UI.
+     */
+    private IAsyncFileRepository asyncFileRepository;
+
+    /**
+     * Asynchronous database folder repository instance, used for the reads that would freeze the UI.
+     */
+    private IAsyncFolderRepository asyncFolderRepository;
+
+    /**
+     * Executor the asynchronous repository calls run on.
+     */
+    private ExecutorService dbExecutor;
+
+    /**
+     * Latest snapshot of each item with an update waiting in the write-behind queue, mapped by the ID of the item.
+     * It's also used by the queue's thread.
+     */
+    private final Map<UUID, ItemDTO> queuedUpdates = new ConcurrentHashMap<>();
+
+    /**
+     * IDs of the items whose edit conflict the user is deciding on.
+     */
+    private final Set<UUID> conflictingItems = new HashSet<>();
+
+    /**
+     * Database work the UI is waiting for.
+     */
+    private final BackgroundTasks backgroundTasks = new BackgroundTasks();
     /* ------------------ */
 
     /* --- Tree Stuff --- */
@@ -105,6 +197,11 @@ public class PFSController implements Initializable {
      * PFS tree hidden root item.
      */
     private TreeItem<ItemDTO> treeRootItem;
+
+    /**
+     * File whose content is shown in the content tab, its content is released when a different item is selected.
+     */
+    private FileDTO contentFile;
     /* ------------------------- */
 
     /* --- Move Operations --- */
@@ -128,6 +225,32 @@ public class PFSController implements Initializable {
      * different file, so its length is no longer than 1.
      */
     private ArrayList<UUID> authenticatedFiles;
+
+    /**
+     * Logger for the background operations the user doesn't need to be told about.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(PFSController.class);
+
+    /**
+     * Degree of parallelism suggested to the user for parallel backups and restores.
+     */
+    private static final int DEFAULT_PARALLELISM = 4;
+
+    /**
+     * Size (in bytes) above which the content of a file is only previewed, since the content tab can't handle huge texts.
+     */
+    private static final long CONTENT_PREVIEW_THRESHOLD = 4L * 1024 * 1024;
+
+    /**
+     * Amount of characters of a content shown in the preview.
+     */
+    private static final int CONTENT_PREVIEW_LENGTH = 64 * 1024;
+
+    /**
+     * Notice added to the end of a preview, so it isn't mistaken for the whole content.
+     */
+    private static final String CONTENT_PREVIEW_NOTICE =
+            "\n\n[Only the beginning of the file is shown, it's too large to be edited here]";
     /* --------------------------- */
 
     /**
@@ -154,6 +277,15 @@ public class PFSController implements Initializable {
             DSLContext ctx = DBEngine.getDslContext();
             fileRepository = new FileRepository(ctx);
             folderRepository = new FolderRepository(ctx);
+            blobRepository = new BlobRepository(ctx);
+            folderStatsRepository = new FolderStatsRepository(ctx);
+            writeQueue = DBEngine.getWriteQueue();
+            writeQueue.setFailureListener(e -> Platform.runLater(() -> handleWriteFailure(e)));
+            DBEngine.getChangeFeed().setListener(events -> Platform.runLater(() -> applyChanges(events)));
+
+            dbExecutor = DBEngine.getDbExecutor();
+            asyncFileRepository = new AsyncFileRepository(fileRepository, dbExecutor);
+            asyncFolderRepository = new AsyncFolderRepository(folderRepository, dbExecutor);
         }
         catch (SQLException e) {
             Helpers.showErrorDialog(e);
@@ -167,6 +299,12 @@ public class PFSController implements Initializable {
         //Instance authenticated items
         authenticatedFiles = new ArrayList<>();
 
+        //Show when database work is running, and keep the actions that change the tree off until it's done
+        busyIndicator.visibleProperty().bind(backgroundTasks.busyProperty());
+        btnCancelBusy.visibleProperty().bind(backgroundTasks.busyProperty());
+        for(Menu menu : List.of(ItemOption, SearchOption, MetricsOption, StorageOption, confirmMoveOption))
+            menu.disableProperty().bind(backgroundTasks.busyProperty());
+
         //Load file and folder tree to UI
         loadTree();
     }
@@ -177,38 +315,580 @@ public class PFSController implements Initializable {
     * */
     /**
      * This method loads the PFS tree view with data from the database repositories.
+     * <p>
+     * Only the items on the root are loaded, in the background, the items inside each folder are loaded
+     * when it's expanded.
      */
     private void loadTree() {
         //Start TreeView instance
         instanceTreeView();
 
-        //Fetch folders and sort them into a Map, so we don't need to constantly
-        //search the list for a given id, as this can be resource heavy
-        List<FolderDTO> folders = FolderMapper.toFolderDTO(folderRepository.findAll());
-        Map<UUID, TreeItem<ItemDTO>> folderItems = new HashMap<>();
+        treeRootItem.setExpanded(true);
+    }
+
+    /**
+     * This method reads the items directly inside a folder from the database repositories, folders first.
+     *
+     * @param parentId ID of the folder, or null for the root.
+     * @return The items inside the folder.
+     */
+    private List<ItemDTO> readChildren(UUID parentId) {
+        List<ItemDTO> children = new ArrayList<>(FolderMapper.toFolderDTO(folderRepository.findChildren(parentId)));
+
+        //Contents are only fetched when a file is opened
+        children.addAll(FileMapper.toFileDTO(fileRepository.findChildren(parentId), blobRepository::findContent));
+
+        return children;
+    }
 
-        for (FolderDTO folder : folders) {
-            TreeItem<ItemDTO> folderItem = createTreeItem(folder);
-            folderItems.put(folder.getId(), folderItem);
+    /**
+     * This method loads the items directly inside a folder in the background.
+     * <p>
+     * The queued changes are flushed first, on the database thread, so the UI doesn't wait for them either.
+     *
+     * @param parentId ID of the folder, or null for the root.
+     * @return Future of the tree nodes of the items, completed on the JavaFX application thread.
+     */
+    private CompletableFuture<List<TreeItem<ItemDTO>>> loadChildrenAsync(UUID parentId) {
+        //Contents are only fetched when a file is opened
+        Function<Cancellation, CompletableFuture<List<ItemDTO>>> items = cancellation -> flushWritesAsync()
+                .thenCompose(cancellation.guard(ignored -> asyncFolderRepository.findChildren(parentId)))
+                .thenApply(FolderMapper::toFolderDTO)
+                .thenCompose(cancellation.guard(folderDTOS ->
+                        asyncFileRepository.findChildren(parentId).thenApply(records -> {
+                            List<ItemDTO> children = new ArrayList<>(folderDTOS);
+                            children.addAll(FileMapper.toFileDTO(records, blobRepository::findContent));
+                            return children;
+                        })));
+
+        //Tree nodes have to be created on the JavaFX application thread
+        return backgroundTasks.run(items).thenApply(children -> {
+            List<TreeItem<ItemDTO>> treeItems = new ArrayList<>();
+            for(ItemDTO child : children) treeItems.add(createTreeItem(child));
+
+            return treeItems;
+        });
+    }
 
-            if (folder.getParent() == null) { // It's a root folder
-                treeRootItem.getChildren().add(folderItem);
-            } else {
-                TreeItem<ItemDTO> parentItem = folderItems.get(folder.getParent());
-                if (parentItem != null) parentItem.getChildren().add(folderItem);
+    /**
+     * This method gets the children of a folder once they are loaded, loading them in the background if needed.
+     * <p>
+     * A failed load was already reported, so the future just fails then.
+     *
+     * @param folder Tree node of the folder.
+     * @return Future of the children, completed on the JavaFX application thread (or right away if they were loaded).
+     */
+    private CompletableFuture<ObservableList<TreeItem<ItemDTO>>> loadedChildren(TreeItem<ItemDTO> folder) {
+        if(folder instanceof LazyTreeItem<ItemDTO> lazyFolder) return lazyFolder.loadChildren();
+
+        return CompletableFuture.completedFuture(folder.getChildren());
+    }
+
+    /**
+     * This method runs database work on a database thread, so the UI doesn't wait for it.
+     *
+     * @param work Work to be run.
+     * @return Future of the result of the work.
+     * @param <T> Type of the result of the work.
+     */
+    private <T> CompletableFuture<T> supplyOnDbThread(Supplier<T> work) {
+        try {
+            return CompletableFuture.supplyAsync(work, dbExecutor);
+        }
+        catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * This method flushes the queued changes on a database thread, so the UI doesn't wait for them.
+     *
+     * @return Future completed once the changes queued so far are in the database.
+     */
+    private CompletableFuture<Void> flushWritesAsync() {
+        try {
+            return CompletableFuture.runAsync(writeQueue::flush, dbExecutor);
+        }
+        catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * This method removes the given items from the tree, only going through the folders that were already loaded,
+     * since the others will load without them.
+     *
+     * @param item Item whose children are checked.
+     * @param ids IDs of the items to be removed.
+     */
+    private void pruneTreeItems(TreeItem<ItemDTO> item, Set<UUID> ids) {
+        if(item instanceof LazyTreeItem<ItemDTO> lazyItem && !lazyItem.isChildrenLoaded()) return;
+
+        item.getChildren().removeIf(child -> ids.contains(child.getValue().getId()));
+
+        for(TreeItem<ItemDTO> child : item.getChildren())
+            pruneTreeItems(child, ids);
+    }
+
+    /**
+     * This method queues the creation of an item's database record.
+     *
+     * @param item Item to be created.
+     */
+    private void queueCreate(ItemDTO item) {
+        if(item instanceof FileDTO file) {
+            FileDTO snapshot = file.copy();
+            writeQueue.submit(snapshot.getId(), tx -> new FileRepository(tx).create(snapshot));
+        }
+        else {
+            FolderDTO snapshot = ((FolderDTO) item).copy();
+            writeQueue.submit(snapshot.getId(), tx -> new FolderRepository(tx).create(snapshot));
+        }
+    }
+
+    /**
+     * This method queues the update of an item's database record, with the item as it is now.
+     *
+     * @param item Item to be updated.
+     */
+    private void queueUpdate(ItemDTO item) {
+        //Every write moves the version forward, so other clients notice it
+        int expected = item.getStoredChangeCounter();
+        if(item.getChangeCounter() <= expected) item.incrementCounter();
+        item.setStoredChangeCounter(item.getChangeCounter());
+
+        UUID id = item.getId();
+        ItemDTO snapshot = item instanceof FileDTO file ? file.copy() : ((FolderDTO) item).copy();
+
+        //This update may replace one still waiting in the queue, so it has to write that one's fields too
+        ItemDTO queued = queuedUpdates.get(id);
+        if(queued != null) snapshot.markDirty(queued.getDirtyFields());
+        queuedUpdates.put(id, snapshot);
+        item.markClean();
+
+        writeQueue.submitUpdate(id, expected, (tx, exp) -> {
+            //Once taken from the queue it can't be replaced anymore
+            queuedUpdates.remove(id, snapshot);
+
+            try {
+                if(snapshot instanceof FileDTO file) new FileRepository(tx).update(file, exp);
+                else new FolderRepository(tx).update((FolderDTO) snapshot, exp);
+            }
+            catch (StaleItemException e) {
+                throw e;
+            }
+            catch (RuntimeException e) {
+                //The item was marked clean when this was queued, the failure has to bring its changes back
+                throw new UnsavedUpdateException(snapshot, exp, e);
             }
+        });
+    }
+
+    /**
+     * This method handles a queued write that could not be committed. Updates made over an outdated version of an
+     * item let the user reload it or keep their changes, anything else is just shown as an error.
+     * <p>
+     * The changes of an update that failed for another reason are marked as changed again, so the next update
+     * of the item writes them.
+     *
+     * @param e Exception thrown by the write.
+     */
+    private void handleWriteFailure(Exception e) {
+        StaleItemException stale = null;
+        UnsavedUpdateException unsaved = null;
+        for(Throwable cause = e; cause != null && stale == null; cause = cause.getCause()) {
+            if(cause instanceof StaleItemException staleItem) stale = staleItem;
+            else if(cause instanceof UnsavedUpdateException unsavedUpdate && unsaved == null) unsaved = unsavedUpdate;
         }
 
-        List<FileDTO> files = FileMapper.toFileDTO(fileRepository.findAll());
-        for (FileDTO file : files) {
-            TreeItem<ItemDTO> fileItem = createTreeItem(file);
-            TreeItem<ItemDTO> parentFolderItem = folderItems.get(file.getParent());
+        if(stale == null) {
+            if(unsaved != null) restoreUnsavedChanges(unsaved);
+            Helpers.showErrorDialog(e);
+            return;
+        }
+
+        //The item isn't shown anymore, or the user is already deciding what to do with it
+        TreeItem<ItemDTO> treeItem = findTreeItem(treeRootItem, stale.getId());
+        if(treeItem == null || !conflictingItems.add(stale.getId())) return;
 
-            if (parentFolderItem != null) parentFolderItem.getChildren().add(fileItem);
-            else treeRootItem.getChildren().add(fileItem); //File belongs to root
+        try {
+            resolveConflict(treeItem, stale.isRemoved());
+        }
+        finally {
+            conflictingItems.remove(stale.getId());
         }
+    }
 
-        treeRootItem.setExpanded(true);
+    /**
+     * This method marks the changes of an update that could not be written as changed again on the item shown
+     * in the tree, and moves its stored version back, unless it was updated again in the meantime.
+     *
+     * @param unsaved Failure of the update.
+     */
+    private void restoreUnsavedChanges(UnsavedUpdateException unsaved) {
+        ItemDTO update = unsaved.getUpdate();
+        TreeItem<ItemDTO> treeItem = findTreeItem(treeRootItem, update.getId());
+        if(treeItem == null) return;
+
+        ItemDTO item = treeItem.getValue();
+        item.markDirty(update.getDirtyFields());
+        if(item.getStoredChangeCounter() == update.getChangeCounter())
+            item.setStoredChangeCounter(unsaved.getExpectedChangeCounter());
+    }
+
+    /**
+     * This method asks the user what to do with an item another client changed or removed before
+     * the local changes were written.
+     *
+     * @param treeItem Tree node of the item.
+     * @param removed If the item no longer exists.
+     */
+    private void resolveConflict(TreeItem<ItemDTO> treeItem, boolean removed) {
+        ItemDTO item = treeItem.getValue();
+
+        if(removed) {
+            removeConflictingItem(treeItem);
+            return;
+        }
+
+        ButtonType btnReload = new ButtonType("Reload", ButtonBar.ButtonData.NO);
+        ButtonType btnKeep = new ButtonType("Keep Mine", ButtonBar.ButtonData.YES);
+
+        Optional<ButtonType> res = Helpers.showChooserPopup("Edit Conflict",
+                "\"" + item.getName() + "\" was changed by someone else before your changes were saved.",
+                "Reload it to get their version, or keep yours and save it over theirs.",
+                Alert.AlertType.WARNING, btnReload, btnKeep);
+        if(res.isEmpty()) return; //Left as it is, the next save runs into the conflict again
+
+        backgroundTasks.run(fetchItem(item.getId(), item instanceof FileDTO), current -> {
+            if(current == null) removeConflictingItem(treeItem);
+            else if(res.get() == btnReload) replaceTreeItem(treeItem, current);
+            else {
+                //Write all the local values over the latest version
+                item.markDirty(EnumSet.allOf(ItemDTO.TrackedField.class));
+                item.setStoredChangeCounter(current.getChangeCounter());
+                item.setChangeCounter(Math.max(item.getChangeCounter(), current.getChangeCounter()));
+                queueUpdate(item);
+            }
+        });
+    }
+
+    /**
+     * This method tells the user an item was removed by another client and takes it out of the tree.
+     *
+     * @param treeItem Tree node of the removed item.
+     */
+    private void removeConflictingItem(TreeItem<ItemDTO> treeItem) {
+        Helpers.showErrorDialog("\"" + treeItem.getValue().getName() + "\" was removed by someone else, your changes to it were lost.");
+
+        if(contentFile == treeItem.getValue()) contentFile = null;
+        if(treeItem.getParent() != null) treeItem.getParent().getChildren().remove(treeItem);
+    }
+
+    /**
+     * This method replaces the tree node of an item with one for its latest version, which goes under its new
+     * parent if another client moved it (as long as that folder was already loaded).
+     *
+     * @param treeItem Tree node of the item.
+     * @param current Latest version of the item.
+     */
+    private void replaceTreeItem(TreeItem<ItemDTO> treeItem, ItemDTO current) {
+        TreeItem<ItemDTO> parent = treeItem.getParent();
+        if(parent == null) return;
+
+        //The node is kept, so a folder keeps its loaded children and whether it's expanded
+        if(contentFile == treeItem.getValue()) contentFile = null;
+        treeItem.setValue(current);
+        if(Objects.equals(parent.getValue().getId(), current.getParent())) return;
+
+        boolean selected = pfsTreeView.getSelectionModel().getSelectedItem() == treeItem;
+        parent.getChildren().remove(treeItem);
+
+        //A folder that wasn't loaded yet will find the item by itself
+        TreeItem<ItemDTO> newParent = findTreeItem(treeRootItem, current.getParent());
+        if(newParent == null || !isLoadedFolder(newParent)) return;
+
+        newParent.getChildren().add(treeItem);
+        if(selected) pfsTreeView.getSelectionModel().select(treeItem);
+    }
+
+    /**
+     * This method checks if a tree node is a folder whose children were already loaded.
+     *
+     * @param treeItem Tree node to be checked.
+     * @return True if the node is a loaded folder, otherwise false.
+     */
+    private boolean isLoadedFolder(TreeItem<ItemDTO> treeItem) {
+        return treeItem instanceof LazyTreeItem<ItemDTO> lazyItem && lazyItem.isChildrenLoaded();
+    }
+
+    /**
+     * This method reads the latest version of an item in the background.
+     *
+     * @param id ID of the item.
+     * @param isFile If the item is a file, otherwise it's a folder.
+     * @return Future of the item, or of null if it no longer exists.
+     */
+    private CompletableFuture<ItemDTO> fetchItem(UUID id, boolean isFile) {
+        try {
+            if(isFile) return asyncFileRepository.findById(id).thenApply(FileMapper::toFileDTO);
+
+            return asyncFolderRepository.findById(id).thenApply(FolderMapper::toFolderDTO);
+        }
+        catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * This method applies the changes other clients made (published by the database) to the tree.
+     * <p>
+     * Only the folders that were already loaded are patched, the others will load the changes by themselves.
+     * Our own changes come back too, but they are already shown, so they are skipped.
+     * The changed items are read back together, and if they can't be, the loaded folders are read again instead.
+     *
+     * @param events Changes, in the order they were made.
+     */
+    private void applyChanges(List<ChangeEvent> events) {
+        if(events.stream().anyMatch(event -> event.op() == ChangeEvent.Op.RELOAD)) {
+            refreshLoadedFolders();
+            return;
+        }
+
+        //If the item is a file, mapped by the ID of each item that has to be read back
+        Map<UUID, Boolean> changed = new LinkedHashMap<>();
+        for(ChangeEvent event : events) {
+            if(event.op() == ChangeEvent.Op.DELETE) {
+                changed.remove(event.id());
+                removeTreeItem(event.id());
+            }
+            else if(needsPatch(event)) changed.put(event.id(), event.isFile());
+        }
+
+        if(changed.isEmpty()) return;
+
+        fetchItems(changed).whenCompleteAsync((latest, e) -> {
+            if(e != null) {
+                LOGGER.warn("Could not load the changed items, reloading the tree", e);
+                refreshLoadedFolders();
+                return;
+            }
+
+            for(UUID id : changed.keySet()) applyLatest(id, latest.get(id));
+        }, Platform::runLater);
+    }
+
+    /**
+     * This method takes an item that was removed by another client out of the tree, with everything inside it.
+     *
+     * @param id ID of the removed item.
+     */
+    private void removeTreeItem(UUID id) {
+        TreeItem<ItemDTO> treeItem = findTreeItem(treeRootItem, id);
+        if(treeItem == null || treeItem.getParent() == null) return;
+
+        if(contentFile != null && findTreeItem(treeItem, contentFile.getId()) != null) contentFile = null;
+        treeItem.getParent().getChildren().remove(treeItem);
+    }
+
+    /**
+     * This method checks if an item created, edited or moved by another client has to be read back to bring
+     * the tree up to date. A folder that wasn't loaded yet is just made expandable, it picks the item up when loaded.
+     *
+     * @param event Change to the item.
+     * @return True if the item has to be read back, otherwise false.
+     */
+    private boolean needsPatch(ChangeEvent event) {
+        TreeItem<ItemDTO> treeItem = findTreeItem(treeRootItem, event.id());
+
+        if(treeItem != null) {
+            ItemDTO shown = treeItem.getValue();
+
+            //Local changes still waiting to be written win, if they are outdated writing them runs into the conflict
+            if(writeQueue.isPending(event.id())) return false;
+            return event.version() > shown.getStoredChangeCounter() || !Objects.equals(event.parent(), shown.getParent());
+        }
+
+        TreeItem<ItemDTO> parent = findTreeItem(treeRootItem, event.parent());
+        if(parent == null) return false; //Not shown anywhere
+
+        //The folder picks the item up when it's loaded, it just has to be expandable
+        if(parent instanceof LazyTreeItem<ItemDTO> lazyParent && !lazyParent.isChildrenLoaded()) {
+            if(lazyParent.isLeaf()) {
+                lazyParent.setChildCount(-1);
+                Event.fireEvent(lazyParent, new TreeItem.TreeModificationEvent<>(TreeItem.valueChangedEvent(), lazyParent));
+            }
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * This method reads the latest version of several items in the background, with a query per kind of item.
+     * The file contents are only read when the files are opened.
+     *
+     * @param items If the item is a file, mapped by the ID of each item.
+     * @return Future of the items that still exist, mapped by their ID.
+     */
+    private CompletableFuture<Map<UUID, ItemDTO>> fetchItems(Map<UUID, Boolean> items) {
+        List<UUID> fileIds = new ArrayList<>();
+        List<UUID> folderIds = new ArrayList<>();
+        items.forEach((id, isFile) -> (isFile ? fileIds : folderIds).add(id));
+
+        try {
+            CompletableFuture<List<FileDTO>> files = fileIds.isEmpty() ? CompletableFuture.completedFuture(List.of())
+                    : asyncFileRepository.findByIds(fileIds)
+                        .thenApply(records -> FileMapper.toFileDTO(records, blobRepository::findContent));
+            CompletableFuture<List<FolderDTO>> folders = folderIds.isEmpty() ? CompletableFuture.completedFuture(List.of())
+                    : asyncFolderRepository.findByIds(folderIds).thenApply(FolderMapper::toFolderDTO);
+
+            return files.thenCombine(folders, (fileDTOS, folderDTOS) -> {
+                Map<UUID, ItemDTO> latest = new HashMap<>();
+                for(FileDTO file : fileDTOS) latest.put(file.getId(), file);
+                for(FolderDTO folder : folderDTOS) latest.put(folder.getId(), folder);
+
+                return latest;
+            });
+        }
+        catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * This method puts the latest version of an item changed by another client in the tree.
+     * The tree is searched again, since it may have changed while the item was being read.
+     *
+     * @param id ID of the item.
+     * @param latest Latest version of the item, or null if it no longer exists.
+     */
+    private void applyLatest(UUID id, ItemDTO latest) {
+        if(latest == null) {
+            removeTreeItem(id);
+            return;
+        }
+
+        TreeItem<ItemDTO> treeItem = findTreeItem(treeRootItem, id);
+        if(treeItem == null) {
+            TreeItem<ItemDTO> parent = findTreeItem(treeRootItem, latest.getParent());
+            if(parent != null && isLoadedFolder(parent)) parent.getChildren().add(createTreeItem(latest));
+            return;
+        }
+
+        if(!writeQueue.isPending(id)) replaceTreeItem(treeItem, latest);
+    }
+
+    /**
+     * This method reads the children of every loaded folder again and updates the tree with them, for when too much
+     * changed to be patched item by item. The folders keep their nodes, so what was expanded stays expanded.
+     * <p>
+     * Everything is read by a single background task, so a big tree doesn't flood the database executor.
+     */
+    private void refreshLoadedFolders() {
+        List<LazyTreeItem<ItemDTO>> folders = new ArrayList<>();
+        collectLoadedFolders(treeRootItem, folders);
+
+        List<UUID> ids = new ArrayList<>();
+        for(LazyTreeItem<ItemDTO> folder : folders) ids.add(folder.getValue().getId());
+
+        CompletableFuture<Map<UUID, List<ItemDTO>>> children;
+        try {
+            children = CompletableFuture.supplyAsync(() -> {
+                writeQueue.flush();
+
+                Map<UUID, List<ItemDTO>> folderChildren = new HashMap<>();
+                for(UUID id : ids) folderChildren.put(id, readChildren(id));
+
+                return folderChildren;
+            }, dbExecutor);
+        }
+        catch (RejectedExecutionException e) {
+            LOGGER.warn("Could not reload the tree", e);
+            return;
+        }
+
+        children.whenCompleteAsync((folderChildren, e) -> {
+            if(e != null) {
+                LOGGER.warn("Could not reload the tree", e);
+                return;
+            }
+
+            for(LazyTreeItem<ItemDTO> folder : folders)
+                syncChildren(folder, folderChildren.get(folder.getValue().getId()));
+        }, Platform::runLater);
+    }
+
+    /**
+     * This method collects the folders whose children were already loaded.
+     *
+     * @param item Node where the search starts.
+     * @param folders List the loaded folders are added to, parents before their children.
+     */
+    private void collectLoadedFolders(TreeItem<ItemDTO> item, List<LazyTreeItem<ItemDTO>> folders) {
+        if(!(item instanceof LazyTreeItem<ItemDTO> lazyItem) || !lazyItem.isChildrenLoaded()) return;
+
+        folders.add(lazyItem);
+        for(TreeItem<ItemDTO> child : item.getChildren())
+            collectLoadedFolders(child, folders);
+    }
+
+    /**
+     * This method replaces the children of a loaded folder with the latest ones, keeping the nodes of the
+     * items that are still there.
+     *
+     * @param folder Tree node of the folder.
+     * @param latest Latest items inside the folder.
+     */
+    private void syncChildren(LazyTreeItem<ItemDTO> folder, List<ItemDTO> latest) {
+        Map<UUID, TreeItem<ItemDTO>> shown = new HashMap<>();
+        for(TreeItem<ItemDTO> child : folder.getChildren()) shown.put(child.getValue().getId(), child);
+
+        List<TreeItem<ItemDTO>> children = new ArrayList<>();
+        for(ItemDTO item : latest) {
+            TreeItem<ItemDTO> treeItem = shown.get(item.getId());
+
+            if(treeItem == null) treeItem = createTreeItem(item);
+            else if(!writeQueue.isPending(item.getId())) {
+                if(contentFile == treeItem.getValue()) contentFile = null;
+                treeItem.setValue(item);
+            }
+
+            children.add(treeItem);
+        }
+
+        folder.replaceChildren(children);
+    }
+
+    /**
+     * This method finds the tree node of an item, only going through the folders that were already loaded.
+     *
+     * @param item Node where the search starts.
+     * @param id ID of the item, null for the root.
+     * @return The tree node, or null if it isn't loaded.
+     */
+    private TreeItem<ItemDTO> findTreeItem(TreeItem<ItemDTO> item, UUID id) {
+        if(Objects.equals(item.getValue().getId(), id)) return item;
+        if(item instanceof LazyTreeItem<ItemDTO> lazyItem && !lazyItem.isChildrenLoaded()) return null;
+
+        for(TreeItem<ItemDTO> child : item.getChildren()) {
+            TreeItem<ItemDTO> found = findTreeItem(child, id);
+            if(found != null) return found;
+        }
+
+        return null;
+    }
+
+    /**
+     * This method queues the removal of an item's database record.
+     *
+     * @param item Item to be removed.
+     */
+    private void queueRemove(ItemDTO item) {
+        UUID id = item.getId();
+
+        if(item instanceof FileDTO) writeQueue.submit(tx -> new FileRepository(tx).removeById(id));
+        else writeQueue.submit(tx -> new FolderRepository(tx).removeById(id));
     }
 
     /**
@@ -235,7 +915,7 @@ public class PFSController implements Initializable {
         FolderDTO rootFolder = new FolderDTO(null, "root");
         rootFolder.setId(null);
 
-        treeRootItem = new TreeItem<>(rootFolder);
+        treeRootItem = new LazyTreeItem<>(rootFolder, null, -1, () -> loadChildrenAsync(null));
         pfsTreeView.setRoot(treeRootItem);
         pfsTreeView.setShowRoot(false);
 
@@ -268,11 +948,25 @@ public class PFSController implements Initializable {
         });
     }
 
+    /**
+     * This method brings the tree up to date after the whole database changed (like after a restore), keeping the
+     * folders that were open instead of building the tree again.
+     */
+    private void reloadTree() {
+        pfsTreeView.getSelectionModel().clearSelection();
+        clearMetadata();
+        contentFile = null;
+        authenticatedFiles.clear();
+
+        refreshLoadedFolders();
+    }
+
     /**
      * This method clears all the data from the metadata panel.
      */
     private void clearMetadata() {
         txtFileContent.setText("");
+        txtFileContent.setEditable(true);
         lblInfoIsLocked.setText("");
         lblInfoSize.setText("");
         lblInfoImportance.setText("");
@@ -288,6 +982,13 @@ public class PFSController implements Initializable {
      * @param item The item that was selected.
      */
     private void handleNewTreeItemSelection(TreeItem<ItemDTO> item) {
+        //Free the content of the previous file, it is saved as soon as it is edited
+        //unless the save is still queued, since the content couldn't be fetched back until then
+        if(contentFile != null && (item == null || contentFile != item.getValue())) {
+            if(!writeQueue.isPending(contentFile.getId())) contentFile.releaseContent();
+            contentFile = null;
+        }
+
         if(item == null) {
             pfsTreeView.getSelectionModel().clearSelection();
             clearMetadata();
@@ -333,7 +1034,11 @@ public class PFSController implements Initializable {
             if(Objects.equals(file.getExtension().toLowerCase(), "txt") ||
                 Objects.equals(file.getExtension().toLowerCase(), "csv")) {
                 itemInfoTabContainer.getTabs().get(1).getContent().setVisible(true);
-                txtFileContent.setText(file.getContent());
+
+                //Huge files are only previewed, so they are never whole in memory
+                boolean preview = file.getLongFileSize() > CONTENT_PREVIEW_THRESHOLD;
+                contentFile = file;
+                showContent(file, preview);
             }
         }
         else {
@@ -370,7 +1075,7 @@ public class PFSController implements Initializable {
      * Item names cannot be the same only on the same tree level, in other words, when in the same folder.
      *
      * @param item Item to check name duplication.
-     * @param parent Parent to check the duplication on.
+     * @param parent Parent to check the duplication on, whose children must be loaded.
      * @return True if an item with the same name exists, otherwise false.
      */
     private boolean isNameDuplicated(ItemDTO item, TreeItem<ItemDTO> parent) {
@@ -422,11 +1127,11 @@ public class PFSController implements Initializable {
      * @return The tree node item.
      */
     private TreeItem<ItemDTO> createTreeItem(ItemDTO itemDTO) {
-        Node img;
-        if(itemDTO instanceof FileDTO) img = new IconPanel("file");
-        else img = new IconPanel("folder");
-
-        TreeItem<ItemDTO> treeItem = new TreeItem<>(itemDTO, img);
+        TreeItem<ItemDTO> treeItem;
+        if(itemDTO instanceof FolderDTO folder) //Folder contents are only loaded when they are needed
+            treeItem = new LazyTreeItem<>(itemDTO, new IconPanel("folder"), folder.getChildCount(),
+                    () -> loadChildrenAsync(folder.getId()));
+        else treeItem = new TreeItem<>(itemDTO, new IconPanel("file"));
 
         /*
         * Create a listener for the item being created on the name property
@@ -506,7 +1211,23 @@ public class PFSController implements Initializable {
                 Alert.AlertType.CONFIRMATION, btnCancelled, btnFile, btnFolder);
 
         if(res.orElse(btnCancelled) == btnCancelled) return; //User cancelled operation
+        boolean isFile = res.get() == btnFile;
 
+        //The name is checked against the items in the folder, so they have to be loaded first
+        loadedChildren(selectedItem).thenAccept(children -> {
+            try { createNewItem(selectedItem, isFile); }
+            catch (IOException e) { Helpers.showErrorDialog(e); }
+        });
+    }
+
+    /**
+     * This method names and creates a new tree item, once the items of the folder it's created in are loaded.
+     *
+     * @param selectedItem Folder the item is created in.
+     * @param isFile If the item is a file, otherwise it's a folder.
+     * @throws IOException May come from the item creation forms for not finding the FXML, but it's unlikely to happen.
+     */
+    private void createNewItem(TreeItem<ItemDTO> selectedItem, boolean isFile) throws IOException {
         //Name the new item
         TreeItem<ItemDTO> treeItem;
         boolean isDuped;
@@ -514,7 +1235,7 @@ public class PFSController implements Initializable {
             /* Get filename from user */
             String itemName;
             int importance = -1;
-            if(res.orElse(btnFolder) == btnFile) {
+            if(isFile) {
                 FileCreationController fileCreationController = FileCreationController.create();
                 List<String> data = fileCreationController.show();
                 if(data == null) return; //User cancelled operation
@@ -531,7 +1252,7 @@ public class PFSController implements Initializable {
             /* ---------------------- */
 
             ItemDTO item;
-            if(res.orElse(btnFolder) == btnFile) {
+            if(isFile) {
                 item = new FileDTO(selectedItem.getValue().getId(), itemName, Helpers.parseFileExtension(itemName));
                 ((FileDTO) item).setImportance(importance);
             }
@@ -551,8 +1272,7 @@ public class PFSController implements Initializable {
         pfsTreeView.getSelectionModel().select(treeItem);
 
         //Create db record
-        if(treeItem.getValue() instanceof FileDTO) fileRepository.create((FileDTO) treeItem.getValue());
-        else folderRepository.create((FolderDTO) treeItem.getValue());
+        queueCreate(treeItem.getValue());
     }
 
     /**
@@ -604,8 +1324,7 @@ public class PFSController implements Initializable {
         selectedItem.getValue().updateChanged();
 
         //Update db record
-        if(isFile) fileRepository.update((FileDTO) selectedItem.getValue());
-        else folderRepository.update((FolderDTO) selectedItem.getValue());
+        queueUpdate(selectedItem.getValue());
 
         //Update metadata
         handleNewTreeItemSelection(selectedItem);
@@ -616,7 +1335,6 @@ public class PFSController implements Initializable {
      */
     private void removeItem() {
         TreeItem<ItemDTO> selectedItem = getSelectedItem();
-        boolean isFile = selectedItem.getValue() instanceof FileDTO;
 
         //If there is no option selected, show error and cancel operation
         if(selectedItem == treeRootItem) {
@@ -630,8 +1348,7 @@ public class PFSController implements Initializable {
         if(!res) return; //User cancelled operation
 
         //Remove item from db
-        if(isFile) fileRepository.removeById(selectedItem.getValue().getId());
-        else folderRepository.removeById(selectedItem.getValue().getId());
+        queueRemove(selectedItem.getValue());
 
         //Remove item from tree
         selectedItem.getParent().getChildren().remove(selectedItem);
@@ -660,9 +1377,10 @@ public class PFSController implements Initializable {
 
             //Now unlock the file
             file.setLocked(false);
+            file.updateChanged();
 
             //Update db record
-            fileRepository.update(file);
+            queueUpdate(file);
 
             //Update metadata
             item.setValue(file);
@@ -691,9 +1409,10 @@ public class PFSController implements Initializable {
 
                 //Update lock state
                 file.setLocked(true);
+                file.updateChanged();
 
                 //Update db record
-                fileRepository.update(file);
+                queueUpdate(file);
 
                 //Update metadata
                 item.setValue(file);
@@ -709,12 +1428,13 @@ public class PFSController implements Initializable {
 
         //Update lock state
         file.setLocked(true);
+        file.updateChanged();
 
         //Update password hash
         file.setPassword(PasswordManager.createPasswordHash(inputPassword));
 
         //Update db record
-        fileRepository.update(file);
+        queueUpdate(file);
 
         //Update metadata
         item.setValue(file);
@@ -742,8 +1462,10 @@ public class PFSController implements Initializable {
         TreeItem<ItemDTO> itemParent = getCurrentPlacement();
         itemParent.getChildren().add(createTreeItem(dupFile));
 
-        //Save on DB
-        fileRepository.create(dupFile);
+        //Save on DB, the copy shares the stored content of the original
+        FileDTO snapshot = dupFile.copy();
+        UUID sourceId = item.getValue().getId();
+        writeQueue.submit(snapshot.getId(), tx -> new FileRepository(tx).createCopy(snapshot, sourceId));
     }
 
     /**
@@ -783,50 +1505,25 @@ public class PFSController implements Initializable {
         //Operation cancelled, user closed the chooser window without answering
         if(!res) return;
 
-        removeSubFolders(item);
-        pfsTreeView.refresh();
-    }
-
-    /**
-     * This method is a helper that removes all the sub folders withing another folder.
-     *
-     * @param item Folder to removed sub folders from.
-     */
-    private void removeSubFolders(TreeItem<ItemDTO> item) { removeSubFolders(item, item); }
-
-    /**
-     * This method is a helper that removes all the sub folders withing another folder.
-     *
-     * @param item Folder to removed sub folders from.
-     * @param root Folder root location.
-     */
-    private void removeSubFolders(TreeItem<ItemDTO> item, TreeItem<ItemDTO> root) {
-        ArrayList<TreeItem<ItemDTO>> children = new ArrayList<>(item.getChildren());
+        UUID folderId = item.getValue().getId();
 
-        /*
-        * This is a recursive approach, go through all the item's children
-        * if it's a file move it to the current parent
-        * */
-        for(TreeItem<ItemDTO> child : children) {
-            if(child.getValue() instanceof FileDTO file) {
-                //Make sure filename does not make collisions
-                renameDuplicatedFile(child.getValue(), root);
+        //Flatten on the server in one go, then load the folder's files again, the queued changes have to be in
+        //the database before either
+        Function<Cancellation, CompletableFuture<List<FileDTO>>> files = cancellation -> flushWritesAsync()
+                .thenCompose(cancellation.guard(ignored -> asyncFolderRepository.flatten(folderId)))
+                .thenCompose(cancellation.guard(moved -> asyncFileRepository.findChildren(folderId)))
+                .thenApply(records -> FileMapper.toFileDTO(records, blobRepository::findContent));
 
-                //Move the file to the correct parent
-                child.getValue().setParent(root.getValue().getId());
-                root.getChildren().add(child);
+        backgroundTasks.run(files, fileDTOS -> {
+            //Apply the result as a single tree update
+            List<TreeItem<ItemDTO>> children = new ArrayList<>();
+            for(FileDTO file : fileDTOS) children.add(createTreeItem(file));
 
-                //Update DB
-                fileRepository.update(file);
-            }
-            else {
-                removeSubFolders(child, root); //Apply recursive logic
+            if(item instanceof LazyTreeItem<ItemDTO> lazyItem) lazyItem.replaceChildren(children);
+            else item.getChildren().setAll(children);
 
-                //Remove folder after everything has been moved
-                folderRepository.removeById(child.getValue().getId());
-            }
-            item.getChildren().remove(child);
-        }
+            pfsTreeView.refresh();
+        });
     }
 
     /**
@@ -846,21 +1543,26 @@ public class PFSController implements Initializable {
             return;
         }
 
-        //Remove from old location
-        tempMoveItem.getParent().getChildren().remove(tempMoveItem);
+        //The name is checked against the items in the new folder, so they have to be loaded first
+        TreeItem<ItemDTO> movedItem = tempMoveItem;
+        loadedChildren(item).thenAccept(children -> {
+            //Remove from old location
+            movedItem.getParent().getChildren().remove(movedItem);
 
-        //Rename file if needed
-        renameDuplicatedFile(tempMoveItem.getValue(), item);
+            //Rename file if needed
+            renameDuplicatedFile(movedItem.getValue(), item);
 
-        //Move item to new location
-        tempMoveItem.getValue().setParent(item.getValue().getId());
-        item.getChildren().add(tempMoveItem);
+            //Move item to new location
+            movedItem.getValue().setParent(item.getValue().getId());
+            movedItem.getValue().updateChanged();
+            children.add(movedItem);
 
-        //Update DB
-        fileRepository.update((FileDTO) tempMoveItem.getValue());
+            //Update DB
+            queueUpdate(movedItem.getValue());
 
-        //Set options back to original
-        toggleMoveOptions(false);
+            //Set options back to original
+            toggleMoveOptions(false);
+        });
     }
 
     /**
@@ -870,12 +1572,155 @@ public class PFSController implements Initializable {
      * @throws IOException May come from the instanced views for not finding the FXML, but it's unlikely to happen.
      */
     private void search(Helpers.SearchMode searchParam) throws IOException {
+        //Searches read the database, so they write the queued changes first
         SearchViewController searchController = SearchViewController.create();
-        TreeItem<ItemDTO> item = searchController.show(searchParam, treeRootItem);
+        ListViewItem result = searchController.show(searchParam, asyncFileRepository, this::flushWritesAsync);
+
+        if(result == null) return; //User cancelled
+
+        //Search results come from the database, so their folders may not be loaded yet
+        UUID id = result.getResult().id();
+        UUID parentId = result.getResult().parent();
+        backgroundTasks.run(cancellation -> flushWritesAsync()
+                        .thenCompose(cancellation.guard(ignored -> findFolderPath(parentId, new ArrayDeque<>()))),
+                path -> {
+                    if(path == null) {
+                        Helpers.showDialogMessage("The item no longer exists!");
+                        return;
+                    }
+
+                    path.add(id);
+                    revealTreeItem(treeRootItem, path.iterator()).thenAccept(item -> {
+                        if(item == null) {
+                            Helpers.showDialogMessage("The item no longer exists!");
+                            return;
+                        }
+
+                        pfsTreeView.getSelectionModel().select(item);
+                        pfsTreeView.scrollTo(pfsTreeView.getRow(item));
+                    });
+                });
+    }
+
+    /**
+     * This method finds the folders from the root down to a given folder, looking them up one at a time
+     * from the folder up.
+     *
+     * @param folderId ID of the folder, or null for the root.
+     * @param path Folders found so far, the ones below the given folder.
+     * @return Future of the IDs of the folders from the root down, or null if one of them no longer exists.
+     */
+    private CompletableFuture<Deque<UUID>> findFolderPath(UUID folderId, Deque<UUID> path) {
+        if(folderId == null) return CompletableFuture.completedFuture(path);
+
+        return asyncFolderRepository.findById(folderId).thenCompose(folder -> {
+            if(folder == null) return CompletableFuture.<Deque<UUID>>completedFuture(null);
+
+            path.push(folderId);
+            return findFolderPath(folder.getParent(), path);
+        });
+    }
+
+    /**
+     * This method finds the tree node of an item, expanding the folders on its path and waiting for
+     * their children to be loaded, one level at a time.
+     *
+     * @param item Tree node the path starts from.
+     * @param path IDs of the items on the path below the node, ending with the item.
+     * @return Future of the tree node, or null if the item or one of its folders is no longer there,
+     * completed on the JavaFX application thread.
+     */
+    private CompletableFuture<TreeItem<ItemDTO>> revealTreeItem(TreeItem<ItemDTO> item, Iterator<UUID> path) {
+        if(!path.hasNext()) return CompletableFuture.completedFuture(item);
+
+        UUID childId = path.next();
+        item.setExpanded(true);
+
+        return loadedChildren(item).thenCompose(children -> {
+            TreeItem<ItemDTO> child = children.stream()
+                    .filter(c -> childId.equals(c.getValue().getId()))
+                    .findFirst()
+                    .orElse(null);
+
+            return child == null ? CompletableFuture.<TreeItem<ItemDTO>>completedFuture(null) : revealTreeItem(child, path);
+        });
+    }
+
+    /**
+     * This method shows the content of a file on the metadata panel. If the content isn't in memory
+     * it is fetched in the background, and the file can't be edited until it's shown.
+     *
+     * @param file File whose content is shown.
+     * @param preview If only the beginning of the content is shown, because the file is too large.
+     */
+    private void showContent(FileDTO file, boolean preview) {
+        if(file.isContentLoaded()) {
+            txtFileContent.setText(preview ? previewContent(file.getContent()) : file.getContent());
+            txtFileContent.setEditable(!preview);
+            return;
+        }
+
+        txtFileContent.setText("");
+        txtFileContent.setEditable(false);
+
+        String contentHash = file.getContentHash();
+        UUID fileId = file.getId();
+        backgroundTasks.run(cancellation -> supplyOnDbThread(() -> preview
+                        ? readContentPreview(fileId)
+                        : blobRepository.findContent(contentHash)),
+                content -> {
+                    if(!preview) file.fillContent(contentHash, content);
+
+                    //The selection may have changed while the content was fetched
+                    if(contentFile != file) return;
+
+                    //The content was replaced while it was fetched, so the new one has to be fetched instead
+                    if(!preview && !file.isContentLoaded()) {
+                        showContent(file, false);
+                        return;
+                    }
+
+                    txtFileContent.setText(preview ? content : file.getContent());
+                    txtFileContent.setEditable(!preview);
+                });
+    }
+
+    /**
+     * This method cuts a content down to its beginning, to be shown when the file is too large to be shown whole.
+     *
+     * @param content The content of the file.
+     * @return The beginning of the content.
+     */
+    private String previewContent(String content) {
+        content = Objects.requireNonNullElse(content, "");
+        return content.substring(0, Math.min(content.length(), CONTENT_PREVIEW_LENGTH)) + CONTENT_PREVIEW_NOTICE;
+    }
+
+    /**
+     * This method reads the beginning of the content of a file from the database, to be shown when the file
+     * is too large to be shown whole. The content is streamed, so only the beginning is fetched.
+     * <p>
+     * It runs queries, so it's meant for a database thread.
+     *
+     * @param fileId ID of the file whose content is previewed.
+     * @return The beginning of the content.
+     * @throws UncheckedIOException If the content couldn't be read.
+     */
+    private String readContentPreview(UUID fileId) {
+        try(Reader reader = fileRepository.openContent(fileId)) {
+            if(reader == null) return "";
 
-        if(item == null) return; //User cancelled
+            char[] preview = new char[CONTENT_PREVIEW_LENGTH];
+            int length = 0;
+            int read;
+            while(length < preview.length && (read = reader.read(preview, length, preview.length - length)) != -1)
+                length += read;
 
-        pfsTreeView.getSelectionModel().select(item);
+            return new String(preview, 0, length) + CONTENT_PREVIEW_NOTICE;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
@@ -890,6 +1735,12 @@ public class PFSController implements Initializable {
             return;
         }
 
+        //Saving the preview would cut the content off
+        if(!txtFileContent.isEditable()) {
+            Helpers.showErrorDialog("This file is too large to be edited here!");
+            return;
+        }
+
         //Update file content and metadata
         FileDTO file = (FileDTO) item.getValue();
         file.setContent(txtFileContent.getText());
@@ -901,18 +1752,16 @@ public class PFSController implements Initializable {
         handleNewTreeItemSelection(item);
 
         //Update DB
-        fileRepository.update(file);
+        queueUpdate(file);
 
-        Helpers.showDialogMessage("File content saved successfully!");
+        //The write is committed in the background, a failure shows up as an error later
+        Helpers.showDialogMessage("File content queued to be saved!");
     }
 
     /**
      * This method holds all the logic for item backup operations.
-     *
-     * @throws SQLException This will happen if the connection to the database fails.
-     * @throws IOException This ill will happen if the file cannot be written on the filesystem.
      */
-    private void backupDbContent() throws SQLException, IOException {
+    private void backupDbContent() {
         DirectoryChooser directoryChooser = new DirectoryChooser();
 
         //Ask user for backup save location
@@ -920,18 +1769,58 @@ public class PFSController implements Initializable {
 
         if(selectedDirectory == null) return; //User cancelled operation
 
-        DBEngine.backupDbData(selectedDirectory.getAbsolutePath());
+        //Ask user for the backup format
+        ButtonType btnJson = new ButtonType("JSON", ButtonBar.ButtonData.OTHER);
+        ButtonType btnBinary = new ButtonType("Binary", ButtonBar.ButtonData.YES);
+        ButtonType btnCancelled = new ButtonType("Cancel", ButtonBar.ButtonData.CANCEL_CLOSE);
+
+        Optional<ButtonType> format = Helpers.showChooserPopup("Backup Format",
+                "Which format would you like to use for the backup?",
+                "The binary format is smaller and faster, JSON can be read by other tools.",
+                Alert.AlertType.CONFIRMATION, btnCancelled, btnBinary, btnJson);
 
-        Helpers.showDialogMessage("Data backed up successfully!");
+        if(format.orElse(btnCancelled) == btnCancelled) return; //User cancelled operation
+
+        boolean compress = Helpers.showChooserPopup("Compress Backup",
+                "Would you like to compress the backup file (gzip)?", Alert.AlertType.CONFIRMATION);
+
+        boolean binary = format.get() == btnBinary;
+
+        runBackupJob("An error occurred when saving the backup file", cancelled -> {
+            DBEngine.backupDbData(selectedDirectory.getAbsolutePath(), compress, binary, cancelled);
+            return null;
+        }, ignored -> Helpers.showDialogMessage("Data backed up successfully!"));
+    }
+
+    /**
+     * This method holds all the logic for incremental backup operations.
+     */
+    private void incrementalBackupDbContent() {
+        //Ask user for the last backup of the chain, the increment is saved next to it
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Select the previous backup");
+        FileChooser.ExtensionFilter filter = new FileChooser.ExtensionFilter("Backup Files (*.json, *.pfsb, *.gz)",
+                "*.json", "*.json.gz", "*" + BinaryBackupFormat.EXTENSION, "*" + BinaryBackupFormat.EXTENSION + ".gz");
+
+        fileChooser.getExtensionFilters().add(filter); //Add file extension filter
+
+        File previousBackup = fileChooser.showOpenDialog(mainViewRoot.getScene().getWindow());
+        if(previousBackup == null) return; //User cancelled
+
+        boolean compress = Helpers.showChooserPopup("Compress Backup",
+                "Would you like to compress the backup file (gzip)?", Alert.AlertType.CONFIRMATION);
+
+        runBackupJob("An error occurred when saving the backup file",
+                cancelled -> DBEngine.incrementalBackupDbData(previousBackup, compress, cancelled),
+                written -> {
+                    if(written) Helpers.showDialogMessage("Data backed up successfully!");
+                });
     }
 
     /**
      * This method holds all the logic for restoring operations.
-     *
-     * @throws SQLException This will happen if the connection to the database fails.
-     * @throws IOException This ill will happen if the file cannot be written on the filesystem.
      */
-    protected void restoreDbContent() throws SQLException, IOException {
+    protected void restoreDbContent() {
         //Ask user to confirm operation
         boolean res = Helpers.showChooserPopup("Restore Data From Backup", "Are you sure you want to proceed with the operation?",
                 "This will remove ALL the data currently stored on the Database!", Alert.AlertType.WARNING);
@@ -939,8 +1828,8 @@ public class PFSController implements Initializable {
 
         //Ask user for file location
         FileChooser fileChooser = new FileChooser();
-        FileChooser.ExtensionFilter filter = new FileChooser.ExtensionFilter("JSON Files (*.json)",
-                "*.json");
+        FileChooser.ExtensionFilter filter = new FileChooser.ExtensionFilter("Backup Files (*.json, *.pfsb, *.gz)",
+                "*.json", "*.json.gz", "*" + BinaryBackupFormat.EXTENSION, "*" + BinaryBackupFormat.EXTENSION + ".gz");
 
         fileChooser.getExtensionFilters().add(filter); //Add file extension filter
 
@@ -948,121 +1837,268 @@ public class PFSController implements Initializable {
         File backupFile = fileChooser.showOpenDialog(mainViewRoot.getScene().getWindow());
         if(backupFile == null) return; //User cancelled
 
-        DBEngine.restoreDbData(backupFile);
+        runBackupJob("Could not restore the data from the selected file",
+                cancelled -> DBEngine.restoreDbData(backupFile, restoreProgress("Restoring backup", cancelled)),
+                this::finishRestore);
+    }
+
+    /**
+     * This method holds all the logic for bulk (binary COPY) backup operations.
+     */
+    private void bulkBackupDbContent() {
+        DirectoryChooser directoryChooser = new DirectoryChooser();
+
+        //Ask user for backup save location
+        File selectedDirectory = directoryChooser.showDialog(mainViewRoot.getScene().getWindow());
 
-        Helpers.showDialogMessage("Data restored successfully!");
+        if(selectedDirectory == null) return; //User cancelled operation
 
-        initialize(); //Reload entire application
+        runBackupJob("An error occurred when saving the backup file",
+                cancelled -> DBEngine.bulkBackupDbData(selectedDirectory.getAbsolutePath(), cancelled),
+                this::finishBackup);
     }
 
     /**
-     * This method holds all the logic for item cleansing operations (by date).
-     *
-     * @throws IOException May come from the instanced views for not finding the FXML, but it's unlikely to happen.
+     * This method holds all the logic for bulk (binary COPY) restoring operations.
      */
-    protected void cleanByDate() throws IOException {
-        //Ask user for dates
-        DateRangeSelectorController dateSelectorView = DateRangeSelectorController.create();
-        List<LocalDate> dates = dateSelectorView.show();
-        if(dates == null) return; //Operation cancelled
-
+    protected void bulkRestoreDbContent() {
         //Ask user to confirm operation
-        boolean res = Helpers.showChooserPopup("Clean By Date",
-                "Are you sure you want to delete all files between these dates?", Alert.AlertType.WARNING);
+        boolean res = Helpers.showChooserPopup("Restore Data From Bulk Backup", "Are you sure you want to proceed with the operation?",
+                "This will remove ALL the data currently stored on the Database!", Alert.AlertType.WARNING);
         if(!res) return; //Operation cancelled
 
-        List<TreeItem<ItemDTO>> files = new ArrayList<>();
-        getFilesToDelete(treeRootItem, files, dates.get(0), dates.get(1));
+        //Ask user for file location
+        FileChooser fileChooser = new FileChooser();
+        FileChooser.ExtensionFilter filter = new FileChooser.ExtensionFilter("Bulk Backups (*" + DBEngine.BULK_BACKUP_EXTENSION + ")",
+                "*" + DBEngine.BULK_BACKUP_EXTENSION);
 
-        //Remove the files from the tree and update DB
-        for(TreeItem<ItemDTO> delFile : files) {
-            delFile.getParent().getChildren().remove(delFile);
+        fileChooser.getExtensionFilters().add(filter); //Add file extension filter
 
-            fileRepository.removeById(delFile.getValue().getId());
-        }
+        File backupFile = fileChooser.showOpenDialog(mainViewRoot.getScene().getWindow());
+        if(backupFile == null) return; //User cancelled
 
-        Helpers.showDialogMessage("Files deleted successfully!");
+        runBackupJob("Could not restore the data from the selected file",
+                cancelled -> DBEngine.bulkRestoreDbData(backupFile, restoreProgress("Restoring bulk backup", cancelled)),
+                this::finishRestore);
     }
 
     /**
-     * This method holds all the logic for item cleansing operations (by importance).
+     * This method holds all the logic for parallel backup operations.
      *
      * @throws IOException May come from the instanced views for not finding the FXML, but it's unlikely to happen.
      */
-    protected void cleanByImportance() throws IOException {
-        //Ask user for dates
-        NumberRangeSelectorController numSelectorView = NumberRangeSelectorController.create();
-        List<Integer> nums = numSelectorView.show();
-        if(nums == null) return; //Operation cancelled
+    private void parallelBackupDbContent() throws IOException {
+        DirectoryChooser directoryChooser = new DirectoryChooser();
+
+        //Ask user for backup save location
+        File selectedDirectory = directoryChooser.showDialog(mainViewRoot.getScene().getWindow());
+
+        if(selectedDirectory == null) return; //User cancelled operation
+
+        int parallelism = askParallelism("Parallel Backup");
+        if(parallelism <= 0) return; //User cancelled operation
+
+        boolean compress = Helpers.showChooserPopup("Compress Backup",
+                "Would you like to compress the backup files (gzip)?", Alert.AlertType.CONFIRMATION);
+
+        runBackupJob("An error occurred when saving the backup files",
+                cancelled -> DBEngine.parallelBackupDbData(selectedDirectory.getAbsolutePath(), parallelism, compress,
+                        cancelled),
+                this::finishBackup);
+    }
 
+    /**
+     * This method holds all the logic for parallel restoring operations.
+     *
+     * @throws IOException May come from the instanced views for not finding the FXML, but it's unlikely to happen.
+     */
+    protected void parallelRestoreDbContent() throws IOException {
         //Ask user to confirm operation
-        boolean res = Helpers.showChooserPopup("Clean By Importance",
-                "Are you sure you want to delete all files between these importance values?", Alert.AlertType.WARNING);
+        boolean res = Helpers.showChooserPopup("Restore Data From Parallel Backup", "Are you sure you want to proceed with the operation?",
+                "This will remove ALL the data currently stored on the Database!", Alert.AlertType.WARNING);
         if(!res) return; //Operation cancelled
 
-        List<TreeItem<ItemDTO>> files = new ArrayList<>();
-        getFilesToDelete(treeRootItem, files, nums.get(0), nums.get(1));
+        //Ask user for the manifest location
+        FileChooser fileChooser = new FileChooser();
+        FileChooser.ExtensionFilter filter = new FileChooser.ExtensionFilter("Parallel Backup Manifest ("
+                + ParallelBackupEngine.MANIFEST_NAME + ")", ParallelBackupEngine.MANIFEST_NAME);
 
-        //Remove the files from the tree and update DB
-        for(TreeItem<ItemDTO> delFile : files) {
-            delFile.getParent().getChildren().remove(delFile);
+        fileChooser.getExtensionFilters().add(filter); //Add file extension filter
 
-            fileRepository.removeById(delFile.getValue().getId());
-        }
+        File manifest = fileChooser.showOpenDialog(mainViewRoot.getScene().getWindow());
+        if(manifest == null) return; //User cancelled
 
-        Helpers.showDialogMessage("Files deleted successfully!");
+        int parallelism = askParallelism("Parallel Restore");
+        if(parallelism <= 0) return; //User cancelled operation
+
+        runBackupJob("Could not restore the data from the selected backup",
+                cancelled -> DBEngine.parallelRestoreDbData(manifest, parallelism,
+                        restoreProgress("Restoring parallel backup", cancelled)),
+                this::finishRestore);
     }
 
     /**
-     * This method is a helper that gets a list of files to delete from the cleaning operations.
+     * This method runs a backup or restore on a database thread, showing the busy indicator meanwhile.
+     * <p>
+     * Cancelling stops it at its next checkpoint: a backup removes what it wrote, and a restore made in a single
+     * transaction is rolled back (a parallel restore keeps the segments that were already restored).
      *
-     * @param item Item whose children will be checked for deletion.
-     * @param files List of file candidates to remove.
-     * @param fromDate Starting date that will be compared against the creation date of the files.
-     * @param toDate Ending date that will be compared against the creation date of the files.
+     * @param error Message the error is reported with if it fails.
+     * @param job Backup or restore to be run, given a function that tells if it was cancelled.
+     * @param onSuccess Action that gets the result, run on the JavaFX application thread.
+     * @param <T> Type of the result of the job.
      */
-    protected void getFilesToDelete(TreeItem<ItemDTO> item, List<TreeItem<ItemDTO>> files, LocalDate fromDate, LocalDate toDate) {
-        /*
-        * If the file is in between the date range add it to the list
-        * */
-        if(item.getValue() instanceof FileDTO file) {
-            if((file.getCreated().toLocalDate().isAfter(fromDate) &&
-                    file.getCreated().toLocalDate().isBefore(toDate)) ||
-                    file.getCreated().toLocalDate().isEqual(fromDate) ||
-                    file.getCreated().toLocalDate().isEqual(toDate))
-                files.add(item);
+    private <T> void runBackupJob(String error, BackupJob<T> job, Consumer<T> onSuccess) {
+        backgroundTasks.run(cancellation -> supplyOnDbThread(() -> {
+            try {
+                return job.run(cancellation::isCancelled);
+            }
+            catch (SQLException | IOException e) {
+                throw new CompletionException(new IOException(error, e));
+            }
+        }), onSuccess);
+    }
+
+    /**
+     * This method creates the progress listener of a restore, which logs the progress and stops the restore
+     * once it's cancelled.
+     *
+     * @param operation Name of the restore, for the log.
+     * @param cancelled Function that tells if the restore was cancelled.
+     * @return The progress listener.
+     */
+    private static Consumer<BackupProgress> restoreProgress(String operation, BooleanSupplier cancelled) {
+        return progress -> {
+            if(cancelled.getAsBoolean()) throw new CancellationException("The restore was cancelled");
+
+            LOGGER.info("{}: {}", operation, progress);
+        };
+    }
+
+    /**
+     * This method tells the user a backup finished.
+     *
+     * @param progress Final progress of the backup, or null if nothing was backed up.
+     */
+    private void finishBackup(BackupProgress progress) {
+        if(progress != null) Helpers.showDialogMessage("Data backed up successfully!\n" + progress);
+    }
+
+    /**
+     * This method tells the user a restore finished and loads the restored tree.
+     *
+     * @param progress Final progress of the restore, or null if there was nothing to restore.
+     */
+    private void finishRestore(BackupProgress progress) {
+        if(progress == null) return;
+
+        Helpers.showDialogMessage("Data restored successfully!\n" + progress);
+        reloadTree();
+    }
+
+    /**
+     * This method is a helper that asks the user how many connections an operation should use.
+     *
+     * @param title Title of the popup.
+     * @return The degree of parallelism, or 0 if the user cancelled or the value isn't valid.
+     * @throws IOException May come from the instanced views for not finding the FXML, but it's unlikely to happen.
+     */
+    private int askParallelism(String title) throws IOException {
+        TextPopupController textPopupController = TextPopupController.create();
+        String value = textPopupController.show(title, "Degree of parallelism (connections):",
+                String.valueOf(DEFAULT_PARALLELISM));
+
+        if(value == null || value.isEmpty()) return 0;
+
+        try {
+            int parallelism = Integer.parseInt(value.trim());
+            if(parallelism > 0) return parallelism;
         }
+        catch (NumberFormatException ignored) {}
 
-        for(TreeItem<ItemDTO> child: item.getChildren())
-            getFilesToDelete(child, files, fromDate, toDate);
+        Helpers.showErrorDialog("The degree of parallelism must be a positive number");
+        return 0;
     }
 
     /**
-     * This method is a helper that gets a list of files to delete from the cleaning operations.
+     * This method holds all the logic for item cleansing operations (by date).
      *
-     * @param item Item whose children will be checked for deletion.
-     * @param files List of file candidates to remove.
-     * @param fromNum Starting number that will be compared against the importance of the files.
-     * @param toNum Ending number that will be compared against the importance of the files.
+     * @throws IOException May come from the instanced views for not finding the FXML, but it's unlikely to happen.
      */
-    protected void getFilesToDelete(TreeItem<ItemDTO> item, List<TreeItem<ItemDTO>> files, int fromNum, int toNum) {
-        /*
-         * If the file is in between the date range add it to the list
-         * */
-        if(item.getValue() instanceof FileDTO file &&
-                file.getImportance() >= fromNum && file.getImportance() <= toNum)
-            files.add(item);
+    protected void cleanByDate() throws IOException {
+        //Ask user for dates
+        DateRangeSelectorController dateSelectorView = DateRangeSelectorController.create();
+        List<LocalDate> dates = dateSelectorView.show();
+        if(dates == null) return; //Operation cancelled
+
+        //Both days are included
+        LocalDateTime from = dates.get(0).atStartOfDay();
+        LocalDateTime to = dates.get(1).plusDays(1).atStartOfDay();
+
+        cleanFiles("Clean By Date", "between these dates",
+                () -> asyncFileRepository.countByCreatedRange(from, to),
+                () -> asyncFileRepository.removeByCreatedRange(from, to));
+    }
+
+    /**
+     * This method holds the logic shared by the item cleansing operations, which counts the files that match,
+     * asks the user to confirm, removes them and prunes them from the tree.
+     * <p>
+     * The queued changes are flushed before counting and before removing, so both see the files as the user does.
+     *
+     * @param title Title of the confirmation popup.
+     * @param range Description of the files that match, shown to the user.
+     * @param count Query that counts the files that match.
+     * @param remove Query that removes the files that match, returning their IDs.
+     */
+    private void cleanFiles(String title, String range, Supplier<CompletableFuture<Integer>> count,
+                            Supplier<CompletableFuture<List<UUID>>> remove) {
+        backgroundTasks.run(cancellation -> flushWritesAsync().thenCompose(cancellation.guard(ignored -> count.get())),
+                matching -> {
+                    if(matching == 0) {
+                        Helpers.showDialogMessage("There are no files " + range);
+                        return;
+                    }
 
-        for(TreeItem<ItemDTO> child: item.getChildren())
-            getFilesToDelete(child, files, fromNum, toNum);
+                    //Ask user to confirm operation
+                    boolean res = Helpers.showChooserPopup(title,
+                            "Are you sure you want to delete the " + matching + " files " + range + "?",
+                            Alert.AlertType.WARNING);
+                    if(!res) return; //Operation cancelled
+
+                    //Remove the files from the DB in a single statement, then from the tree
+                    //The amount shown is what was actually removed, files may have changed since they were counted
+                    backgroundTasks.run(cancellation -> flushWritesAsync().thenCompose(cancellation.guard(ignored -> remove.get())),
+                            ids -> {
+                                pruneTreeItems(treeRootItem, new HashSet<>(ids));
+                                Helpers.showDialogMessage(ids.size() + " files deleted successfully!");
+                            });
+                });
     }
 
     /**
-     * This method holds all the logic for showing the PFS storage metrics.
+     * This method holds all the logic for item cleansing operations (by importance).
      *
      * @throws IOException May come from the instanced views for not finding the FXML, but it's unlikely to happen.
      */
-    protected void showFolderMetrics() throws IOException {
+    protected void cleanByImportance() throws IOException {
+        //Ask user for dates
+        NumberRangeSelectorController numSelectorView = NumberRangeSelectorController.create();
+        List<Integer> nums = numSelectorView.show();
+        if(nums == null) return; //Operation cancelled
+
+        int from = nums.get(0);
+        int to = nums.get(1);
+
+        cleanFiles("Clean By Importance", "between these importance values",
+                () -> asyncFileRepository.countByImportanceRange(from, to),
+                () -> asyncFileRepository.removeByImportanceRange(from, to));
+    }
+
+    /**
+     * This method holds all the logic for showing the PFS storage metrics, which are read in the background.
+     */
+    protected void showFolderMetrics() {
         TreeItem<ItemDTO> item = getSelectedItem();
 
         if(!(item.getValue() instanceof FolderDTO)) {
@@ -1075,8 +2111,15 @@ public class PFSController implements Initializable {
             return;
         }
 
-        MetricsViewController metricsViewController = MetricsViewController.create();
-        metricsViewController.show(treeRootItem, item);
+        //The metrics are read from the database, which must have the queued changes
+        FolderDTO folder = (FolderDTO) item.getValue();
+        backgroundTasks.run(cancellation -> flushWritesAsync()
+                        .thenCompose(cancellation.guard(ignored -> supplyOnDbThread(() ->
+                                MetricsViewController.readMetrics(folderStatsRepository, blobRepository, folder.getId())))),
+                metrics -> {
+                    try { MetricsViewController.create().show(folder, metrics); }
+                    catch (IOException e) { Helpers.showErrorDialog(e); }
+                });
     }
 
 
@@ -1209,6 +2252,12 @@ public class PFSController implements Initializable {
         //Disable this if the user is writing
         if(txtFileContent.isFocused()) return;
 
+        //Only cancelling is allowed while database work is running in the background
+        if(backgroundTasks.isBusy()) {
+            if(event.getCode() == KeyCode.ESCAPE) backgroundTasks.cancelAll();
+            return;
+        }
+
         try {
             switch (event.getCode()) {
                 case DELETE -> {
@@ -1238,17 +2287,31 @@ public class PFSController implements Initializable {
 
     }
 
+    /**
+     * Listener for the onCancelBusy event which is triggered when the cancel button is pressed, while
+     * database work is running in the background.
+     */
+    @FXML
+    protected void onCancelBusy() {
+        backgroundTasks.cancelAll();
+    }
+
     /**
      * Listener for the onBackup event which is triggered when the backup menu option is pressed.
      */
     @FXML
     protected void onBackup() {
         try { backupDbContent(); }
-        catch (SQLException e) {
-            Helpers.showErrorDialog(e, "An error occurred when communicating with the database engine");
-        } catch (IOException e) {
-            Helpers.showErrorDialog(e, "An error occurred when saving the backup file");
-        }
+        catch (Exception e) { Helpers.showErrorDialog(e); }
+    }
+
+    /**
+     * Listener for the onIncrementalBackup event which is triggered when the incremental backup menu option is pressed.
+     */
+    @FXML
+    protected void onIncrementalBackup() {
+        try { incrementalBackupDbContent(); }
+        catch (Exception e) { Helpers.showErrorDialog(e); }
     }
 
     /**
@@ -1257,12 +2320,43 @@ public class PFSController implements Initializable {
     @FXML
     protected void onRestore() {
         try { restoreDbContent(); }
-        catch (SQLException e) {
-            Helpers.showErrorDialog(e, "Error while import data, could not communicate with the DB");
-        } catch (IOException e) {
-            Helpers.showErrorDialog(e, "Could not parse data from the selected file");
-        }
+        catch (Exception e) { Helpers.showErrorDialog(e); }
+    }
+
+    /**
+     * Listener for the onBulkBackup event which is triggered when the bulk backup menu option is pressed.
+     */
+    @FXML
+    protected void onBulkBackup() {
+        try { bulkBackupDbContent(); }
+        catch (Exception e) { Helpers.showErrorDialog(e); }
+    }
+
+    /**
+     * Listener for the onBulkRestore event which is triggered when the bulk restore menu option is pressed.
+     */
+    @FXML
+    protected void onBulkRestore() {
+        try { bulkRestoreDbContent(); }
+        catch (Exception e) { Helpers.showErrorDialog(e); }
+    }
+
+    /**
+     * Listener for the onParallelBackup event which is triggered when the parallel backup menu option is pressed.
+     */
+    @FXML
+    protected void onParallelBackup() {
+        try { parallelBackupDbContent(); }
+        catch (Exception e) { Helpers.showErrorDialog(e); }
+    }
 
+    /**
+     * Listener for the onParallelRestore event which is triggered when the parallel restore menu option is pressed.
+     */
+    @FXML
+    protected void onParallelRestore() {
+        try { parallelRestoreDbContent(); }
+        catch (Exception e) { Helpers.showErrorDialog(e); }
     }
 
     /**
@@ -1297,6 +2391,25 @@ public class PFSController implements Initializable {
      */
     @FXML
     protected void onQuit() {
+        DBEngine.shutdown();
         System.exit(0);
     }
+
+    /**
+     * This is an interface that represents a backup or restore job, which stops once it's cancelled.
+     *
+     * @param <T> Type of the result of the job.
+     */
+    @FunctionalInterface
+    private interface BackupJob<T> {
+        /**
+         * This method runs the job.
+         *
+         * @param cancelled Function that tells if the job was cancelled.
+         * @return The result of the job.
+         * @throws SQLException Will happen if the connection to the database fails.
+         * @throws IOException Will happen if the backup cannot be read or written, or the job was cancelled.
+         */
+        T run(BooleanSupplier cancelled) throws SQLException, IOException;
+    }
 }
@@ -6,20 +6,20 @@ import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.ListView;
 import javafx.scene.control.TextField;
-import javafx.scene.control.TreeItem;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
-import com.rohjans.models.File.FileDTO;
-import com.rohjans.models.ItemDTO;
+import com.rohjans.models.File.ContentSearchResult;
+import com.rohjans.models.File.IAsyncFileRepository;
+import com.rohjans.models.ItemSearchResult;
+import com.rohjans.ui.BackgroundTasks;
 import com.rohjans.utils.Helpers;
 import com.rohjans.utils.ListViewItem;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 /**
  * This is a class that represents the view controller for the SearchViewController.
@@ -27,6 +27,11 @@ import java.util.Objects;
  * @author Raul Rohjans 202100518
  */
 public class SearchViewController {
+    /**
+     * Maximum amount of items listed by a search.
+     */
+    private static final int MAX_RESULTS = 200;
+
     /**
      * Main list view component where search results are displayed.
      */
@@ -45,21 +50,32 @@ public class SearchViewController {
     @FXML
     private TextField txtSearch;
 
-    /**
-     * Root of the PFS item tree view.
-     */
-    private TreeItem<ItemDTO> fileTreeRoot;
-
     /**
      * Search results list view selected item.
      */
-    private TreeItem<ItemDTO> lsvSelectedItem;
+    private ListViewItem lsvSelectedItem;
 
     /**
      * Search mode (either by content or by title).
      */
     private Helpers.SearchMode searchParam;
 
+    /**
+     * File repository used to search the names and contents on the database, so neither the tree
+     * nor the contents have to be loaded.
+     */
+    private IAsyncFileRepository fileRepository;
+
+    /**
+     * Function that writes the queued changes in the background, searches wait for it since they read the database.
+     */
+    private Supplier<CompletableFuture<Void>> flushWrites;
+
+    /**
+     * Searches running in the background.
+     */
+    private final BackgroundTasks backgroundTasks = new BackgroundTasks();
+
 
     /*
      * Methods
@@ -81,12 +97,15 @@ public class SearchViewController {
      * This method shows the view on the main stage.
      *
      * @param searchParam Search filter parameter.
-     * @param treeRoot Root of the PFS item tree view.
-     * @return Searched item result.
+     * @param fileRepository File repository used to search the names and contents.
+     * @param flushWrites Function that writes the queued changes in the background.
+     * @return Searched item result, which may not be loaded on the tree yet.
      */
-    public TreeItem<ItemDTO> show(Helpers.SearchMode searchParam, TreeItem<ItemDTO> treeRoot) {
-        fileTreeRoot = treeRoot;
+    public ListViewItem show(Helpers.SearchMode searchParam, IAsyncFileRepository fileRepository,
+                             Supplier<CompletableFuture<Void>> flushWrites) {
         this.searchParam = searchParam;
+        this.fileRepository = fileRepository;
+        this.flushWrites = flushWrites;
 
         Stage stage = new Stage();
         stage.initModality(Modality.WINDOW_MODAL);
@@ -102,6 +121,8 @@ public class SearchViewController {
      * This method closes the view from the main stage.
      */
     private void closePopup() {
+        //A search still running has nothing to show its results on anymore
+        backgroundTasks.cancelAll();
         ((Stage) searchResultsListView.getScene().getWindow()).close();
     }
 
@@ -109,7 +130,7 @@ public class SearchViewController {
      * This method validates the user input and closes the view.
      */
     private void formConfirm() {
-        lsvSelectedItem = searchResultsListView.getSelectionModel().getSelectedItem().getItem();
+        lsvSelectedItem = searchResultsListView.getSelectionModel().getSelectedItem();
 
         closePopup();
     }
@@ -128,33 +149,25 @@ public class SearchViewController {
 
         if(searchText.isEmpty()) return;
 
-        ArrayList<TreeItem<ItemDTO>> candidates = new ArrayList<>();
-        getSearchCandidates(fileTreeRoot, searchText, candidates);
-
-        for(TreeItem<ItemDTO> item : candidates)
-            searchResultsListView.getItems().add(new ListViewItem(item));
-    }
-
-    /**
-     * This method gets the items that match the search terms.
-     *
-     * @param item Item to search within of.
-     * @param query The search term query.
-     * @param candidates The items that match the search term.
-     */
-    public void getSearchCandidates(TreeItem<ItemDTO> item, String query, List<TreeItem<ItemDTO>> candidates)
-    {
-        if (item == null) return;
-
-        if(item.getValue().getName().contains(query) && this.searchParam == Helpers.SearchMode.NAME)
-            candidates.add(item);
-        else if (this.searchParam == Helpers.SearchMode.CONTENT) {
-            if((item.getValue() instanceof FileDTO file) && file.getContent().contains(query))
-                candidates.add(item);
+        //Names and contents are searched on the database, so neither the tree nor the contents have to be loaded,
+        //but the queued changes have to be written first
+        if(searchParam == Helpers.SearchMode.CONTENT) {
+            backgroundTasks.run(cancellation -> flushWrites.get()
+                            .thenCompose(cancellation.guard(ignored -> fileRepository.searchContent(searchText, MAX_RESULTS))),
+                    results -> {
+                        for(ContentSearchResult result : results)
+                            searchResultsListView.getItems().add(new ListViewItem(result));
+                    });
+
+            return;
         }
 
-        for (TreeItem<ItemDTO> child : Objects.requireNonNull(item).getChildren())
-            getSearchCandidates(child, query, candidates);
+        backgroundTasks.run(cancellation -> flushWrites.get()
+                        .thenCompose(cancellation.guard(ignored -> fileRepository.searchNames(searchText, MAX_RESULTS))),
+                results -> {
+                    for(ItemSearchResult result : results)
+                        searchResultsListView.getItems().add(new ListViewItem(result));
+                });
     }
 
     /**
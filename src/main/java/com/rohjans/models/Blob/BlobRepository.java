@@ -0,0 +1,716 @@
+package com.rohjans.models.Blob;
+
+import com.rohjans.public_.tables.Blob;
+import com.rohjans.public_.tables.BlobChunk;
+import com.rohjans.public_.tables.records.BlobChunkRecord;
+import com.rohjans.public_.tables.records.BlobRecord;
+import com.rohjans.utils.DBEngine;
+import com.rohjans.utils.Helpers;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.InsertValuesStep4;
+import org.jooq.Query;
+import org.jooq.Record2;
+import org.jooq.Record4;
+import org.jooq.Record5;
+import org.jooq.Result;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Class that represents a Blob Repository, which interacts with the database.
+ * <p>
+ * Each distinct file content is stored once, keyed by its hash. The reference counts are kept by
+ * database triggers on the file table, which also remove the contents that are no longer referenced.
+ * <p>
+ * The contents are stored as chunks of their UTF-8 bytes, so they can be streamed in and out
+ * without ever being whole in memory. The chunks of contents big enough to be worth it are compressed,
+ * which is undone transparently when they are read.
+ * <p>
+ * Every chunk is stored along with the search vector of its text, which the content searches run on.
+ * The vector also covers the end of the chunk before it, so the words and phrases split between two chunks are found.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public class BlobRepository implements IBlobRepository {
+    /**
+     * Logger of the class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(BlobRepository.class);
+
+    /**
+     * Size (in bytes) of the chunks the contents are split into, the last chunk of a content can be smaller.
+     */
+    public static final int CHUNK_SIZE = 256 * 1024;
+
+    /**
+     * Size (in bytes) from which contents are compressed, smaller ones don't gain enough to pay for it.
+     */
+    private static final int COMPRESSION_THRESHOLD = 4 * 1024;
+
+    /**
+     * Highest share of its size a chunk can keep after compression for the content to be stored compressed.
+     */
+    private static final double MAX_COMPRESSION_RATIO = 0.9;
+
+    /**
+     * Amount of times storing is retried when a content is removed while it's being stored.
+     */
+    private static final int MAX_STORE_ATTEMPTS = 3;
+
+    /**
+     * Prefix of the temporary hash a streamed content is written under, until its real hash is known.
+     */
+    private static final String PENDING_PREFIX = "pending-";
+
+    /**
+     * Amount of chunks indexed for searching per round trip.
+     */
+    private static final int INDEX_BATCH_SIZE = 100;
+
+    /**
+     * Amount of bytes (at most) from the end of the previous chunk that are indexed along with a chunk.
+     */
+    private static final int SEARCH_OVERLAP = 1024;
+
+    /**
+     * Amount of characters read from a reader at a time while streaming a content in.
+     */
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    /**
+     * Database context instance.
+     */
+    private final DSLContext ctx;
+
+    /**
+     * Constructs the instance of the class.
+     *
+     * @param ctx Database context instance.
+     */
+    public BlobRepository(DSLContext ctx) {
+        this.ctx = ctx;
+    }
+
+    /**
+     * This method finds the content stored under a hash, putting its chunks back together in memory.
+     *
+     * @param hash Hash of the content.
+     * @return The content, or null if it isn't stored.
+     */
+    @Override
+    public String findContent(String hash) {
+        if(hash == null) return null;
+
+        //The blob is joined so an empty content (which has no chunks) can be told apart from a missing one
+        Result<Record2<Short, byte[]>> rows = ctx
+            .select(Blob.BLOB.CODEC, BlobChunk.BLOB_CHUNK.DATA)
+            .from(Blob.BLOB)
+            .leftJoin(BlobChunk.BLOB_CHUNK).on(BlobChunk.BLOB_CHUNK.HASH.eq(Blob.BLOB.HASH))
+            .where(Blob.BLOB.HASH.eq(hash))
+            .orderBy(BlobChunk.BLOB_CHUNK.SEQ)
+            .fetch();
+
+        if(rows.isEmpty()) return null;
+
+        return decodeChunks(rows.get(0).value1(), rows.stream().map(Record2::value2).filter(Objects::nonNull).toArray(byte[][]::new));
+    }
+
+    /**
+     * This method opens a stream over the bytes (UTF-8) of the content stored under a hash,
+     * which fetches the chunks one at a time as they are read.
+     *
+     * @param hash Hash of the content.
+     * @return The stream, or null if the content isn't stored.
+     */
+    @Override
+    public InputStream openContent(String hash) {
+        if(hash == null) return null;
+
+        Record2<Long, Short> blob = ctx
+            .select(Blob.BLOB.SIZE, Blob.BLOB.CODEC)
+            .from(Blob.BLOB)
+            .where(Blob.BLOB.HASH.eq(hash))
+            .fetchOne();
+
+        return blob == null ? null : new ChunkInputStream(hash, blob.value1(), toCodec(blob.value2()));
+    }
+
+    /**
+     * This method stores a content read from a stream, one chunk at a time, so it never has to be whole in memory.
+     * <p>
+     * Since the hash is only known once everything was read, the chunks are written under a temporary hash and
+     * moved to the real one at the end. If the same content is already stored, the new chunks are dropped and the
+     * existing content is locked (key share, which only conflicts with deletes) until the end of the transaction.
+     * <p>
+     * Whether the content is compressed is decided with its first chunk, which is all that is known of it at that point.
+     *
+     * @param content Reader of the content, it isn't closed.
+     * @return Hash and size of the stored content.
+     * @throws IOException Will happen if the content cannot be read.
+     */
+    @Override
+    public StoredBlob store(Reader content) throws IOException {
+        StoredBlob[] stored = new StoredBlob[1];
+
+        //Nothing of a content that failed to be read is kept
+        DBEngine.runTransaction(ctx, cfg -> stored[0] = new BlobRepository(cfg.dsl()).writeChunks(content));
+
+        return stored[0];
+    }
+
+    /**
+     * This method makes sure the given contents are stored, writing only the ones that aren't stored yet.
+     * <p>
+     * The contents that already exist are locked (key share, which only conflicts with deletes), so the
+     * triggers can't remove them before the files that reference them are written. The content is only
+     * sent to the database for the ones that are missing.
+     *
+     * @param contents Contents to be stored, mapped by their hash.
+     */
+    @Override
+    public void storeAll(Map<String, String> contents) {
+        Map<String, String> missing = new HashMap<>(contents);
+
+        for(int attempt = 0; !missing.isEmpty(); attempt++) {
+            if(attempt == MAX_STORE_ATTEMPTS)
+                throw new DataAccessException("Could not store the file contents, they kept being removed");
+
+            Set<String> locked = ctx
+                .select(Blob.BLOB.HASH)
+                .from(Blob.BLOB)
+                .where(Blob.BLOB.HASH.in(missing.keySet()))
+                .forKeyShare()
+                .fetchSet(Blob.BLOB.HASH);
+            missing.keySet().removeAll(locked);
+
+            if(missing.isEmpty()) return;
+
+            Map<String, List<byte[]>> rawChunks = new HashMap<>();
+            Map<String, List<byte[]>> encodedChunks = new HashMap<>();
+
+            //Another transaction can store the same content meanwhile, those get locked on the next attempt
+            InsertValuesStep4<BlobRecord, String, Long, Short, Long> insert = ctx.insertInto(Blob.BLOB,
+                    Blob.BLOB.HASH, Blob.BLOB.SIZE, Blob.BLOB.CODEC, Blob.BLOB.STORED_SIZE);
+
+            for(Map.Entry<String, String> content : missing.entrySet()) {
+                byte[] data = content.getValue().getBytes(StandardCharsets.UTF_8);
+                ContentCodec codec = chooseCodec(data, Math.min(data.length, CHUNK_SIZE));
+                List<byte[]> raw = new ArrayList<>();
+                List<byte[]> encoded = new ArrayList<>();
+                long storedSize = 0;
+
+                for(int offset = 0; offset < data.length; offset += CHUNK_SIZE) {
+                    byte[] chunk = Arrays.copyOfRange(data, offset, Math.min(data.length, offset + CHUNK_SIZE));
+                    raw.add(chunk);
+                    encoded.add(codec.encode(chunk, chunk.length));
+                    storedSize += encoded.get(encoded.size() - 1).length;
+                }
+
+                rawChunks.put(content.getKey(), raw);
+                encodedChunks.put(content.getKey(), encoded);
+                insert = insert.values(content.getKey(), (long) data.length, codec.getCode(), storedSize);
+            }
+
+            Set<String> inserted = insert
+                .onConflictDoNothing()
+                .returning(Blob.BLOB.HASH)
+                .fetchSet(Blob.BLOB.HASH);
+            missing.keySet().removeAll(inserted);
+
+            //Only the chunks of the contents this transaction inserted are written
+            InsertValuesStep4<BlobChunkRecord, String, Integer, byte[], Object> chunks = ctx.insertInto(BlobChunk.BLOB_CHUNK,
+                    BlobChunk.BLOB_CHUNK.HASH, BlobChunk.BLOB_CHUNK.SEQ, BlobChunk.BLOB_CHUNK.DATA, BlobChunk.BLOB_CHUNK.SEARCH);
+            boolean hasChunks = false;
+
+            for(String hash : inserted) {
+                List<byte[]> raw = rawChunks.get(hash);
+                List<byte[]> encoded = encodedChunks.get(hash);
+                for(int seq = 0; seq < encoded.size(); seq++) {
+                    chunks = chunks.values(DSL.val(hash), DSL.val(seq), DSL.val(encoded.get(seq)),
+                            searchVector(seq > 0 ? raw.get(seq - 1) : null, raw.get(seq), raw.get(seq).length));
+                    hasChunks = true;
+                }
+            }
+
+            if(hasChunks) chunks.execute();
+        }
+    }
+
+    /**
+     * This method adds up the space taken up by the stored contents, before and after compression.
+     *
+     * @return The storage statistics of the contents.
+     */
+    @Override
+    public ContentStorageStats findStorageStats() {
+        Record4<Integer, Integer, BigDecimal, BigDecimal> stats = ctx
+            .select(
+                DSL.count(),
+                DSL.count().filterWhere(Blob.BLOB.CODEC.ne(ContentCodec.NONE.getCode())),
+                DSL.coalesce(DSL.sum(Blob.BLOB.SIZE), BigDecimal.ZERO),
+                DSL.coalesce(DSL.sum(Blob.BLOB.STORED_SIZE), BigDecimal.ZERO))
+            .from(Blob.BLOB)
+            .where(Blob.BLOB.HASH.notLike(PENDING_PREFIX + "%"))
+            .fetchOne();
+
+        return new ContentStorageStats(stats.value1(), stats.value2(), stats.value3().longValue(), stats.value4().longValue());
+    }
+
+    /**
+     * This method builds the search vector of the chunks that don't have one yet, like the ones stored before
+     * contents could be searched, or restored from an archive that didn't have them.
+     * <p>
+     * The vectors are built from the text of the chunks (and the end of the chunk before each one),
+     * so the compressed ones have to be read here first.
+     *
+     * @return The amount of chunks indexed.
+     */
+    @Override
+    public long indexContents() {
+        BlobChunk previous = BlobChunk.BLOB_CHUNK.as("previous");
+        long indexed = 0;
+
+        while(true) {
+            Result<Record5<String, Integer, byte[], Short, byte[]>> chunks = ctx
+                .select(BlobChunk.BLOB_CHUNK.HASH, BlobChunk.BLOB_CHUNK.SEQ, BlobChunk.BLOB_CHUNK.DATA, Blob.BLOB.CODEC,
+                        previous.DATA)
+                .from(BlobChunk.BLOB_CHUNK)
+                .join(Blob.BLOB).on(Blob.BLOB.HASH.eq(BlobChunk.BLOB_CHUNK.HASH))
+                .leftJoin(previous).on(previous.HASH.eq(BlobChunk.BLOB_CHUNK.HASH))
+                    .and(previous.SEQ.eq(BlobChunk.BLOB_CHUNK.SEQ.minus(1)))
+                .where(BlobChunk.BLOB_CHUNK.SEARCH.isNull())
+                .limit(INDEX_BATCH_SIZE)
+                .fetch();
+
+            if(chunks.isEmpty()) return indexed;
+
+            List<Query> updates = new ArrayList<>();
+            for(Record5<String, Integer, byte[], Short, byte[]> chunk : chunks) {
+                ContentCodec codec = ContentCodec.fromCode(chunk.value4());
+                byte[] data;
+                byte[] before;
+                try {
+                    data = codec.decode(chunk.value3());
+                    before = chunk.value5() == null ? null : codec.decode(chunk.value5());
+                }
+                catch (IOException e) {
+                    //Left out of the searches, instead of being tried again on every start
+                    LOGGER.warn("Could not index a chunk of content {}", chunk.value1(), e);
+                    data = new byte[0];
+                    before = null;
+                }
+
+                updates.add(ctx.update(BlobChunk.BLOB_CHUNK)
+                    .set(BlobChunk.BLOB_CHUNK.SEARCH, searchVector(before, data, data.length))
+                    .where(BlobChunk.BLOB_CHUNK.HASH.eq(chunk.value1()))
+                    .and(BlobChunk.BLOB_CHUNK.SEQ.eq(chunk.value2())));
+            }
+
+            ctx.batch(updates).execute();
+            indexed += chunks.size();
+        }
+    }
+
+    /**
+     * This method puts the chunks of a content back together into the text they hold.
+     *
+     * @param codec Code of the codec the chunks are encoded with.
+     * @param chunks Chunks of the content, in order, or null if it has none.
+     * @return The content.
+     * @throws UncheckedIOException Will happen if the chunks are corrupted.
+     */
+    public static String decodeChunks(short codec, byte[][] chunks) {
+        if(chunks == null) return "";
+
+        try {
+            ContentCodec contentCodec = ContentCodec.fromCode(codec);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for(byte[] chunk : chunks) bytes.write(contentCodec.decode(chunk));
+
+            return bytes.toString(StandardCharsets.UTF_8);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * This method builds the search vector of the text of a chunk, which the database works out.
+     * <p>
+     * The text starts with the end of the previous chunk (from its first whole word within the overlap),
+     * so a word, phrase or character split between the two chunks is indexed whole on the second one.
+     *
+     * @param previous Array with the bytes of the previous chunk, or its end (not encoded), or null on the first chunk.
+     * @param data Array with the bytes of the chunk (not encoded).
+     * @param length Amount of bytes of the array that belong to the chunk.
+     * @return The search vector.
+     */
+    private static Field<Object> searchVector(byte[] previous, byte[] data, int length) {
+        int start = previous == null ? 0 : Math.max(0, previous.length - SEARCH_OVERLAP);
+        int end = previous == null ? 0 : previous.length;
+
+        //The overlap starts after a whitespace, so no piece of a word is indexed on its own
+        while(start < end && !isWhitespace(previous[start])) start++;
+
+        byte[] text = new byte[end - start + length];
+        if(start < end) System.arraycopy(previous, start, text, 0, end - start);
+        System.arraycopy(data, 0, text, end - start, length);
+
+        return DSL.field("content_search_vector({0})", BlobChunk.BLOB_CHUNK.SEARCH.getDataType(),
+                DSL.val(new String(text, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * This method checks if a byte of UTF-8 text is a whitespace, which is never part of a multibyte character.
+     *
+     * @param b Byte to be checked.
+     * @return True if it's a whitespace, false otherwise.
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    /**
+     * This method picks how a content is stored from its first chunk. Contents under the threshold are stored
+     * as they are, and so are the ones whose first chunk doesn't shrink enough (like data that is already compressed).
+     * <p>
+     * The first chunk is only smaller than a full chunk if it's the whole content, so its size tells
+     * if the content is under the threshold.
+     *
+     * @param chunk Array with the bytes of the first chunk.
+     * @param length Amount of bytes of the array that belong to the chunk.
+     * @return The codec the content is stored with.
+     */
+    private static ContentCodec chooseCodec(byte[] chunk, int length) {
+        if(length < COMPRESSION_THRESHOLD) return ContentCodec.NONE;
+
+        return ContentCodec.DEFLATE.encode(chunk, length).length <= length * MAX_COMPRESSION_RATIO
+                ? ContentCodec.DEFLATE : ContentCodec.NONE;
+    }
+
+    /**
+     * This method gets the codec identified by a code read from the blob table.
+     *
+     * @param code Code of the codec.
+     * @return The codec.
+     * @throws UncheckedIOException Will happen if the code isn't known.
+     */
+    private static ContentCodec toCodec(short code) {
+        try {
+            return ContentCodec.fromCode(code);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * This method writes a content read from a stream as chunks, hashing it along the way, and files them
+     * under its hash. It must be run inside a transaction.
+     *
+     * @param content Reader of the content.
+     * @return Hash and size of the stored content.
+     * @throws IOException Will happen if the content cannot be read.
+     */
+    private StoredBlob writeChunks(Reader content) throws IOException {
+        ChunkWriter writer = new ChunkWriter(PENDING_PREFIX + UUID.randomUUID());
+        ctx.insertInto(Blob.BLOB, Blob.BLOB.HASH).values(writer.hash).execute();
+
+        //Characters that can't be encoded are replaced, the same as when a whole content is hashed
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.allocate(READ_BUFFER_SIZE);
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        long length = 0;
+
+        for(boolean end = false; !end; ) {
+            int read = content.read(chars);
+            if(read == -1) end = true;
+            else length += read;
+
+            //A full chunk (overflow) is written and the encoding picks up where it stopped
+            chars.flip();
+            while(encoder.encode(chars, chunk, end).isOverflow())
+                writer.write(chunk);
+            chars.compact();
+        }
+
+        while(encoder.flush(chunk).isOverflow())
+            writer.write(chunk);
+        if(chunk.position() > 0)
+            writer.write(chunk);
+
+        String hash = HexFormat.of().formatHex(writer.digest.digest());
+
+        for(int attempt = 0; ; attempt++) {
+            if(attempt == MAX_STORE_ATTEMPTS)
+                throw new DataAccessException("Could not store the file content, it kept being removed");
+
+            int inserted = ctx.insertInto(Blob.BLOB, Blob.BLOB.HASH, Blob.BLOB.SIZE, Blob.BLOB.CODEC, Blob.BLOB.STORED_SIZE)
+                .values(hash, writer.size, writer.getCodec().getCode(), writer.storedSize)
+                .onConflictDoNothing()
+                .execute();
+
+            if(inserted == 1) {
+                ctx.update(BlobChunk.BLOB_CHUNK)
+                    .set(BlobChunk.BLOB_CHUNK.HASH, hash)
+                    .where(BlobChunk.BLOB_CHUNK.HASH.eq(writer.hash))
+                    .execute();
+                break;
+            }
+
+            //Already stored, unless it was removed between the insert and the lock
+            boolean locked = ctx
+                .select(Blob.BLOB.HASH)
+                .from(Blob.BLOB)
+                .where(Blob.BLOB.HASH.eq(hash))
+                .forKeyShare()
+                .fetchOne() != null;
+            if(locked) break;
+        }
+
+        //Takes the chunks along if they weren't moved
+        ctx.deleteFrom(Blob.BLOB).where(Blob.BLOB.HASH.eq(writer.hash)).execute();
+
+        return new StoredBlob(hash, writer.size, length);
+    }
+
+    /**
+     * This is a class that writes the chunks of a content as they are filled, hashing and encoding them.
+     */
+    private final class ChunkWriter {
+        /**
+         * Hash the chunks are written under.
+         */
+        private final String hash;
+
+        /**
+         * Digest the bytes of the content are added to.
+         */
+        private final MessageDigest digest = Helpers.createContentDigest();
+
+        /**
+         * Codec the chunks are encoded with, picked when the first chunk is written.
+         */
+        private ContentCodec codec;
+
+        /**
+         * Position of the next chunk.
+         */
+        private int seq;
+
+        /**
+         * End of the last chunk written (not encoded), which is indexed along with the next one, or null before the first.
+         */
+        private byte[] previousTail;
+
+        /**
+         * Size of the content written so far, in bytes.
+         */
+        private long size;
+
+        /**
+         * Size of the encoded chunks written so far, in bytes.
+         */
+        private long storedSize;
+
+        /**
+         * Constructs the writer.
+         *
+         * @param hash Hash the chunks are written under.
+         */
+        private ChunkWriter(String hash) {
+            this.hash = hash;
+        }
+
+        /**
+         * This method writes the bytes of a chunk buffer as the next chunk of the content, along with its search vector,
+         * and empties the buffer.
+         *
+         * @param chunk Buffer with the bytes of the chunk.
+         */
+        private void write(ByteBuffer chunk) {
+            if(codec == null) codec = chooseCodec(chunk.array(), chunk.position());
+
+            digest.update(chunk.array(), 0, chunk.position());
+            byte[] data = codec.encode(chunk.array(), chunk.position());
+            Field<Object> search = searchVector(previousTail, chunk.array(), chunk.position());
+            previousTail = Arrays.copyOfRange(chunk.array(), Math.max(0, chunk.position() - SEARCH_OVERLAP), chunk.position());
+            size += chunk.position();
+            storedSize += data.length;
+            chunk.clear();
+
+            ctx.insertInto(BlobChunk.BLOB_CHUNK, BlobChunk.BLOB_CHUNK.HASH, BlobChunk.BLOB_CHUNK.SEQ,
+                    BlobChunk.BLOB_CHUNK.DATA, BlobChunk.BLOB_CHUNK.SEARCH)
+                .values(DSL.val(hash), DSL.val(seq++), DSL.val(data), search)
+                .execute();
+        }
+
+        /**
+         * Getter for the codec the chunks were encoded with.
+         *
+         * @return The codec, which is none if nothing was written.
+         */
+        private ContentCodec getCodec() {
+            return codec == null ? ContentCodec.NONE : codec;
+        }
+    }
+
+    /**
+     * This is a class that represents a stream over a stored content, which fetches its chunks one at a time
+     * as they are read, so only one chunk is in memory at once.
+     * <p>
+     * Every chunk is fetched on its own, so a content removed while it's being read is noticed by the stream
+     * ending before the size of the content, which is reported as an error instead of a cut off content.
+     */
+    private final class ChunkInputStream extends InputStream {
+        /**
+         * Hash of the content.
+         */
+        private final String hash;
+
+        /**
+         * Size of the content in bytes.
+         */
+        private final long size;
+
+        /**
+         * Codec the chunks are encoded with.
+         */
+        private final ContentCodec codec;
+
+        /**
+         * Amount of bytes fetched so far.
+         */
+        private long fetched;
+
+        /**
+         * Position of the next chunk to be fetched.
+         */
+        private int nextSeq;
+
+        /**
+         * Chunk being read.
+         */
+        private byte[] chunk = new byte[0];
+
+        /**
+         * Position of the next byte to be read in the chunk.
+         */
+        private int position;
+
+        /**
+         * Constructs the stream.
+         *
+         * @param hash Hash of the content.
+         * @param size Size of the content in bytes.
+         * @param codec Codec the chunks are encoded with.
+         */
+        private ChunkInputStream(String hash, long size, ContentCodec codec) {
+            this.hash = hash;
+            this.size = size;
+            this.codec = codec;
+        }
+
+        /**
+         * This method reads a single byte of the content.
+         *
+         * @return The byte, or -1 at the end of the content.
+         * @throws IOException Will happen if the content was removed while it was being read.
+         */
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        /**
+         * This method reads the content into an array, up to the end of the current chunk.
+         *
+         * @param bytes Array the bytes are read into.
+         * @param offset Position of the array where the first byte is put.
+         * @param length Maximum amount of bytes to be read.
+         * @return The amount of bytes read, or -1 at the end of the content.
+         * @throws IOException Will happen if the content was removed while it was being read.
+         */
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            Objects.checkFromIndexSize(offset, length, bytes.length);
+            if(length == 0) return 0;
+            if(position == chunk.length && !fetchNextChunk()) return -1;
+
+            int count = Math.min(length, chunk.length - position);
+            System.arraycopy(chunk, position, bytes, offset, count);
+            position += count;
+
+            return count;
+        }
+
+        /**
+         * This method gets the amount of bytes that can be read without fetching another chunk.
+         *
+         * @return The amount of bytes left in the current chunk.
+         */
+        @Override
+        public int available() {
+            return chunk.length - position;
+        }
+
+        /**
+         * This method fetches the next chunk of the content.
+         *
+         * @return True if a chunk was fetched, or false at the end of the content.
+         * @throws IOException Will happen if the chunk is missing, which means the content was removed, or is corrupted.
+         */
+        private boolean fetchNextChunk() throws IOException {
+            if(fetched >= size) return false;
+
+            byte[] data = ctx
+                .select(BlobChunk.BLOB_CHUNK.DATA)
+                .from(BlobChunk.BLOB_CHUNK)
+                .where(BlobChunk.BLOB_CHUNK.HASH.eq(hash))
+                .and(BlobChunk.BLOB_CHUNK.SEQ.eq(nextSeq))
+                .fetchOne(BlobChunk.BLOB_CHUNK.DATA);
+
+            if(data == null)
+                throw new IOException("The content " + hash + " was removed while it was being read");
+
+            data = codec.decode(data);
+            if(data.length == 0)
+                throw new IOException("The content " + hash + " has an empty chunk");
+
+            nextSeq++;
+            fetched += data.length;
+            chunk = data;
+            position = 0;
+
+            return true;
+        }
+    }
+}
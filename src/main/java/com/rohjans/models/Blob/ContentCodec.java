@@ -0,0 +1,144 @@
+package com.rohjans.models.Blob;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * This is an enum that represents the ways the chunks of a content can be encoded in the blob table.
+ * <p>
+ * Every chunk is encoded on its own, so a content can still be read a chunk at a time.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public enum ContentCodec {
+    /**
+     * The chunks are stored as they are.
+     */
+    NONE(0) {
+        @Override
+        public byte[] encode(byte[] data, int length) {
+            return Arrays.copyOf(data, length);
+        }
+
+        @Override
+        public byte[] decode(byte[] data) {
+            return data;
+        }
+    },
+
+    /**
+     * The chunks are compressed with Deflate.
+     */
+    DEFLATE(1) {
+        @Override
+        public byte[] encode(byte[] data, int length) {
+            Deflater deflater = new Deflater();
+
+            try {
+                deflater.setInput(data, 0, length);
+                deflater.finish();
+
+                ByteArrayOutputStream out = new ByteArrayOutputStream(length / 2 + 64);
+                byte[] buffer = new byte[BUFFER_SIZE];
+                while(!deflater.finished())
+                    out.write(buffer, 0, deflater.deflate(buffer));
+
+                return out.toByteArray();
+            }
+            finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        public byte[] decode(byte[] data) throws IOException {
+            Inflater inflater = new Inflater();
+
+            try {
+                inflater.setInput(data);
+
+                ByteArrayOutputStream out = new ByteArrayOutputStream(BlobRepository.CHUNK_SIZE);
+                byte[] buffer = new byte[BUFFER_SIZE];
+                while(!inflater.finished()) {
+                    int inflated = inflater.inflate(buffer);
+                    if(inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                        throw new IOException("A compressed chunk is cut off");
+
+                    out.write(buffer, 0, inflated);
+                }
+
+                return out.toByteArray();
+            }
+            catch (DataFormatException e) {
+                throw new IOException("A compressed chunk is corrupted", e);
+            }
+            finally {
+                inflater.end();
+            }
+        }
+    };
+
+    /**
+     * Size of the buffers used while compressing and decompressing.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Code that identifies the codec in the blob table.
+     */
+    private final short code;
+
+    /**
+     * Constructs the codec.
+     *
+     * @param code Code that identifies the codec in the blob table.
+     */
+    ContentCodec(int code) {
+        this.code = (short) code;
+    }
+
+    /**
+     * This method encodes the bytes of a chunk to be stored.
+     *
+     * @param data Array with the bytes of the chunk.
+     * @param length Amount of bytes of the array that belong to the chunk.
+     * @return The stored bytes.
+     */
+    public abstract byte[] encode(byte[] data, int length);
+
+    /**
+     * This method decodes a stored chunk back into its bytes.
+     *
+     * @param data Stored bytes of the chunk.
+     * @return The bytes of the chunk.
+     * @throws IOException Will happen if the stored bytes are corrupted.
+     */
+    public abstract byte[] decode(byte[] data) throws IOException;
+
+    /**
+     * Getter for the code that identifies the codec in the blob table.
+     *
+     * @return The code of the codec.
+     */
+    public short getCode() {
+        return code;
+    }
+
+    /**
+     * This method finds the codec identified by a code.
+     *
+     * @param code Code of the codec.
+     * @return The codec.
+     * @throws IOException Will happen if the code isn't known, like when the content was stored by a newer version.
+     */
+    public static ContentCodec fromCode(int code) throws IOException {
+        for(ContentCodec codec : values())
+            if(codec.code == code) return codec;
+
+        throw new IOException("Unknown content codec: " + code);
+    }
+}
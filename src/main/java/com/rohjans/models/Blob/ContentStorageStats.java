@@ -0,0 +1,15 @@
+package com.rohjans.models.Blob;
+
+/**
+ * This is a "class" (it's defined as a record) that represents how much space the stored file contents take up.
+ * <p>
+ * Each distinct content is counted once, no matter how many files share it.
+ *
+ * @param contents Amount of distinct contents stored.
+ * @param compressedContents Amount of those contents that are compressed.
+ * @param logicalSize Size of the contents in bytes (UTF-8), before compression.
+ * @param storedSize Size the chunks of the contents take up in bytes, after compression.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public record ContentStorageStats(long contents, long compressedContents, long logicalSize, long storedSize) {}
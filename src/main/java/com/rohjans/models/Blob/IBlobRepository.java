@@ -0,0 +1,67 @@
+package com.rohjans.models.Blob;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Map;
+
+/**
+ * Interface that represents a Blob Repository, which holds the deduplicated file contents.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public interface IBlobRepository {
+    /**
+     * This method finds the content stored under a hash, putting its chunks back together in memory.
+     *
+     * @param hash Hash of the content.
+     * @return The content, or null if it isn't stored.
+     */
+    String findContent(String hash);
+
+    /**
+     * This method opens a stream over the bytes (UTF-8) of the content stored under a hash,
+     * which fetches the chunks one at a time as they are read.
+     *
+     * @param hash Hash of the content.
+     * @return The stream, or null if the content isn't stored.
+     */
+    InputStream openContent(String hash);
+
+    /**
+     * This method stores a content read from a stream, one chunk at a time, so it never has to be whole in memory.
+     * <p>
+     * If the same content is already stored it's kept and locked until the end of the transaction instead,
+     * so it can't be removed before the files that reference it are written.
+     *
+     * @param content Reader of the content, it isn't closed.
+     * @return Hash and size of the stored content.
+     * @throws IOException Will happen if the content cannot be read.
+     */
+    StoredBlob store(Reader content) throws IOException;
+
+    /**
+     * This method makes sure the given contents are stored, writing only the ones that aren't stored yet.
+     * <p>
+     * The stored contents are locked until the end of the transaction, so they can't be removed before
+     * the files that reference them are written.
+     *
+     * @param contents Contents to be stored, mapped by their hash.
+     */
+    void storeAll(Map<String, String> contents);
+
+    /**
+     * This method adds up the space taken up by the stored contents, before and after compression.
+     *
+     * @return The storage statistics of the contents.
+     */
+    ContentStorageStats findStorageStats();
+
+    /**
+     * This method builds the search vector of the chunks that don't have one yet, like the ones stored before
+     * contents could be searched, or restored from an archive that didn't have them.
+     *
+     * @return The amount of chunks indexed.
+     */
+    long indexContents();
+}
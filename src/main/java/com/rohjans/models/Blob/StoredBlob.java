@@ -0,0 +1,12 @@
+package com.rohjans.models.Blob;
+
+/**
+ * This is a "class" (it's defined as a record) that represents a content that was streamed into the blob table.
+ *
+ * @param hash Hash the content is stored under.
+ * @param size Size of the stored content in bytes (UTF-8).
+ * @param length Amount of characters in the content.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public record StoredBlob(String hash, long size, long length) {}
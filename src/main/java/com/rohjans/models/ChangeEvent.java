@@ -0,0 +1,65 @@
+package com.rohjans.models;
+
+import java.util.UUID;
+
+/**
+ * This is a "class" (it's defined as a record) that represents a change to an item made by any client,
+ * as published by the database.
+ *
+ * @param op What happened to the item.
+ * @param kind Table of the item ("file" or "folder"), null for reloads.
+ * @param id ID of the item, null for reloads.
+ * @param parent ID of the folder the item is in (or was, if it was deleted), null for the root.
+ * @param version Change counter of the item after the change.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public record ChangeEvent(Op op, String kind, UUID id, UUID parent, int version) {
+    /**
+     * This method creates an event telling that changes may have been missed, so everything shown has to be reloaded.
+     *
+     * @return The reload event.
+     */
+    public static ChangeEvent reload() {
+        return new ChangeEvent(Op.RELOAD, null, null, null, 0);
+    }
+
+    /**
+     * This method checks if the changed item is a file.
+     *
+     * @return True if the item is a file, otherwise false.
+     */
+    public boolean isFile() {
+        return "file".equals(kind);
+    }
+
+    /**
+     * This is an enum that represents what happened to an item.
+     */
+    public enum Op {
+        /**
+         * The item was created.
+         */
+        INSERT,
+
+        /**
+         * The item was edited in place.
+         */
+        UPDATE,
+
+        /**
+         * The item was moved to another folder.
+         */
+        MOVE,
+
+        /**
+         * The item was removed, along with everything inside it.
+         */
+        DELETE,
+
+        /**
+         * Too much changed to be described item by item.
+         */
+        RELOAD
+    }
+}
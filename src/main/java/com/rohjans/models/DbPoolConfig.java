@@ -0,0 +1,33 @@
+package com.rohjans.models;
+
+/**
+ * This is a "class" (it's defined as a record) that represents the database connection pool configuration object.
+ * <p>
+ * The values can be overridden when launching the app with the following system properties:
+ * {@code pfs.db.pool.minIdle}, {@code pfs.db.pool.maxSize}, {@code pfs.db.pool.idleTimeoutMs},
+ * {@code pfs.db.pool.validationTimeoutMs} and {@code pfs.db.pool.leakDetectionMs}.
+ *
+ * @param minIdle Minimum amount of idle connections the pool tries to keep open.
+ * @param maxSize Maximum amount of connections the pool can open.
+ * @param idleTimeoutMs Time (in milliseconds) a connection can sit idle before it is evicted from the pool.
+ * @param validationTimeoutMs Time (in milliseconds) the pool waits for a connection to be validated.
+ * @param leakDetectionMs Time (in milliseconds) a connection can be borrowed before it is reported as a leak, 0 disables it.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public record DbPoolConfig(int minIdle, int maxSize, long idleTimeoutMs, long validationTimeoutMs, long leakDetectionMs) {
+    /**
+     * This method builds the pool configuration from the system properties, falling back to the default values.
+     *
+     * @return The pool configuration object.
+     */
+    public static DbPoolConfig fromSystemProperties() {
+        return new DbPoolConfig(
+                Integer.getInteger("pfs.db.pool.minIdle", 1),
+                Integer.getInteger("pfs.db.pool.maxSize", 8),
+                Long.getLong("pfs.db.pool.idleTimeoutMs", 60_000L),
+                Long.getLong("pfs.db.pool.validationTimeoutMs", 3_000L),
+                Long.getLong("pfs.db.pool.leakDetectionMs", 30_000L)
+        );
+    }
+}
@@ -0,0 +1,18 @@
+package com.rohjans.models;
+
+/**
+ * This is a "class" (it's defined as a record) that represents a snapshot of the database connection pool state.
+ *
+ * @param active Amount of connections currently borrowed from the pool.
+ * @param idle Amount of connections sitting idle in the pool.
+ * @param total Total amount of connections opened by the pool.
+ * @param waiting Amount of threads waiting for a connection to be available.
+ * @param acquired Amount of connections borrowed since the pool was started.
+ * @param avgWaitMs Average time (in milliseconds) spent waiting to borrow a connection.
+ * @param maxWaitMs Longest time (in milliseconds) spent waiting to borrow a connection.
+ * @param timeouts Amount of times a connection could not be borrowed in time.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public record DbPoolStats(int active, int idle, int total, int waiting, long acquired,
+                          double avgWaitMs, double maxWaitMs, long timeouts) {}
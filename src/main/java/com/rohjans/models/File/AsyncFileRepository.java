@@ -0,0 +1,224 @@
+package com.rohjans.models.File;
+
+import com.rohjans.models.ItemSearchResult;
+import com.rohjans.public_.tables.records.FileRecord;
+import org.jooq.Record;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * This is a class that runs the calls of a file repository on a database executor.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public class AsyncFileRepository implements IAsyncFileRepository {
+    /**
+     * Repository the calls are delegated to.
+     */
+    private final IFileRepository repository;
+
+    /**
+     * Executor the calls run on.
+     */
+    private final Executor executor;
+
+    /**
+     * Constructs the repository.
+     *
+     * @param repository Repository the calls are delegated to.
+     * @param executor Executor the calls run on, it should be bounded to the size of the connection pool.
+     */
+    public AsyncFileRepository(IFileRepository repository, Executor executor) {
+        this.repository = repository;
+        this.executor = executor;
+    }
+
+    /**
+     * This method finds a file by ID.
+     *
+     * @param id ID of the file to be found.
+     * @return Future of the record of the file with its content, which holds null if it wasn't found.
+     */
+    @Override
+    public CompletableFuture<Record> findById(UUID id) {
+        return CompletableFuture.supplyAsync(() -> repository.findById(id), executor);
+    }
+
+    /**
+     * This method finds all the files in the database.
+     *
+     * @return Future of the list of the file records, with their content.
+     */
+    @Override
+    public CompletableFuture<List<Record>> findAll() {
+        return CompletableFuture.supplyAsync(repository::findAll, executor);
+    }
+
+    /**
+     * This method finds all the files in the database without their content.
+     *
+     * @return Future of the list of the file records.
+     */
+    @Override
+    public CompletableFuture<List<FileRecord>> findAllMetadata() {
+        return CompletableFuture.supplyAsync(repository::findAllMetadata, executor);
+    }
+
+    /**
+     * This method finds the files directly inside a folder, without their content.
+     *
+     * @param parentId ID of the parent folder, or null for the files on the root.
+     * @return Future of the list of the file records.
+     */
+    @Override
+    public CompletableFuture<List<FileRecord>> findChildren(UUID parentId) {
+        return CompletableFuture.supplyAsync(() -> repository.findChildren(parentId), executor);
+    }
+
+    /**
+     * This method finds the files with the given IDs, without their content.
+     *
+     * @param ids IDs of the files to be found.
+     * @return Future of the list of the file records that were found.
+     */
+    @Override
+    public CompletableFuture<List<FileRecord>> findByIds(Collection<UUID> ids) {
+        return CompletableFuture.supplyAsync(() -> repository.findByIds(ids), executor);
+    }
+
+    /**
+     * This method searches the contents of the files for words, in web search syntax ("quoted phrases",
+     * OR and -excluded words).
+     *
+     * @param query Words to be searched for.
+     * @param limit Maximum amount of results.
+     * @return Future of the matching files, the best matches first.
+     */
+    @Override
+    public CompletableFuture<List<ContentSearchResult>> searchContent(String query, int limit) {
+        return CompletableFuture.supplyAsync(() -> repository.searchContent(query, limit), executor);
+    }
+
+    /**
+     * This method searches the names of the folders and files for a text.
+     *
+     * @param query Text the names must contain.
+     * @param limit Maximum amount of results.
+     * @return Future of the matching items, by path.
+     */
+    @Override
+    public CompletableFuture<List<ItemSearchResult>> searchNames(String query, int limit) {
+        return CompletableFuture.supplyAsync(() -> repository.searchNames(query, limit), executor);
+    }
+
+    /**
+     * This method creates a new file record.
+     *
+     * @param fileDTO File data object to be created in the database.
+     * @return Future of the file record that was created.
+     */
+    @Override
+    public CompletableFuture<FileRecord> create(FileDTO fileDTO) {
+        return CompletableFuture.supplyAsync(() -> repository.create(fileDTO), executor);
+    }
+
+    /**
+     * This method creates multiple new file records in a single batch.
+     *
+     * @param fileDTOS File data objects to be created in the database.
+     * @return Future completed once the records are created.
+     */
+    @Override
+    public CompletableFuture<Void> createAll(List<FileDTO> fileDTOS) {
+        return CompletableFuture.runAsync(() -> repository.createAll(fileDTOS), executor);
+    }
+
+    /**
+     * This method creates a copy of a file that shares the stored content of the original.
+     *
+     * @param copy File data object of the copy.
+     * @param sourceId ID of the original file.
+     * @return Future completed once the copy is created.
+     */
+    @Override
+    public CompletableFuture<Void> createCopy(FileDTO copy, UUID sourceId) {
+        return CompletableFuture.runAsync(() -> repository.createCopy(copy, sourceId), executor);
+    }
+
+    /**
+     * This method updates a file record, as long as nobody else changed it since it was read.
+     *
+     * @param fileDTO File data object with the new data.
+     * @param expectedChangeCounter Change counter the record must still have.
+     * @return Future completed once the record is updated, it fails with a StaleItemException if the record
+     * was changed or removed in the meantime.
+     */
+    @Override
+    public CompletableFuture<Void> update(FileDTO fileDTO, int expectedChangeCounter) {
+        return CompletableFuture.runAsync(() -> repository.update(fileDTO, expectedChangeCounter), executor);
+    }
+
+    /**
+     * This method removes a file record by ID.
+     *
+     * @param id ID of the file to be removed.
+     * @return Future completed once the record is removed.
+     */
+    @Override
+    public CompletableFuture<Void> removeById(UUID id) {
+        return CompletableFuture.runAsync(() -> repository.removeById(id), executor);
+    }
+
+    /**
+     * This method counts the files created within a date range, so a removal can be previewed.
+     *
+     * @param from Start of the range (inclusive).
+     * @param to End of the range (exclusive).
+     * @return Future of the amount of files in the range.
+     */
+    @Override
+    public CompletableFuture<Integer> countByCreatedRange(LocalDateTime from, LocalDateTime to) {
+        return CompletableFuture.supplyAsync(() -> repository.countByCreatedRange(from, to), executor);
+    }
+
+    /**
+     * This method removes the files created within a date range in a single statement.
+     *
+     * @param from Start of the range (inclusive).
+     * @param to End of the range (exclusive).
+     * @return Future of the IDs of the removed files.
+     */
+    @Override
+    public CompletableFuture<List<UUID>> removeByCreatedRange(LocalDateTime from, LocalDateTime to) {
+        return CompletableFuture.supplyAsync(() -> repository.removeByCreatedRange(from, to), executor);
+    }
+
+    /**
+     * This method counts the files within an importance range, so a removal can be previewed.
+     *
+     * @param from Lowest importance (inclusive).
+     * @param to Highest importance (inclusive).
+     * @return Future of the amount of files in the range.
+     */
+    @Override
+    public CompletableFuture<Integer> countByImportanceRange(int from, int to) {
+        return CompletableFuture.supplyAsync(() -> repository.countByImportanceRange(from, to), executor);
+    }
+
+    /**
+     * This method removes the files within an importance range in a single statement.
+     *
+     * @param from Lowest importance (inclusive).
+     * @param to Highest importance (inclusive).
+     * @return Future of the IDs of the removed files.
+     */
+    @Override
+    public CompletableFuture<List<UUID>> removeByImportanceRange(int from, int to) {
+        return CompletableFuture.supplyAsync(() -> repository.removeByImportanceRange(from, to), executor);
+    }
+}
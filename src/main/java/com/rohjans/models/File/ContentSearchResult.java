@@ -0,0 +1,15 @@
+package com.rohjans.models.File;
+
+import java.util.UUID;
+
+/**
+ * This is a "class" (it's defined as a record) that represents a file found by a content search.
+ *
+ * @param id ID of the file.
+ * @param parent ID of the folder the file is in, or null if it's on the root.
+ * @param path Path of the file from the root, like "/folder/file".
+ * @param rank How well the content matches the search, higher is better.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public record ContentSearchResult(UUID id, UUID parent, String path, float rank) {}
@@ -1,5 +1,6 @@
 package com.rohjans.models.File;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.rohjans.models.ItemDTO;
 import com.rohjans.utils.DBEngine;
 import com.rohjans.utils.Helpers;
@@ -7,7 +8,9 @@ import com.rohjans.utils.Helpers;
 import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.function.Function;
 
 /**
  * This is a class that represents File data object.
@@ -45,6 +48,21 @@ public class FileDTO extends ItemDTO {
      */
     private String content;
 
+    /**
+     * Hash of the content, calculated when first needed and cleared when the content changes.
+     */
+    private String contentHash;
+
+    /**
+     * Function that fetches a content by its hash, used when the file was loaded without its content.
+     */
+    private Function<String, String> contentLoader;
+
+    /**
+     * If the content field holds the content of the file, or if it still has to be fetched.
+     */
+    private boolean contentLoaded = true;
+
 
     /*
     * Constructors
@@ -114,6 +132,7 @@ public class FileDTO extends ItemDTO {
 
         //Update file extension
         this.extension = Helpers.parseFileExtension(name);
+        markDirty(TrackedField.EXTENSION);
     }
 
     /**
@@ -123,8 +142,28 @@ public class FileDTO extends ItemDTO {
      */
     @Override
     public ItemDTO clone() {
-        return new FileDTO(
-            DBEngine.getNewPrimaryKey(),
+        return copyWithId(DBEngine.getNewPrimaryKey());
+    }
+
+    /**
+     * This method takes a snapshot of the current file object instance, with the same ID, so it can be written
+     * to the database later without seeing the changes made to the file in the meantime.
+     *
+     * @return A snapshot of the current file object instance.
+     */
+    public FileDTO copy() {
+        return copyWithId(this.getId());
+    }
+
+    /**
+     * This method copies the current file object instance into a new one with the given ID.
+     *
+     * @param id ID of the copy.
+     * @return The copy of the current file object instance.
+     */
+    private FileDTO copyWithId(UUID id) {
+        FileDTO copy = new FileDTO(
+            id,
             this.getParent(),
             this.getName(),
             this.getCreated(),
@@ -135,15 +174,87 @@ public class FileDTO extends ItemDTO {
             this.getFilesize(),
             this.getImportance(),
             this.getPassword(),
-            this.getContent()
+            this.content
         );
+
+        //Keep the copy lazy too, so copying doesn't fetch the content
+        if(!contentLoaded) copy.setLazyContent(contentHash, contentLoader);
+        copy.markDirty(getDirtyFields());
+
+        return copy;
     }
 
     /**
      * This method updates the file size by checking its content.
      */
     public void updateFileSize() {
-        this.filesize = BigDecimal.valueOf(Helpers.calculateStringSizeInBytes(this.content));
+        this.filesize = BigDecimal.valueOf(Helpers.calculateStringSizeInBytes(getContent()));
+        markDirty(TrackedField.FILESIZE);
+    }
+
+    /**
+     * This method leaves the content out of the object, to be fetched by the loader the first time it is needed.
+     *
+     * @param contentHash Hash of the stored content, or null if the file has no content.
+     * @param contentLoader Function that fetches a content by its hash.
+     */
+    public void setLazyContent(String contentHash, Function<String, String> contentLoader) {
+        this.content = null;
+        this.contentHash = contentHash;
+        this.contentLoader = contentLoader;
+        this.contentLoaded = contentHash == null || contentLoader == null;
+    }
+
+    /**
+     * This method points the file to a content that is already stored in the blob table (like one that was
+     * streamed in), leaving it to be fetched by the loader the first time it is needed.
+     *
+     * @param contentHash Hash of the stored content.
+     * @param filesize Size of the stored content.
+     * @param contentLoader Function that fetches a content by its hash.
+     */
+    public void setStoredContent(String contentHash, BigDecimal filesize, Function<String, String> contentLoader) {
+        setLazyContent(contentHash, contentLoader);
+        this.filesize = filesize;
+        markDirty(TrackedField.CONTENT);
+        markDirty(TrackedField.FILESIZE);
+    }
+
+    /**
+     * This method frees the memory used by the content of a lazily loaded file, it is fetched again when next needed.
+     * <p>
+     * It must only be called once the content has been saved, otherwise the changes are lost.
+     */
+    public void releaseContent() {
+        if(contentLoader == null || !contentLoaded) return;
+
+        contentHash = getContentHash();
+        content = null;
+        contentLoaded = contentHash == null;
+    }
+
+    /**
+     * This method checks if the content of the file is in memory.
+     *
+     * @return True if the content doesn't need to be fetched, otherwise false.
+     */
+    @JsonIgnore
+    public boolean isContentLoaded() {
+        return contentLoaded;
+    }
+
+    /**
+     * This method fills in a content that was fetched elsewhere (like on a database thread), so getting it
+     * doesn't fetch it again. It does nothing if the file has a different content by then.
+     *
+     * @param contentHash Hash the content was fetched by.
+     * @param content The fetched content.
+     */
+    public void fillContent(String contentHash, String content) {
+        if(contentLoaded || !Objects.equals(this.contentHash, contentHash)) return;
+
+        this.content = content;
+        this.contentLoaded = true;
     }
 
 
@@ -167,6 +278,7 @@ public class FileDTO extends ItemDTO {
      */
     public void setExtension(String extension) {
         this.extension = extension;
+        markDirty(TrackedField.EXTENSION);
     }
 
     /**
@@ -185,6 +297,7 @@ public class FileDTO extends ItemDTO {
      */
     public void setLocked(boolean locked) {
         isLocked = locked;
+        markDirty(TrackedField.LOCKED);
     }
 
     /**
@@ -212,6 +325,7 @@ public class FileDTO extends ItemDTO {
      */
     public void setFilesize(BigDecimal filesize) {
         this.filesize = filesize;
+        markDirty(TrackedField.FILESIZE);
     }
 
     /**
@@ -230,6 +344,7 @@ public class FileDTO extends ItemDTO {
      */
     public void setImportance(int importance) {
         this.importance = importance;
+        markDirty(TrackedField.IMPORTANCE);
     }
 
     /**
@@ -248,14 +363,20 @@ public class FileDTO extends ItemDTO {
      */
     public void setPassword(String password) {
         this.password = password;
+        markDirty(TrackedField.PASSWORD);
     }
 
     /**
-     * Getter for the content of the file.
+     * Getter for the content of the file, it is fetched the first time it is needed if the file was loaded without it.
      *
      * @return Text content of the file, or null if invalid extension.
      */
     public String getContent() {
+        if(!contentLoaded) {
+            content = contentLoader.apply(contentHash);
+            contentLoaded = true;
+        }
+
         return content;
     }
 
@@ -266,5 +387,20 @@ public class FileDTO extends ItemDTO {
      */
     public void setContent(String content) {
         this.content = content;
+        this.contentHash = null;
+        this.contentLoaded = true;
+        markDirty(TrackedField.CONTENT);
+    }
+
+    /**
+     * Getter for the hash of the file content, which identifies it in the blob table.
+     *
+     * @return Hash of the content, or null if the file has no content.
+     */
+    @JsonIgnore
+    public String getContentHash() {
+        if(contentHash == null) contentHash = Helpers.hashContent(content);
+
+        return contentHash;
     }
 }
\ No newline at end of file
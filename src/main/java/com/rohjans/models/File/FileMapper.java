@@ -1,9 +1,14 @@
 package com.rohjans.models.File;
 
+import com.rohjans.models.Blob.BlobRepository;
+import com.rohjans.public_.tables.Blob;
+import com.rohjans.public_.tables.File;
 import com.rohjans.public_.tables.records.FileRecord;
+import org.jooq.Record;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * This is a static class that is only used to map FileDTOs to FileRecords and vice versa.
@@ -12,13 +17,20 @@ import java.util.List;
  */
 public class FileMapper {
     /**
-     * This method converts a FileRecord into a FileDTO.
+     * This method converts a file row into a FileDTO.
+     * <p>
+     * The content is put back together (and decompressed) from its chunks if the row was selected together with them,
+     * otherwise the file data object is left without content.
      *
-     * @param fileRecord File record to be converted.
+     * @param record File row to be converted.
      * @return Converted file data object.
      */
-    public static FileDTO toFileDTO(FileRecord fileRecord) {
-        if(fileRecord == null) return null;
+    public static FileDTO toFileDTO(Record record) {
+        if(record == null) return null;
+
+        FileRecord fileRecord = record instanceof FileRecord file ? file : record.into(File.FILE);
+        String content = record.field(FileRepository.CONTENT) == null || fileRecord.getContenthash() == null
+                ? null : BlobRepository.decodeChunks(record.get(Blob.BLOB.CODEC), record.get(FileRepository.CONTENT));
 
         return new FileDTO(
                 fileRecord.getId(),
@@ -32,26 +44,62 @@ public class FileMapper {
                 fileRecord.getFilesize(),
                 fileRecord.getImportance(),
                 fileRecord.getPassword(),
-                fileRecord.getContent()
+                content
         );
     }
 
     /**
-     * This method converts a list of FileRecord into a list of FileDTO.
+     * This method converts a list of file rows into a list of FileDTO.
      *
-     * @param fileRecords File records to be converted.
+     * @param fileRecords File rows to be converted.
      * @return Converted file data objects.
      */
-    public static List<FileDTO> toFileDTO(List<FileRecord> fileRecords) {
+    public static List<FileDTO> toFileDTO(List<? extends Record> fileRecords) {
         if(fileRecords == null) return null;
 
         ArrayList<FileDTO> files = new ArrayList<>();
-        for(FileRecord record : fileRecords)
+        for(Record record : fileRecords)
             files.add(toFileDTO(record));
 
         return files;
     }
 
+    /**
+     * This method converts a file row selected without its content into a FileDTO, which fetches
+     * the content the first time it is needed.
+     *
+     * @param record File row to be converted.
+     * @param contentLoader Function that fetches a content by its hash.
+     * @return Converted file data object.
+     */
+    public static FileDTO toFileDTO(Record record, Function<String, String> contentLoader) {
+        if(record == null) return null;
+
+        FileDTO file = toFileDTO(record);
+        if(record.field(FileRepository.CONTENT) == null)
+            file.setLazyContent(record.get(File.FILE.CONTENTHASH), contentLoader);
+
+        return file;
+    }
+
+    /**
+     * This method converts a list of file rows selected without their content into a list of FileDTO,
+     * which fetch their content the first time it is needed.
+     *
+     * @param fileRecords File rows to be converted.
+     * @param contentLoader Function that fetches a content by its hash.
+     * @return Converted file data objects.
+     */
+    public static List<FileDTO> toFileDTO(List<? extends Record> fileRecords, Function<String, String> contentLoader) {
+        if(fileRecords == null) return null;
+
+        ArrayList<FileDTO> files = new ArrayList<>();
+        for(Record record : fileRecords)
+            files.add(toFileDTO(record, contentLoader));
+
+        return files;
+    }
+
     /**
      * This method converts a file data object into a FileRecord.
      *
@@ -73,7 +121,7 @@ public class FileMapper {
                 fileDTO.getFilesize(),
                 fileDTO.getImportance(),
                 fileDTO.getPassword(),
-                fileDTO.getContent()
+                fileDTO.getContentHash()
         );
     }
 
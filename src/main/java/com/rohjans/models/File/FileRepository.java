@@ -1,10 +1,39 @@
 package com.rohjans.models.File;
 
+import com.rohjans.models.Blob.BlobRepository;
+import com.rohjans.models.Blob.StoredBlob;
+import com.rohjans.models.ItemDTO;
+import com.rohjans.models.ItemSearchResult;
+import com.rohjans.models.StaleItemException;
 import com.rohjans.public_.tables.records.FileRecord;
+import com.rohjans.public_.tables.Blob;
+import com.rohjans.public_.tables.BlobChunk;
 import com.rohjans.public_.tables.File;
+import com.rohjans.utils.DBEngine;
+import com.rohjans.utils.Helpers;
+import org.jooq.Condition;
+import org.jooq.Cursor;
 import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.InsertValuesStepN;
+import org.jooq.Record;
+import org.jooq.SelectOnConditionStep;
+import org.jooq.impl.DSL;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -13,6 +42,15 @@ import java.util.UUID;
  * @author Raul Rohjans 202100518
  */
 public class FileRepository implements IFileRepository {
+    /**
+     * Content of a file, as the array of the chunks it's stored in, so it can be selected along with the file columns.
+     */
+    static final Field<byte[][]> CONTENT = DSL.field(
+            DSL.select(DSL.arrayAgg(BlobChunk.BLOB_CHUNK.DATA).orderBy(BlobChunk.BLOB_CHUNK.SEQ))
+                .from(BlobChunk.BLOB_CHUNK)
+                .where(BlobChunk.BLOB_CHUNK.HASH.eq(File.FILE.CONTENTHASH)))
+            .as("content");
+
     /**
      * Database context instance.
      */
@@ -31,12 +69,11 @@ public class FileRepository implements IFileRepository {
      * This method finds a file by ID.
      *
      * @param id ID of the file to be found.
-     * @return Record of the file, or null if it wasn't found.
+     * @return Record of the file with its content, or null if it wasn't found.
      */
     @Override
-    public FileRecord findById(UUID id) {
-        return ctx
-            .selectFrom(File.FILE)
+    public Record findById(UUID id) {
+        return selectWithContent()
             .where(File.FILE.ID.eq(id))
             .fetchOne();
     }
@@ -44,15 +81,144 @@ public class FileRepository implements IFileRepository {
     /**
      * This method finds all the files in the database.
      *
-     * @return List of the file records,
+     * @return List of the file records, with their content.
      */
     @Override
-    public List<FileRecord> findAll() {
-        return ctx
-            .selectFrom(File.FILE)
+    public List<Record> findAll() {
+        return selectWithContent()
             .fetch();
     }
 
+    /**
+     * This method finds all the files in the database without their content, which is enough to build the tree.
+     *
+     * @return List of the file records.
+     */
+    @Override
+    public List<FileRecord> findAllMetadata() {
+        return ctx.selectFrom(File.FILE)
+                .fetch();
+    }
+
+    /**
+     * This method finds the files directly inside a folder, without their content.
+     *
+     * @param parentId ID of the parent folder, or null for the files on the root.
+     * @return List of the file records.
+     */
+    @Override
+    public List<FileRecord> findChildren(UUID parentId) {
+        return ctx.selectFrom(File.FILE)
+                .where(parentId == null ? File.FILE.PARENT.isNull() : File.FILE.PARENT.eq(parentId))
+                .fetch();
+    }
+
+    /**
+     * This method finds the files with the given IDs, without their content.
+     *
+     * @param ids IDs of the files to be found.
+     * @return List of the file records that were found.
+     */
+    @Override
+    public List<FileRecord> findByIds(Collection<UUID> ids) {
+        return ctx.selectFrom(File.FILE)
+                .where(File.FILE.ID.in(ids))
+                .fetch();
+    }
+
+    /**
+     * This method searches the contents of the files for words, in web search syntax ("quoted phrases",
+     * OR and -excluded words), on the full text index of the database so no content has to be loaded.
+     * <p>
+     * The words are matched as they are written, ignoring case, and all of them must show up in the same
+     * chunk of a content.
+     *
+     * @param query Words to be searched for.
+     * @param limit Maximum amount of results.
+     * @return The matching files, the best matches first.
+     */
+    @Override
+    public List<ContentSearchResult> searchContent(String query, int limit) {
+        return ctx.fetch("SELECT id, parent, path, rank FROM search_contents({0}, {1})", DSL.val(query), DSL.val(limit))
+                .map(record -> new ContentSearchResult(
+                        record.get(0, UUID.class),
+                        record.get(1, UUID.class),
+                        record.get(2, String.class),
+                        record.get(3, Float.class)));
+    }
+
+    /**
+     * This method searches the names of the folders and files for a text on the database,
+     * so the tree doesn't have to be loaded to search it.
+     * <p>
+     * The text is matched as it is written, anywhere in the name.
+     *
+     * @param query Text the names must contain.
+     * @param limit Maximum amount of results.
+     * @return The matching items, by path.
+     */
+    @Override
+    public List<ItemSearchResult> searchNames(String query, int limit) {
+        return ctx.fetch("SELECT id, parent, path FROM search_names({0}, {1})", DSL.val(query), DSL.val(limit))
+                .map(record -> new ItemSearchResult(
+                        record.get(0, UUID.class),
+                        record.get(1, UUID.class),
+                        record.get(2, String.class)));
+    }
+
+    /**
+     * This method opens a cursor over all the files in the database, fetching them from the server
+     * a few at a time instead of loading them all into memory.
+     * <p>
+     * Server-side cursors are only used inside a transaction, and the cursor must be closed after use.
+     *
+     * @param fetchSize Amount of records fetched from the server per round trip.
+     * @return Cursor over the file records, with their content.
+     */
+    @Override
+    public Cursor<Record> findAllLazy(int fetchSize) {
+        return selectWithContent()
+                .fetchSize(fetchSize)
+                .fetchLazy();
+    }
+
+    /**
+     * This method opens a cursor over the files that were created or changed by a given transaction or a newer one,
+     * fetching them from the server a few at a time.
+     *
+     * @param sinceTxid Oldest transaction whose files are returned.
+     * @param fetchSize Amount of records fetched from the server per round trip.
+     * @return Cursor over the file records, with their content.
+     */
+    @Override
+    public Cursor<Record> findChangedSinceLazy(long sinceTxid, int fetchSize) {
+        return selectWithContent()
+                .where(File.FILE.CHANGETXID.ge(sinceTxid))
+                .fetchSize(fetchSize)
+                .fetchLazy();
+    }
+
+    /**
+     * This method opens a cursor over the files whose ID falls in a given range,
+     * fetching them from the server a few at a time.
+     *
+     * @param from Lowest ID of the range (inclusive), or null for no lower bound.
+     * @param to Highest ID of the range (exclusive), or null for no upper bound.
+     * @param fetchSize Amount of records fetched from the server per round trip.
+     * @return Cursor over the file records, with their content.
+     */
+    @Override
+    public Cursor<Record> findRangeLazy(UUID from, UUID to, int fetchSize) {
+        Condition condition = DSL.noCondition();
+        if(from != null) condition = condition.and(File.FILE.ID.ge(from));
+        if(to != null) condition = condition.and(File.FILE.ID.lt(to));
+
+        return selectWithContent()
+                .where(condition)
+                .fetchSize(fetchSize)
+                .fetchLazy();
+    }
+
     /**
      * This method creates a new file record.
      *
@@ -73,36 +239,193 @@ public class FileRepository implements IFileRepository {
         fileRecord.setFilesize(fileDTO.getFilesize());
         fileRecord.setImportance(fileDTO.getImportance());
         fileRecord.setPassword(fileDTO.getPassword());
-        fileRecord.setContent(fileDTO.getContent());
+        fileRecord.setContenthash(fileDTO.getContentHash());
 
-        if(fileRecord.store() != 1)
-            throw new RuntimeException("Could not create 'File' record");
+        ctx.transaction(cfg -> {
+            storeContents(cfg.dsl(), List.of(fileDTO));
+            if(cfg.dsl().executeInsert(fileRecord) != 1)
+                throw new RuntimeException("Could not create 'File' record");
+        });
 
         return fileRecord;
     }
 
     /**
-     * This method updates an existing file record in the database.
+     * This method creates multiple new file records in a single batch.
+     *
+     * @param fileDTOS File data objects to be created in the database.
+     */
+    @Override
+    public void createAll(List<FileDTO> fileDTOS) {
+        if(fileDTOS == null || fileDTOS.isEmpty()) return;
+
+        ctx.transaction(cfg -> {
+            storeContents(cfg.dsl(), fileDTOS);
+            cfg.dsl().batchInsert(FileMapper.toFileRecord(fileDTOS)).execute();
+        });
+    }
+
+    /**
+     * This method creates or updates multiple file records in a single statement.
+     * <p>
+     * If the same file shows up more than once, only its last version is written.
+     *
+     * @param fileDTOS File data objects to be created or updated in the database.
+     * @return File records as they were stored in the database.
+     */
+    @Override
+    public List<FileRecord> upsertAll(List<FileDTO> fileDTOS) {
+        if(fileDTOS == null || fileDTOS.isEmpty()) return new ArrayList<>();
+
+        //A statement can't update the same row twice, so repeated IDs would make it fail
+        Map<UUID, FileDTO> unique = new LinkedHashMap<>();
+        for(FileDTO fileDTO : fileDTOS) unique.put(fileDTO.getId(), fileDTO);
+        List<FileDTO> files = new ArrayList<>(unique.values());
+
+        return ctx.transactionResult(cfg -> {
+            storeContents(cfg.dsl(), files);
+
+            InsertValuesStepN<FileRecord> insert = cfg.dsl().insertInto(File.FILE).columns(File.FILE.fields());
+            for(FileRecord record : FileMapper.toFileRecord(files))
+                insert = insert.values(record.intoArray());
+
+            return insert
+                    .onConflict(File.FILE.ID)
+                    .doUpdate()
+                    .set(getExcludedFields())
+                    .returning()
+                    .fetch();
+        });
+    }
+
+    /**
+     * This method creates a copy of an existing file, pointing to the same stored content,
+     * so only the metadata is written.
+     *
+     * @param copy File data object with the metadata of the copy.
+     * @param sourceId ID of the file whose content is shared.
+     */
+    @Override
+    public void createCopy(FileDTO copy, UUID sourceId) {
+        FileRecord copyRecord = FileMapper.toFileRecord(copy);
+
+        //Every column comes from the copy, except the content hash which is taken from the source row
+        List<Field<?>> values = new ArrayList<>();
+        for(Field<?> field : File.FILE.fields())
+            values.add(field.equals(File.FILE.CONTENTHASH) ? File.FILE.CONTENTHASH : DSL.val(copyRecord.get(field), field));
+
+        int inserted = ctx.insertInto(File.FILE)
+                .columns(File.FILE.fields())
+                .select(DSL.select(values).from(File.FILE).where(File.FILE.ID.eq(sourceId)))
+                .execute();
+
+        if(inserted != 1)
+            throw new RuntimeException("Could not create 'File' record");
+    }
+
+    /**
+     * This method updates an existing file record in the database, as long as nobody else changed it since
+     * it was read, in other words, if its change counter is still the expected one.
+     * <p>
+     * Only the fields that changed are written (plus the change counter), so editing the metadata of a file
+     * doesn't send its content again.
      *
      * @param fileDTO File data object to be updated.
+     * @param expectedChangeCounter Change counter the record must still have.
+     * @throws StaleItemException Will happen if the record was changed or removed in the meantime.
      */
     @Override
-    public void update(FileDTO fileDTO) {
-        ctx.update(File.FILE)
-                .set(File.FILE.PARENT, fileDTO.getParent())
-                .set(File.FILE.NAME, fileDTO.getName())
-                .set(File.FILE.CREATED, fileDTO.getCreated())
-                .set(File.FILE.CHANGED, fileDTO.getChanged())
+    public void update(FileDTO fileDTO, int expectedChangeCounter) {
+        if(!fileDTO.isDirty(ItemDTO.TrackedField.CONTENT)) {
+            updateRecord(ctx, fileDTO, expectedChangeCounter);
+            return;
+        }
+
+        ctx.transaction(cfg -> {
+            storeContents(cfg.dsl(), List.of(fileDTO));
+            updateRecord(cfg.dsl(), fileDTO, expectedChangeCounter);
+        });
+    }
+
+    /**
+     * This method writes the changed fields of a file record, as long as its change counter is still the expected one.
+     *
+     * @param tx Database context the update is run on.
+     * @param fileDTO File data object to be updated.
+     * @param expectedChangeCounter Change counter the record must still have.
+     * @throws StaleItemException Will happen if the record was changed or removed in the meantime.
+     */
+    private static void updateRecord(DSLContext tx, FileDTO fileDTO, int expectedChangeCounter) {
+        //The change counter is always written, every update has to move the version forward
+        int updated = tx.update(File.FILE)
                 .set(File.FILE.CHANGECOUNTER, fileDTO.getChangeCounter())
-                .set(File.FILE.EXTENSION, fileDTO.getExtension())
-                .set(File.FILE.ISLOCKED, fileDTO.isLocked())
-                .set(File.FILE.FILESIZE, fileDTO.getFilesize())
-                .set(File.FILE.IMPORTANCE, fileDTO.getImportance())
-                .set(File.FILE.PASSWORD, fileDTO.getPassword())
-                .set(File.FILE.CONTENT, fileDTO.getContent())
+                .set(getChangedFields(fileDTO))
 
                 .where(File.FILE.ID.eq(fileDTO.getId()))
+                .and(File.FILE.CHANGECOUNTER.eq(expectedChangeCounter))
                 .execute();
+
+        if(updated == 0)
+            throw new StaleItemException(fileDTO.getId(), expectedChangeCounter,
+                    !tx.fetchExists(File.FILE, File.FILE.ID.eq(fileDTO.getId())));
+    }
+
+    /**
+     * This method opens a stream over the bytes (UTF-8) of the content of a file, which fetches the content
+     * a chunk at a time as it is read, so it's never whole in memory.
+     *
+     * @param id ID of the file.
+     * @return The stream, or null if the file doesn't exist or has no content.
+     */
+    @Override
+    public InputStream openContentStream(UUID id) {
+        String hash = ctx.select(File.FILE.CONTENTHASH)
+                .from(File.FILE)
+                .where(File.FILE.ID.eq(id))
+                .fetchOne(File.FILE.CONTENTHASH);
+
+        return new BlobRepository(ctx).openContent(hash);
+    }
+
+    /**
+     * This method opens a reader over the content of a file, which fetches the content
+     * a chunk at a time as it is read, so it's never whole in memory.
+     *
+     * @param id ID of the file.
+     * @return The reader, or null if the file doesn't exist or has no content.
+     */
+    @Override
+    public Reader openContent(UUID id) {
+        InputStream stream = openContentStream(id);
+
+        return stream == null ? null : new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * This method replaces the content of a file with one read from a stream, a chunk at a time,
+     * so it's never whole in memory. The rest of the changes of the file are written along with it,
+     * as long as nobody else changed the file since it was read.
+     * <p>
+     * The content and the file are written in the same transaction, so the content can't be removed in between.
+     * The file data object is left pointing to the stored content, which it fetches again if it's needed.
+     *
+     * @param fileDTO File data object to be updated, with its new change counter.
+     * @param content Reader of the new content, it isn't closed.
+     * @param expectedChangeCounter Change counter the record must still have.
+     * @throws IOException Will happen if the content cannot be read.
+     * @throws StaleItemException Will happen if the record was changed or removed in the meantime.
+     */
+    @Override
+    public void writeContent(FileDTO fileDTO, Reader content, int expectedChangeCounter) throws IOException {
+        BlobRepository contentLoader = new BlobRepository(ctx);
+
+        DBEngine.runTransaction(ctx, cfg -> {
+            StoredBlob stored = new BlobRepository(cfg.dsl()).store(content);
+
+            fileDTO.setStoredContent(stored.hash(), BigDecimal.valueOf(Helpers.calculateTextSizeInBytes(stored.length())),
+                    contentLoader::findContent);
+            new FileRepository(cfg.dsl()).update(fileDTO, expectedChangeCounter);
+        });
     }
 
     /**
@@ -116,4 +439,146 @@ public class FileRepository implements IFileRepository {
             .where(File.FILE.ID.eq(id))
             .execute();
     }
+
+    /**
+     * This method counts the files created within a date range, so a removal can be previewed.
+     *
+     * @param from Start of the range (inclusive).
+     * @param to End of the range (exclusive).
+     * @return Amount of files in the range.
+     */
+    @Override
+    public int countByCreatedRange(LocalDateTime from, LocalDateTime to) {
+        return ctx.fetchCount(File.FILE, createdBetween(from, to));
+    }
+
+    /**
+     * This method removes the files created within a date range in a single statement.
+     *
+     * @param from Start of the range (inclusive).
+     * @param to End of the range (exclusive).
+     * @return IDs of the removed files.
+     */
+    @Override
+    public List<UUID> removeByCreatedRange(LocalDateTime from, LocalDateTime to) {
+        return ctx.deleteFrom(File.FILE)
+            .where(createdBetween(from, to))
+            .returning(File.FILE.ID)
+            .fetch(File.FILE.ID);
+    }
+
+    /**
+     * This method counts the files within an importance range, so a removal can be previewed.
+     *
+     * @param from Lowest importance (inclusive).
+     * @param to Highest importance (inclusive).
+     * @return Amount of files in the range.
+     */
+    @Override
+    public int countByImportanceRange(int from, int to) {
+        return ctx.fetchCount(File.FILE, File.FILE.IMPORTANCE.between(from, to));
+    }
+
+    /**
+     * This method removes the files within an importance range in a single statement.
+     *
+     * @param from Lowest importance (inclusive).
+     * @param to Highest importance (inclusive).
+     * @return IDs of the removed files.
+     */
+    @Override
+    public List<UUID> removeByImportanceRange(int from, int to) {
+        return ctx.deleteFrom(File.FILE)
+            .where(File.FILE.IMPORTANCE.between(from, to))
+            .returning(File.FILE.ID)
+            .fetch(File.FILE.ID);
+    }
+
+    /**
+     * This method builds the condition that matches the files created within a date range, written as a
+     * half-open range on the plain column so it can use the creation date index.
+     *
+     * @param from Start of the range (inclusive).
+     * @param to End of the range (exclusive).
+     * @return The condition.
+     */
+    private Condition createdBetween(LocalDateTime from, LocalDateTime to) {
+        return File.FILE.CREATED.ge(from).and(File.FILE.CREATED.lt(to));
+    }
+
+    /**
+     * This method gets the columns of the fields of a file that changed since it was loaded, with their new values.
+     *
+     * @param fileDTO File data object with the changes.
+     * @return The changed columns mapped to their values, the change counter is left out.
+     */
+    private static Map<Field<?>, Object> getChangedFields(FileDTO fileDTO) {
+        Map<Field<?>, Object> fields = new HashMap<>();
+
+        for(ItemDTO.TrackedField field : fileDTO.getDirtyFields()) {
+            switch (field) {
+                case PARENT -> fields.put(File.FILE.PARENT, fileDTO.getParent());
+                case NAME -> fields.put(File.FILE.NAME, fileDTO.getName());
+                case CREATED -> fields.put(File.FILE.CREATED, fileDTO.getCreated());
+                case CHANGED -> fields.put(File.FILE.CHANGED, fileDTO.getChanged());
+                case EXTENSION -> fields.put(File.FILE.EXTENSION, fileDTO.getExtension());
+                case LOCKED -> fields.put(File.FILE.ISLOCKED, fileDTO.isLocked());
+                case FILESIZE -> fields.put(File.FILE.FILESIZE, fileDTO.getFilesize());
+                case IMPORTANCE -> fields.put(File.FILE.IMPORTANCE, fileDTO.getImportance());
+                case PASSWORD -> fields.put(File.FILE.PASSWORD, fileDTO.getPassword());
+                case CONTENT -> fields.put(File.FILE.CONTENTHASH, fileDTO.getContentHash());
+                case CHANGE_COUNTER -> {} //Always written
+            }
+        }
+
+        return fields;
+    }
+
+    /**
+     * This method maps every column except the ID to the value that was rejected by the insert conflict,
+     * so an upsert overwrites the existing record with the new values.
+     *
+     * @return Map of the columns to their excluded values.
+     */
+    private static Map<Field<?>, Field<?>> getExcludedFields() {
+        Map<Field<?>, Field<?>> fields = new LinkedHashMap<>();
+        for(Field<?> field : File.FILE.fields())
+            if(!field.equals(File.FILE.ID)) fields.put(field, DSL.excluded(field));
+
+        return fields;
+    }
+
+    /**
+     * This method starts a select of the file columns together with their content, which is stored in chunks
+     * in the blob tables. The chunks come as a single value, along with the codec they are encoded with,
+     * so the content of one file is in memory at a time while the rows are read from a cursor.
+     *
+     * @return The select statement.
+     */
+    private SelectOnConditionStep<Record> selectWithContent() {
+        return ctx
+            .select(File.FILE.fields())
+            .select(CONTENT, Blob.BLOB.CODEC)
+            .from(File.FILE)
+            .leftJoin(Blob.BLOB).on(Blob.BLOB.HASH.eq(File.FILE.CONTENTHASH));
+    }
+
+    /**
+     * This method stores the content of the given files in the blob table, so the files can reference it.
+     * Contents that are already stored aren't written again, neither are the ones that were never loaded,
+     * since those came from the blob table to begin with.
+     * <p>
+     * It must run in the same transaction that writes the files, the stored contents are only kept from being
+     * removed until it ends, and aren't referenced by anything if writing the files fails.
+     *
+     * @param tx Database context bound to the transaction that writes the files.
+     * @param fileDTOS File data objects whose content is stored.
+     */
+    private static void storeContents(DSLContext tx, List<FileDTO> fileDTOS) {
+        Map<String, String> contents = new HashMap<>();
+        for(FileDTO fileDTO : fileDTOS)
+            if(fileDTO.isContentLoaded() && fileDTO.getContent() != null) contents.put(fileDTO.getContentHash(), fileDTO.getContent());
+
+        if(!contents.isEmpty()) new BlobRepository(tx).storeAll(contents);
+    }
 }
@@ -0,0 +1,159 @@
+package com.rohjans.models.File;
+
+import com.rohjans.models.ItemSearchResult;
+import com.rohjans.public_.tables.records.FileRecord;
+import org.jooq.Record;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Interface that represents an asynchronous File Repository class, which interacts with the database
+ * away from the calling thread.
+ * <p>
+ * The futures complete on a database thread, so anything that touches the UI has to be moved back
+ * to the JavaFX application thread. The cursor and content stream methods of {@link IFileRepository}
+ * are left out, since a cursor has to be read on the thread that opened it, and a stream is read bit by bit.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public interface IAsyncFileRepository {
+    /**
+     * This method finds a file by ID.
+     *
+     * @param id ID of the file to be found.
+     * @return Future of the record of the file with its content, which holds null if it wasn't found.
+     */
+    CompletableFuture<Record> findById(UUID id);
+
+    /**
+     * This method finds all the files in the database.
+     *
+     * @return Future of the list of the file records, with their content.
+     */
+    CompletableFuture<List<Record>> findAll();
+
+    /**
+     * This method finds all the files in the database without their content.
+     *
+     * @return Future of the list of the file records.
+     */
+    CompletableFuture<List<FileRecord>> findAllMetadata();
+
+    /**
+     * This method finds the files directly inside a folder, without their content.
+     *
+     * @param parentId ID of the parent folder, or null for the files on the root.
+     * @return Future of the list of the file records.
+     */
+    CompletableFuture<List<FileRecord>> findChildren(UUID parentId);
+
+    /**
+     * This method finds the files with the given IDs, without their content.
+     *
+     * @param ids IDs of the files to be found.
+     * @return Future of the list of the file records that were found.
+     */
+    CompletableFuture<List<FileRecord>> findByIds(Collection<UUID> ids);
+
+    /**
+     * This method searches the contents of the files for words, in web search syntax ("quoted phrases",
+     * OR and -excluded words).
+     *
+     * @param query Words to be searched for.
+     * @param limit Maximum amount of results.
+     * @return Future of the matching files, the best matches first.
+     */
+    CompletableFuture<List<ContentSearchResult>> searchContent(String query, int limit);
+
+    /**
+     * This method searches the names of the folders and files for a text.
+     *
+     * @param query Text the names must contain.
+     * @param limit Maximum amount of results.
+     * @return Future of the matching items, by path.
+     */
+    CompletableFuture<List<ItemSearchResult>> searchNames(String query, int limit);
+
+    /**
+     * This method creates a new file record.
+     *
+     * @param fileDTO File data object to be created in the database.
+     * @return Future of the file record that was created.
+     */
+    CompletableFuture<FileRecord> create(FileDTO fileDTO);
+
+    /**
+     * This method creates multiple new file records in a single batch.
+     *
+     * @param fileDTOS File data objects to be created in the database.
+     * @return Future completed once the records are created.
+     */
+    CompletableFuture<Void> createAll(List<FileDTO> fileDTOS);
+
+    /**
+     * This method creates a copy of a file that shares the stored content of the original.
+     *
+     * @param copy File data object of the copy.
+     * @param sourceId ID of the original file.
+     * @return Future completed once the copy is created.
+     */
+    CompletableFuture<Void> createCopy(FileDTO copy, UUID sourceId);
+
+    /**
+     * This method updates a file record, as long as nobody else changed it since it was read.
+     *
+     * @param fileDTO File data object with the new data.
+     * @param expectedChangeCounter Change counter the record must still have.
+     * @return Future completed once the record is updated, it fails with a StaleItemException if the record
+     * was changed or removed in the meantime.
+     */
+    CompletableFuture<Void> update(FileDTO fileDTO, int expectedChangeCounter);
+
+    /**
+     * This method removes a file record by ID.
+     *
+     * @param id ID of the file to be removed.
+     * @return Future completed once the record is removed.
+     */
+    CompletableFuture<Void> removeById(UUID id);
+
+    /**
+     * This method counts the files created within a date range, so a removal can be previewed.
+     *
+     * @param from Start of the range (inclusive).
+     * @param to End of the range (exclusive).
+     * @return Future of the amount of files in the range.
+     */
+    CompletableFuture<Integer> countByCreatedRange(LocalDateTime from, LocalDateTime to);
+
+    /**
+     * This method removes the files created within a date range in a single statement.
+     *
+     * @param from Start of the range (inclusive).
+     * @param to End of the range (exclusive).
+     * @return Future of the IDs of the removed files.
+     */
+    CompletableFuture<List<UUID>> removeByCreatedRange(LocalDateTime from, LocalDateTime to);
+
+    /**
+     * This method counts the files within an importance range, so a removal can be previewed.
+     *
+     * @param from Lowest importance (inclusive).
+     * @param to Highest importance (inclusive).
+     * @return Future of the amount of files in the range.
+     */
+    CompletableFuture<Integer> countByImportanceRange(int from, int to);
+
+    /**
+     * This method removes the files within an importance range in a single statement.
+     *
+     * @param from Lowest importance (inclusive).
+     * @param to Highest importance (inclusive).
+     * @return Future of the IDs of the removed files.
+     */
+    CompletableFuture<List<UUID>> removeByImportanceRange(int from, int to);
+}
@@ -1,7 +1,16 @@
 package com.rohjans.models.File;
 
+import com.rohjans.models.ItemSearchResult;
+import com.rohjans.models.StaleItemException;
 import com.rohjans.public_.tables.records.FileRecord;
+import org.jooq.Cursor;
+import org.jooq.Record;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -15,16 +24,90 @@ public interface IFileRepository {
      * This method finds a file by ID.
      *
      * @param id ID of the file to be found.
-     * @return Record of the file, or null if it wasn't found.
+     * @return Record of the file with its content, or null if it wasn't found.
      */
-    FileRecord findById(UUID id);
+    Record findById(UUID id);
 
     /**
      * This method finds all the files in the database.
      *
-     * @return List of the file records,
+     * @return List of the file records, with their content.
      */
-    List<FileRecord> findAll();
+    List<Record> findAll();
+
+    /**
+     * This method finds all the files in the database without their content, which is enough to build the tree.
+     *
+     * @return List of the file records.
+     */
+    List<FileRecord> findAllMetadata();
+
+    /**
+     * This method finds the files directly inside a folder, without their content.
+     *
+     * @param parentId ID of the parent folder, or null for the files on the root.
+     * @return List of the file records.
+     */
+    List<FileRecord> findChildren(UUID parentId);
+
+    /**
+     * This method finds the files with the given IDs, without their content.
+     *
+     * @param ids IDs of the files to be found.
+     * @return List of the file records that were found.
+     */
+    List<FileRecord> findByIds(Collection<UUID> ids);
+
+    /**
+     * This method searches the contents of the files for words, in web search syntax ("quoted phrases",
+     * OR and -excluded words).
+     *
+     * @param query Words to be searched for.
+     * @param limit Maximum amount of results.
+     * @return The matching files, the best matches first.
+     */
+    List<ContentSearchResult> searchContent(String query, int limit);
+
+    /**
+     * This method searches the names of the folders and files for a text.
+     *
+     * @param query Text the names must contain.
+     * @param limit Maximum amount of results.
+     * @return The matching items, by path.
+     */
+    List<ItemSearchResult> searchNames(String query, int limit);
+
+    /**
+     * This method opens a cursor over all the files in the database, fetching them from the server
+     * a few at a time instead of loading them all into memory.
+     * <p>
+     * Server-side cursors are only used inside a transaction, and the cursor must be closed after use.
+     *
+     * @param fetchSize Amount of records fetched from the server per round trip.
+     * @return Cursor over the file records, with their content.
+     */
+    Cursor<Record> findAllLazy(int fetchSize);
+
+    /**
+     * This method opens a cursor over the files that were created or changed by a given transaction or a newer one,
+     * fetching them from the server a few at a time.
+     *
+     * @param sinceTxid Oldest transaction whose files are returned.
+     * @param fetchSize Amount of records fetched from the server per round trip.
+     * @return Cursor over the file records, with their content.
+     */
+    Cursor<Record> findChangedSinceLazy(long sinceTxid, int fetchSize);
+
+    /**
+     * This method opens a cursor over the files whose ID falls in a given range,
+     * fetching them from the server a few at a time.
+     *
+     * @param from Lowest ID of the range (inclusive), or null for no lower bound.
+     * @param to Highest ID of the range (exclusive), or null for no upper bound.
+     * @param fetchSize Amount of records fetched from the server per round trip.
+     * @return Cursor over the file records, with their content.
+     */
+    Cursor<Record> findRangeLazy(UUID from, UUID to, int fetchSize);
 
     /**
      * This method creates a new file record.
@@ -35,11 +118,74 @@ public interface IFileRepository {
     FileRecord create(FileDTO fileDTO);
 
     /**
-     * This method updates an existing file record in the database.
+     * This method creates multiple new file records in a single batch.
+     *
+     * @param fileDTOS File data objects to be created in the database.
+     */
+    void createAll(List<FileDTO> fileDTOS);
+
+    /**
+     * This method creates or updates multiple file records in a single statement.
+     *
+     * @param fileDTOS File data objects to be created or updated in the database.
+     * @return File records as they were stored in the database.
+     */
+    List<FileRecord> upsertAll(List<FileDTO> fileDTOS);
+
+    /**
+     * This method creates a copy of an existing file, pointing to the same stored content,
+     * so only the metadata is written.
+     *
+     * @param copy File data object with the metadata of the copy.
+     * @param sourceId ID of the file whose content is shared.
+     */
+    void createCopy(FileDTO copy, UUID sourceId);
+
+    /**
+     * This method updates an existing file record in the database, as long as nobody else changed it since
+     * it was read, in other words, if its change counter is still the expected one.
+     * <p>
+     * Only the fields that changed are written (plus the change counter) so editing the metadata of a file
+     * doesn't send its content again.
      *
      * @param fileDTO File data object to be updated.
+     * @param expectedChangeCounter Change counter the record must still have.
+     * @throws StaleItemException Will happen if the record was changed or removed in the meantime.
+     */
+    void update(FileDTO fileDTO, int expectedChangeCounter);
+
+    /**
+     * This method opens a stream over the bytes (UTF-8) of the content of a file, which fetches the content
+     * a chunk at a time as it is read, so it's never whole in memory.
+     *
+     * @param id ID of the file.
+     * @return The stream, or null if the file doesn't exist or has no content.
+     */
+    InputStream openContentStream(UUID id);
+
+    /**
+     * This method opens a reader over the content of a file, which fetches the content
+     * a chunk at a time as it is read, so it's never whole in memory.
+     *
+     * @param id ID of the file.
+     * @return The reader, or null if the file doesn't exist or has no content.
+     */
+    Reader openContent(UUID id);
+
+    /**
+     * This method replaces the content of a file with one read from a stream, a chunk at a time,
+     * so it's never whole in memory. The rest of the changes of the file are written along with it,
+     * as long as nobody else changed the file since it was read.
+     * <p>
+     * The file data object is left pointing to the stored content, which it fetches again if it's needed.
+     *
+     * @param fileDTO File data object to be updated, with its new change counter.
+     * @param content Reader of the new content, it isn't closed.
+     * @param expectedChangeCounter Change counter the record must still have.
+     * @throws IOException Will happen if the content cannot be read.
+     * @throws StaleItemException Will happen if the record was changed or removed in the meantime.
      */
-    void update(FileDTO fileDTO);
+    void writeContent(FileDTO fileDTO, Reader content, int expectedChangeCounter) throws IOException;
 
     /**
      * This method removes a file by its ID.
@@ -47,4 +193,40 @@ public interface IFileRepository {
      * @param id ID of the file to be removed from the database.
      */
     void removeById(UUID id);
+
+    /**
+     * This method counts the files created within a date range, so a removal can be previewed.
+     *
+     * @param from Start of the range (inclusive).
+     * @param to End of the range (exclusive).
+     * @return Amount of files in the range.
+     */
+    int countByCreatedRange(LocalDateTime from, LocalDateTime to);
+
+    /**
+     * This method removes the files created within a date range in a single statement.
+     *
+     * @param from Start of the range (inclusive).
+     * @param to End of the range (exclusive).
+     * @return IDs of the removed files.
+     */
+    List<UUID> removeByCreatedRange(LocalDateTime from, LocalDateTime to);
+
+    /**
+     * This method counts the files within an importance range, so a removal can be previewed.
+     *
+     * @param from Lowest importance (inclusive).
+     * @param to Highest importance (inclusive).
+     * @return Amount of files in the range.
+     */
+    int countByImportanceRange(int from, int to);
+
+    /**
+     * This method removes the files within an importance range in a single statement.
+     *
+     * @param from Lowest importance (inclusive).
+     * @param to Highest importance (inclusive).
+     * @return IDs of the removed files.
+     */
+    List<UUID> removeByImportanceRange(int from, int to);
 }
\ No newline at end of file
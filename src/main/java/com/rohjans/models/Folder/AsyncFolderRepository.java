@@ -0,0 +1,128 @@
+package com.rohjans.models.Folder;
+
+import com.rohjans.public_.tables.records.FolderRecord;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * This is a class that runs the calls of a folder repository on a database executor.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public class AsyncFolderRepository implements IAsyncFolderRepository {
+    /**
+     * Repository the calls are delegated to.
+     */
+    private final IFolderRepository repository;
+
+    /**
+     * Executor the calls run on.
+     */
+    private final Executor executor;
+
+    /**
+     * Constructs the repository.
+     *
+     * @param repository Repository the calls are delegated to.
+     * @param executor Executor the calls run on, it should be bounded to the size of the connection pool.
+     */
+    public AsyncFolderRepository(IFolderRepository repository, Executor executor) {
+        this.repository = repository;
+        this.executor = executor;
+    }
+
+    /**
+     * This method finds a folder by ID.
+     *
+     * @param id ID of the folder to be found.
+     * @return Future of the record of the folder, which holds null if it wasn't found.
+     */
+    @Override
+    public CompletableFuture<FolderRecord> findById(UUID id) {
+        return CompletableFuture.supplyAsync(() -> repository.findById(id), executor);
+    }
+
+    /**
+     * This method finds all the folders in the database.
+     *
+     * @return Future of the list of the folder records.
+     */
+    @Override
+    public CompletableFuture<List<FolderRecord>> findAll() {
+        return CompletableFuture.supplyAsync(repository::findAll, executor);
+    }
+
+    /**
+     * This method finds the folders directly inside a folder.
+     *
+     * @param parentId ID of the parent folder, or null for the folders on the root.
+     * @return Future of the list of the folder records.
+     */
+    @Override
+    public CompletableFuture<List<FolderRecord>> findChildren(UUID parentId) {
+        return CompletableFuture.supplyAsync(() -> repository.findChildren(parentId), executor);
+    }
+
+    /**
+     * This method finds the folders with the given IDs.
+     *
+     * @param ids IDs of the folders to be found.
+     * @return Future of the list of the folder records that were found.
+     */
+    @Override
+    public CompletableFuture<List<FolderRecord>> findByIds(Collection<UUID> ids) {
+        return CompletableFuture.supplyAsync(() -> repository.findByIds(ids), executor);
+    }
+
+    /**
+     * This method creates a new folder record.
+     *
+     * @param folderDTO Folder data object to be created in the database.
+     * @return Future of the folder record that was created.
+     */
+    @Override
+    public CompletableFuture<FolderRecord> create(FolderDTO folderDTO) {
+        return CompletableFuture.supplyAsync(() -> repository.create(folderDTO), executor);
+    }
+
+    /**
+     * This method updates a folder record, as long as nobody else changed it since it was read.
+     *
+     * @param folderDTO Folder data object with the new data.
+     * @param expectedChangeCounter Change counter the record must still have.
+     * @return Future completed once the record is updated, it fails with a StaleItemException if the record
+     * was changed or removed in the meantime.
+     */
+    @Override
+    public CompletableFuture<Void> update(FolderDTO folderDTO, int expectedChangeCounter) {
+        return CompletableFuture.runAsync(() -> repository.update(folderDTO, expectedChangeCounter), executor);
+    }
+
+    /**
+     * This method removes a folder record by ID, along with everything inside it.
+     *
+     * @param id ID of the folder to be removed.
+     * @return Future completed once the record is removed.
+     */
+    @Override
+    public CompletableFuture<Void> removeById(UUID id) {
+        return CompletableFuture.runAsync(() -> repository.removeById(id), executor);
+    }
+
+    /**
+     * This method flattens a folder on the database server, in a single transaction: every file under its sub folders
+     * is moved into it, renamed to "(n) name" if the name is already taken, and the sub folders are removed.
+     *
+     * @param id ID of the folder to be flattened.
+     * @return Future of the final name of each moved file, mapped by the file ID.
+     */
+    @Override
+    public CompletableFuture<Map<UUID, String>> flatten(UUID id) {
+        return CompletableFuture.supplyAsync(() -> repository.flatten(id), executor);
+    }
+}
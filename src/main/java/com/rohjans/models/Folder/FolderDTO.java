@@ -1,5 +1,6 @@
 package com.rohjans.models.Folder;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.rohjans.models.ItemDTO;
 import com.rohjans.utils.DBEngine;
 
@@ -12,6 +13,11 @@ import java.util.UUID;
  * @author Raul Rohjans 202100518
  */
 public class FolderDTO extends ItemDTO {
+    /**
+     * Amount of sub folders and files directly inside the folder, as it was when loaded from the database.
+     */
+    private int childCount;
+
     /**
      * Default constructor used for serializing and deserializing the object.
      */
@@ -40,4 +46,46 @@ public class FolderDTO extends ItemDTO {
     public FolderDTO(UUID parent, String name) {
         super(DBEngine.getNewPrimaryKey(), parent, name, LocalDateTime.now(), null, 0);
     }
-}
\ No newline at end of file
+
+    /**
+     * Getter for the amount of items directly inside the folder.
+     * <p>
+     * It's kept up to date by the database, so it isn't part of backups.
+     *
+     * @return Amount of sub folders and files, as it was when loaded from the database.
+     */
+    @JsonIgnore
+    public int getChildCount() {
+        return childCount;
+    }
+
+    /**
+     * Setter for the amount of items directly inside the folder.
+     *
+     * @param childCount Amount of sub folders and files to be set.
+     */
+    @JsonIgnore
+    public void setChildCount(int childCount) {
+        this.childCount = childCount;
+    }
+
+    /**
+     * This method takes a snapshot of the current folder object instance, with the same ID, so it can be written
+     * to the database later without seeing the changes made to the folder in the meantime.
+     *
+     * @return A snapshot of the current folder object instance.
+     */
+    public FolderDTO copy() {
+        FolderDTO copy = new FolderDTO(
+                this.getId(),
+                this.getParent(),
+                this.getName(),
+                this.getCreated(),
+                this.getChanged(),
+                this.getChangeCounter()
+        );
+        copy.markDirty(getDirtyFields());
+
+        return copy;
+    }
+}
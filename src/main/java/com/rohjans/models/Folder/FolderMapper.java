@@ -20,7 +20,7 @@ public class FolderMapper {
     public static FolderDTO toFolderDTO(FolderRecord folderRecord) {
         if(folderRecord == null) return null;
 
-        return new FolderDTO(
+        FolderDTO folder = new FolderDTO(
                 folderRecord.getId(),
                 folderRecord.getParent(),
                 folderRecord.getName(),
@@ -28,6 +28,9 @@ public class FolderMapper {
                 folderRecord.getChanged(),
                 folderRecord.getChangecounter()
         );
+        folder.setChildCount(folderRecord.getChildcount());
+
+        return folder;
     }
 
     /**
@@ -62,7 +65,8 @@ public class FolderMapper {
                 folderDTO.getName(),
                 folderDTO.getCreated(),
                 folderDTO.getChanged(),
-                folderDTO.getChangeCounter()
+                folderDTO.getChangeCounter(),
+                folderDTO.getChildCount()
         );
     }
 
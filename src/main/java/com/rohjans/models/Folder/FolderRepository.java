@@ -1,13 +1,25 @@
 package com.rohjans.models.Folder;
 
 import com.rohjans.models.File.FileDTO;
+import com.rohjans.models.ItemDTO;
+import com.rohjans.models.StaleItemException;
 import com.rohjans.public_.tables.File;
 import com.rohjans.public_.tables.records.FileRecord;
 import com.rohjans.public_.tables.records.FolderRecord;
 import com.rohjans.public_.tables.Folder;
+import org.jooq.Cursor;
 import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.InsertValuesStepN;
+import org.jooq.Record;
+import org.jooq.impl.DSL;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -56,6 +68,67 @@ public class FolderRepository implements IFolderRepository {
                 .fetch();
     }
 
+    /**
+     * This method finds the folders directly inside a folder.
+     *
+     * @param parentId ID of the parent folder, or null for the folders on the root.
+     * @return List of the folder records.
+     */
+    @Override
+    public List<FolderRecord> findChildren(UUID parentId) {
+        return ctx
+                .selectFrom(Folder.FOLDER)
+                .where(parentId == null ? Folder.FOLDER.PARENT.isNull() : Folder.FOLDER.PARENT.eq(parentId))
+                .fetch();
+    }
+
+    /**
+     * This method finds the folders with the given IDs.
+     *
+     * @param ids IDs of the folders to be found.
+     * @return List of the folder records that were found.
+     */
+    @Override
+    public List<FolderRecord> findByIds(Collection<UUID> ids) {
+        return ctx.selectFrom(Folder.FOLDER)
+                .where(Folder.FOLDER.ID.in(ids))
+                .fetch();
+    }
+
+    /**
+     * This method opens a cursor over all the folders in the database, fetching them from the server
+     * a few at a time instead of loading them all into memory.
+     * <p>
+     * Server-side cursors are only used inside a transaction, and the cursor must be closed after use.
+     *
+     * @param fetchSize Amount of records fetched from the server per round trip.
+     * @return Cursor over the folder records.
+     */
+    @Override
+    public Cursor<FolderRecord> findAllLazy(int fetchSize) {
+        return ctx
+                .selectFrom(Folder.FOLDER)
+                .fetchSize(fetchSize)
+                .fetchLazy();
+    }
+
+    /**
+     * This method opens a cursor over the folders that were created or changed by a given transaction or a newer one,
+     * fetching them from the server a few at a time.
+     *
+     * @param sinceTxid Oldest transaction whose folders are returned.
+     * @param fetchSize Amount of records fetched from the server per round trip.
+     * @return Cursor over the folder records.
+     */
+    @Override
+    public Cursor<FolderRecord> findChangedSinceLazy(long sinceTxid, int fetchSize) {
+        return ctx
+                .selectFrom(Folder.FOLDER)
+                .where(Folder.FOLDER.CHANGETXID.ge(sinceTxid))
+                .fetchSize(fetchSize)
+                .fetchLazy();
+    }
+
     /**
      * This method creates a new folder record.
      *
@@ -79,21 +152,57 @@ public class FolderRepository implements IFolderRepository {
     }
 
     /**
-     * This method updates an existing folder record in the database.
+     * This method creates or updates multiple folder records in a single statement.
+     * <p>
+     * If the same folder shows up more than once, only its last version is written.
+     *
+     * @param folderDTOS Folder data objects to be created or updated in the database.
+     * @return Folder records as they were stored in the database.
+     */
+    @Override
+    public List<FolderRecord> upsertAll(List<FolderDTO> folderDTOS) {
+        if(folderDTOS == null || folderDTOS.isEmpty()) return new ArrayList<>();
+
+        //A statement can't update the same row twice, so repeated IDs would make it fail
+        Map<UUID, FolderDTO> unique = new LinkedHashMap<>();
+        for(FolderDTO folderDTO : folderDTOS) unique.put(folderDTO.getId(), folderDTO);
+
+        InsertValuesStepN<FolderRecord> insert = ctx.insertInto(Folder.FOLDER).columns(Folder.FOLDER.fields());
+        for(FolderRecord record : FolderMapper.toFolderRecord(new ArrayList<>(unique.values())))
+            insert = insert.values(record.intoArray());
+
+        return insert
+                .onConflict(Folder.FOLDER.ID)
+                .doUpdate()
+                .set(getExcludedFields())
+                .returning()
+                .fetch();
+    }
+
+    /**
+     * This method updates an existing folder record in the database, as long as nobody else changed it since
+     * it was read, in other words, if its change counter is still the expected one.
+     * <p>
+     * Only the fields that changed are written (plus the change counter).
      *
      * @param folderDTO Folder data object to be updated.
+     * @param expectedChangeCounter Change counter the record must still have.
+     * @throws StaleItemException Will happen if the record was changed or removed in the meantime.
      */
     @Override
-    public void update(FolderDTO folderDTO) {
-        ctx.update(Folder.FOLDER)
-                .set(Folder.FOLDER.PARENT, folderDTO.getParent())
-                .set(Folder.FOLDER.NAME, folderDTO.getName())
-                .set(Folder.FOLDER.CREATED, folderDTO.getCreated())
-                .set(Folder.FOLDER.CHANGED, folderDTO.getChanged())
+    public void update(FolderDTO folderDTO, int expectedChangeCounter) {
+        //The change counter is always written, every update has to move the version forward
+        int updated = ctx.update(Folder.FOLDER)
                 .set(Folder.FOLDER.CHANGECOUNTER, folderDTO.getChangeCounter())
+                .set(getChangedFields(folderDTO))
 
                 .where(Folder.FOLDER.ID.eq(folderDTO.getId()))
+                .and(Folder.FOLDER.CHANGECOUNTER.eq(expectedChangeCounter))
                 .execute();
+
+        if(updated == 0)
+            throw new StaleItemException(folderDTO.getId(), expectedChangeCounter,
+                    !ctx.fetchExists(Folder.FOLDER, Folder.FOLDER.ID.eq(folderDTO.getId())));
     }
 
     /**
@@ -108,4 +217,59 @@ public class FolderRepository implements IFolderRepository {
             .where(Folder.FOLDER.ID.eq(id))
             .execute();
     }
+
+    /**
+     * This method flattens a folder on the database server, in a single transaction: every file under its sub folders
+     * is moved into it, renamed to "(n) name" if the name is already taken, and the sub folders are removed.
+     *
+     * @param id ID of the folder to be flattened.
+     * @return Final name of each moved file, mapped by the file ID.
+     */
+    @Override
+    public Map<UUID, String> flatten(UUID id) {
+        Map<UUID, String> moved = new LinkedHashMap<>();
+
+        for(Record record : ctx.fetch("SELECT id, name FROM flatten_folder({0})", DSL.val(id)))
+            moved.put(record.get(0, UUID.class), record.get(1, String.class));
+
+        return moved;
+    }
+
+    /**
+     * This method gets the columns of the fields of a folder that changed since it was loaded, with their new values.
+     *
+     * @param folderDTO Folder data object with the changes.
+     * @return The changed columns mapped to their values, the change counter is left out.
+     */
+    private static Map<Field<?>, Object> getChangedFields(FolderDTO folderDTO) {
+        Map<Field<?>, Object> fields = new HashMap<>();
+
+        for(ItemDTO.TrackedField field : folderDTO.getDirtyFields()) {
+            switch (field) {
+                case PARENT -> fields.put(Folder.FOLDER.PARENT, folderDTO.getParent());
+                case NAME -> fields.put(Folder.FOLDER.NAME, folderDTO.getName());
+                case CREATED -> fields.put(Folder.FOLDER.CREATED, folderDTO.getCreated());
+                case CHANGED -> fields.put(Folder.FOLDER.CHANGED, folderDTO.getChanged());
+                default -> {} //The change counter is always written, the rest are file fields
+            }
+        }
+
+        return fields;
+    }
+
+    /**
+     * This method maps every column except the ID to the value that was rejected by the insert conflict,
+     * so an upsert overwrites the existing record with the new values.
+     *
+     * @return Map of the columns to their excluded values.
+     */
+    private static Map<Field<?>, Field<?>> getExcludedFields() {
+        Map<Field<?>, Field<?>> fields = new LinkedHashMap<>();
+        for(Field<?> field : Folder.FOLDER.fields())
+            //The child count is maintained by the database
+            if(!field.equals(Folder.FOLDER.ID) && !field.equals(Folder.FOLDER.CHILDCOUNT))
+                fields.put(field, DSL.excluded(field));
+
+        return fields;
+    }
 }
@@ -0,0 +1,87 @@
+package com.rohjans.models.Folder;
+
+import com.rohjans.public_.tables.records.FolderRecord;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Interface that represents an asynchronous Folder Repository class, which interacts with the database
+ * away from the calling thread.
+ * <p>
+ * The futures complete on a database thread, so anything that touches the UI has to be moved back
+ * to the JavaFX application thread. The cursor methods of {@link IFolderRepository} are left out,
+ * since a cursor has to be read on the thread that opened it.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public interface IAsyncFolderRepository {
+    /**
+     * This method finds a folder by ID.
+     *
+     * @param id ID of the folder to be found.
+     * @return Future of the record of the folder, which holds null if it wasn't found.
+     */
+    CompletableFuture<FolderRecord> findById(UUID id);
+
+    /**
+     * This method finds all the folders in the database.
+     *
+     * @return Future of the list of the folder records.
+     */
+    CompletableFuture<List<FolderRecord>> findAll();
+
+    /**
+     * This method finds the folders directly inside a folder.
+     *
+     * @param parentId ID of the parent folder, or null for the folders on the root.
+     * @return Future of the list of the folder records.
+     */
+    CompletableFuture<List<FolderRecord>> findChildren(UUID parentId);
+
+    /**
+     * This method finds the folders with the given IDs.
+     *
+     * @param ids IDs of the folders to be found.
+     * @return Future of the list of the folder records that were found.
+     */
+    CompletableFuture<List<FolderRecord>> findByIds(Collection<UUID> ids);
+
+    /**
+     * This method creates a new folder record.
+     *
+     * @param folderDTO Folder data object to be created in the database.
+     * @return Future of the folder record that was created.
+     */
+    CompletableFuture<FolderRecord> create(FolderDTO folderDTO);
+
+    /**
+     * This method updates a folder record, as long as nobody else changed it since it was read.
+     *
+     * @param folderDTO Folder data object with the new data.
+     * @param expectedChangeCounter Change counter the record must still have.
+     * @return Future completed once the record is updated, it fails with a StaleItemException if the record
+     * was changed or removed in the meantime.
+     */
+    CompletableFuture<Void> update(FolderDTO folderDTO, int expectedChangeCounter);
+
+    /**
+     * This method removes a folder record by ID, along with everything inside it.
+     *
+     * @param id ID of the folder to be removed.
+     * @return Future completed once the record is removed.
+     */
+    CompletableFuture<Void> removeById(UUID id);
+
+    /**
+     * This method flattens a folder on the database server, in a single transaction: every file under its sub folders
+     * is moved into it, renamed to "(n) name" if the name is already taken, and the sub folders are removed.
+     *
+     * @param id ID of the folder to be flattened.
+     * @return Future of the final name of each moved file, mapped by the file ID.
+     */
+    CompletableFuture<Map<UUID, String>> flatten(UUID id);
+}
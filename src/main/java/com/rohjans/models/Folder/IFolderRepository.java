@@ -1,8 +1,12 @@
 package com.rohjans.models.Folder;
 
+import com.rohjans.models.StaleItemException;
 import com.rohjans.public_.tables.records.FolderRecord;
+import org.jooq.Cursor;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -26,6 +30,43 @@ public interface IFolderRepository {
      */
     List<FolderRecord> findAll();
 
+    /**
+     * This method finds the folders directly inside a folder.
+     *
+     * @param parentId ID of the parent folder, or null for the folders on the root.
+     * @return List of the folder records.
+     */
+    List<FolderRecord> findChildren(UUID parentId);
+
+    /**
+     * This method finds the folders with the given IDs.
+     *
+     * @param ids IDs of the folders to be found.
+     * @return List of the folder records that were found.
+     */
+    List<FolderRecord> findByIds(Collection<UUID> ids);
+
+    /**
+     * This method opens a cursor over all the folders in the database, fetching them from the server
+     * a few at a time instead of loading them all into memory.
+     * <p>
+     * Server-side cursors are only used inside a transaction, and the cursor must be closed after use.
+     *
+     * @param fetchSize Amount of records fetched from the server per round trip.
+     * @return Cursor over the folder records.
+     */
+    Cursor<FolderRecord> findAllLazy(int fetchSize);
+
+    /**
+     * This method opens a cursor over the folders that were created or changed by a given transaction or a newer one,
+     * fetching them from the server a few at a time.
+     *
+     * @param sinceTxid Oldest transaction whose folders are returned.
+     * @param fetchSize Amount of records fetched from the server per round trip.
+     * @return Cursor over the folder records.
+     */
+    Cursor<FolderRecord> findChangedSinceLazy(long sinceTxid, int fetchSize);
+
     /**
      * This method creates a new folder record.
      *
@@ -35,11 +76,24 @@ public interface IFolderRepository {
     FolderRecord create(FolderDTO folderDTO);
 
     /**
-     * This method updates an existing folder record in the database.
+     * This method creates or updates multiple folder records in a single statement.
+     *
+     * @param folderDTOS Folder data objects to be created or updated in the database.
+     * @return Folder records as they were stored in the database.
+     */
+    List<FolderRecord> upsertAll(List<FolderDTO> folderDTOS);
+
+    /**
+     * This method updates an existing folder record in the database, as long as nobody else changed it since
+     * it was read, in other words, if its change counter is still the expected one.
+     * <p>
+     * Only the fields that changed are written (plus the change counter).
      *
      * @param folderDTO Folder data object to be updated.
+     * @param expectedChangeCounter Change counter the record must still have.
+     * @throws StaleItemException Will happen if the record was changed or removed in the meantime.
      */
-    void update(FolderDTO folderDTO);
+    void update(FolderDTO folderDTO, int expectedChangeCounter);
 
     /**
      * This method removes a folder by its ID.
@@ -47,4 +101,13 @@ public interface IFolderRepository {
      * @param id ID of the folder to be removed from the database.
      */
     void removeById(UUID id);
+
+    /**
+     * This method flattens a folder on the database server, in a single transaction: every file under its sub folders
+     * is moved into it, renamed to "(n) name" if the name is already taken, and the sub folders are removed.
+     *
+     * @param id ID of the folder to be flattened.
+     * @return Final name of each moved file, mapped by the file ID.
+     */
+    Map<UUID, String> flatten(UUID id);
 }
@@ -0,0 +1,17 @@
+package com.rohjans.models.FolderStats;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * This is a "class" (it's defined as a record) that represents the storage statistics of a folder and everything inside it.
+ *
+ * @param folderId ID of the folder, or null for the whole PFS.
+ * @param totalSize Sum of the size of all the files in the subtree.
+ * @param fileCount Amount of files in the subtree.
+ * @param folderCount Amount of sub folders in the subtree, not counting the folder itself.
+ * @param depth Amount of levels of sub folders below the folder, 0 if it has none.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public record FolderStats(UUID folderId, BigDecimal totalSize, int fileCount, int folderCount, int depth) {}
@@ -0,0 +1,142 @@
+package com.rohjans.models.FolderStats;
+
+import com.rohjans.public_.tables.File;
+import com.rohjans.public_.tables.Folder;
+import com.rohjans.public_.tables.FolderAggregate;
+import com.rohjans.public_.tables.records.FolderAggregateRecord;
+import org.jooq.CommonTableExpression;
+import org.jooq.Condition;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Name;
+import org.jooq.Record2;
+import org.jooq.Record3;
+import org.jooq.Record4;
+import org.jooq.impl.DSL;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Class that represents a Folder Statistics Repository, which interacts with the database.
+ * <p>
+ * The statistics are calculated by the database with a recursive query over the folder hierarchy,
+ * so the tree doesn't need to be loaded to know how much space a folder takes up.
+ * <p>
+ * The usage of each folder is also stored in the folder_aggregate table, which the database triggers keep up to date
+ * by adding the changes of every item to its folder and all of the folder's ancestors.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public class FolderStatsRepository implements IFolderStatsRepository {
+    /**
+     * Database context instance.
+     */
+    private final DSLContext ctx;
+
+    /**
+     * Constructs the instance of the class.
+     *
+     * @param ctx Database context instance.
+     */
+    public FolderStatsRepository(DSLContext ctx) {
+        this.ctx = ctx;
+    }
+
+    /**
+     * This method calculates the statistics of a folder and everything inside it.
+     *
+     * @param folderId ID of the folder, or null for the whole PFS.
+     * @return Statistics of the folder.
+     */
+    @Override
+    public FolderStats findByFolder(UUID folderId) {
+        Name subtree = DSL.name("subtree");
+        Field<UUID> subtreeId = DSL.field(DSL.name("subtree", "id"), UUID.class);
+        Field<Integer> subtreeDepth = DSL.field(DSL.name("subtree", "depth"), Integer.class);
+
+        //The folder itself is level 0, for the whole PFS the root folders are level 1
+        boolean wholePfs = folderId == null;
+        Condition start = wholePfs ? Folder.FOLDER.PARENT.isNull() : Folder.FOLDER.ID.eq(folderId);
+
+        CommonTableExpression<Record2<UUID, Integer>> folders = subtree.fields("id", "depth").as(
+                DSL.select(Folder.FOLDER.ID, DSL.inline(wholePfs ? 1 : 0))
+                        .from(Folder.FOLDER)
+                        .where(start)
+                .unionAll(
+                        DSL.select(Folder.FOLDER.ID, subtreeDepth.plus(1))
+                                .from(Folder.FOLDER)
+                                .join(DSL.table(subtree)).on(Folder.FOLDER.PARENT.eq(subtreeId))));
+
+        //Files on the root don't belong to any folder
+        Condition files = File.FILE.PARENT.in(DSL.select(subtreeId).from(DSL.table(subtree)));
+        if(wholePfs) files = files.or(File.FILE.PARENT.isNull());
+
+        Record4<BigDecimal, Integer, Integer, Integer> stats = ctx
+                .withRecursive(folders)
+                .select(
+                        DSL.coalesce(DSL.sum(File.FILE.FILESIZE), BigDecimal.ZERO),
+                        DSL.count(File.FILE.ID),
+                        DSL.field(DSL.select(DSL.count()).from(DSL.table(subtree))),
+                        DSL.field(DSL.select(DSL.coalesce(DSL.max(subtreeDepth), 0)).from(DSL.table(subtree))))
+                .from(File.FILE)
+                .where(files)
+                .fetchOne();
+
+        //The subtree of a folder includes the folder itself
+        int folderCount = stats.value3() - (wholePfs || stats.value3() == 0 ? 0 : 1);
+
+        return new FolderStats(folderId, stats.value1(), stats.value2(), folderCount, stats.value4());
+    }
+
+    /**
+     * This method reads the stored usage of a folder and everything inside it, without walking the subtree.
+     * <p>
+     * The whole PFS isn't a folder, so its usage is added up from the folders and files on the root.
+     *
+     * @param folderId ID of the folder, or null for the whole PFS.
+     * @return Usage of the folder, or null if the folder doesn't exist.
+     */
+    @Override
+    public FolderUsage findUsage(UUID folderId) {
+        if(folderId != null) {
+            FolderAggregateRecord aggregate = ctx
+                    .selectFrom(FolderAggregate.FOLDER_AGGREGATE)
+                    .where(FolderAggregate.FOLDER_AGGREGATE.FOLDER.eq(folderId))
+                    .fetchOne();
+
+            if(aggregate == null) return null;
+
+            return new FolderUsage(folderId, aggregate.getTotalsize(), aggregate.getFilecount(),
+                    aggregate.getFoldercount(), aggregate.getLastchange());
+        }
+
+        Record4<BigDecimal, BigDecimal, BigDecimal, LocalDateTime> folders = ctx
+                .select(
+                        DSL.coalesce(DSL.sum(FolderAggregate.FOLDER_AGGREGATE.TOTALSIZE), BigDecimal.ZERO),
+                        DSL.coalesce(DSL.sum(FolderAggregate.FOLDER_AGGREGATE.FILECOUNT), BigDecimal.ZERO),
+                        DSL.coalesce(DSL.sum(FolderAggregate.FOLDER_AGGREGATE.FOLDERCOUNT.plus(1)), BigDecimal.ZERO),
+                        DSL.max(FolderAggregate.FOLDER_AGGREGATE.LASTCHANGE))
+                .from(FolderAggregate.FOLDER_AGGREGATE)
+                .join(Folder.FOLDER).on(Folder.FOLDER.ID.eq(FolderAggregate.FOLDER_AGGREGATE.FOLDER))
+                .where(Folder.FOLDER.PARENT.isNull())
+                .fetchOne();
+
+        Record3<BigDecimal, Integer, LocalDateTime> files = ctx
+                .select(
+                        DSL.coalesce(DSL.sum(File.FILE.FILESIZE), BigDecimal.ZERO),
+                        DSL.count(),
+                        DSL.max(DSL.coalesce(File.FILE.CHANGED, File.FILE.CREATED)))
+                .from(File.FILE)
+                .where(File.FILE.PARENT.isNull())
+                .fetchOne();
+
+        LocalDateTime lastChange = folders.value4();
+        if(lastChange == null || (files.value3() != null && files.value3().isAfter(lastChange)))
+            lastChange = files.value3();
+
+        return new FolderUsage(null, folders.value1().add(files.value1()),
+                folders.value2().intValue() + files.value2(), folders.value3().intValue(), lastChange);
+    }
+}
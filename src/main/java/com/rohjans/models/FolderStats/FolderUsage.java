@@ -0,0 +1,19 @@
+package com.rohjans.models.FolderStats;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * This is a "class" (it's defined as a record) that represents the stored usage of a folder and everything inside it,
+ * which the database keeps up to date as items change.
+ *
+ * @param folderId ID of the folder, or null for the whole PFS.
+ * @param totalSize Sum of the size of all the files in the subtree.
+ * @param fileCount Amount of files in the subtree.
+ * @param folderCount Amount of sub folders in the subtree, not counting the folder itself.
+ * @param lastChange Date of the most recent change in the subtree, or null if nothing was ever changed.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public record FolderUsage(UUID folderId, BigDecimal totalSize, int fileCount, int folderCount, LocalDateTime lastChange) {}
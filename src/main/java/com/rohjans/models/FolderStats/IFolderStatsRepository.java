@@ -0,0 +1,26 @@
+package com.rohjans.models.FolderStats;
+
+import java.util.UUID;
+
+/**
+ * Interface that represents a Folder Statistics Repository, which calculates folder usage in the database.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public interface IFolderStatsRepository {
+    /**
+     * This method calculates the statistics of a folder and everything inside it.
+     *
+     * @param folderId ID of the folder, or null for the whole PFS.
+     * @return Statistics of the folder.
+     */
+    FolderStats findByFolder(UUID folderId);
+
+    /**
+     * This method reads the stored usage of a folder and everything inside it, without walking the subtree.
+     *
+     * @param folderId ID of the folder, or null for the whole PFS.
+     * @return Usage of the folder, or null if the folder doesn't exist.
+     */
+    FolderUsage findUsage(UUID folderId);
+}
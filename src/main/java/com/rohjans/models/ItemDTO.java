@@ -1,11 +1,15 @@
 package com.rohjans.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import com.rohjans.utils.DBEngine;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -44,6 +48,17 @@ public class ItemDTO implements Serializable {
      */
     private int changeCounter;
 
+    /**
+     * Change counter the item has in the database, as far as this client knows. Updates are only applied
+     * while the database still has it, so changes made by other clients aren't overwritten.
+     */
+    private int storedChangeCounter;
+
+    /**
+     * Fields changed since the item was loaded (or last queued to be written), so updates only write those.
+     */
+    private final EnumSet<TrackedField> dirtyFields = EnumSet.noneOf(TrackedField.class);
+
 
     /*
     * Constructors
@@ -74,6 +89,7 @@ public class ItemDTO implements Serializable {
         this.created = created;
         this.changed = changed;
         this.changeCounter = changeCounter;
+        this.storedChangeCounter = changeCounter;
     }
 
 
@@ -110,12 +126,63 @@ public class ItemDTO implements Serializable {
     /**
      * This method increments the change counter.
      */
-    public void incrementCounter() { this.changeCounter++; }
+    public void incrementCounter() {
+        this.changeCounter++;
+        markDirty(TrackedField.CHANGE_COUNTER);
+    }
 
     /**
      * This method updates the changed date with the current date and time.
      */
-    public void updateChanged() { this.changed = LocalDateTime.now(); }
+    public void updateChanged() {
+        this.changed = LocalDateTime.now();
+        markDirty(TrackedField.CHANGED);
+    }
+
+    /**
+     * This method marks a field as changed, so it's written by the next update.
+     *
+     * @param field Field that changed.
+     */
+    protected void markDirty(TrackedField field) {
+        dirtyFields.add(field);
+    }
+
+    /**
+     * This method marks fields as changed, so they are written by the next update.
+     *
+     * @param fields Fields that changed.
+     */
+    public void markDirty(Set<TrackedField> fields) {
+        dirtyFields.addAll(fields);
+    }
+
+    /**
+     * This method forgets the changed fields, once they were handed to an update.
+     */
+    public void markClean() {
+        dirtyFields.clear();
+    }
+
+    /**
+     * This method gets the fields changed since the item was loaded (or last marked clean).
+     *
+     * @return The changed fields.
+     */
+    @JsonIgnore
+    public Set<TrackedField> getDirtyFields() {
+        return Collections.unmodifiableSet(EnumSet.copyOf(dirtyFields));
+    }
+
+    /**
+     * This method checks if a field changed since the item was loaded (or last marked clean).
+     *
+     * @param field Field to be checked.
+     * @return True if the field changed, otherwise false.
+     */
+    public boolean isDirty(TrackedField field) {
+        return dirtyFields.contains(field);
+    }
 
 
     /*
@@ -156,6 +223,7 @@ public class ItemDTO implements Serializable {
      */
     public void setParent(UUID parent) {
         this.parent = parent;
+        markDirty(TrackedField.PARENT);
     }
 
     /**
@@ -175,6 +243,7 @@ public class ItemDTO implements Serializable {
      */
     public void setName(String name) {
         this.name.setValue(name);
+        markDirty(TrackedField.NAME);
         this.updateChanged();
         this.incrementCounter();
     }
@@ -204,6 +273,7 @@ public class ItemDTO implements Serializable {
      */
     public void setCreated(LocalDateTime created) {
         this.created = created;
+        markDirty(TrackedField.CREATED);
     }
 
     /**
@@ -222,6 +292,7 @@ public class ItemDTO implements Serializable {
      */
     public void setChanged(LocalDateTime changed) {
         this.changed = changed;
+        markDirty(TrackedField.CHANGED);
     }
 
     /**
@@ -240,6 +311,88 @@ public class ItemDTO implements Serializable {
      */
     public void setChangeCounter(int changeCounter) {
         this.changeCounter = changeCounter;
+        markDirty(TrackedField.CHANGE_COUNTER);
     }
 
+    /**
+     * Getter for the change counter the item has in the database, as far as this client knows.
+     *
+     * @return Item's stored change counter.
+     */
+    @JsonIgnore
+    public int getStoredChangeCounter() {
+        return storedChangeCounter;
+    }
+
+    /**
+     * Setter for the change counter the item has in the database.
+     *
+     * @param storedChangeCounter Item's stored change counter.
+     */
+    @JsonIgnore
+    public void setStoredChangeCounter(int storedChangeCounter) {
+        this.storedChangeCounter = storedChangeCounter;
+    }
+
+
+    /**
+     * This is an enum that represents the fields of an item that are written to the database, so the changed
+     * ones can be tracked.
+     */
+    public enum TrackedField {
+        /**
+         * ID of the item's parent.
+         */
+        PARENT,
+
+        /**
+         * Name of the item.
+         */
+        NAME,
+
+        /**
+         * Creation date of the item.
+         */
+        CREATED,
+
+        /**
+         * Changed date of the item.
+         */
+        CHANGED,
+
+        /**
+         * Change counter of the item.
+         */
+        CHANGE_COUNTER,
+
+        /**
+         * Extension of a file.
+         */
+        EXTENSION,
+
+        /**
+         * Locked state of a file.
+         */
+        LOCKED,
+
+        /**
+         * Size of a file.
+         */
+        FILESIZE,
+
+        /**
+         * Importance of a file.
+         */
+        IMPORTANCE,
+
+        /**
+         * Password hash of a file.
+         */
+        PASSWORD,
+
+        /**
+         * Content of a file.
+         */
+        CONTENT
+    }
 }
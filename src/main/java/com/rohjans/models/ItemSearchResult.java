@@ -0,0 +1,15 @@
+package com.rohjans.models;
+
+import java.util.UUID;
+
+/**
+ * This is a "class" (it's defined as a record) that represents an item found by a search on the database,
+ * which may not be loaded on the tree yet.
+ *
+ * @param id ID of the item.
+ * @param parent ID of the folder the item is in, or null if it's on the root.
+ * @param path Path of the item from the root, like "/folder/file".
+ *
+ * @author Raul Rohjans 202100518
+ */
+public record ItemSearchResult(UUID id, UUID parent, String path) {}
@@ -0,0 +1,69 @@
+package com.rohjans.models;
+
+import java.util.UUID;
+
+/**
+ * This is an exception thrown when an item is updated based on a version the database no longer has, because
+ * another client changed or removed it in the meantime.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public class StaleItemException extends RuntimeException {
+    /**
+     * ID of the item.
+     */
+    private final UUID id;
+
+    /**
+     * Change counter the update expected the item to have.
+     */
+    private final int expectedChangeCounter;
+
+    /**
+     * If the item no longer exists.
+     */
+    private final boolean removed;
+
+    /**
+     * Constructs the exception.
+     *
+     * @param id ID of the item.
+     * @param expectedChangeCounter Change counter the update expected the item to have.
+     * @param removed If the item no longer exists.
+     */
+    public StaleItemException(UUID id, int expectedChangeCounter, boolean removed) {
+        super(removed
+                ? "Item " + id + " was removed by another client"
+                : "Item " + id + " was changed by another client since version " + expectedChangeCounter);
+        this.id = id;
+        this.expectedChangeCounter = expectedChangeCounter;
+        this.removed = removed;
+    }
+
+    /**
+     * Getter for the ID of the item.
+     *
+     * @return ID of the item.
+     */
+    public UUID getId() {
+        return id;
+    }
+
+    /**
+     * Getter for the change counter the update expected the item to have.
+     *
+     * @return The expected change counter.
+     */
+    public int getExpectedChangeCounter() {
+        return expectedChangeCounter;
+    }
+
+    /**
+     * This method checks if the item no longer exists.
+     *
+     * @return True if the item was removed, otherwise false.
+     */
+    public boolean isRemoved() {
+        return removed;
+    }
+}
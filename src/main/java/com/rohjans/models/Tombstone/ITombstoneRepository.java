@@ -0,0 +1,20 @@
+package com.rohjans.models.Tombstone;
+
+import com.rohjans.public_.tables.records.TombstoneRecord;
+import org.jooq.Cursor;
+
+/**
+ * Interface that represents a Tombstone Repository class, which reads the log of deleted items.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public interface ITombstoneRepository {
+    /**
+     * This method opens a cursor over the deletions made by a given transaction or a newer one.
+     *
+     * @param sinceTxid Oldest transaction whose deletions are returned.
+     * @param fetchSize Amount of records fetched from the server per round trip.
+     * @return Cursor over the tombstone records, in the order they were deleted.
+     */
+    Cursor<TombstoneRecord> findSinceLazy(long sinceTxid, int fetchSize);
+}
@@ -0,0 +1,46 @@
+package com.rohjans.models.Tombstone;
+
+import com.rohjans.public_.tables.Tombstone;
+import com.rohjans.public_.tables.records.TombstoneRecord;
+import org.jooq.Cursor;
+import org.jooq.DSLContext;
+
+/**
+ * Class that represents a Tombstone Repository, which reads the log of deleted items.
+ * <p>
+ * The log is filled by database triggers whenever a file or folder is deleted.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public class TombstoneRepository implements ITombstoneRepository {
+    /**
+     * Database context instance.
+     */
+    private final DSLContext ctx;
+
+    /**
+     * Constructs the instance of the class.
+     *
+     * @param ctx Database context instance.
+     */
+    public TombstoneRepository(DSLContext ctx) {
+        this.ctx = ctx;
+    }
+
+    /**
+     * This method opens a cursor over the deletions made by a given transaction or a newer one.
+     *
+     * @param sinceTxid Oldest transaction whose deletions are returned.
+     * @param fetchSize Amount of records fetched from the server per round trip.
+     * @return Cursor over the tombstone records, in the order they were deleted.
+     */
+    @Override
+    public Cursor<TombstoneRecord> findSinceLazy(long sinceTxid, int fetchSize) {
+        return ctx
+            .selectFrom(Tombstone.TOMBSTONE)
+            .where(Tombstone.TOMBSTONE.DELETETXID.ge(sinceTxid))
+            .orderBy(Tombstone.TOMBSTONE.SEQ)
+            .fetchSize(fetchSize)
+            .fetchLazy();
+    }
+}
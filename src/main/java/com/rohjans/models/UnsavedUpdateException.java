@@ -0,0 +1,50 @@
+package com.rohjans.models;
+
+/**
+ * This is an exception thrown when a queued update to an item could not be written for a reason other than a
+ * conflict, carrying the update so its changes can be written again by the next one.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public class UnsavedUpdateException extends RuntimeException {
+    /**
+     * Item as it was when the update was queued, with the fields the update had to write marked as changed.
+     */
+    private final ItemDTO update;
+
+    /**
+     * Change counter the update expected the item to have.
+     */
+    private final int expectedChangeCounter;
+
+    /**
+     * Constructs the exception.
+     *
+     * @param update Item as it was when the update was queued.
+     * @param expectedChangeCounter Change counter the update expected the item to have.
+     * @param cause Exception that made the update fail.
+     */
+    public UnsavedUpdateException(ItemDTO update, int expectedChangeCounter, Throwable cause) {
+        super("Could not save the changes to " + update.getName() + ": " + cause.getMessage(), cause);
+        this.update = update;
+        this.expectedChangeCounter = expectedChangeCounter;
+    }
+
+    /**
+     * Getter for the item as it was when the update was queued.
+     *
+     * @return The item of the update.
+     */
+    public ItemDTO getUpdate() {
+        return update;
+    }
+
+    /**
+     * Getter for the change counter the update expected the item to have.
+     *
+     * @return The expected change counter.
+     */
+    public int getExpectedChangeCounter() {
+        return expectedChangeCounter;
+    }
+}
@@ -0,0 +1,17 @@
+package com.rohjans.models;
+
+/**
+ * This is a "class" (it's defined as a record) that represents a snapshot of the write-behind queue state.
+ *
+ * @param queueDepth Amount of writes waiting to be flushed.
+ * @param flushedWrites Amount of writes committed since the queue was started.
+ * @param coalescedWrites Amount of writes that replaced a pending write to the same item instead of being queued.
+ * @param failedWrites Amount of writes that could not be committed.
+ * @param flushes Amount of batches committed.
+ * @param avgFlushLatencyMs Average time (in milliseconds) between a batch's oldest write being queued and its commit.
+ * @param maxFlushLatencyMs Longest time (in milliseconds) between a batch's oldest write being queued and its commit.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public record WriteQueueStats(int queueDepth, long flushedWrites, long coalescedWrites, long failedWrites,
+                              long flushes, double avgFlushLatencyMs, double maxFlushLatencyMs) {}
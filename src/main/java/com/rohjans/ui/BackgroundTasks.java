@@ -0,0 +1,196 @@
+package com.rohjans.ui;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import com.rohjans.utils.Helpers;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * This class keeps track of the database work a view is waiting for, and brings the results back
+ * to the JavaFX application thread.
+ * <p>
+ * It must only be used from the JavaFX application thread.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public class BackgroundTasks {
+    /**
+     * Tasks that didn't finish yet.
+     */
+    private final Set<CompletableFuture<?>> running = new HashSet<>();
+
+    /**
+     * If there are tasks that didn't finish yet, meant for busy indicators.
+     */
+    private final ReadOnlyBooleanWrapper busy = new ReadOnlyBooleanWrapper(false);
+
+    /**
+     * This method tracks a task and hands its result to the JavaFX application thread once it finishes.
+     * <p>
+     * Failures are shown in an error dialog, cancelled tasks are just dropped.
+     *
+     * @param task Task running in the background.
+     * @param onSuccess Action that gets the result, run on the JavaFX application thread.
+     * @return A future completed on the JavaFX application thread after the action ran,
+     * cancelling it cancels the task.
+     * @param <T> Type of the result of the task.
+     */
+    public <T> CompletableFuture<T> run(CompletableFuture<T> task, Consumer<T> onSuccess) {
+        running.add(task);
+        busy.set(true);
+
+        CompletableFuture<T> handled = task.whenCompleteAsync((result, e) -> {
+            running.remove(task);
+            busy.set(!running.isEmpty());
+
+            if(e == null) onSuccess.accept(result);
+            else if(!(unwrap(e) instanceof CancellationException)) Helpers.showErrorDialog(unwrap(e));
+        }, Platform::runLater);
+
+        //Cancelling what the caller holds has to reach the task
+        handled.whenComplete((result, e) -> {
+            if(handled.isCancelled()) task.cancel(false);
+        });
+
+        return handled;
+    }
+
+    /**
+     * This method starts a task made of several steps, tracks it and hands its result to the JavaFX application
+     * thread once it finishes.
+     * <p>
+     * Cancelling a composed future only cancels its last step, the earlier ones would still run and hit the database.
+     * The steps wrapped with {@link Cancellation#guard(Function)} are skipped instead once the task is cancelled.
+     *
+     * @param steps Function that starts the task, given the cancellation of the task to guard its steps with.
+     * @param onSuccess Action that gets the result, run on the JavaFX application thread.
+     * @return A future completed on the JavaFX application thread after the action ran,
+     * cancelling it cancels the task.
+     * @param <T> Type of the result of the task.
+     */
+    public <T> CompletableFuture<T> run(Function<Cancellation, CompletableFuture<T>> steps, Consumer<T> onSuccess) {
+        Cancellation cancellation = new Cancellation();
+        CompletableFuture<T> task = steps.apply(cancellation);
+
+        task.whenComplete((result, e) -> {
+            if(task.isCancelled()) cancellation.cancelled = true;
+        });
+
+        return run(task, onSuccess);
+    }
+
+    /**
+     * This method starts a task made of several steps, tracks it and hands its result to the JavaFX application
+     * thread once it finishes.
+     *
+     * @param steps Function that starts the task, given the cancellation of the task to guard its steps with.
+     * @return A future completed on the JavaFX application thread, cancelling it cancels the task.
+     * @param <T> Type of the result of the task.
+     */
+    public <T> CompletableFuture<T> run(Function<Cancellation, CompletableFuture<T>> steps) {
+        return run(steps, result -> {});
+    }
+
+    /**
+     * This method tracks a task and hands its result to the JavaFX application thread once it finishes.
+     *
+     * @param task Task running in the background.
+     * @return A future completed on the JavaFX application thread, cancelling it cancels the task.
+     * @param <T> Type of the result of the task.
+     */
+    public <T> CompletableFuture<T> run(CompletableFuture<T> task) {
+        return run(task, result -> {});
+    }
+
+    /**
+     * This method cancels every task that didn't finish yet.
+     * <p>
+     * Tasks still waiting for a database thread never start, and neither do the guarded steps of tasks
+     * made of several steps. The steps already running finish on their own but their results are dropped.
+     */
+    public void cancelAll() {
+        for(CompletableFuture<?> task : new ArrayList<>(running))
+            task.cancel(false);
+    }
+
+    /**
+     * This method checks if there are tasks that didn't finish yet.
+     *
+     * @return True if something is running in the background, otherwise false.
+     */
+    public boolean isBusy() {
+        return busy.get();
+    }
+
+    /**
+     * This method gets the property that tells if there are tasks that didn't finish yet.
+     *
+     * @return The busy property.
+     */
+    public ReadOnlyBooleanProperty busyProperty() {
+        return busy.getReadOnlyProperty();
+    }
+
+    /**
+     * This method gets the actual exception from the wrappers added by the futures.
+     *
+     * @param e Exception thrown by a future.
+     * @return The exception that made the task fail.
+     */
+    private static Throwable unwrap(Throwable e) {
+        while(e instanceof CompletionException && e.getCause() != null) e = e.getCause();
+
+        return e;
+    }
+
+    /**
+     * This is a class that tells the steps of a task whether it was cancelled, so they don't start.
+     */
+    public static final class Cancellation {
+        /**
+         * If the task was cancelled.
+         */
+        private volatile boolean cancelled;
+
+        /**
+         * Constructs the cancellation, only tasks create them.
+         */
+        private Cancellation() {
+        }
+
+        /**
+         * This method checks if the task was cancelled, for long steps that can stop halfway.
+         *
+         * @return True if the task was cancelled, otherwise false.
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * This method wraps a step of the task, so it is skipped (failing with a cancellation) if the task
+         * was cancelled before it started.
+         *
+         * @param step Step to be guarded.
+         * @return The guarded step.
+         * @param <U> Type of the input of the step.
+         * @param <V> Type of the result of the step.
+         */
+        public <U, V> Function<U, CompletableFuture<V>> guard(Function<U, CompletableFuture<V>> step) {
+            return input -> {
+                if(cancelled) return CompletableFuture.failedFuture(new CancellationException());
+
+                return step.apply(input);
+            };
+        }
+    }
+}
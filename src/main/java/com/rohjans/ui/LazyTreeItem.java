@@ -0,0 +1,164 @@
+package com.rohjans.ui;
+
+import javafx.collections.ObservableList;
+import javafx.scene.Node;
+import javafx.scene.control.TreeItem;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * This class is a tree item that only loads its children the first time they are needed, which is usually
+ * when the user expands it, so the tree only holds the items that were actually visited.
+ * <p>
+ * Until then, the amount of children stored with the item is used to tell if it can be expanded.
+ * <p>
+ * The children are always loaded in the background, and the item shows no children until they arrive.
+ * Anything that changes the children has to wait for them with {@link #loadChildren()}, otherwise
+ * it would only see (and change) the empty list that is replaced once they arrive.
+ *
+ * @param <T> Type of the value of the tree item.
+ * @author Raul Rohjans 202100518
+ */
+public class LazyTreeItem<T> extends TreeItem<T> {
+    /**
+     * Function that loads the children of the item in the background.
+     * The future must complete on the JavaFX application thread.
+     */
+    private final Supplier<CompletableFuture<List<TreeItem<T>>>> childLoader;
+
+    /**
+     * Future of the children being loaded in the background, or null if there is no load running.
+     */
+    private CompletableFuture<ObservableList<TreeItem<T>>> loading;
+
+    /**
+     * Amount of children the item had when it was loaded, or a negative number if unknown.
+     */
+    private int childCount;
+
+    /**
+     * If the children were already loaded.
+     */
+    private boolean childrenLoaded;
+
+    /**
+     * Constructs the tree item without loading its children, which are loaded in the background when
+     * the item is expanded or they are first needed.
+     *
+     * @param value Value of the tree item.
+     * @param graphic Icon of the tree item.
+     * @param childCount Amount of children of the item, or a negative number if unknown.
+     * @param childLoader Function that loads the children of the item in the background, its future
+     *                    must complete on the JavaFX application thread.
+     */
+    public LazyTreeItem(T value, Node graphic, int childCount, Supplier<CompletableFuture<List<TreeItem<T>>>> childLoader) {
+        super(value, graphic);
+        this.childCount = childCount;
+        this.childLoader = childLoader;
+
+        //The tree only asks for the children of expanded items, so they can be fetched before it does
+        expandedProperty().addListener((obs, wasExpanded, expanded) -> {
+            if(expanded) loadChildren();
+        });
+    }
+
+    /**
+     * This method gets the children of the item, starting to load them in the background if it's the first time
+     * they are needed. While they are being loaded, no children are returned.
+     * <p>
+     * Anything that changes the children has to wait for them with {@link #loadChildren()} instead.
+     *
+     * @return The children of the item.
+     */
+    @Override
+    public ObservableList<TreeItem<T>> getChildren() {
+        if(!childrenLoaded) loadChildren();
+
+        return super.getChildren();
+    }
+
+    /**
+     * This method gets the children of the item once they are loaded, starting to load them in the background
+     * if they weren't loaded and aren't being loaded.
+     * <p>
+     * If the load fails or is cancelled, the future fails too and the item is collapsed so it can be
+     * expanded again to retry.
+     *
+     * @return Future of the children, completed on the JavaFX application thread (or right away if
+     * they were already loaded).
+     */
+    public CompletableFuture<ObservableList<TreeItem<T>>> loadChildren() {
+        if(childrenLoaded) return CompletableFuture.completedFuture(super.getChildren());
+        if(loading != null) return loading;
+
+        CompletableFuture<ObservableList<TreeItem<T>>> loaded = new CompletableFuture<>();
+        loading = loaded;
+
+        childLoader.get().whenComplete((children, e) -> {
+            //The children were replaced meanwhile, those are the ones that count
+            if(loading != loaded) {
+                loaded.complete(super.getChildren());
+                return;
+            }
+            loading = null;
+
+            if(e != null) {
+                setExpanded(false);
+                loaded.completeExceptionally(e);
+                return;
+            }
+
+            childrenLoaded = true;
+            super.getChildren().setAll(children);
+            loaded.complete(super.getChildren());
+        });
+
+        return loaded;
+    }
+
+    /**
+     * This method checks if the item has no children, without loading them.
+     *
+     * @return True if the item has no children, otherwise false.
+     */
+    @Override
+    public boolean isLeaf() {
+        if(childrenLoaded) return super.getChildren().isEmpty();
+        if(loading != null) return false;
+
+        return childCount == 0;
+    }
+
+    /**
+     * This method replaces the children of the item with the given ones, without loading them first.
+     * A load running in the background is dropped, whoever waits for it gets the given children.
+     *
+     * @param children New children of the item.
+     */
+    public void replaceChildren(List<TreeItem<T>> children) {
+        childrenLoaded = true;
+        loading = null;
+        super.getChildren().setAll(children);
+    }
+
+    /**
+     * This method changes the amount of children used to tell if the item can be expanded before they are loaded,
+     * for when they changed somewhere else.
+     *
+     * @param childCount Amount of children of the item, or a negative number if unknown.
+     */
+    public void setChildCount(int childCount) {
+        this.childCount = childCount;
+    }
+
+    /**
+     * This method checks if the children of the item were already loaded.
+     *
+     * @return True if the children are loaded, otherwise false.
+     */
+    public boolean isChildrenLoaded() {
+        return childrenLoaded;
+    }
+}
@@ -0,0 +1,283 @@
+package com.rohjans.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rohjans.models.ChangeEvent;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * This is a class that listens on a background thread for the changes the database publishes, so the application
+ * can keep what it shows up to date with the changes made by other clients.
+ * <p>
+ * It holds a connection of its own, outside the connection pool, since the subscription belongs to the connection.
+ * If the connection is lost it keeps reconnecting, and once it's back a reload event is delivered,
+ * since the changes made in the meantime were missed.
+ * <p>
+ * A listener that fails doesn't drop the connection, it gets a reload event instead, since what it was
+ * handling is lost.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public class ChangeFeed implements AutoCloseable {
+    /**
+     * Logger of the feed events.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeFeed.class);
+
+    /**
+     * Channel the database publishes the changes on.
+     */
+    public static final String CHANNEL = "pfs_changes";
+
+    /**
+     * Time (in milliseconds) the background thread waits for notifications before checking if it should stop.
+     */
+    private static final int POLL_TIMEOUT_MS = 1000;
+
+    /**
+     * Time (in milliseconds) waited before the first reconnection attempt, doubled after each failure.
+     */
+    private static final long MIN_RETRY_DELAY_MS = 500;
+
+    /**
+     * Longest time (in milliseconds) waited between reconnection attempts.
+     */
+    private static final long MAX_RETRY_DELAY_MS = 30_000;
+
+    /**
+     * Function that opens the connection the feed listens on.
+     */
+    private final ConnectionFactory connectionFactory;
+
+    /**
+     * Parser for the notification payloads.
+     */
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Listener notified (on the background thread) with the changes of each round of notifications, in order.
+     */
+    private volatile Consumer<List<ChangeEvent>> listener;
+
+    /**
+     * Connection currently being listened on, closed to wake the background thread up when stopping.
+     */
+    private volatile Connection connection;
+
+    /**
+     * If the feed was stopped.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Thread that waits for the notifications.
+     */
+    private final Thread worker;
+
+    /**
+     * Constructs the feed and starts its background thread.
+     *
+     * @param connectionFactory Function that opens the connection the feed listens on.
+     * @param listener Listener notified (on the background thread) with the changes of each round of notifications.
+     */
+    public ChangeFeed(ConnectionFactory connectionFactory, Consumer<List<ChangeEvent>> listener) {
+        this.connectionFactory = connectionFactory;
+        this.listener = listener;
+
+        worker = new Thread(this::run, "pfs-change-feed");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * This method replaces the listener notified (on the background thread) with the changes.
+     *
+     * @param listener New change listener.
+     */
+    public void setListener(Consumer<List<ChangeEvent>> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * This method stops listening and closes the connection.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        closeConnection();
+
+        try {
+            worker.join(POLL_TIMEOUT_MS * 2L);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * This method is the loop of the background thread, which subscribes to the channel and hands the
+     * notifications to the listener until the feed is closed.
+     */
+    private void run() {
+        long retryDelay = MIN_RETRY_DELAY_MS;
+        boolean missedChanges = false;
+
+        while(!closed) {
+            try {
+                connection = connectionFactory.open();
+                try(Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+
+                //Whatever changed while there was no connection has to be picked up by reloading
+                if(missedChanges) deliver(List.of(ChangeEvent.reload()));
+                missedChanges = false;
+                retryDelay = MIN_RETRY_DELAY_MS;
+
+                while(!closed) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+                    if(notifications == null || notifications.length == 0) continue;
+
+                    List<ChangeEvent> events = new ArrayList<>();
+                    for(PGNotification notification : notifications)
+                        if(CHANNEL.equals(notification.getName())) events.addAll(parse(notification.getParameter()));
+
+                    if(!events.isEmpty()) deliver(events);
+                }
+            }
+            catch (SQLException | RuntimeException e) {
+                if(closed) break;
+
+                LOGGER.warn("Lost the change feed connection, retrying in {}ms", retryDelay, e);
+                missedChanges = true;
+                sleep(retryDelay);
+                retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY_MS);
+            }
+            finally {
+                closeConnection();
+            }
+        }
+    }
+
+    /**
+     * This method hands events to the listener. A failing listener mustn't stop the feed, but what it was handling
+     * is lost, so it gets a reload event instead (once, so a listener that keeps failing doesn't loop).
+     *
+     * @param events Events to be handed to the listener.
+     */
+    private void deliver(List<ChangeEvent> events) {
+        try {
+            listener.accept(events);
+        }
+        catch (RuntimeException e) {
+            LOGGER.warn("Change listener failed", e);
+            if(events.size() == 1 && events.get(0).op() == ChangeEvent.Op.RELOAD) return;
+
+            try {
+                listener.accept(List.of(ChangeEvent.reload()));
+            }
+            catch (RuntimeException reloadException) {
+                LOGGER.warn("Change listener failed to reload", reloadException);
+            }
+        }
+    }
+
+    /**
+     * This method parses the payload of a notification, which is a JSON array of events.
+     * <p>
+     * A payload that can't be understood is turned into a reload event, so nothing is missed.
+     *
+     * @param payload Payload of the notification.
+     * @return The events in the payload.
+     */
+    private List<ChangeEvent> parse(String payload) {
+        List<ChangeEvent> events = new ArrayList<>();
+
+        try {
+            for(JsonNode node : mapper.readTree(payload)) {
+                ChangeEvent.Op op = ChangeEvent.Op.valueOf(node.path("op").asText().toUpperCase(Locale.ROOT));
+                if(op == ChangeEvent.Op.RELOAD) return List.of(ChangeEvent.reload());
+
+                events.add(new ChangeEvent(op, node.path("kind").asText(), parseId(node.get("id")),
+                        parseId(node.get("parent")), node.path("version").asInt()));
+            }
+        }
+        catch (JsonProcessingException | IllegalArgumentException e) {
+            LOGGER.warn("Unreadable change notification: {}", payload);
+            return List.of(ChangeEvent.reload());
+        }
+
+        return events;
+    }
+
+    /**
+     * This method parses an ID from an event field.
+     *
+     * @param node Field with the ID.
+     * @return The ID, or null if the field is missing or null.
+     */
+    private static UUID parseId(JsonNode node) {
+        return node == null || node.isNull() ? null : UUID.fromString(node.asText());
+    }
+
+    /**
+     * This method closes the connection being listened on, if any.
+     */
+    private void closeConnection() {
+        Connection current = connection;
+        connection = null;
+        if(current == null) return;
+
+        try {
+            current.close();
+        }
+        catch (SQLException ignored) {
+            //The connection is being dropped anyway
+        }
+    }
+
+    /**
+     * This method waits before reconnecting, returning early if the feed is closed.
+     *
+     * @param delayMs Time to wait, in milliseconds.
+     */
+    private void sleep(long delayMs) {
+        long deadline = System.currentTimeMillis() + delayMs;
+
+        try {
+            while(!closed && System.currentTimeMillis() < deadline)
+                Thread.sleep(Math.max(1, Math.min(100, deadline - System.currentTimeMillis())));
+        }
+        catch (InterruptedException e) {
+            closed = true;
+        }
+    }
+
+    /**
+     * This is an interface that represents a function that opens a database connection.
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        /**
+         * This method opens the connection.
+         *
+         * @return The new connection.
+         * @throws SQLException Will happen if the connection cannot be established.
+         */
+        Connection open() throws SQLException;
+    }
+}
@@ -0,0 +1,139 @@
+package com.rohjans.utils;
+
+import com.rohjans.models.DbConfig;
+import com.rohjans.models.DbPoolConfig;
+import com.rohjans.models.DbPoolStats;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.pool.HikariPool;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This is a class that holds the database connection pool, which is shared by the whole application.
+ * <p>
+ * Connections are validated before being handed out, idle connections are evicted after a while
+ * and connections that are borrowed for too long are reported as leaks.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public class ConnectionPool implements AutoCloseable {
+    /**
+     * Underlying pooled data source.
+     */
+    private final HikariDataSource dataSource;
+
+    /**
+     * Amount of connections borrowed since the pool was started.
+     */
+    private final AtomicLong acquiredCount = new AtomicLong();
+
+    /**
+     * Accumulated time spent waiting for connections, in nanoseconds.
+     */
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    /**
+     * Longest time spent waiting for a connection, in nanoseconds.
+     */
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * Amount of times a connection could not be borrowed in time.
+     */
+    private final AtomicLong timeoutCount = new AtomicLong();
+
+    /**
+     * Constructs and starts the connection pool.
+     *
+     * @param url JDBC url of the database.
+     * @param dbConfig Database configuration object with the credentials.
+     * @param poolConfig Connection pool configuration object.
+     * @throws SQLException Happens if the pool cannot open its first connection.
+     */
+    public ConnectionPool(String url, DbConfig dbConfig, DbPoolConfig poolConfig) throws SQLException {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("pfs-pool");
+        config.setJdbcUrl(url);
+        config.setUsername(dbConfig.username());
+        config.setPassword(dbConfig.password());
+        config.setMinimumIdle(poolConfig.minIdle());
+        config.setMaximumPoolSize(poolConfig.maxSize());
+        config.setIdleTimeout(poolConfig.idleTimeoutMs());
+        config.setValidationTimeout(poolConfig.validationTimeoutMs());
+        config.setLeakDetectionThreshold(poolConfig.leakDetectionMs());
+
+        //Collect the wait times ourselves, the pool only exposes the current state
+        config.setMetricsTrackerFactory((poolName, poolStats) -> new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquiredCount.incrementAndGet();
+                totalWaitNanos.addAndGet(elapsedAcquiredNanos);
+                maxWaitNanos.accumulateAndGet(elapsedAcquiredNanos, Math::max);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeoutCount.incrementAndGet();
+            }
+        });
+
+        try {
+            this.dataSource = new HikariDataSource(config);
+        }
+        catch (HikariPool.PoolInitializationException e) {
+            throw new SQLException("Could not start the database connection pool", e);
+        }
+    }
+
+    /**
+     * This method takes a snapshot of the current pool state.
+     *
+     * @return The pool statistics.
+     */
+    public DbPoolStats getStats() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        long acquired = acquiredCount.get();
+
+        return new DbPoolStats(
+                pool.getActiveConnections(),
+                pool.getIdleConnections(),
+                pool.getTotalConnections(),
+                pool.getThreadsAwaitingConnection(),
+                acquired,
+                acquired == 0 ? 0 : totalWaitNanos.get() / (double) acquired / 1_000_000,
+                maxWaitNanos.get() / 1_000_000d,
+                timeoutCount.get()
+        );
+    }
+
+    /**
+     * Getter for the maximum amount of connections the pool can open.
+     *
+     * @return The maximum pool size.
+     */
+    public int getMaxSize() {
+        return dataSource.getMaximumPoolSize();
+    }
+
+    /**
+     * Getter for the pooled data source.
+     *
+     * @return The data source connections are borrowed from.
+     */
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * This method closes every connection in the pool.
+     */
+    @Override
+    public void close() {
+        dataSource.close();
+    }
+}
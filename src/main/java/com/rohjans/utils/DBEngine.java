@@ -1,26 +1,62 @@
 package com.rohjans.utils;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
+import javafx.application.Platform;
+import org.jooq.Cursor;
 import org.jooq.DSLContext;
+import org.jooq.Record;
 import org.jooq.SQLDialect;
-import org.jooq.conf.Settings;
+import org.jooq.TransactionalRunnable;
+import org.jooq.exception.DataAccessException;
 import org.jooq.impl.DSL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import com.rohjans.controllers.DatabaseConfigController;
-import com.rohjans.models.DbBackupData;
 import com.rohjans.models.DbConfig;
-import com.rohjans.models.File.FileMapper;
+import com.rohjans.models.DbPoolConfig;
+import com.rohjans.models.DbPoolStats;
+import com.rohjans.models.WriteQueueStats;
+import com.rohjans.models.Blob.BlobRepository;
 import com.rohjans.models.File.FileRepository;
-import com.rohjans.models.Folder.FolderMapper;
 import com.rohjans.models.Folder.FolderRepository;
+import com.rohjans.models.Tombstone.TombstoneRepository;
+import com.rohjans.public_.tables.Blob;
 import com.rohjans.public_.tables.Folder;
+import com.rohjans.public_.tables.Tombstone;
+import com.rohjans.public_.tables.records.FolderRecord;
+import com.rohjans.public_.tables.records.TombstoneRecord;
+import com.rohjans.utils.backup.BackupHeader;
+import com.rohjans.utils.backup.BackupProgress;
+import com.rohjans.utils.backup.BackupReader;
+import com.rohjans.utils.backup.BackupStreams;
+import com.rohjans.utils.backup.BackupWriter;
+import com.rohjans.utils.backup.BinaryBackupFormat;
+import com.rohjans.utils.backup.BinaryBackupWriter;
+import com.rohjans.utils.backup.CopyBackupEngine;
+import com.rohjans.utils.backup.JsonBackupWriter;
+import com.rohjans.utils.backup.ParallelBackupEngine;
+import com.rohjans.utils.backup.RestoreBatcher;
 
+import javax.sql.DataSource;
 import java.io.*;
+import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 /**
  * This is the class that holds all the database related methods, used to manipulate persistent data.
@@ -28,18 +64,147 @@ import java.util.UUID;
  * @author Raul Rohjans 202100518
  */
 public class DBEngine {
+    /**
+     * Logger of the database related events.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(DBEngine.class);
+
     /**
      * Database configuration object which holds connection data.
      */
     private static DbConfig dbConfig = null;
 
     /**
-     * This method gets a database context instance.
+     * Connection pool shared by every database context in the application.
+     */
+    private static ConnectionPool connectionPool = null;
+
+    /**
+     * Database context instance backed by the connection pool.
+     */
+    private static DSLContext dslContext = null;
+
+    /**
+     * Queue that writes the item updates to the database in the background.
+     */
+    private static WriteBehindQueue writeQueue = null;
+
+    /**
+     * Feed of the changes made to the items by every client.
+     */
+    private static ChangeFeed changeFeed = null;
+
+    /**
+     * JDBC url of the database, known once the connection pool is started.
+     */
+    private static String jdbcUrl = null;
+
+    /**
+     * Executor that runs the asynchronous repository calls.
+     */
+    private static ThreadPoolExecutor dbExecutor = null;
+
+    /**
+     * Executor that logs the database statistics periodically.
+     */
+    private static ScheduledExecutorService statsLogger = null;
+
+    /**
+     * Time (in milliseconds) between two logs of the database statistics, 0 turns them off.
+     */
+    private static final long STATS_LOG_INTERVAL_MS = Long.getLong("pfs.db.statsLogIntervalMs", 300_000L);
+
+    /**
+     * Maximum amount of threads running asynchronous repository calls, limited by the connection pool size.
+     */
+    private static final int DB_EXECUTOR_THREADS = 4;
+
+    /**
+     * Maximum amount of asynchronous repository calls waiting for a thread, further calls are rejected.
+     */
+    private static final int DB_EXECUTOR_QUEUE_SIZE = 100;
+
+    /**
+     * Amount of records fetched per round trip by the backup cursors.
+     */
+    private static final int BACKUP_FETCH_SIZE = 500;
+
+    /**
+     * Amount of items inserted per batch when restoring a backup.
+     */
+    private static final int RESTORE_BATCH_SIZE = 500;
+
+    /**
+     * Maximum amount of backups in an incremental chain, used to detect broken (circular) chains.
+     */
+    private static final int MAX_BACKUP_CHAIN_LENGTH = 10_000;
+
+    /**
+     * Extension of the binary COPY backup archives.
+     */
+    public static final String BULK_BACKUP_EXTENSION = ".copy.zip";
+
+    /**
+     * This method gets the shared database context instance.
+     * <p>
+     * The context doesn't hold a connection of its own, each query borrows one from the
+     * connection pool and gives it back as soon as it's done.
+     * <p>
+     * The first time it's called, the pending schema migrations are applied, and if there were any,
+     * the hot queries are checked against the indexes they are supposed to use. The contents that can't be
+     * searched yet are then indexed in the background.
      *
      * @return The instance of the database connection context.
      * @throws SQLException Happens if the connection to the database cannot be established.
      */
-    public static DSLContext getDslContext() throws SQLException {
+    public static synchronized DSLContext getDslContext() throws SQLException {
+        if(dslContext != null) return dslContext;
+
+        DSLContext ctx = DSL.using(getDataSource(), SQLDialect.POSTGRES);
+
+        //Bring the schema up to date before anything uses it
+        //Query plans only change along with the schema, so they aren't checked on every start
+        if(SchemaMigrator.migrate(ctx) > 0) {
+            for(String problem : SchemaMigrator.checkIndexUsage(ctx))
+                LOGGER.warn(problem);
+        }
+
+        //Contents stored before they could be searched are indexed in the background,
+        //the searches just don't find them until it's done
+        Thread indexer = new Thread(() -> indexContents(ctx), "pfs-content-indexer");
+        indexer.setDaemon(true);
+        indexer.start();
+
+        dslContext = ctx;
+        return dslContext;
+    }
+
+    /**
+     * This method builds the search vector of the stored contents that don't have one yet.
+     *
+     * @param ctx Database context the contents are indexed on.
+     */
+    private static void indexContents(DSLContext ctx) {
+        try {
+            long indexed = new BlobRepository(ctx).indexContents();
+            if(indexed > 0)
+                LOGGER.info("Indexed {} content chunks for searching", indexed);
+        }
+        catch (RuntimeException e) {
+            //Tried again on the next start
+            LOGGER.warn("Could not index the contents for searching", e);
+        }
+    }
+
+    /**
+     * This method gets the pooled data source, starting the connection pool if needed.
+     *
+     * @return The data source connections are borrowed from.
+     * @throws SQLException Happens if the connection to the database cannot be established.
+     */
+    public static synchronized DataSource getDataSource() throws SQLException {
+        if(connectionPool != null) return connectionPool.getDataSource();
+
         loadUserDbConfig(); //Load db config from user
 
         //If the configuration came out empty we exit the program
@@ -47,22 +212,176 @@ public class DBEngine {
         //And at least one of the fields is empty
         if(!validateDbConfig(dbConfig)) System.exit(0);
 
-        String username = dbConfig.username();
-        String password = dbConfig.password();
-        String url = "jdbc:postgresql://" + dbConfig.hostname() + ":" + dbConfig.port()
-                + "/pfs?stringtype=unspecified";
+        jdbcUrl = "jdbc:postgresql://" + dbConfig.hostname() + ":" + dbConfig.port()
+                + "/pfs?stringtype=unspecified&reWriteBatchedInserts=true";
+
+        connectionPool = new ConnectionPool(jdbcUrl, dbConfig, DbPoolConfig.fromSystemProperties());
+        startStatsLogger();
+
+        return connectionPool.getDataSource();
+    }
+
+    /**
+     * This method starts logging the database statistics every {@link #STATS_LOG_INTERVAL_MS} milliseconds,
+     * so pool exhaustion and a write-behind queue falling behind can be spotted in the logs.
+     */
+    private static void startStatsLogger() {
+        if(statsLogger != null || STATS_LOG_INTERVAL_MS <= 0) return;
+
+        statsLogger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pfs-db-stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+        statsLogger.scheduleAtFixedRate(DBEngine::logStats, STATS_LOG_INTERVAL_MS, STATS_LOG_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * This method logs the current database statistics.
+     */
+    private static void logStats() {
+        DbPoolStats poolStats = getPoolStats();
+        if(poolStats != null) LOGGER.info("Connection pool: {}", poolStats);
+
+        WriteQueueStats writeQueueStats = getWriteQueueStats();
+        if(writeQueueStats != null) LOGGER.info("Write-behind queue: {}", writeQueueStats);
+    }
+
+    /**
+     * This method gets the current state of the connection pool.
+     *
+     * @return The pool statistics, or null if the pool wasn't started yet.
+     */
+    public static synchronized DbPoolStats getPoolStats() {
+        if(connectionPool == null) return null;
+
+        return connectionPool.getStats();
+    }
+
+    /**
+     * This method gets the shared write-behind queue, starting it if needed.
+     * <p>
+     * Writes that fail in the background are shown to the user in an error dialog.
+     *
+     * @return The write-behind queue.
+     * @throws SQLException Happens if the connection to the database cannot be established.
+     */
+    public static synchronized WriteBehindQueue getWriteQueue() throws SQLException {
+        if(writeQueue != null) return writeQueue;
+
+        writeQueue = new WriteBehindQueue(getDslContext(), e -> Platform.runLater(() -> Helpers.showErrorDialog(e)));
+        return writeQueue;
+    }
+
+    /**
+     * This method gets the shared change feed, starting it if needed.
+     * <p>
+     * It listens on a connection of its own, so it doesn't hold one of the pool's connections forever.
+     * Changes are dropped until a listener is set.
+     *
+     * @return The change feed.
+     * @throws SQLException Happens if the connection to the database cannot be established.
+     */
+    public static synchronized ChangeFeed getChangeFeed() throws SQLException {
+        if(changeFeed != null) return changeFeed;
+
+        //The schema has to be migrated before its notifications can be listened to
+        getDslContext();
+
+        String url = jdbcUrl;
+        DbConfig config = dbConfig;
+        changeFeed = new ChangeFeed(() -> DriverManager.getConnection(url, config.username(), config.password()),
+                events -> {});
+        return changeFeed;
+    }
+
+    /**
+     * This method gets the shared executor for asynchronous repository calls, starting it if needed.
+     * <p>
+     * It has fewer threads than the connection pool has connections, so its calls can't starve the
+     * write-behind queue, and a bounded queue, so a flood of calls fails fast instead of piling up.
+     *
+     * @return The database executor.
+     * @throws SQLException Happens if the connection to the database cannot be established.
+     */
+    public static synchronized ExecutorService getDbExecutor() throws SQLException {
+        if(dbExecutor != null) return dbExecutor;
+
+        int threads = limitParallelism(DB_EXECUTOR_THREADS);
+        AtomicInteger threadCount = new AtomicInteger();
+
+        dbExecutor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(DB_EXECUTOR_QUEUE_SIZE),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "pfs-db-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        dbExecutor.allowCoreThreadTimeOut(true);
+
+        return dbExecutor;
+    }
+
+    /**
+     * This method gets the current state of the write-behind queue.
+     *
+     * @return The queue statistics, or null if the queue wasn't started yet.
+     */
+    public static synchronized WriteQueueStats getWriteQueueStats() {
+        if(writeQueue == null) return null;
+
+        return writeQueue.getStats();
+    }
+
+    /**
+     * This method waits for the writes queued so far to be committed, so anything that reads the whole
+     * database (like a backup) sees them.
+     */
+    public static void flushPendingWrites() {
+        WriteBehindQueue queue;
+        synchronized (DBEngine.class) {
+            queue = writeQueue;
+        }
+
+        //Not flushed while holding the lock, the queue's writes need the database context
+        if(queue != null) queue.flush();
+    }
+
+    /**
+     * This method flushes the pending writes and closes the connection pool, it should be called when the
+     * application exits. The final database statistics are logged on the way.
+     */
+    public static synchronized void shutdown() {
+        if(statsLogger != null) {
+            statsLogger.shutdownNow();
+            statsLogger = null;
+        }
+
+        if(changeFeed != null) {
+            changeFeed.close();
+            changeFeed = null;
+        }
+
+        //The pending writes still need the pool
+        if(writeQueue != null) {
+            writeQueue.close();
+            LOGGER.info("Write-behind queue at shutdown: {}", writeQueue.getStats());
+            writeQueue = null;
+        }
+
+        //Calls that didn't start yet are dropped, the application is exiting
+        if(dbExecutor != null) {
+            dbExecutor.shutdownNow();
+            dbExecutor = null;
+        }
 
-        /*
-        * These settings are needed to fix an issue with record insertion where
-        * it would try to return the inserted record and fetch its key through the _rowid_ field
-        * but since this field does not exist, and we handle the record id creation on the client, it
-        * has to be turned off to avoid problems
-        * */
-        Settings settings = new Settings();
-        settings.setReturnIdentityOnUpdatableRecord(false);
+        if(connectionPool == null) return;
 
-        Connection conn = DriverManager.getConnection(url, username, password);
-        return DSL.using(conn, SQLDialect.SQLITE, settings);
+        LOGGER.info("Connection pool at shutdown: {}", connectionPool.getStats());
+        connectionPool.close();
+        connectionPool = null;
+        dslContext = null;
     }
 
     /**
@@ -110,85 +429,419 @@ public class DBEngine {
     /**
      * This method is used to back up the current database instance data.
      * <p>
-     * NEEDS REFACTOR
-     *    Jooq doesn't have any utility to back up and restore databases, so we are doing
-     *    this manually by fetching and storing all the files and folders in a file.
-     *    This is going to give a lot of problems if the schema is changed and an "old" backup is imported.
+     * The records are read through server-side cursors and streamed straight into the backup file,
+     * so the memory used stays flat no matter how big the database is.
+     * <p>
+     * The binary format is smaller and faster to write and read than JSON, and carries the layout of its
+     * records so it keeps being readable after the schema changes.
      *
      * @param directory Directory location of the backup file.
+     * @param compress Whether the backup file should be gzip compressed.
+     * @param binary Whether the backup should use the binary format instead of JSON.
+     * @param cancelled Function that tells if the backup was cancelled, which stops it and removes the file.
      * @throws SQLException May happen if connection to the database cannot be established.
-     * @throws IOException Will happen if the file cannot be written to the file system.
+     * @throws IOException Will happen if the file cannot be written to the file system, or the backup was cancelled.
      */
-    public static void backupDbData(String directory) throws SQLException, IOException {
+    public static void backupDbData(String directory, boolean compress, boolean binary, BooleanSupplier cancelled)
+            throws SQLException, IOException {
         if(directory == null || directory.isEmpty()) return;
 
+        writeBackup(new File(directory), "_PFS_BK", binary, compress, null, null, cancelled);
+    }
+
+    /**
+     * This method is used to back up only what changed since a previous backup.
+     * <p>
+     * The new backup holds the items written by the transactions from the previous backup's transaction mark on,
+     * plus the items those deleted, and is saved next to the previous backup since a restore
+     * needs the whole chain. It uses the same format as the previous backup.
+     *
+     * @param previousBackup Last backup of the chain (either the full backup or its last increment).
+     * @param compress Whether the backup file should be gzip compressed.
+     * @param cancelled Function that tells if the backup was cancelled, which stops it and removes the file.
+     * @return True if the backup was written, false otherwise.
+     * @throws SQLException May happen if connection to the database cannot be established.
+     * @throws IOException Will happen if the files cannot be read or written, the previous backup can't be
+     * continued, or the backup was cancelled.
+     */
+    public static boolean incrementalBackupDbData(File previousBackup, boolean compress, BooleanSupplier cancelled)
+            throws SQLException, IOException {
+        if(previousBackup == null || !previousBackup.exists()) return false;
+
+        BackupHeader previous = readBackupHeader(previousBackup);
+        if(previous.txidMark() == 0)
+            throw new IOException("The selected backup was made before the current incremental backups were supported, please make a new full backup first!");
+
+        //The increment uses the same format as the chain, which is told by the contents rather than the name
+        boolean binary = BackupStreams.isBinary(previousBackup);
+
+        return writeBackup(previousBackup.getParentFile(), "_PFS_INC", binary, compress, previousBackup.getName(), previous,
+                cancelled);
+    }
+
+    /**
+     * This method writes a backup file, either full or incremental.
+     * <p>
+     * Everything is read in the same repeatable read transaction, so the backup is a consistent snapshot
+     * and the cursors are allowed to fetch the rows in chunks.
+     * The reason we save the backup as a DTO instead of using Jooq's generated class (FileRecord and FolderRecord)
+     * is because those are not serializable.
+     *
+     * @param directory Directory location of the backup file.
+     * @param suffix Suffix of the backup file name, without the extension.
+     * @param binary Whether the backup should use the binary format instead of JSON.
+     * @param compress Whether the backup file should be gzip compressed.
+     * @param baseName File name of the previous backup, or null for a full backup.
+     * @param previous Header of the previous backup, or null for a full backup.
+     * @param cancelled Function that tells if the backup was cancelled.
+     * @return True if the backup was written.
+     * @throws SQLException May happen if connection to the database cannot be established.
+     * @throws IOException Will happen if the file cannot be written to the file system, or the backup was cancelled.
+     */
+    private static boolean writeBackup(File directory, String suffix, boolean binary, boolean compress,
+                                       String baseName, BackupHeader previous, BooleanSupplier cancelled)
+            throws SQLException, IOException {
+        flushPendingWrites();
         DSLContext ctx = getDslContext();
-        FileRepository fileRepository = new FileRepository(ctx);
-        FolderRepository folderRepository = new FolderRepository(ctx);
-
-        /* Instance backup object
-        * The reason we save the backup as a DTO instead of using Jooq's generated class (FileRecord and FolderRecord)
-        * is because those are not serializable.
-        *
-        * This method creates a lot of overhead and is quite slow if a lot of items are involved, but should be fine
-        * for a small application like this.
-        * */
-        DbBackupData backupData = new DbBackupData(FileMapper.toFileDTO(fileRepository.findAll()),
-                FolderMapper.toFolderDTO(folderRepository.findAll()));
-
-        //Serialize data to JSON
-        ObjectMapper objMapper = new ObjectMapper();
-        objMapper.findAndRegisterModules(); //This is used for TypeHandling
-
-        ObjectWriter ow = objMapper.writer().withDefaultPrettyPrinter();
-        String jsonData = ow.writeValueAsString(backupData);
 
         //Create backup file
-        File backupFile = Paths.get(directory, System.currentTimeMillis() + "_PFS_BK.json").toFile();
+        String fileName = System.currentTimeMillis() + suffix + (binary ? BinaryBackupFormat.EXTENSION : ".json")
+                + (compress ? BackupStreams.GZIP_EXTENSION : "");
+        File backupFile = new File(directory, fileName);
 
-        if(!backupFile.createNewFile()) {
-            Helpers.showErrorDialog("Could not create backup file, it already exists on the choosen path!");
-            return;
-        }
+        if(!backupFile.createNewFile())
+            throw new IOException("Could not create backup file, it already exists on the choosen path!");
+
+        try {
+            runTransaction(ctx, cfg -> {
+                DSLContext tx = cfg.dsl();
+                tx.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ");
 
-        //Write json string to file
-        FileWriter writer = new FileWriter(backupFile);
-        writer.write(jsonData);
-        writer.close();
+                FileRepository fileRepository = new FileRepository(tx);
+                FolderRepository folderRepository = new FolderRepository(tx);
+                TombstoneRepository tombstoneRepository = new TombstoneRepository(tx);
+
+                /*
+                * The mark is the oldest transaction still running when the snapshot was taken (it's the first query),
+                * everything older is in the snapshot. Transaction ids come from the server, so unlike the change dates
+                * set by the clients, a change can't be missed because of a clock running behind.
+                */
+                long since = previous == null ? 0 : previous.txidMark();
+                long txidMark = tx.fetchValue("SELECT txid_snapshot_xmin(txid_current_snapshot())", Long.class);
+
+                //Only happens if the database was recreated or restored, the chain can't continue from it
+                if(txidMark < since)
+                    throw new IOException("The database changed since the previous backup was made, please make a new full backup!");
+
+                BackupHeader header = previous == null
+                        ? new BackupHeader(BackupHeader.FULL, null, 0, txidMark, LocalDateTime.now())
+                        : new BackupHeader(BackupHeader.INCREMENTAL, baseName, since, txidMark, LocalDateTime.now());
+
+                try(OutputStream out = BackupStreams.openOutput(backupFile, compress, cancelled);
+                    BackupWriter writer = binary ? new BinaryBackupWriter(out) : new JsonBackupWriter(out);
+                    Cursor<FolderRecord> folders = previous == null ? folderRepository.findAllLazy(BACKUP_FETCH_SIZE)
+                            : folderRepository.findChangedSinceLazy(since, BACKUP_FETCH_SIZE);
+                    Cursor<Record> files = previous == null ? fileRepository.findAllLazy(BACKUP_FETCH_SIZE)
+                            : fileRepository.findChangedSinceLazy(since, BACKUP_FETCH_SIZE)) {
+                    writer.writeHeader(header);
+                    writer.writeFolders(folders);
+                    writer.writeFiles(files);
+
+                    if(header.isIncremental()) {
+                        try(Cursor<TombstoneRecord> tombstones = tombstoneRepository.findSinceLazy(since, BACKUP_FETCH_SIZE)) {
+                            writer.writeDeleted(tombstones);
+                        }
+                    }
+                }
+            });
+
+            return true;
+        }
+        catch (IOException | RuntimeException e) {
+            //Don't leave a truncated backup behind
+            Files.deleteIfExists(backupFile.toPath());
+            throw e;
+        }
     }
 
     /**
      * This method is used to restore the database state from a backup file.
      * <p>
-     * NEEDS REFACTOR
-     *    Jooq doesn't have any utility to back up and restore databases, so we are doing
-     *    this manually by fetching and storing all the files and folders in a file.
-     *    This is going to give a lot of problems if the schema is changed and an "old" backup is imported.
+     * If the file is an incremental backup, the whole chain is restored: first the full backup it builds on,
+     * then every increment in order.
+     * The backups are parsed one item at a time and written in fixed-size batches, all inside a single
+     * transaction, so the memory used doesn't depend on the backup size and a failure leaves the
+     * current data untouched.
+     * <p>
+     * Both JSON and binary backups can be restored, the format is detected from the file contents.
      *
      * @param file File to get the database data from.
+     * @param progressListener Listener notified after every written batch, can be null.
+     * @return The final progress of the restore, or null if there was nothing to restore.
+     * @throws SQLException May happen if connection to the database cannot be established.
+     * @throws IOException Will happen if the file cannot be read from the filesystem.
+     */
+    public static BackupProgress restoreDbData(File file, Consumer<BackupProgress> progressListener)
+            throws SQLException, IOException {
+        if(file == null || !file.exists()) return null;
+
+        List<File> chain = resolveBackupChain(file);
+
+        flushPendingWrites();
+        DSLContext ctx = getDslContext();
+        long start = System.nanoTime();
+        long[] totals = new long[2]; //Items and bytes
+
+        runTransaction(ctx, cfg -> {
+            DSLContext tx = cfg.dsl();
+
+            //Items can reference parents that come later in the backup, so check the FKs on commit
+            tx.execute("SET CONSTRAINTS ALL DEFERRED");
+
+            //Remove all data
+            clearData(tx);
+
+            //Add imported data to DB, the full backup is inserted and the increments upserted on top of it
+            for(File backup : chain) {
+                AtomicLong bytesRead = new AtomicLong();
+
+                try(BackupReader reader = BackupStreams.openReader(backup, bytesRead)) {
+                    RestoreBatcher batcher = new RestoreBatcher(tx, RESTORE_BATCH_SIZE,
+                            reader.readHeader().isIncremental(), progressListener, bytesRead::get, backup.length());
+                    reader.read(batcher);
+
+                    BackupProgress progress = batcher.finish();
+                    totals[0] += progress.items();
+                    totals[1] += progress.bytes();
+                }
+            }
+        });
+
+        return new BackupProgress(totals[0], totals[1], totals[1], (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * This method reads the header of a backup file.
+     *
+     * @param file Backup file to read.
+     * @return The header of the backup.
+     * @throws IOException Will happen if the file cannot be read or isn't a valid backup.
+     */
+    private static BackupHeader readBackupHeader(File file) throws IOException {
+        try(BackupReader reader = BackupStreams.openReader(file, new AtomicLong())) {
+            return reader.readHeader();
+        }
+    }
+
+    /**
+     * This method follows an incremental backup back to the full backup it builds on.
+     * <p>
+     * The bases are looked up in the same directory as the given backup.
+     *
+     * @param file Last backup of the chain.
+     * @return The backups of the chain, starting with the full backup.
+     * @throws IOException Will happen if a backup of the chain is missing or doesn't match the next one.
+     */
+    private static List<File> resolveBackupChain(File file) throws IOException {
+        LinkedList<File> chain = new LinkedList<>();
+        BackupHeader next = null;
+
+        for(File current = file; current != null; ) {
+            BackupHeader header = readBackupHeader(current);
+
+            //Each increment must start exactly where its base ended
+            if(next != null && next.sinceTxid() != header.txidMark())
+                throw new IOException("Backup " + chain.getFirst().getName() + " does not continue from " + current.getName());
+
+            chain.addFirst(current);
+            if(!header.isIncremental()) return chain;
+
+            if(chain.size() > MAX_BACKUP_CHAIN_LENGTH)
+                throw new IOException("The backup chain of " + file.getName() + " is too long");
+
+            current = new File(file.getParentFile(), header.base());
+            if(!current.exists())
+                throw new FileNotFoundException("Missing backup " + header.base() + " needed to restore " + file.getName());
+
+            next = header;
+        }
+
+        return chain;
+    }
+
+    /**
+     * This method is used to back up the current database instance data with PostgreSQL's binary COPY.
+     * <p>
+     * This is much faster than the JSON backup, but the archive can only be restored into a PostgreSQL database.
+     *
+     * @param directory Directory location of the backup file.
+     * @param cancelled Function that tells if the backup was cancelled, which stops it and removes the file.
+     * @return The amount of rows exported, or null if nothing was backed up.
+     * @throws SQLException May happen if connection to the database cannot be established.
+     * @throws IOException Will happen if the file cannot be written to the file system, or the backup was cancelled.
+     */
+    public static BackupProgress bulkBackupDbData(String directory, BooleanSupplier cancelled)
+            throws SQLException, IOException {
+        if(directory == null || directory.isEmpty()) return null;
+
+        flushPendingWrites();
+        DSLContext ctx = getDslContext();
+
+        //Create backup file
+        File backupFile = Paths.get(directory, System.currentTimeMillis() + "_PFS_BK" + BULK_BACKUP_EXTENSION).toFile();
+
+        if(!backupFile.createNewFile())
+            throw new IOException("Could not create backup file, it already exists on the choosen path!");
+
+        AtomicReference<BackupProgress> result = new AtomicReference<>();
+        try {
+            runTransaction(ctx, cfg -> result.set(
+                    CopyBackupEngine.exportTo(cfg.dsl(), BackupStreams.openOutput(backupFile, false, cancelled))));
+        }
+        catch (IOException | RuntimeException e) {
+            //Don't leave a truncated backup behind
+            Files.deleteIfExists(backupFile.toPath());
+            throw e;
+        }
+
+        return result.get();
+    }
+
+    /**
+     * This method is used to restore the database state from a binary COPY backup archive.
+     *
+     * @param file Archive to get the database data from.
+     * @param progressListener Listener notified after every restored table, can be null.
+     * @return The amount of rows imported, or null if there was nothing to restore.
      * @throws SQLException May happen if connection to the database cannot be established.
      * @throws IOException Will happen if the file cannot be read from the filesystem.
      */
-    public static void restoreDbData(File file) throws SQLException, IOException {
-        if(file == null || !file.exists()) return;
+    public static BackupProgress bulkRestoreDbData(File file, Consumer<BackupProgress> progressListener)
+            throws SQLException, IOException {
+        if(file == null || !file.exists()) return null;
+
+        flushPendingWrites();
+        DSLContext ctx = getDslContext();
+        AtomicLong bytesRead = new AtomicLong();
+        AtomicReference<BackupProgress> result = new AtomicReference<>();
 
-        //Deserialize json file
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.findAndRegisterModules(); //This is used for TypeHandling
+        runTransaction(ctx, cfg -> result.set(CopyBackupEngine.importFrom(cfg.dsl(),
+                BackupStreams.openInput(file, bytesRead), progressListener, bytesRead::get, file.length())));
 
-        DbBackupData dbBackupData = mapper.readValue(file, DbBackupData.class);
+        return result.get();
+    }
+
+    /**
+     * This method is used to back up the current database instance data over several connections at once.
+     * <p>
+     * The backup is a directory with a manifest, a folders file and one segment file per file ID range.
+     *
+     * @param directory Directory location of the backup.
+     * @param parallelism Amount of connections reading at the same time, limited by the connection pool size.
+     * @param compress Whether the backup files should be gzip compressed.
+     * @param cancelled Function that tells if the backup was cancelled, which stops it and removes the files.
+     * @return The amount of items exported, or null if nothing was backed up.
+     * @throws SQLException May happen if connection to the database cannot be established.
+     * @throws IOException Will happen if the files cannot be written to the file system, or the backup was cancelled.
+     */
+    public static BackupProgress parallelBackupDbData(String directory, int parallelism, boolean compress,
+                                                      BooleanSupplier cancelled) throws SQLException, IOException {
+        if(directory == null || directory.isEmpty()) return null;
 
-        /* Update DB */
+        flushPendingWrites();
         DSLContext ctx = getDslContext();
 
-        //Remove all data, starting with files
-        ctx.deleteFrom(com.rohjans.public_.tables.File.FILE).execute();
-        ctx.deleteFrom(Folder.FOLDER).execute();
+        //Create backup directory
+        File backupDirectory = Paths.get(directory, System.currentTimeMillis() + "_PFS_PAR").toFile();
+
+        if(!backupDirectory.mkdir())
+            throw new IOException("Could not create backup directory, it already exists on the choosen path!");
 
-        //Add imported data to DB
-        ctx.batchInsert(FolderMapper.toFolderRecord(dbBackupData.getFolders())).execute(); //Folders have to be first due to FKs
-        ctx.batchInsert(FileMapper.toFileRecord(dbBackupData.getFiles())).execute();;
-        /* -------- */
+        try {
+            return ParallelBackupEngine.exportTo(ctx, backupDirectory, limitParallelism(parallelism),
+                    compress, BACKUP_FETCH_SIZE, cancelled);
+        }
+        catch (IOException | RuntimeException e) {
+            //Don't leave a partial backup behind
+            File[] segments = backupDirectory.listFiles();
+            if(segments != null)
+                for(File segment : segments) Files.deleteIfExists(segment.toPath());
+            Files.deleteIfExists(backupDirectory.toPath());
+
+            throw e;
+        }
+    }
+
+    /**
+     * This method is used to restore the database state from a parallel backup.
+     * <p>
+     * Unlike the other restores, this one is not atomic: the segments are restored in separate transactions,
+     * so a failure can leave the database partially restored.
+     *
+     * @param manifest Manifest file of the backup.
+     * @param parallelism Amount of segments restored at the same time, limited by the connection pool size.
+     * @param progressListener Listener notified after every restored segment, can be null.
+     * @return The amount of items imported, or null if there was nothing to restore.
+     * @throws SQLException May happen if connection to the database cannot be established.
+     * @throws IOException Will happen if the files cannot be read from the filesystem.
+     */
+    public static BackupProgress parallelRestoreDbData(File manifest, int parallelism,
+                                                       Consumer<BackupProgress> progressListener)
+            throws SQLException, IOException {
+        if(manifest == null || !manifest.exists()) return null;
+
+        flushPendingWrites();
+        return ParallelBackupEngine.importFrom(getDslContext(), manifest, limitParallelism(parallelism),
+                RESTORE_BATCH_SIZE, progressListener);
+    }
+
+    /**
+     * This method limits the parallelism of an operation to what the connection pool can serve,
+     * leaving one connection for the coordinating transaction.
+     *
+     * @param parallelism Requested parallelism.
+     * @return The parallelism that will be used.
+     * @throws SQLException Happens if the connection pool cannot be started.
+     */
+    private static int limitParallelism(int parallelism) throws SQLException {
+        getDataSource(); //Make sure the pool is started
+
+        return Math.max(1, Math.min(parallelism, connectionPool.getMaxSize() - 1));
+    }
+
+    /**
+     * This method removes all the data from the database, before a backup is restored.
+     * <p>
+     * Truncating is much faster than deleting and doesn't fire the delete triggers, so the removed items
+     * don't end up in the tombstones and the blob reference counts start over.
+     *
+     * @param tx Database context bound to a transaction.
+     */
+    public static void clearData(DSLContext tx) {
+        tx.truncate(Folder.FOLDER).cascade().execute();
+        tx.truncate(Blob.BLOB).cascade().execute();
+        tx.truncate(Tombstone.TOMBSTONE).execute();
+    }
+
+    /**
+     * This method runs a block of code inside a database transaction, rethrowing any IO error
+     * that Jooq wrapped while rolling it back.
+     *
+     * @param ctx Database context instance.
+     * @param runnable Code to be run inside the transaction.
+     * @throws IOException Will happen if the transaction failed due to an IO error.
+     */
+    public static void runTransaction(DSLContext ctx, TransactionalRunnable runnable) throws IOException {
+        try {
+            ctx.transaction(runnable);
+        }
+        catch (DataAccessException e) {
+            //The IO error can be wrapped more than once, when it happens inside a connection block
+            for(Throwable cause = e.getCause(); cause != null; cause = cause.getCause())
+                if(cause instanceof IOException ioException) throw ioException;
+
+            throw e;
+        }
     }
 
     /*
@@ -9,6 +9,9 @@ import javafx.stage.Window;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -228,4 +231,47 @@ public class Helpers {
         * */
         return text.getBytes(StandardCharsets.UTF_16).length;
     }
+
+    /**
+     * This method calculates the size of a text from its amount of characters, giving the same value as
+     * {@link #calculateStringSizeInBytes(String)} for texts that are never whole in memory.
+     *
+     * @param length Amount of characters in the text.
+     * @return The size of the text in bytes.
+     */
+    public static long calculateTextSizeInBytes(long length) {
+        //Two bytes per character plus the byte order mark
+        return length == 0 ? 0 : length * 2 + 2;
+    }
+
+    /**
+     * This method calculates the hash that identifies a file content in the blob table.
+     * <p>
+     * It's the hex SHA-256 of the UTF-8 bytes, the same value PostgreSQL gives for
+     * {@code encode(sha256(convert_to(content, 'UTF8')), 'hex')}.
+     *
+     * @param content Content of the file.
+     * @return The content hash, or null if there is no content.
+     */
+    public static String hashContent(String content) {
+        if(content == null) return null;
+
+        return HexFormat.of().formatHex(createContentDigest().digest(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * This method creates the digest used to calculate content hashes, for contents that are hashed as they are read.
+     * The hex of its result is the same as {@link #hashContent(String)}.
+     *
+     * @return The SHA-256 digest.
+     */
+    public static MessageDigest createContentDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            //Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
 }
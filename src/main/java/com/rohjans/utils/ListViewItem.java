@@ -1,77 +1,54 @@
 package com.rohjans.utils;
 
-import javafx.scene.control.TreeItem;
-import com.rohjans.models.ItemDTO;
-
-import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import com.rohjans.models.File.ContentSearchResult;
+import com.rohjans.models.ItemSearchResult;
 
 /**
  * This is a class that defines a list view item for the item search view.
+ * <p>
+ * It holds an item found by a search on the database, which may not be loaded on the tree yet.
  *
  * @author Raul Rohjans 202100518
  */
 public class ListViewItem {
     /**
-     * The value item of the ListViewItem.
+     * The item found by the search.
      */
-    TreeItem<ItemDTO> item;
+    ItemSearchResult result;
 
     /**
      * Constructs a new instance of the class.
      *
-     * @param item Item to be hold on the list view item.
+     * @param result Item found by a name search to be hold on the list view item.
      */
-    public ListViewItem(TreeItem<ItemDTO> item) { this.item = item; }
-
-    /**
-     * This method overrides the default toString operation.
-     * The reason we need is to have the correct value be displayed on the list view.
-     *
-     * @return The path of the file in the PFS.
-     */
-    @Override
-    public String toString() {
-        List<String> path = new ArrayList<>();
-        getPathToRootHelper(this.getItem(), path);
-
-        //Reverse to get the path in the right order
-        Collections.reverse(path);
-
-        return "/" + String.join("/", path);
-    }
+    public ListViewItem(ItemSearchResult result) { this.result = result; }
 
     /**
-     * This method is a helper to the toString function, its purpose
-     * is to calculate the path of the item.
+     * Constructs a new instance of the class.
      *
-     * @param item Item to calculate the path to.
-     * @param path List of item names that will later be used to build the path with a join.
+     * @param result File found by a content search to be hold on the list view item.
      */
-    private void getPathToRootHelper(TreeItem<ItemDTO> item, List<String> path) {
-        if (item.getParent() == null) return; //Root node
-
-        path.add(item.getValue().getName());
-        getPathToRootHelper(item.getParent(), path); // Recurse up the tree
+    public ListViewItem(ContentSearchResult result) {
+        this(new ItemSearchResult(result.id(), result.parent(), result.path()));
     }
 
     /**
-     * This method is a getter to the item.
+     * This method overrides the default toString operation.
+     * The reason we need is to have the correct value be displayed on the list view.
      *
-     * @return The tree item.
+     * @return The path of the item in the PFS, which was already built by the database.
      */
-    public TreeItem<ItemDTO> getItem() {
-        return item;
+    @Override
+    public String toString() {
+        return result.path();
     }
 
     /**
-     * This method is a setter for the item.
+     * This method is a getter to the search result.
      *
-     * @param item Item that will be set in place of the current item.
+     * @return The item found by the search.
      */
-    public void setItem(TreeItem<ItemDTO> item) {
-        this.item = item;
+    public ItemSearchResult getResult() {
+        return result;
     }
 }
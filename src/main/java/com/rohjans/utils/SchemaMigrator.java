@@ -0,0 +1,169 @@
+package com.rohjans.utils;
+
+import org.jooq.DSLContext;
+import org.jooq.Record;
+import org.jooq.impl.DSL;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This is a static class that brings the database schema up to date, by applying the migration
+ * scripts that weren't applied yet, in order.
+ * <p>
+ * The scripts are bundled in "/db/migrations" and named "V&lt;version&gt;__&lt;description&gt;.sql", and the applied
+ * versions are recorded in the schema_version table. New schema changes go in a new script at the end of the list,
+ * applied scripts must never be changed.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public class SchemaMigrator {
+    /**
+     * Location of the migration scripts in the resources.
+     */
+    private static final String MIGRATIONS_PATH = "/db/migrations/";
+
+    /**
+     * Migration scripts, in the order they are applied.
+     */
+    private static final List<String> MIGRATIONS = List.of(
+            "V1__baseline.sql",
+            "V2__hot_path_indexes.sql",
+            "V3__folder_aggregates.sql",
+            "V4__flatten_folder.sql",
+            "V5__change_notifications.sql",
+            "V6__blob_chunks.sql",
+            "V7__blob_compression.sql",
+            "V8__content_search.sql",
+            "V9__backup_marks.sql",
+            "V10__flatten_versions.sql",
+            "V11__search_overlap.sql",
+            "V12__name_search.sql"
+    );
+
+    /**
+     * Key of the advisory lock that stops two instances of the application from migrating at the same time.
+     */
+    private static final long MIGRATION_LOCK_KEY = 0x50465301L;
+
+    /**
+     * Frequent queries mapped to the index each one is expected to use.
+     */
+    private static final Map<String, String> HOT_QUERIES = Map.of(
+            "SELECT * FROM folder WHERE parent = '00000000-0000-0000-0000-000000000000'", "folder_parent_idx",
+            "SELECT * FROM file WHERE parent = '00000000-0000-0000-0000-000000000000'", "file_parent_idx",
+            "SELECT id FROM file WHERE created BETWEEN LOCALTIMESTAMP - INTERVAL '1 day' AND LOCALTIMESTAMP", "file_created_idx",
+            "SELECT id FROM file WHERE importance BETWEEN 1 AND 2", "file_importance_idx",
+            "SELECT hash FROM blob_chunk WHERE search @@ websearch_to_tsquery('simple', 'pfs')", "blob_chunk_search_idx"
+    );
+
+    /**
+     * This method applies the migration scripts that weren't applied to the database yet.
+     * <p>
+     * Everything runs in a single transaction, so a failing script leaves the schema as it was.
+     *
+     * @param ctx Database context instance.
+     * @return The amount of scripts applied.
+     * @throws SQLException Will happen if a script cannot be read or fails to run.
+     */
+    public static int migrate(DSLContext ctx) throws SQLException {
+        int[] applied = new int[1];
+
+        try {
+            DBEngine.runTransaction(ctx, cfg -> {
+                DSLContext tx = cfg.dsl();
+                tx.select(DSL.field("pg_advisory_xact_lock({0})", DSL.inline(MIGRATION_LOCK_KEY))).fetch();
+
+                tx.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                        + "version INT NOT NULL, "
+                        + "name VARCHAR(100) NOT NULL, "
+                        + "applied TIMESTAMP NOT NULL DEFAULT LOCALTIMESTAMP, "
+                        + "PRIMARY KEY(version))");
+
+                Integer current = tx.fetchValue(DSL.field("(SELECT max(version) FROM schema_version)", Integer.class));
+
+                for(String migration : MIGRATIONS) {
+                    int version = parseVersion(migration);
+                    if(current != null && version <= current) continue;
+
+                    String script = readScript(migration);
+                    tx.connection(conn -> {
+                        //Scripts have several statements, which only a plain statement can run at once
+                        try(Statement statement = conn.createStatement()) {
+                            statement.execute(script);
+                        }
+                    });
+
+                    tx.execute("INSERT INTO schema_version(version, name) VALUES ({0}, {1})",
+                            DSL.val(version), DSL.val(migration));
+                    applied[0]++;
+                }
+            });
+        }
+        catch (IOException e) {
+            throw new SQLException("Could not read the database migrations", e);
+        }
+
+        return applied[0];
+    }
+
+    /**
+     * This method checks with EXPLAIN if the frequent queries are planned with their indexes.
+     * <p>
+     * Sequential scans are discouraged while checking, since the planner prefers them on small tables
+     * even when the index exists.
+     *
+     * @param ctx Database context instance.
+     * @return Description of each query that doesn't use its index, empty if all of them do.
+     */
+    public static List<String> checkIndexUsage(DSLContext ctx) {
+        List<String> problems = new ArrayList<>();
+
+        ctx.transaction(cfg -> {
+            DSLContext tx = cfg.dsl();
+            tx.execute("SET LOCAL enable_seqscan = off");
+
+            for(Map.Entry<String, String> query : HOT_QUERIES.entrySet()) {
+                StringBuilder plan = new StringBuilder();
+                for(Record line : tx.fetch("EXPLAIN " + query.getKey()))
+                    plan.append(line.get(0, String.class)).append('\n');
+
+                if(!plan.toString().contains(query.getValue()))
+                    problems.add("Query doesn't use index " + query.getValue() + ": " + query.getKey() + "\n" + plan);
+            }
+        });
+
+        return problems;
+    }
+
+    /**
+     * This method gets the version of a migration script from its name.
+     *
+     * @param migration Name of the script.
+     * @return Version of the script.
+     */
+    private static int parseVersion(String migration) {
+        return Integer.parseInt(migration.substring(1, migration.indexOf("__")));
+    }
+
+    /**
+     * This method reads a migration script from the resources.
+     *
+     * @param migration Name of the script.
+     * @return Contents of the script.
+     * @throws IOException Will happen if the script is missing or cannot be read.
+     */
+    private static String readScript(String migration) throws IOException {
+        try(InputStream in = SchemaMigrator.class.getResourceAsStream(MIGRATIONS_PATH + migration)) {
+            if(in == null) throw new IOException("Migration script not found: " + migration);
+
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package com.rohjans.utils;
+
+import com.rohjans.models.WriteQueueStats;
+import org.jooq.DSLContext;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * This is a class that writes to the database on a background thread, so the UI doesn't wait for the round trips.
+ * <p>
+ * Writes are committed in the order they were queued, in batches that share a single transaction.
+ * An update to an item that already has an update waiting replaces it, since only the last state needs to be written,
+ * unless a write that isn't an update (like a create or a delete) was queued in between, which keeps the order intact.
+ * <p>
+ * Updates carry the change counter they expect the item to have in the database, an update that replaces
+ * another one keeps expecting the counter of the one it replaced, since that one was never written.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public class WriteBehindQueue implements AutoCloseable {
+    /**
+     * Maximum amount of writes committed in a single transaction.
+     */
+    private static final int MAX_BATCH_SIZE = 200;
+
+    /**
+     * Time (in milliseconds) a write waits before being flushed, so quick successive updates are coalesced.
+     */
+    private static final long FLUSH_DELAY_MS = 100;
+
+    /**
+     * Database context instance.
+     */
+    private final DSLContext ctx;
+
+    /**
+     * Listener notified when a write cannot be committed.
+     */
+    private volatile Consumer<Exception> failureListener;
+
+    /**
+     * Writes waiting to be flushed, in order.
+     */
+    private final ArrayDeque<PendingWrite> queue = new ArrayDeque<>();
+
+    /**
+     * Queued updates that can still be replaced, mapped by the ID of their item.
+     */
+    private final Map<UUID, PendingWrite> coalescable = new HashMap<>();
+
+    /**
+     * IDs of the items written by the batch being committed.
+     */
+    private final Set<UUID> inFlight = new HashSet<>();
+
+    /**
+     * Lock that guards the queue state and the statistics.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * Thread that flushes the queue.
+     */
+    private final Thread worker;
+
+    /**
+     * If a batch is being committed.
+     */
+    private boolean flushing;
+
+    /**
+     * Amount of threads waiting for the queue to be flushed, the flush delay is skipped while there are any.
+     */
+    private int flushWaiters;
+
+    /**
+     * If the queue no longer accepts writes.
+     */
+    private boolean closed;
+
+    /**
+     * Amount of writes committed.
+     */
+    private long flushedWrites;
+
+    /**
+     * Amount of writes that replaced a pending one.
+     */
+    private long coalescedWrites;
+
+    /**
+     * Amount of writes that could not be committed.
+     */
+    private long failedWrites;
+
+    /**
+     * Amount of batches committed.
+     */
+    private long flushes;
+
+    /**
+     * Accumulated flush latency, in nanoseconds.
+     */
+    private long totalLatencyNanos;
+
+    /**
+     * Longest flush latency, in nanoseconds.
+     */
+    private long maxLatencyNanos;
+
+    /**
+     * Constructs the queue and starts its background thread.
+     *
+     * @param ctx Database context instance.
+     * @param failureListener Listener notified (on the background thread) when a write cannot be committed.
+     */
+    public WriteBehindQueue(DSLContext ctx, Consumer<Exception> failureListener) {
+        this.ctx = ctx;
+        this.failureListener = failureListener;
+
+        //Closing the queue flushes it, the thread alone shouldn't keep the application running
+        worker = new Thread(this::run, "pfs-write-behind");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * This method queues an update to an item, replacing the update that is already waiting for it, if any.
+     * <p>
+     * The write must not depend on objects that can change after it was queued, so it should
+     * capture a copy of the item.
+     *
+     * @param id ID of the item.
+     * @param expectedChangeCounter Change counter the item is expected to have in the database.
+     * @param write Write to be run inside the flush transaction, it gets the change counter to expect.
+     */
+    public void submitUpdate(UUID id, int expectedChangeCounter, VersionedWrite write) {
+        synchronized (lock) {
+            checkOpen();
+
+            PendingWrite pending = coalescable.get(id);
+            if(pending != null) {
+                //The replaced update never reached the database, so its expected counter still holds
+                int expected = pending.expectedChangeCounter;
+                pending.write = tx -> write.write(tx, expected);
+                coalescedWrites++;
+                return;
+            }
+
+            pending = new PendingWrite(id, tx -> write.write(tx, expectedChangeCounter));
+            pending.expectedChangeCounter = expectedChangeCounter;
+            queue.add(pending);
+            coalescable.put(id, pending);
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * This method queues a write that must keep its place in the order, like a create or a delete.
+     * <p>
+     * Updates queued before it can no longer be replaced.
+     *
+     * @param write Write to be run inside the flush transaction.
+     */
+    public void submit(Consumer<DSLContext> write) {
+        submit(null, write);
+    }
+
+    /**
+     * This method queues a write to an item that must keep its place in the order, like its creation,
+     * so the item counts as pending until it's committed.
+     * <p>
+     * Updates queued before it can no longer be replaced.
+     *
+     * @param id ID of the written item, or null if it isn't tracked.
+     * @param write Write to be run inside the flush transaction.
+     */
+    public void submit(UUID id, Consumer<DSLContext> write) {
+        synchronized (lock) {
+            checkOpen();
+
+            queue.add(new PendingWrite(id, write));
+            coalescable.clear();
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * This method checks if an item has writes that weren't committed yet, either waiting to be flushed
+     * or in the batch being committed.
+     *
+     * @param id ID of the item.
+     * @return True if the item has a pending write, otherwise false.
+     */
+    public boolean isPending(UUID id) {
+        synchronized (lock) {
+            if(inFlight.contains(id)) return true;
+
+            for(PendingWrite pending : queue)
+                if(id.equals(pending.id)) return true;
+
+            return false;
+        }
+    }
+
+    /**
+     * This method blocks until every write queued so far has been committed (or failed).
+     * <p>
+     * It should be called before anything that reads the database expecting to find the queued changes.
+     */
+    public void flush() {
+        synchronized (lock) {
+            flushWaiters++;
+            lock.notifyAll();
+
+            try {
+                while(!queue.isEmpty() || flushing) lock.wait();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finally {
+                flushWaiters--;
+            }
+        }
+    }
+
+    /**
+     * This method replaces the listener notified (on the background thread) when a write cannot be committed.
+     *
+     * @param failureListener New failure listener.
+     */
+    public void setFailureListener(Consumer<Exception> failureListener) {
+        this.failureListener = failureListener;
+    }
+
+    /**
+     * This method gets the current state of the queue.
+     *
+     * @return The queue statistics.
+     */
+    public WriteQueueStats getStats() {
+        synchronized (lock) {
+            return new WriteQueueStats(queue.size(), flushedWrites, coalescedWrites, failedWrites, flushes,
+                    flushes == 0 ? 0 : totalLatencyNanos / 1_000_000.0 / flushes, maxLatencyNanos / 1_000_000.0);
+        }
+    }
+
+    /**
+     * This method flushes the pending writes and stops the background thread, no more writes are accepted after it.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+
+        try {
+            worker.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * This method is the loop of the background thread, which takes batches from the queue and commits them
+     * until the queue is closed and empty.
+     */
+    private void run() {
+        while(true) {
+            List<PendingWrite> batch = new ArrayList<>();
+
+            synchronized (lock) {
+                try {
+                    while(!readyToFlush()) {
+                        if(queue.isEmpty()) lock.wait();
+                        else lock.wait(Math.max(1, FLUSH_DELAY_MS - (System.nanoTime() - queue.peek().queued) / 1_000_000));
+                    }
+                }
+                catch (InterruptedException e) {
+                    //Still flush what is left before stopping
+                    closed = true;
+                }
+
+                if(queue.isEmpty()) return; //Closed and nothing left to write
+
+                while(!queue.isEmpty() && batch.size() < MAX_BATCH_SIZE) {
+                    PendingWrite pending = queue.poll();
+                    if(pending.id != null) {
+                        coalescable.remove(pending.id, pending);
+                        inFlight.add(pending.id);
+                    }
+                    batch.add(pending);
+                }
+                flushing = true;
+            }
+
+            int failed = write(batch);
+
+            synchronized (lock) {
+                long latency = System.nanoTime() - batch.get(0).queued;
+                totalLatencyNanos += latency;
+                maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+                flushes++;
+                flushedWrites += batch.size() - failed;
+                failedWrites += failed;
+
+                inFlight.clear();
+                flushing = false;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * This method checks if the background thread should take a batch from the queue, which happens once the oldest
+     * write waited long enough, when someone is waiting for the flush, or when the queue is closing.
+     * It must be called while holding the lock.
+     *
+     * @return True if a batch should be flushed (or the thread should stop), otherwise false.
+     */
+    private boolean readyToFlush() {
+        if(closed) return true;
+        if(queue.isEmpty()) return false;
+
+        return flushWaiters > 0 || System.nanoTime() - queue.peek().queued >= FLUSH_DELAY_MS * 1_000_000;
+    }
+
+    /**
+     * This method commits a batch of writes in a single transaction. If it fails, the writes are retried one by one,
+     * so a single failing write doesn't take the rest of the batch with it.
+     *
+     * @param batch Writes to be committed, in order.
+     * @return The amount of writes that failed.
+     */
+    private int write(List<PendingWrite> batch) {
+        try {
+            DBEngine.runTransaction(ctx, cfg -> {
+                for(PendingWrite pending : batch) pending.write.accept(cfg.dsl());
+            });
+            return 0;
+        }
+        catch (Exception e) {
+            int failed = 0;
+
+            for(PendingWrite pending : batch) {
+                try {
+                    DBEngine.runTransaction(ctx, cfg -> pending.write.accept(cfg.dsl()));
+                }
+                catch (Exception writeException) {
+                    failed++;
+                    failureListener.accept(writeException);
+                }
+            }
+
+            return failed;
+        }
+    }
+
+    /**
+     * This method makes sure the queue still accepts writes. It must be called while holding the lock.
+     *
+     * @throws IllegalStateException Will happen if the queue was closed.
+     */
+    private void checkOpen() {
+        if(closed) throw new IllegalStateException("The write-behind queue was closed");
+    }
+
+    /**
+     * This is an interface that represents an update that is only applied if the item still has the
+     * expected change counter.
+     */
+    @FunctionalInterface
+    public interface VersionedWrite {
+        /**
+         * This method runs the update.
+         *
+         * @param tx Database context bound to the flush transaction.
+         * @param expectedChangeCounter Change counter the item is expected to have in the database.
+         */
+        void write(DSLContext tx, int expectedChangeCounter);
+    }
+
+    /**
+     * This is a class that represents a write waiting in the queue.
+     */
+    private static final class PendingWrite {
+        /**
+         * ID of the written item, or null if it isn't tracked.
+         */
+        private final UUID id;
+
+        /**
+         * When the write was first queued, in nanoseconds.
+         */
+        private final long queued = System.nanoTime();
+
+        /**
+         * Write to be run inside the flush transaction.
+         */
+        private Consumer<DSLContext> write;
+
+        /**
+         * Change counter the updated item is expected to have in the database.
+         */
+        private int expectedChangeCounter;
+
+        /**
+         * Constructs the pending write.
+         *
+         * @param id ID of the written item, or null if it isn't tracked.
+         * @param write Write to be run inside the flush transaction.
+         */
+        private PendingWrite(UUID id, Consumer<DSLContext> write) {
+            this.id = id;
+            this.write = write;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.rohjans.utils.backup;
+
+import java.time.LocalDateTime;
+
+/**
+ * This is a "class" (it's defined as a record) that represents the header written at the start of a backup file.
+ * <p>
+ * The transaction mark is the oldest database transaction that was still running when the backup was made.
+ * Everything written by older transactions is in the backup, so the next incremental backup in the chain
+ * starts from it.
+ *
+ * @param type Type of the backup, either {@link #FULL} or {@link #INCREMENTAL}.
+ * @param base File name of the backup this one builds on (only for incremental backups).
+ * @param sinceTxid Transaction this backup starts from, the transaction mark of its base (only for incremental backups).
+ * @param txidMark Oldest transaction that is not captured by this backup, or 0 if unknown.
+ * @param created Date and time of when the backup was made.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public record BackupHeader(String type, String base, long sinceTxid, long txidMark, LocalDateTime created) {
+    /**
+     * Type of a backup with the whole database.
+     */
+    public static final String FULL = "full";
+
+    /**
+     * Type of a backup with only the changes since its base.
+     */
+    public static final String INCREMENTAL = "incremental";
+
+    /**
+     * Header assumed for backups made before headers were written, which are always full backups.
+     */
+    public static final BackupHeader LEGACY = new BackupHeader(FULL, null, 0, 0, null);
+
+    /**
+     * This method checks if this is an incremental backup.
+     *
+     * @return True if the backup only has the changes since its base, otherwise false.
+     */
+    public boolean isIncremental() {
+        return INCREMENTAL.equals(type);
+    }
+}
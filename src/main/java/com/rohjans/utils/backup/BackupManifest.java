@@ -0,0 +1,31 @@
+package com.rohjans.utils.backup;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * This is a "class" (it's defined as a record) that represents the manifest of a parallel backup,
+ * which ties the segment files together.
+ *
+ * @param version Version of the parallel backup layout.
+ * @param created Date the backup was made.
+ * @param folders Name of the file holding all the folders, relative to the backup directory.
+ * @param folderCount Amount of folders written.
+ * @param segments Segments holding the files, one per key range.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public record BackupManifest(int version, LocalDateTime created, String folders, long folderCount,
+                             List<BackupSegment> segments) {
+    /**
+     * This method gets the total amount of items in the backup.
+     *
+     * @return Amount of folders and files.
+     */
+    public long itemCount() {
+        long count = folderCount;
+        for(BackupSegment segment : segments) count += segment.items();
+
+        return count;
+    }
+}
@@ -0,0 +1,47 @@
+package com.rohjans.utils.backup;
+
+/**
+ * This is a "class" (it's defined as a record) that represents the progress of a backup or restore operation.
+ *
+ * @param items Amount of folders and files processed so far.
+ * @param bytes Amount of backup file bytes processed so far.
+ * @param totalBytes Total size of the backup file in bytes, or 0 if unknown.
+ * @param elapsedMs Time (in milliseconds) elapsed since the operation started.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public record BackupProgress(long items, long bytes, long totalBytes, long elapsedMs) {
+    /**
+     * This method calculates the throughput of the operation.
+     *
+     * @return Amount of items processed per second.
+     */
+    public double itemsPerSecond() {
+        if(elapsedMs == 0) return 0;
+
+        return items * 1000d / elapsedMs;
+    }
+
+    /**
+     * This method calculates the completion percentage of the operation.
+     *
+     * @return Percentage from 0 to 100, or -1 if the total size is unknown.
+     */
+    public double percent() {
+        if(totalBytes <= 0) return -1;
+
+        return Math.min(100, bytes * 100d / totalBytes);
+    }
+
+    /**
+     * Override of the toString method, so the progress can be displayed to the user.
+     *
+     * @return Human-readable description of the progress.
+     */
+    @Override
+    public String toString() {
+        String done = percent() < 0 ? "" : String.format(" (%.1f%%)", percent());
+
+        return String.format("%d items%s in %.1fs, %.0f items/s", items, done, elapsedMs / 1000d, itemsPerSecond());
+    }
+}
@@ -0,0 +1,34 @@
+package com.rohjans.utils.backup;
+
+import java.io.IOException;
+
+/**
+ * Interface that represents a reader of a backup file, regardless of its format.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public interface BackupReader extends AutoCloseable {
+    /**
+     * This method reads the backup header.
+     *
+     * @return The header of the backup.
+     * @throws IOException Will happen if the stream cannot be read or isn't a valid backup.
+     */
+    BackupHeader readHeader() throws IOException;
+
+    /**
+     * This method reads the whole backup, handing each item to the handler as soon as it is parsed.
+     *
+     * @param handler Handler that consumes the items.
+     * @throws IOException Will happen if the stream cannot be read or isn't a valid backup.
+     */
+    void read(BackupRecordHandler handler) throws IOException;
+
+    /**
+     * This method closes the reader and the underlying stream.
+     *
+     * @throws IOException Will happen if the stream cannot be closed.
+     */
+    @Override
+    void close() throws IOException;
+}
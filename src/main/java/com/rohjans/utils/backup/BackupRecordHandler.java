@@ -0,0 +1,32 @@
+package com.rohjans.utils.backup;
+
+import com.rohjans.models.File.FileDTO;
+import com.rohjans.models.Folder.FolderDTO;
+
+/**
+ * Interface that represents a consumer of the items read from a backup file.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public interface BackupRecordHandler {
+    /**
+     * This method handles a folder read from the backup.
+     *
+     * @param folder Folder data object that was read.
+     */
+    void onFolder(FolderDTO folder);
+
+    /**
+     * This method handles a file read from the backup.
+     *
+     * @param file File data object that was read.
+     */
+    void onFile(FileDTO file);
+
+    /**
+     * This method handles an item deletion read from an incremental backup.
+     *
+     * @param tombstone Deleted item that was read.
+     */
+    default void onDeleted(BackupTombstone tombstone) { }
+}
@@ -0,0 +1,16 @@
+package com.rohjans.utils.backup;
+
+import java.util.UUID;
+
+/**
+ * This is a "class" (it's defined as a record) that represents one segment of a parallel backup,
+ * holding the files whose ID falls in a key range.
+ *
+ * @param file Name of the segment file, relative to the backup directory.
+ * @param from Lowest file ID of the range (inclusive), or null for no lower bound.
+ * @param to Highest file ID of the range (exclusive), or null for no upper bound.
+ * @param items Amount of files written to the segment.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public record BackupSegment(String file, UUID from, UUID to, long items) {}
@@ -0,0 +1,226 @@
+package com.rohjans.utils.backup;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This is a static helper class that opens the streams used to write and read backup files.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public class BackupStreams {
+    /**
+     * Size of the buffers placed between the backup engine and the file channel.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Extension appended to backup files that are gzip compressed.
+     */
+    public static final String GZIP_EXTENSION = ".gz";
+
+    /**
+     * This method opens a buffered output stream to a backup file, optionally gzip compressed.
+     * <p>
+     * Once the backup is cancelled, the next time the buffer is written out fails, so the backup stops
+     * and whoever writes it can remove what was written.
+     *
+     * @param file Backup file to be written, it must already exist.
+     * @param compress Whether the data should be gzip compressed.
+     * @param cancelled Function that tells if the backup was cancelled.
+     * @return The opened output stream.
+     * @throws IOException Will happen if the file cannot be opened for writing.
+     */
+    public static OutputStream openOutput(File file, boolean compress, BooleanSupplier cancelled) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        OutputStream raw = new CancellableOutputStream(Channels.newOutputStream(channel), cancelled);
+        OutputStream out = new BufferedOutputStream(raw, BUFFER_SIZE);
+
+        if(compress) return new GZIPOutputStream(out, BUFFER_SIZE);
+        return out;
+    }
+
+    /**
+     * This method opens a buffered input stream to a backup file, transparently decompressing it
+     * if it was written with gzip.
+     *
+     * @param file Backup file to be read.
+     * @return The opened input stream.
+     * @throws IOException Will happen if the file cannot be opened for reading.
+     */
+    public static InputStream openInput(File file) throws IOException {
+        return openInput(file, new AtomicLong());
+    }
+
+    /**
+     * This method opens a buffered input stream to a backup file, transparently decompressing it
+     * if it was written with gzip.
+     *
+     * @param file Backup file to be read.
+     * @param bytesRead Counter updated with the amount of bytes read from the file (before decompression).
+     * @return The opened input stream.
+     * @throws IOException Will happen if the file cannot be opened for reading.
+     */
+    public static InputStream openInput(File file, AtomicLong bytesRead) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        InputStream raw = new CountingInputStream(Channels.newInputStream(channel), bytesRead);
+        BufferedInputStream in = new BufferedInputStream(raw, BUFFER_SIZE);
+
+        //Peek the first two bytes to check for the gzip magic number
+        in.mark(2);
+        int magic = in.read() | (in.read() << 8);
+        in.reset();
+
+        if(magic == GZIPInputStream.GZIP_MAGIC) return new GZIPInputStream(in, BUFFER_SIZE);
+        return in;
+    }
+
+    /**
+     * This method opens a reader for a backup file, picking the JSON or binary reader based on its contents.
+     *
+     * @param file Backup file to be read.
+     * @param bytesRead Counter updated with the amount of bytes read from the file (before decompression).
+     * @return The opened reader.
+     * @throws IOException Will happen if the file cannot be opened for reading.
+     */
+    public static BackupReader openReader(File file, AtomicLong bytesRead) throws IOException {
+        InputStream in = openInput(file, bytesRead);
+        if(!in.markSupported()) in = new BufferedInputStream(in, BUFFER_SIZE);
+
+        //Peek the first four bytes to check for the binary backup magic number
+        in.mark(4);
+        byte[] magic = in.readNBytes(4);
+        in.reset();
+
+        if(isBinaryMagic(magic)) return new BinaryBackupReader(in);
+        return new JsonBackupReader(in);
+    }
+
+    /**
+     * This method checks if a backup file uses the binary format, by looking for its magic number
+     * at the start of the (decompressed) contents.
+     * <p>
+     * The file name is only looked at if the file is too short to have the magic number.
+     *
+     * @param file Backup file to be checked.
+     * @return True if the backup uses the binary format, false if it uses JSON.
+     * @throws IOException Will happen if the file cannot be opened for reading.
+     */
+    public static boolean isBinary(File file) throws IOException {
+        try(InputStream in = openInput(file)) {
+            byte[] magic = in.readNBytes(4);
+            if(magic.length < 4) return file.getName().contains(BinaryBackupFormat.EXTENSION);
+
+            return isBinaryMagic(magic);
+        }
+    }
+
+    /**
+     * This method checks if the first bytes of a backup are the binary backup magic number.
+     *
+     * @param magic First bytes of the backup.
+     * @return True if they are the magic number, otherwise false.
+     */
+    private static boolean isBinaryMagic(byte[] magic) {
+        return magic.length == 4 && ByteBuffer.wrap(magic).getInt() == BinaryBackupFormat.MAGIC;
+    }
+
+    /**
+     * This is a class that counts the bytes that go through an input stream.
+     *
+     * @author Raul Rohjans 202100518
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        /**
+         * Counter of the bytes read.
+         */
+        private final AtomicLong count;
+
+        /**
+         * Constructs the stream.
+         *
+         * @param in Stream to be counted.
+         * @param count Counter of the bytes read.
+         */
+        CountingInputStream(InputStream in, AtomicLong count) {
+            super(in);
+            this.count = count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if(b >= 0) count.incrementAndGet();
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if(n > 0) count.addAndGet(n);
+
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count.addAndGet(skipped);
+
+            return skipped;
+        }
+    }
+
+    /**
+     * This is a class that stops the writes to an output stream once the backup it belongs to is cancelled.
+     *
+     * @author Raul Rohjans 202100518
+     */
+    private static class CancellableOutputStream extends FilterOutputStream {
+        /**
+         * Function that tells if the backup was cancelled.
+         */
+        private final BooleanSupplier cancelled;
+
+        /**
+         * Constructs the stream.
+         *
+         * @param out Stream to be written.
+         * @param cancelled Function that tells if the backup was cancelled.
+         */
+        CancellableOutputStream(OutputStream out, BooleanSupplier cancelled) {
+            super(out);
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            checkCancelled();
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            checkCancelled();
+            out.write(b, off, len);
+        }
+
+        /**
+         * This method fails if the backup was cancelled.
+         *
+         * @throws InterruptedIOException Will happen if the backup was cancelled.
+         */
+        private void checkCancelled() throws InterruptedIOException {
+            if(cancelled.getAsBoolean()) throw new InterruptedIOException("The backup was cancelled");
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.rohjans.utils.backup;
+
+import java.util.UUID;
+
+/**
+ * This is a "class" (it's defined as a record) that represents an item deletion stored in an incremental backup.
+ *
+ * @param id ID of the deleted item.
+ * @param kind Table the item was deleted from, either "file" or "folder".
+ *
+ * @author Raul Rohjans 202100518
+ */
+public record BackupTombstone(UUID id, String kind) {
+    /**
+     * This method checks if the deleted item was a folder.
+     *
+     * @return True if it was a folder, otherwise false.
+     */
+    public boolean isFolder() {
+        return "folder".equals(kind);
+    }
+}
@@ -0,0 +1,60 @@
+package com.rohjans.utils.backup;
+
+import com.rohjans.public_.tables.records.FolderRecord;
+import com.rohjans.public_.tables.records.TombstoneRecord;
+import org.jooq.Cursor;
+import org.jooq.Record;
+
+import java.io.IOException;
+
+/**
+ * Interface that represents a writer of a backup file, regardless of its format.
+ * <p>
+ * The header must be written first, then the folders, the files and the deleted items, in that order.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public interface BackupWriter extends AutoCloseable {
+    /**
+     * This method writes the backup header.
+     *
+     * @param header Header of the backup.
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    void writeHeader(BackupHeader header) throws IOException;
+
+    /**
+     * This method writes the folders, consuming the cursor row by row.
+     *
+     * @param folders Cursor over the folder records.
+     * @return Amount of folders written.
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    long writeFolders(Cursor<FolderRecord> folders) throws IOException;
+
+    /**
+     * This method writes the files, consuming the cursor row by row.
+     *
+     * @param files Cursor over the file records.
+     * @return Amount of files written.
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    long writeFiles(Cursor<Record> files) throws IOException;
+
+    /**
+     * This method writes the deleted items, consuming the cursor row by row.
+     *
+     * @param tombstones Cursor over the tombstone records.
+     * @return Amount of deletions written.
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    long writeDeleted(Cursor<TombstoneRecord> tombstones) throws IOException;
+
+    /**
+     * This method ends the backup and closes the underlying stream.
+     *
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,140 @@
+package com.rohjans.utils.backup;
+
+import com.rohjans.models.File.FileDTO;
+import com.rohjans.models.Folder.FolderDTO;
+import com.rohjans.utils.backup.BinaryRecordLayout.Field;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+
+/**
+ * This is a static class that holds the constants and record layouts of the binary backup format.
+ * <p>
+ * A binary backup is laid out as follows:
+ * <ul>
+ *     <li>The magic number and the format version.</li>
+ *     <li>The layouts (tag, field names and types) of the header, folder, file and deleted item records.</li>
+ *     <li>The header record.</li>
+ *     <li>The items, each one a tag byte followed by the record, ending with the end tag.</li>
+ * </ul>
+ * The whole file can be gzip compressed, it is detected when reading.
+ * <p>
+ * To change a record, add, remove or rename its fields here. Older backups will still be read since the
+ * fields are matched by name, new fields just need a sensible default in the factory.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public class BinaryBackupFormat {
+    /**
+     * Magic number at the start of every binary backup ("PFSB").
+     */
+    public static final int MAGIC = 0x50465342;
+
+    /**
+     * Current version of the format.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * Extension of the binary backup files.
+     */
+    public static final String EXTENSION = ".pfsb";
+
+    /**
+     * Tags that identify the kind of each item record.
+     */
+    public static final int TAG_END = 0;
+    public static final int TAG_FOLDER = 1;
+    public static final int TAG_FILE = 2;
+    public static final int TAG_DELETED = 3;
+    public static final int TAG_HEADER = 4;
+
+    /**
+     * Layout of the backup header.
+     */
+    public static final BinaryRecordLayout<BackupHeader> HEADER = new BinaryRecordLayout<>(List.of(
+            new Field<>("type", BinaryFieldType.STRING, BackupHeader::type),
+            new Field<>("base", BinaryFieldType.STRING, BackupHeader::base),
+            new Field<>("sinceTxid", BinaryFieldType.LONG, BackupHeader::sinceTxid),
+            new Field<>("txidMark", BinaryFieldType.LONG, BackupHeader::txidMark),
+            new Field<>("created", BinaryFieldType.TIMESTAMP, BackupHeader::created)
+    ), v -> new BackupHeader(
+            (String) v.getOrDefault("type", BackupHeader.FULL),
+            (String) v.get("base"),
+            (Long) v.getOrDefault("sinceTxid", 0L),
+            (Long) v.getOrDefault("txidMark", 0L),
+            (LocalDateTime) v.get("created")
+    ));
+
+    /**
+     * Layout of the folder records.
+     */
+    public static final BinaryRecordLayout<FolderDTO> FOLDER = new BinaryRecordLayout<>(List.of(
+            new Field<>("id", BinaryFieldType.UUID, FolderDTO::getId),
+            new Field<>("parent", BinaryFieldType.UUID, FolderDTO::getParent),
+            new Field<>("name", BinaryFieldType.STRING, FolderDTO::getName),
+            new Field<>("created", BinaryFieldType.TIMESTAMP, FolderDTO::getCreated),
+            new Field<>("changed", BinaryFieldType.TIMESTAMP, FolderDTO::getChanged),
+            new Field<>("changeCounter", BinaryFieldType.INT, FolderDTO::getChangeCounter)
+    ), v -> new FolderDTO(
+            (UUID) v.get("id"),
+            (UUID) v.get("parent"),
+            (String) v.get("name"),
+            (LocalDateTime) v.get("created"),
+            (LocalDateTime) v.get("changed"),
+            (Integer) v.getOrDefault("changeCounter", 0)
+    ));
+
+    /**
+     * Layout of the file records.
+     */
+    public static final BinaryRecordLayout<FileDTO> FILE = new BinaryRecordLayout<>(List.of(
+            new Field<>("id", BinaryFieldType.UUID, FileDTO::getId),
+            new Field<>("parent", BinaryFieldType.UUID, FileDTO::getParent),
+            new Field<>("name", BinaryFieldType.STRING, FileDTO::getName),
+            new Field<>("created", BinaryFieldType.TIMESTAMP, FileDTO::getCreated),
+            new Field<>("changed", BinaryFieldType.TIMESTAMP, FileDTO::getChanged),
+            new Field<>("changeCounter", BinaryFieldType.INT, FileDTO::getChangeCounter),
+            new Field<>("extension", BinaryFieldType.STRING, FileDTO::getExtension),
+            new Field<>("locked", BinaryFieldType.BOOL, FileDTO::isLocked),
+            new Field<>("filesize", BinaryFieldType.DECIMAL, FileDTO::getFilesize),
+            new Field<>("importance", BinaryFieldType.INT, FileDTO::getImportance),
+            new Field<>("password", BinaryFieldType.STRING, FileDTO::getPassword),
+            new Field<>("content", BinaryFieldType.STRING, FileDTO::getContent)
+    ), BinaryBackupFormat::toFileDTO);
+
+    /**
+     * Layout of the deleted item records.
+     */
+    public static final BinaryRecordLayout<BackupTombstone> DELETED = new BinaryRecordLayout<>(List.of(
+            new Field<>("id", BinaryFieldType.UUID, BackupTombstone::id),
+            new Field<>("kind", BinaryFieldType.STRING, BackupTombstone::kind)
+    ), v -> new BackupTombstone((UUID) v.get("id"), (String) v.get("kind")));
+
+    /**
+     * This method builds a file data object out of the values of a file record.
+     *
+     * @param v Values of the record, mapped by field name.
+     * @return The file data object.
+     */
+    private static FileDTO toFileDTO(Map<String, Object> v) {
+        return new FileDTO(
+                (UUID) v.get("id"),
+                (UUID) v.get("parent"),
+                (String) v.get("name"),
+                (LocalDateTime) v.get("created"),
+                (LocalDateTime) v.get("changed"),
+                (Integer) v.getOrDefault("changeCounter", 0),
+                (String) v.get("extension"),
+                (Boolean) v.getOrDefault("locked", false),
+                (BigDecimal) v.getOrDefault("filesize", BigDecimal.ZERO),
+                (Integer) v.getOrDefault("importance", 0),
+                (String) v.get("password"),
+                (String) v.get("content")
+        );
+    }
+}
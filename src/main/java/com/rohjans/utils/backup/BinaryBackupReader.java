@@ -0,0 +1,133 @@
+package com.rohjans.utils.backup;
+
+import com.rohjans.utils.backup.BinaryRecordLayout.StoredField;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This is a class that reads a binary backup one record at a time.
+ * <p>
+ * The records are read with the layouts stored in the backup and mapped by field name into the current
+ * data objects, so backups written by older versions of the app are upgraded while they are read.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public class BinaryBackupReader implements BackupReader {
+    /**
+     * Stream the backup is read from.
+     */
+    private final DataInputStream in;
+
+    /**
+     * Layouts stored in the backup, mapped by record tag.
+     */
+    private final Map<Integer, List<StoredField>> layouts = new HashMap<>();
+
+    /**
+     * Header of the backup, null until it is read.
+     */
+    private BackupHeader header;
+
+    /**
+     * Constructs the reader, checking the format version and reading the record layouts.
+     *
+     * @param in Stream the backup is read from, it is closed together with the reader.
+     * @throws IOException Will happen if the stream cannot be read or isn't a supported binary backup.
+     */
+    public BinaryBackupReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(in);
+
+        if(this.in.readInt() != BinaryBackupFormat.MAGIC)
+            throw new IOException("The file is not a binary backup");
+
+        int version = this.in.readUnsignedShort();
+        if(version < 1 || version > BinaryBackupFormat.FORMAT_VERSION)
+            throw new IOException("Unsupported binary backup version: " + version);
+
+        long count = BinaryFieldType.readVarLong(this.in);
+        for(long i = 0; i < count; i++) {
+            int tag = this.in.readUnsignedByte();
+            layouts.put(tag, BinaryRecordLayout.readLayout(this.in));
+        }
+
+        if(!layouts.containsKey(BinaryBackupFormat.TAG_HEADER))
+            throw new IOException("The binary backup is missing its header layout");
+    }
+
+    /**
+     * This method reads the backup header, leaving the stream right after it.
+     *
+     * @return The header of the backup.
+     * @throws IOException Will happen if the stream cannot be read.
+     */
+    @Override
+    public BackupHeader readHeader() throws IOException {
+        if(header != null) return header;
+
+        header = readRecord(BinaryBackupFormat.HEADER, layouts.get(BinaryBackupFormat.TAG_HEADER));
+        return header;
+    }
+
+    /**
+     * This method reads the whole backup, handing each item to the handler as soon as it is read.
+     *
+     * @param handler Handler that consumes the items.
+     * @throws IOException Will happen if the stream cannot be read or isn't a valid backup.
+     */
+    @Override
+    public void read(BackupRecordHandler handler) throws IOException {
+        readHeader();
+
+        List<StoredField> folderLayout = layouts.get(BinaryBackupFormat.TAG_FOLDER);
+        List<StoredField> fileLayout = layouts.get(BinaryBackupFormat.TAG_FILE);
+        List<StoredField> deletedLayout = layouts.get(BinaryBackupFormat.TAG_DELETED);
+
+        //Match the layouts once, instead of for every record
+        boolean[] folderFields = folderLayout == null ? null : BinaryBackupFormat.FOLDER.match(folderLayout);
+        boolean[] fileFields = fileLayout == null ? null : BinaryBackupFormat.FILE.match(fileLayout);
+        boolean[] deletedFields = deletedLayout == null ? null : BinaryBackupFormat.DELETED.match(deletedLayout);
+
+        for(int tag = in.readUnsignedByte(); tag != BinaryBackupFormat.TAG_END; tag = in.readUnsignedByte()) {
+            List<StoredField> stored = layouts.get(tag);
+            if(stored == null) throw new IOException("Binary backup item without a layout: " + tag);
+
+            switch (tag) {
+                case BinaryBackupFormat.TAG_FOLDER ->
+                        handler.onFolder(BinaryBackupFormat.FOLDER.read(in, stored, folderFields));
+                case BinaryBackupFormat.TAG_FILE ->
+                        handler.onFile(BinaryBackupFormat.FILE.read(in, stored, fileFields));
+                case BinaryBackupFormat.TAG_DELETED ->
+                        handler.onDeleted(BinaryBackupFormat.DELETED.read(in, stored, deletedFields));
+                default -> BinaryRecordLayout.skip(in, stored); //Unknown kind of item, ignore it
+            }
+        }
+    }
+
+    /**
+     * This method reads a single record with the given layout.
+     *
+     * @param layout Current layout of the record.
+     * @param stored Layout the record was written with.
+     * @param <T> Type of the record.
+     * @return The object built from the record.
+     * @throws IOException Will happen if the stream cannot be read.
+     */
+    private <T> T readRecord(BinaryRecordLayout<T> layout, List<StoredField> stored) throws IOException {
+        return layout.read(in, stored, layout.match(stored));
+    }
+
+    /**
+     * This method closes the underlying stream.
+     *
+     * @throws IOException Will happen if the stream cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
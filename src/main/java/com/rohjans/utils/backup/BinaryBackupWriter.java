@@ -0,0 +1,188 @@
+package com.rohjans.utils.backup;
+
+import com.rohjans.models.File.FileDTO;
+import com.rohjans.models.File.FileMapper;
+import com.rohjans.models.Folder.FolderDTO;
+import com.rohjans.models.Folder.FolderMapper;
+import com.rohjans.public_.tables.records.FolderRecord;
+import com.rohjans.public_.tables.records.TombstoneRecord;
+import org.jooq.Cursor;
+import org.jooq.Record;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This is a class that writes a binary backup one record at a time, so the memory used doesn't depend
+ * on the size of the database.
+ * <p>
+ * See {@link BinaryBackupFormat} for the layout of the file.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public class BinaryBackupWriter implements BackupWriter {
+    /**
+     * Stream the backup is written to.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * Whether the header was already written.
+     */
+    private boolean headerWritten;
+
+    /**
+     * Constructs the writer and writes the format version and the record layouts.
+     *
+     * @param out Stream the backup is written to, it is closed together with the writer.
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    public BinaryBackupWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(out);
+
+        this.out.writeInt(BinaryBackupFormat.MAGIC);
+        this.out.writeShort(BinaryBackupFormat.FORMAT_VERSION);
+
+        BinaryFieldType.writeVarLong(this.out, 4);
+        writeLayout(BinaryBackupFormat.TAG_HEADER, BinaryBackupFormat.HEADER);
+        writeLayout(BinaryBackupFormat.TAG_FOLDER, BinaryBackupFormat.FOLDER);
+        writeLayout(BinaryBackupFormat.TAG_FILE, BinaryBackupFormat.FILE);
+        writeLayout(BinaryBackupFormat.TAG_DELETED, BinaryBackupFormat.DELETED);
+    }
+
+    /**
+     * This method writes the backup header, it must be written before any item.
+     *
+     * @param header Header of the backup.
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    @Override
+    public void writeHeader(BackupHeader header) throws IOException {
+        if(headerWritten) throw new IllegalStateException("The backup header was already written");
+
+        BinaryBackupFormat.HEADER.write(out, header);
+        headerWritten = true;
+    }
+
+    /**
+     * This method writes the folders, consuming the cursor row by row.
+     *
+     * @param folders Cursor over the folder records.
+     * @return Amount of folders written.
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    @Override
+    public long writeFolders(Cursor<FolderRecord> folders) throws IOException {
+        long count = 0;
+
+        for(FolderRecord record : folders) {
+            writeFolder(FolderMapper.toFolderDTO(record));
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * This method writes the files, consuming the cursor row by row.
+     *
+     * @param files Cursor over the file records.
+     * @return Amount of files written.
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    @Override
+    public long writeFiles(Cursor<Record> files) throws IOException {
+        long count = 0;
+
+        for(Record record : files) {
+            writeFile(FileMapper.toFileDTO(record));
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * This method writes the deleted items, consuming the cursor row by row.
+     *
+     * @param tombstones Cursor over the tombstone records.
+     * @return Amount of deletions written.
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    @Override
+    public long writeDeleted(Cursor<TombstoneRecord> tombstones) throws IOException {
+        long count = 0;
+
+        for(TombstoneRecord record : tombstones) {
+            writeItem(BinaryBackupFormat.TAG_DELETED, BinaryBackupFormat.DELETED,
+                    new BackupTombstone(record.getId(), record.getKind()));
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * This method writes a single folder.
+     *
+     * @param folder Folder data object to be written.
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    public void writeFolder(FolderDTO folder) throws IOException {
+        writeItem(BinaryBackupFormat.TAG_FOLDER, BinaryBackupFormat.FOLDER, folder);
+    }
+
+    /**
+     * This method writes a single file.
+     *
+     * @param file File data object to be written.
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    public void writeFile(FileDTO file) throws IOException {
+        writeItem(BinaryBackupFormat.TAG_FILE, BinaryBackupFormat.FILE, file);
+    }
+
+    /**
+     * This method writes an item record preceded by its tag.
+     *
+     * @param tag Tag of the kind of item.
+     * @param layout Layout of the item record.
+     * @param value Item to be written.
+     * @param <T> Type of the item.
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    private <T> void writeItem(int tag, BinaryRecordLayout<T> layout, T value) throws IOException {
+        if(!headerWritten) throw new IllegalStateException("The backup header must be written first");
+
+        out.writeByte(tag);
+        layout.write(out, value);
+    }
+
+    /**
+     * This method writes the layout of a kind of record, preceded by its tag.
+     *
+     * @param tag Tag of the kind of record.
+     * @param layout Layout of the record.
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    private void writeLayout(int tag, BinaryRecordLayout<?> layout) throws IOException {
+        out.writeByte(tag);
+        layout.writeLayout(out);
+    }
+
+    /**
+     * This method ends the backup and closes the underlying stream.
+     *
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            out.writeByte(BinaryBackupFormat.TAG_END);
+        }
+        finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.rohjans.utils.backup;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * This is an enum that represents the types a field can have in a binary backup, and how each one is encoded.
+ * <p>
+ * Numbers are written as variable-length integers and strings are prefixed with their length in bytes,
+ * so small values take little space. Null values are not written at all, they are marked in the record's
+ * null bitmap instead.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public enum BinaryFieldType {
+    /**
+     * 16 raw bytes, most significant half first.
+     */
+    UUID(1) {
+        @Override
+        void write(DataOutputStream out, Object value) throws IOException {
+            java.util.UUID uuid = (java.util.UUID) value;
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        }
+
+        @Override
+        Object read(DataInputStream in) throws IOException {
+            return new java.util.UUID(in.readLong(), in.readLong());
+        }
+    },
+
+    /**
+     * Microseconds since the epoch (the precision PostgreSQL stores), as a variable-length integer.
+     */
+    TIMESTAMP(2) {
+        @Override
+        void write(DataOutputStream out, Object value) throws IOException {
+            LocalDateTime date = (LocalDateTime) value;
+            writeVarLong(out, date.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + date.getNano() / 1_000);
+        }
+
+        @Override
+        Object read(DataInputStream in) throws IOException {
+            long micros = readVarLong(in);
+            return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                    (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+        }
+    },
+
+    /**
+     * UTF-8 bytes prefixed with their length.
+     */
+    STRING(3) {
+        @Override
+        void write(DataOutputStream out, Object value) throws IOException {
+            byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+            writeVarLong(out, bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        Object read(DataInputStream in) throws IOException {
+            return new String(readBytes(in), StandardCharsets.UTF_8);
+        }
+    },
+
+    /**
+     * 32-bit integer, as a variable-length integer.
+     */
+    INT(4) {
+        @Override
+        void write(DataOutputStream out, Object value) throws IOException {
+            writeVarLong(out, (Integer) value);
+        }
+
+        @Override
+        Object read(DataInputStream in) throws IOException {
+            return (int) readVarLong(in);
+        }
+    },
+
+    /**
+     * 64-bit integer, as a variable-length integer.
+     */
+    LONG(5) {
+        @Override
+        void write(DataOutputStream out, Object value) throws IOException {
+            writeVarLong(out, (Long) value);
+        }
+
+        @Override
+        Object read(DataInputStream in) throws IOException {
+            return readVarLong(in);
+        }
+    },
+
+    /**
+     * Single byte, 0 or 1.
+     */
+    BOOL(6) {
+        @Override
+        void write(DataOutputStream out, Object value) throws IOException {
+            out.writeBoolean((Boolean) value);
+        }
+
+        @Override
+        Object read(DataInputStream in) throws IOException {
+            return in.readBoolean();
+        }
+    },
+
+    /**
+     * Decimal number, as its text representation prefixed with its length (keeps the scale untouched).
+     */
+    DECIMAL(7) {
+        @Override
+        void write(DataOutputStream out, Object value) throws IOException {
+            STRING.write(out, value.toString());
+        }
+
+        @Override
+        Object read(DataInputStream in) throws IOException {
+            return new BigDecimal((String) STRING.read(in));
+        }
+    };
+
+    /**
+     * Code that identifies the type in the backup file.
+     */
+    private final int code;
+
+    /**
+     * Constructs the type.
+     *
+     * @param code Code that identifies the type in the backup file.
+     */
+    BinaryFieldType(int code) {
+        this.code = code;
+    }
+
+    /**
+     * This method writes a value of this type.
+     *
+     * @param out Stream the value is written to.
+     * @param value Value to be written, never null.
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    abstract void write(DataOutputStream out, Object value) throws IOException;
+
+    /**
+     * This method reads a value of this type.
+     *
+     * @param in Stream the value is read from.
+     * @return The value that was read.
+     * @throws IOException Will happen if the stream cannot be read.
+     */
+    abstract Object read(DataInputStream in) throws IOException;
+
+    /**
+     * Getter for the code of the type.
+     *
+     * @return Code that identifies the type in the backup file.
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * This method finds a type by its code.
+     *
+     * @param code Code that identifies the type in the backup file.
+     * @return The type with the given code.
+     * @throws IOException Will happen if the code is unknown, since the rest of the record couldn't be read.
+     */
+    public static BinaryFieldType fromCode(int code) throws IOException {
+        for(BinaryFieldType type : values())
+            if(type.code == code) return type;
+
+        throw new IOException("Unknown binary backup field type: " + code);
+    }
+
+    /**
+     * This method writes a signed integer with a zig-zag variable-length encoding (7 bits per byte).
+     *
+     * @param out Stream the value is written to.
+     * @param value Value to be written.
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+
+        while((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    /**
+     * This method reads a signed integer written with {@link #writeVarLong(DataOutputStream, long)}.
+     *
+     * @param in Stream the value is read from.
+     * @return The value that was read.
+     * @throws IOException Will happen if the stream cannot be read or the value is malformed.
+     */
+    static long readVarLong(DataInputStream in) throws IOException {
+        long zigzag = 0;
+
+        for(int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+
+            if((b & 0x80) == 0) return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        throw new IOException("Malformed variable-length integer in binary backup");
+    }
+
+    /**
+     * This method reads a byte array prefixed with its length.
+     *
+     * @param in Stream the bytes are read from.
+     * @return The bytes that were read.
+     * @throws IOException Will happen if the stream cannot be read or the length is invalid.
+     */
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        long length = readVarLong(in);
+        if(length < 0 || length > Integer.MAX_VALUE - 8)
+            throw new IOException("Invalid length in binary backup: " + length);
+
+        byte[] bytes = new byte[(int) length];
+        in.readFully(bytes);
+
+        return bytes;
+    }
+}
@@ -0,0 +1,182 @@
+package com.rohjans.utils.backup;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * This is a class that describes the fields of a kind of record in a binary backup, and how to
+ * write and read them.
+ * <p>
+ * The field names and types are written to the backup header, so a reader can map the fields of an older
+ * backup by name: fields that no longer exist are skipped and fields that didn't exist yet get their default
+ * value. This is what lets old backups be upgraded on the fly when the schema changes.
+ *
+ * @param <T> Type of the object the records are built from.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public class BinaryRecordLayout<T> {
+    /**
+     * This is a "class" (it's defined as a record) that represents one field of a record layout.
+     *
+     * @param name Name of the field, used to match the fields of older backups.
+     * @param type Type of the field.
+     * @param getter Function that takes the value of the field from an object.
+     * @param <T> Type of the object the field belongs to.
+     *
+     * @author Raul Rohjans 202100518
+     */
+    public record Field<T>(String name, BinaryFieldType type, Function<T, Object> getter) {}
+
+    /**
+     * This is a "class" (it's defined as a record) that represents a field as it was written in a backup header.
+     *
+     * @param name Name of the field.
+     * @param type Type of the field.
+     *
+     * @author Raul Rohjans 202100518
+     */
+    public record StoredField(String name, BinaryFieldType type) {}
+
+    /**
+     * Fields of the record, in the order they are written.
+     */
+    private final List<Field<T>> fields;
+
+    /**
+     * Function that builds an object out of the field values, which are mapped by name.
+     * Missing fields are absent from the map.
+     */
+    private final Function<Map<String, Object>, T> factory;
+
+    /**
+     * Constructs the layout.
+     *
+     * @param fields Fields of the record, in the order they are written.
+     * @param factory Function that builds an object out of the field values, mapped by name.
+     */
+    public BinaryRecordLayout(List<Field<T>> fields, Function<Map<String, Object>, T> factory) {
+        this.fields = fields;
+        this.factory = factory;
+    }
+
+    /**
+     * This method writes the field names and types, so the records can be read by a different version.
+     *
+     * @param out Stream the layout is written to.
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    public void writeLayout(DataOutputStream out) throws IOException {
+        BinaryFieldType.writeVarLong(out, fields.size());
+
+        for(Field<T> field : fields) {
+            BinaryFieldType.STRING.write(out, field.name());
+            out.writeByte(field.type().getCode());
+        }
+    }
+
+    /**
+     * This method reads a layout written by {@link #writeLayout(DataOutputStream)}.
+     *
+     * @param in Stream the layout is read from.
+     * @return The fields as they were written.
+     * @throws IOException Will happen if the stream cannot be read or the layout is malformed.
+     */
+    public static List<StoredField> readLayout(DataInputStream in) throws IOException {
+        long count = BinaryFieldType.readVarLong(in);
+        if(count < 0 || count > 1024) throw new IOException("Invalid field count in binary backup: " + count);
+
+        List<StoredField> stored = new ArrayList<>();
+        for(int i = 0; i < count; i++) {
+            String name = new String(BinaryFieldType.readBytes(in), StandardCharsets.UTF_8);
+            stored.add(new StoredField(name, BinaryFieldType.fromCode(in.readUnsignedByte())));
+        }
+
+        return stored;
+    }
+
+    /**
+     * This method writes a record: a bitmap of the null fields followed by the values of the other fields.
+     *
+     * @param out Stream the record is written to.
+     * @param value Object the record is taken from.
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    public void write(DataOutputStream out, T value) throws IOException {
+        Object[] values = new Object[fields.size()];
+        byte[] nulls = new byte[(fields.size() + 7) / 8];
+
+        for(int i = 0; i < fields.size(); i++) {
+            values[i] = fields.get(i).getter().apply(value);
+            if(values[i] == null) nulls[i / 8] |= (byte) (1 << (i % 8));
+        }
+
+        out.write(nulls);
+        for(int i = 0; i < fields.size(); i++)
+            if(values[i] != null) fields.get(i).type().write(out, values[i]);
+    }
+
+    /**
+     * This method matches the fields of a stored layout with the fields of this layout, so it is only
+     * done once per backup instead of once per record.
+     *
+     * @param stored Layout the records were written with.
+     * @return For each stored field, whether it still exists (with the same type) in this layout.
+     */
+    public boolean[] match(List<StoredField> stored) {
+        boolean[] used = new boolean[stored.size()];
+
+        for(int i = 0; i < stored.size(); i++)
+            for(Field<T> field : fields)
+                if(field.name().equals(stored.get(i).name()) && field.type() == stored.get(i).type()) used[i] = true;
+
+        return used;
+    }
+
+    /**
+     * This method reads a record written with the given layout and builds an object out of it.
+     *
+     * @param in Stream the record is read from.
+     * @param stored Layout the record was written with.
+     * @param used Result of {@link #match(List)} for the stored layout.
+     * @return The object built from the record.
+     * @throws IOException Will happen if the stream cannot be read.
+     */
+    public T read(DataInputStream in, List<StoredField> stored, boolean[] used) throws IOException {
+        byte[] nulls = new byte[(stored.size() + 7) / 8];
+        in.readFully(nulls);
+
+        Map<String, Object> values = new HashMap<>();
+        for(int i = 0; i < stored.size(); i++) {
+            if((nulls[i / 8] & (1 << (i % 8))) != 0) continue;
+
+            //Fields that were removed or changed type are read (to get past them) but not used
+            Object value = stored.get(i).type().read(in);
+            if(used[i]) values.put(stored.get(i).name(), value);
+        }
+
+        return factory.apply(values);
+    }
+
+    /**
+     * This method reads past a record whose kind is unknown to this version.
+     *
+     * @param in Stream the record is read from.
+     * @param stored Layout the record was written with.
+     * @throws IOException Will happen if the stream cannot be read.
+     */
+    public static void skip(DataInputStream in, List<StoredField> stored) throws IOException {
+        byte[] nulls = new byte[(stored.size() + 7) / 8];
+        in.readFully(nulls);
+
+        for(int i = 0; i < stored.size(); i++)
+            if((nulls[i / 8] & (1 << (i % 8))) == 0) stored.get(i).type().read(in);
+    }
+}
@@ -0,0 +1,397 @@
+package com.rohjans.utils.backup;
+
+import com.rohjans.models.Blob.BlobRepository;
+import com.rohjans.public_.tables.Blob;
+import com.rohjans.public_.tables.BlobChunk;
+import com.rohjans.public_.tables.File;
+import com.rohjans.public_.tables.Folder;
+import com.rohjans.utils.DBEngine;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Table;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import java.io.*;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * This is a static class that moves the PFS tables in and out of the database with PostgreSQL's binary COPY,
+ * which is much faster than going through JDBC inserts and selects.
+ * <p>
+ * The backup is a zip archive with a manifest that lists the columns of each table, followed by one
+ * binary COPY stream per table, in the order they have to be restored (folders and contents before files).
+ * <p>
+ * Columns maintained by triggers (blob reference counts and folder child counts) are not part of the archive,
+ * the triggers rebuild them while the rows are restored.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public class CopyBackupEngine {
+    /**
+     * Name of the manifest entry in the archive.
+     */
+    private static final String MANIFEST_ENTRY = "manifest.properties";
+
+    /**
+     * Extension of the table entries in the archive.
+     */
+    private static final String TABLE_ENTRY_EXTENSION = ".copy";
+
+    /**
+     * Version of the archive layout.
+     */
+    private static final int FORMAT_VERSION = 5;
+
+    /**
+     * Version of the archive layout from before file contents could be compressed.
+     */
+    private static final int UNCOMPRESSED_CONTENT_VERSION = 3;
+
+    /**
+     * Version of the archive layout from before file contents were stored in chunks.
+     */
+    private static final int UNCHUNKED_CONTENT_VERSION = 2;
+
+    /**
+     * Version of the archive layout from before file contents were stored in the blob table.
+     */
+    private static final int INLINE_CONTENT_VERSION = 1;
+
+    /**
+     * Tables included in the backup, in the order they are restored.
+     */
+    private static final List<Table<?>> TABLES = List.of(Folder.FOLDER, Blob.BLOB, BlobChunk.BLOB_CHUNK, File.FILE);
+
+    /**
+     * Columns kept up to date by database triggers, they are left out of the archive and rebuilt on restore.
+     */
+    private static final Set<Field<?>> DERIVED_FIELDS = Set.of(Blob.BLOB.REFCOUNT, Folder.FOLDER.CHILDCOUNT,
+            Folder.FOLDER.CHANGETXID, File.FILE.CHANGETXID);
+
+    /**
+     * This method exports the PFS tables into a backup archive.
+     * <p>
+     * It must be the first thing run in the transaction, since it switches it to repeatable read so
+     * both tables are copied from the same consistent snapshot.
+     *
+     * @param tx Database context bound to a transaction.
+     * @param out Stream the archive is written to, it is closed at the end.
+     * @return The amount of rows exported.
+     */
+    public static BackupProgress exportTo(DSLContext tx, OutputStream out) {
+        long start = System.nanoTime();
+        long[] rows = new long[1];
+
+        tx.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ");
+
+        tx.connection(conn -> {
+            CopyManager copyManager = getCopyManager(conn);
+
+            try(ZipOutputStream zip = new ZipOutputStream(out)) {
+                //Manifest goes first so the restore knows the layout before the data
+                zip.putNextEntry(new ZipEntry(MANIFEST_ENTRY));
+                buildManifest().store(zip, "PFS bulk backup");
+                zip.closeEntry();
+
+                for(Table<?> table : TABLES) {
+                    zip.putNextEntry(new ZipEntry(table.getName() + TABLE_ENTRY_EXTENSION));
+                    rows[0] += copyManager.copyOut("COPY " + table.getName() + " (" + columnList(table)
+                            + ") TO STDOUT (FORMAT binary)", zip);
+                    zip.closeEntry();
+                }
+            }
+        });
+
+        return new BackupProgress(rows[0], 0, 0, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * This method imports a backup archive into the PFS tables, replacing all their current data.
+     * <p>
+     * Everything runs in the caller's transaction, so a failure leaves the current data untouched.
+     *
+     * @param tx Database context bound to a transaction.
+     * @param in Stream the archive is read from, it is closed at the end.
+     * @param progressListener Listener notified after every table, can be null.
+     * @param bytesRead Supplier of the amount of archive bytes read so far.
+     * @param totalBytes Total size of the archive in bytes, or 0 if unknown.
+     * @return The amount of rows imported.
+     */
+    public static BackupProgress importFrom(DSLContext tx, InputStream in, Consumer<BackupProgress> progressListener,
+                                            LongSupplier bytesRead, long totalBytes) {
+        long start = System.nanoTime();
+        long[] rows = new long[1];
+
+        tx.execute("SET CONSTRAINTS ALL DEFERRED");
+
+        //Remove all data
+        DBEngine.clearData(tx);
+
+        tx.connection(conn -> {
+            CopyManager copyManager = getCopyManager(conn);
+
+            try(ZipInputStream zip = new ZipInputStream(in)) {
+                Properties manifest = null;
+                int version = 0;
+
+                for(ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                    if(entry.getName().equals(MANIFEST_ENTRY)) {
+                        manifest = new Properties();
+                        manifest.load(zip);
+                        version = checkVersion(manifest);
+                        continue;
+                    }
+
+                    if(manifest == null)
+                        throw new IOException("The backup archive is missing its manifest");
+
+                    String tableName = entry.getName().replace(TABLE_ENTRY_EXTENSION, "");
+                    Table<?> table = findTable(tableName);
+                    String columns = manifest.getProperty("columns." + tableName, "");
+
+                    //COPY reads the entry until its end, the zip stream is not closed by it
+                    if(version == INLINE_CONTENT_VERSION && table.equals(File.FILE))
+                        rows[0] += importInlineContentFiles(tx, copyManager, validateInlineContentColumns(columns), zip);
+                    else if(version == UNCHUNKED_CONTENT_VERSION && table.equals(Blob.BLOB))
+                        rows[0] += importUnchunkedContents(tx, copyManager, validateUnchunkedContentColumns(columns), zip);
+                    else
+                        rows[0] += copyManager.copyIn("COPY " + table.getName() + " (" + validateColumns(table, columns)
+                                + ") FROM STDIN (FORMAT binary)", zip);
+
+                    //The chunks of those archives are stored as they are, so they take up the size of the content
+                    if(version == UNCOMPRESSED_CONTENT_VERSION && table.equals(Blob.BLOB))
+                        tx.execute("UPDATE blob SET stored_size = size");
+
+                    if(progressListener != null)
+                        progressListener.accept(new BackupProgress(rows[0], bytesRead.getAsLong(), totalBytes,
+                                (System.nanoTime() - start) / 1_000_000));
+                }
+            }
+        });
+
+        //The chunks of older archives, or the ones split here, don't have their search vectors yet
+        new BlobRepository(tx).indexContents();
+
+        return new BackupProgress(rows[0], bytesRead.getAsLong(), totalBytes, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * This method imports the files of an archive written before contents were stored in the blob table,
+     * where each file row carries its own content.
+     * <p>
+     * The rows are copied into a staging table first, then the distinct contents are moved into the
+     * blob table and the files are inserted pointing to them.
+     *
+     * @param tx Database context bound to a transaction.
+     * @param copyManager COPY API of the transaction's connection.
+     * @param columns Validated column list of the file entry.
+     * @param in Stream positioned at the file entry.
+     * @return The amount of files imported.
+     * @throws SQLException Will happen if the rows cannot be copied.
+     * @throws IOException Will happen if the entry cannot be read.
+     */
+    private static long importInlineContentFiles(DSLContext tx, CopyManager copyManager, String columns, InputStream in)
+            throws SQLException, IOException {
+        tx.execute("CREATE TEMP TABLE legacy_file (LIKE file INCLUDING DEFAULTS, content TEXT) ON COMMIT DROP");
+        copyManager.copyIn("COPY legacy_file (" + columns + ") FROM STDIN (FORMAT binary)", in);
+
+        String hash = "encode(sha256(convert_to(content, 'UTF8')), 'hex')";
+        insertContents(tx, "SELECT DISTINCT ON (hash) " + hash + " AS hash, content FROM legacy_file WHERE content IS NOT NULL");
+
+        List<String> fileColumns = new ArrayList<>();
+        for(String column : columns.split(","))
+            if(!column.equals("content")) fileColumns.add(column);
+
+        String columnList = String.join(",", fileColumns);
+        int files = tx.execute("INSERT INTO file (" + columnList + ", contenthash) SELECT " + columnList
+                + ", CASE WHEN content IS NULL THEN NULL ELSE " + hash + " END FROM legacy_file");
+
+        tx.execute("DROP TABLE legacy_file");
+        return files;
+    }
+
+    /**
+     * This method imports the contents of an archive written before contents were stored in chunks,
+     * where each blob row carries its whole content.
+     * <p>
+     * The rows are copied into a staging table first, then each content is split into chunks.
+     *
+     * @param tx Database context bound to a transaction.
+     * @param copyManager COPY API of the transaction's connection.
+     * @param columns Validated column list of the blob entry.
+     * @param in Stream positioned at the blob entry.
+     * @return The amount of contents imported.
+     * @throws SQLException Will happen if the rows cannot be copied.
+     * @throws IOException Will happen if the entry cannot be read.
+     */
+    private static long importUnchunkedContents(DSLContext tx, CopyManager copyManager, String columns, InputStream in)
+            throws SQLException, IOException {
+        tx.execute("CREATE TEMP TABLE legacy_blob (hash CHAR(64), content TEXT) ON COMMIT DROP");
+        copyManager.copyIn("COPY legacy_blob (" + columns + ") FROM STDIN (FORMAT binary)", in);
+
+        int contents = insertContents(tx, "SELECT hash, content FROM legacy_blob");
+
+        tx.execute("DROP TABLE legacy_blob");
+        return contents;
+    }
+
+    /**
+     * This method stores whole contents in the blob tables, splitting them into chunks on the server.
+     * The chunks are stored uncompressed, since compressing is done by the application.
+     *
+     * @param tx Database context bound to a transaction.
+     * @param contents Query that selects the hash and content of each content to be stored, once each.
+     * @return The amount of contents stored.
+     */
+    private static int insertContents(DSLContext tx, String contents) {
+        int stored = tx.execute("INSERT INTO blob (hash, size, stored_size) SELECT hash, octet_length(convert_to(content, 'UTF8')), "
+                + "octet_length(convert_to(content, 'UTF8')) FROM (" + contents + ") c ON CONFLICT DO NOTHING");
+        tx.execute("INSERT INTO blob_chunk (hash, seq, data) SELECT c.hash, s.seq, s.data "
+                + "FROM (" + contents + ") c, split_content(c.content, " + BlobRepository.CHUNK_SIZE + ") s ON CONFLICT DO NOTHING");
+
+        return stored;
+    }
+
+    /**
+     * This method gets the driver's COPY API out of a (possibly pooled) connection.
+     *
+     * @param conn Connection to the database.
+     * @return The copy manager of the connection.
+     * @throws SQLException Happens if the connection is not a PostgreSQL connection.
+     */
+    private static CopyManager getCopyManager(Connection conn) throws SQLException {
+        return conn.unwrap(PGConnection.class).getCopyAPI();
+    }
+
+    /**
+     * This method builds the manifest that describes the archive layout.
+     *
+     * @return The manifest properties.
+     */
+    private static Properties buildManifest() {
+        Properties manifest = new Properties();
+        manifest.setProperty("version", String.valueOf(FORMAT_VERSION));
+
+        List<String> tableNames = new ArrayList<>();
+        for(Table<?> table : TABLES) {
+            tableNames.add(table.getName());
+            manifest.setProperty("columns." + table.getName(), columnList(table));
+        }
+        manifest.setProperty("tables", String.join(",", tableNames));
+
+        return manifest;
+    }
+
+    /**
+     * This method checks if the archive version can be read by this engine.
+     *
+     * @param manifest Manifest of the archive.
+     * @return The version of the archive.
+     * @throws IOException Will happen if the archive was written by a newer version.
+     */
+    private static int checkVersion(Properties manifest) throws IOException {
+        int version = Integer.parseInt(manifest.getProperty("version", "0"));
+
+        if(version < 1 || version > FORMAT_VERSION)
+            throw new IOException("Unsupported bulk backup version: " + version);
+
+        return version;
+    }
+
+    /**
+     * This method gets the comma separated list of the columns of a table that are backed up.
+     *
+     * @param table Table to get the columns from.
+     * @return The list of column names.
+     */
+    private static String columnList(Table<?> table) {
+        List<String> columns = new ArrayList<>();
+        for(Field<?> field : table.fields())
+            if(!DERIVED_FIELDS.contains(field)) columns.add(field.getName());
+
+        return String.join(",", columns);
+    }
+
+    /**
+     * This method finds one of the backed up tables by its name.
+     *
+     * @param name Name of the table.
+     * @return The table.
+     * @throws IOException Will happen if the archive references a table that is not part of the backup.
+     */
+    private static Table<?> findTable(String name) throws IOException {
+        for(Table<?> table : TABLES)
+            if(table.getName().equals(name)) return table;
+
+        throw new IOException("Unknown table in the backup archive: " + name);
+    }
+
+    /**
+     * This method checks the column list of an archive entry against the table, since it ends up in the COPY statement.
+     * <p>
+     * Columns that were added to the table after the backup was made are left to their defaults.
+     *
+     * @param table Table the entry belongs to.
+     * @param columns Comma separated list of columns from the manifest.
+     * @return The validated column list.
+     * @throws IOException Will happen if a column doesn't exist on the table.
+     */
+    private static String validateColumns(Table<?> table, String columns) throws IOException {
+        Map<String, Field<?>> fields = new LinkedHashMap<>();
+        for(Field<?> field : table.fields())
+            fields.put(field.getName(), field);
+
+        for(String column : columns.split(","))
+            if(!fields.containsKey(column) || DERIVED_FIELDS.contains(fields.get(column)))
+                throw new IOException("Unknown column '" + column + "' for table " + table.getName());
+
+        return columns;
+    }
+
+    /**
+     * This method checks the column list of a blob entry written before contents were stored in chunks,
+     * which has the content column instead of the chunks.
+     *
+     * @param columns Comma separated list of columns from the manifest.
+     * @return The validated column list.
+     * @throws IOException Will happen if a column doesn't exist on the staging table.
+     */
+    private static String validateUnchunkedContentColumns(String columns) throws IOException {
+        for(String column : columns.split(","))
+            if(!column.equals("hash") && !column.equals("content"))
+                throw new IOException("Unknown column '" + column + "' for table " + Blob.BLOB.getName());
+
+        return columns;
+    }
+
+    /**
+     * This method checks the column list of a file entry written before contents were stored in the blob table,
+     * which has the content column instead of the content hash.
+     *
+     * @param columns Comma separated list of columns from the manifest.
+     * @return The validated column list.
+     * @throws IOException Will happen if a column doesn't exist on the staging table.
+     */
+    private static String validateInlineContentColumns(String columns) throws IOException {
+        List<String> names = Arrays.asList(columns.split(","));
+        if(names.contains("content"))
+            return validateColumns(File.FILE, String.join(",", names.stream().filter(name -> !name.equals("content")).toList()))
+                    + ",content";
+
+        return validateColumns(File.FILE, columns);
+    }
+}
@@ -0,0 +1,135 @@
+package com.rohjans.utils.backup;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rohjans.models.File.FileDTO;
+import com.rohjans.models.Folder.FolderDTO;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This is a class that reads a JSON backup one item at a time, so the memory used doesn't depend
+ * on the size of the backup file.
+ * <p>
+ * It accepts the "folders" and "files" arrays in any order, so backups made before folders were
+ * written first (and without a header) can still be read.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public class JsonBackupReader implements BackupReader {
+    /**
+     * Mapper used to deserialize each data object.
+     */
+    private final ObjectMapper mapper;
+
+    /**
+     * Parser that reads the JSON tokens from the backup stream.
+     */
+    private final JsonParser parser;
+
+    /**
+     * Header of the backup, null until it is read.
+     */
+    private BackupHeader header;
+
+    /**
+     * Constructs the reader.
+     *
+     * @param in Stream the backup is read from, it is closed together with the reader.
+     * @throws IOException Will happen if the stream cannot be read.
+     */
+    public JsonBackupReader(InputStream in) throws IOException {
+        mapper = new ObjectMapper();
+        mapper.findAndRegisterModules(); //This is used for TypeHandling
+
+        //Read-only getters (like the long file size) are also written to the backup
+        mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+        parser = mapper.getFactory().createParser(in);
+    }
+
+    /**
+     * This method reads the backup header, leaving the parser right after it.
+     * <p>
+     * Backups made before headers were written are reported as {@link BackupHeader#LEGACY}.
+     *
+     * @return The header of the backup.
+     * @throws IOException Will happen if the stream cannot be read or isn't a valid backup.
+     */
+    @Override
+    public BackupHeader readHeader() throws IOException {
+        if(header != null) return header;
+
+        if(parser.nextToken() != JsonToken.START_OBJECT)
+            throw new JsonParseException(parser, "The backup file must contain a JSON object");
+
+        //The header is always the first field, otherwise leave the field for read() to handle
+        if(parser.nextToken() == JsonToken.FIELD_NAME && parser.currentName().equals("backup")) {
+            parser.nextToken();
+            header = mapper.readValue(parser, BackupHeader.class);
+            parser.nextToken();
+        }
+        else header = BackupHeader.LEGACY;
+
+        return header;
+    }
+
+    /**
+     * This method reads the whole backup, handing each item to the handler as soon as it is parsed.
+     *
+     * @param handler Handler that consumes the items.
+     * @throws IOException Will happen if the stream cannot be read or isn't a valid backup.
+     */
+    @Override
+    public void read(BackupRecordHandler handler) throws IOException {
+        readHeader();
+
+        for(; parser.currentToken() == JsonToken.FIELD_NAME; parser.nextToken()) {
+            String field = parser.currentName();
+            parser.nextToken();
+
+            switch (field) {
+                case "folders" -> {
+                    expectArray();
+                    while(parser.nextToken() == JsonToken.START_OBJECT)
+                        handler.onFolder(mapper.readValue(parser, FolderDTO.class));
+                }
+                case "files" -> {
+                    expectArray();
+                    while(parser.nextToken() == JsonToken.START_OBJECT)
+                        handler.onFile(mapper.readValue(parser, FileDTO.class));
+                }
+                case "deleted" -> {
+                    expectArray();
+                    while(parser.nextToken() == JsonToken.START_OBJECT)
+                        handler.onDeleted(mapper.readValue(parser, BackupTombstone.class));
+                }
+                default -> parser.skipChildren(); //Unknown section, ignore it
+            }
+        }
+    }
+
+    /**
+     * This method checks that the parser is at the start of an array.
+     *
+     * @throws IOException Will happen if the current token isn't the start of an array.
+     */
+    private void expectArray() throws IOException {
+        if(parser.currentToken() != JsonToken.START_ARRAY)
+            throw new JsonParseException(parser, "Expected an array of items");
+    }
+
+    /**
+     * This method closes the parser and the underlying stream.
+     *
+     * @throws IOException Will happen if the stream cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
@@ -0,0 +1,141 @@
+package com.rohjans.utils.backup;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.rohjans.models.File.FileMapper;
+import com.rohjans.models.Folder.FolderMapper;
+import com.rohjans.public_.tables.records.FolderRecord;
+import com.rohjans.public_.tables.records.TombstoneRecord;
+import org.jooq.Cursor;
+import org.jooq.Record;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This is a class that writes a JSON backup one record at a time, so the memory used doesn't depend
+ * on the size of the database.
+ * <p>
+ * The document has the shape {"backup": {...}, "folders": [...], "files": [...], "deleted": [...]}, with the
+ * header first so the backup chain can be resolved without reading the whole file, and folders before
+ * files so a restore can insert them before the files that reference them.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public class JsonBackupWriter implements BackupWriter {
+    /**
+     * Mapper used to serialize each data object.
+     */
+    private final ObjectMapper mapper;
+
+    /**
+     * Generator that writes the JSON tokens to the backup stream.
+     */
+    private final JsonGenerator generator;
+
+    /**
+     * Constructs the writer and starts the JSON document.
+     *
+     * @param out Stream the backup is written to, it is closed together with the writer.
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    public JsonBackupWriter(OutputStream out) throws IOException {
+        mapper = new ObjectMapper();
+        mapper.findAndRegisterModules(); //This is used for TypeHandling
+
+        //Leave flushing to the buffered stream, instead of doing it after every record
+        mapper.disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        generator = mapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        generator.useDefaultPrettyPrinter();
+        generator.writeStartObject();
+    }
+
+    /**
+     * This method writes the backup header, it must be written before anything else.
+     *
+     * @param header Header of the backup.
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    @Override
+    public void writeHeader(BackupHeader header) throws IOException {
+        generator.writeFieldName("backup");
+        mapper.writeValue(generator, header);
+    }
+
+    /**
+     * This method writes the folders array, consuming the cursor row by row.
+     *
+     * @param folders Cursor over the folder records.
+     * @return Amount of folders written.
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    @Override
+    public long writeFolders(Cursor<FolderRecord> folders) throws IOException {
+        long count = 0;
+
+        generator.writeArrayFieldStart("folders");
+        for(FolderRecord record : folders) {
+            mapper.writeValue(generator, FolderMapper.toFolderDTO(record));
+            count++;
+        }
+        generator.writeEndArray();
+
+        return count;
+    }
+
+    /**
+     * This method writes the files array, consuming the cursor row by row.
+     *
+     * @param files Cursor over the file records.
+     * @return Amount of files written.
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    @Override
+    public long writeFiles(Cursor<Record> files) throws IOException {
+        long count = 0;
+
+        generator.writeArrayFieldStart("files");
+        for(Record record : files) {
+            mapper.writeValue(generator, FileMapper.toFileDTO(record));
+            count++;
+        }
+        generator.writeEndArray();
+
+        return count;
+    }
+
+    /**
+     * This method writes the deleted items array, consuming the cursor row by row.
+     *
+     * @param tombstones Cursor over the tombstone records.
+     * @return Amount of deletions written.
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    @Override
+    public long writeDeleted(Cursor<TombstoneRecord> tombstones) throws IOException {
+        long count = 0;
+
+        generator.writeArrayFieldStart("deleted");
+        for(TombstoneRecord record : tombstones) {
+            mapper.writeValue(generator, new BackupTombstone(record.getId(), record.getKind()));
+            count++;
+        }
+        generator.writeEndArray();
+
+        return count;
+    }
+
+    /**
+     * This method ends the JSON document (the generator closes any open array or object)
+     * and closes the underlying stream.
+     *
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+}
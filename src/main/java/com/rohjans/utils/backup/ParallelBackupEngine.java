@@ -0,0 +1,337 @@
+package com.rohjans.utils.backup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.rohjans.models.File.FileRepository;
+import com.rohjans.models.Folder.FolderRepository;
+import com.rohjans.public_.tables.records.FolderRecord;
+import com.rohjans.utils.DBEngine;
+import org.jooq.Cursor;
+import org.jooq.Record;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * This is a static class that backs up and restores the database with several connections at once.
+ * <p>
+ * The file ID key space is split into ranges and each range is read on its own pooled connection and
+ * written to its own segment file. All the connections share the same exported snapshot, so the
+ * segments together are as consistent as a single-connection backup. A manifest ties the folders file
+ * and the segments together.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public class ParallelBackupEngine {
+    /**
+     * Name of the manifest file in the backup directory.
+     */
+    public static final String MANIFEST_NAME = "manifest.json";
+
+    /**
+     * Version of the parallel backup layout.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Amount of key ranges per worker, more ranges than workers evens out the work when the IDs aren't uniform.
+     */
+    private static final int SEGMENTS_PER_WORKER = 4;
+
+    /**
+     * This method backs up the database into a directory, reading the file ranges in parallel.
+     *
+     * @param ctx Database context instance, each worker borrows its own connection from it.
+     * @param directory Empty directory the backup is written to.
+     * @param parallelism Amount of connections reading at the same time.
+     * @param compress Whether the segment files should be gzip compressed.
+     * @param fetchSize Amount of records fetched from the server per round trip.
+     * @param cancelled Function that tells if the backup was cancelled, which stops every segment.
+     * @return The amount of items exported.
+     * @throws IOException Will happen if a segment cannot be written or the backup was cancelled.
+     */
+    public static BackupProgress exportTo(DSLContext ctx, File directory, int parallelism, boolean compress,
+                                          int fetchSize, BooleanSupplier cancelled) throws IOException {
+        long start = System.nanoTime();
+        String extension = ".json" + (compress ? BackupStreams.GZIP_EXTENSION : "");
+        List<BackupSegment> segments = new ArrayList<>();
+        long[] folderCount = new long[1];
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            DBEngine.runTransaction(ctx, cfg -> {
+                DSLContext tx = cfg.dsl();
+                tx.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ");
+
+                //The snapshot stays valid for the workers as long as this transaction is open
+                String snapshot = tx.fetchValue(DSL.field("pg_export_snapshot()", String.class));
+
+                List<UUID> bounds = splitKeySpace(parallelism * SEGMENTS_PER_WORKER);
+                List<Future<BackupSegment>> futures = new ArrayList<>();
+
+                for(int i = 0; i <= bounds.size(); i++) {
+                    UUID from = i == 0 ? null : bounds.get(i - 1);
+                    UUID to = i == bounds.size() ? null : bounds.get(i);
+                    File segmentFile = new File(directory, String.format("files-%03d%s", i, extension));
+
+                    futures.add(executor.submit(() -> exportSegment(ctx, snapshot, segmentFile, from, to,
+                            compress, fetchSize, cancelled)));
+                }
+
+                //Folders are written by this connection while the workers write the files
+                try(JsonBackupWriter writer = new JsonBackupWriter(
+                        BackupStreams.openOutput(newFile(directory, "folders" + extension), compress, cancelled));
+                    Cursor<FolderRecord> folders = new FolderRepository(tx).findAllLazy(fetchSize)) {
+                    folderCount[0] = writer.writeFolders(folders);
+                }
+
+                for(Future<BackupSegment> future : futures) segments.add(await(future));
+            });
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        BackupManifest manifest = new BackupManifest(FORMAT_VERSION, LocalDateTime.now(),
+                "folders" + extension, folderCount[0], segments);
+        createMapper().writeValue(new File(directory, MANIFEST_NAME), manifest);
+
+        return new BackupProgress(manifest.itemCount(), 0, 0, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * This method restores a parallel backup, replacing all the current data.
+     * <p>
+     * The folders are restored first in their own transaction, then the segments are restored in parallel,
+     * each in its own transaction. Because of that the restore is not atomic: if a segment fails, the
+     * database is left with part of the files and the restore has to be run again.
+     *
+     * @param ctx Database context instance, each worker borrows its own connection from it.
+     * @param manifestFile Manifest of the backup.
+     * @param parallelism Amount of segments restored at the same time.
+     * @param batchSize Amount of items inserted per batch.
+     * @param progressListener Listener notified after every restored segment, can be null.
+     * @return The amount of items imported.
+     * @throws IOException Will happen if the backup cannot be read.
+     */
+    public static BackupProgress importFrom(DSLContext ctx, File manifestFile, int parallelism, int batchSize,
+                                            Consumer<BackupProgress> progressListener) throws IOException {
+        long start = System.nanoTime();
+        File directory = manifestFile.getParentFile();
+        BackupManifest manifest = readManifest(manifestFile);
+
+        //Check every file is there before removing anything
+        long totalBytes = 0;
+        List<File> files = new ArrayList<>();
+        files.add(new File(directory, manifest.folders()));
+        for(BackupSegment segment : manifest.segments()) files.add(new File(directory, segment.file()));
+
+        for(File file : files) {
+            if(!file.exists()) throw new IOException("Missing backup segment " + file.getName());
+            totalBytes += file.length();
+        }
+
+        AtomicLong bytesRead = new AtomicLong();
+        AtomicLong items = new AtomicLong();
+        long total = totalBytes;
+
+        DBEngine.runTransaction(ctx, cfg -> {
+            DSLContext tx = cfg.dsl();
+
+            //Folders can reference parents that come later in the file, so check the FKs on commit
+            tx.execute("SET CONSTRAINTS ALL DEFERRED");
+
+            //Remove all data
+            DBEngine.clearData(tx);
+
+            items.addAndGet(importSegment(tx, files.get(0), batchSize, bytesRead));
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+
+            for(File segmentFile : files.subList(1, files.size())) {
+                futures.add(executor.submit(() -> {
+                    DBEngine.runTransaction(ctx, cfg -> items.addAndGet(
+                            importSegment(cfg.dsl(), segmentFile, batchSize, bytesRead)));
+
+                    if(progressListener != null)
+                        progressListener.accept(new BackupProgress(items.get(), bytesRead.get(), total,
+                                (System.nanoTime() - start) / 1_000_000));
+                    return null;
+                }));
+            }
+
+            for(Future<?> future : futures) await(future);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        return new BackupProgress(items.get(), bytesRead.get(), totalBytes, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * This method writes the files of a key range to a segment file, on its own connection.
+     *
+     * @param ctx Database context instance.
+     * @param snapshot ID of the exported snapshot the range is read from.
+     * @param segmentFile File the segment is written to.
+     * @param from Lowest file ID of the range (inclusive), or null for no lower bound.
+     * @param to Highest file ID of the range (exclusive), or null for no upper bound.
+     * @param compress Whether the segment file should be gzip compressed.
+     * @param fetchSize Amount of records fetched from the server per round trip.
+     * @param cancelled Function that tells if the backup was cancelled.
+     * @return The written segment.
+     * @throws IOException Will happen if the segment cannot be written or the backup was cancelled.
+     */
+    private static BackupSegment exportSegment(DSLContext ctx, String snapshot, File segmentFile, UUID from, UUID to,
+                                               boolean compress, int fetchSize, BooleanSupplier cancelled) throws IOException {
+        long[] count = new long[1];
+
+        DBEngine.runTransaction(ctx, cfg -> {
+            DSLContext tx = cfg.dsl();
+            tx.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ");
+            tx.execute("SET TRANSACTION SNAPSHOT {0}", DSL.inline(snapshot));
+
+            try(JsonBackupWriter writer = new JsonBackupWriter(BackupStreams.openOutput(newFile(segmentFile), compress, cancelled));
+                Cursor<Record> files = new FileRepository(tx).findRangeLazy(from, to, fetchSize)) {
+                count[0] = writer.writeFiles(files);
+            }
+        });
+
+        return new BackupSegment(segmentFile.getName(), from, to, count[0]);
+    }
+
+    /**
+     * This method restores one backup file in the given transaction.
+     *
+     * @param tx Database context bound to a transaction.
+     * @param file Backup file to be restored.
+     * @param batchSize Amount of items inserted per batch.
+     * @param bytesRead Counter of the bytes read, shared by all the segments.
+     * @return The amount of items restored.
+     * @throws IOException Will happen if the file cannot be read.
+     */
+    private static long importSegment(DSLContext tx, File file, int batchSize, AtomicLong bytesRead) throws IOException {
+        try(JsonBackupReader reader = new JsonBackupReader(BackupStreams.openInput(file, bytesRead))) {
+            RestoreBatcher batcher = new RestoreBatcher(tx, batchSize, false, null, bytesRead::get, 0);
+            reader.read(batcher);
+
+            return batcher.finish().items();
+        }
+    }
+
+    /**
+     * This method reads and validates the manifest of a parallel backup.
+     *
+     * @param manifestFile Manifest file.
+     * @return The manifest.
+     * @throws IOException Will happen if the manifest cannot be read or was written by a newer version.
+     */
+    private static BackupManifest readManifest(File manifestFile) throws IOException {
+        BackupManifest manifest = createMapper().readValue(manifestFile, BackupManifest.class);
+
+        if(manifest.version() < 1 || manifest.version() > FORMAT_VERSION)
+            throw new IOException("Unsupported parallel backup version: " + manifest.version());
+
+        if(manifest.folders() == null || manifest.segments() == null)
+            throw new IOException("The parallel backup manifest is incomplete");
+
+        return manifest;
+    }
+
+    /**
+     * This method splits the UUID key space into ranges of the same size.
+     * <p>
+     * PostgreSQL compares UUIDs byte by byte, so the bounds only need to split the most significant 64 bits.
+     *
+     * @param parts Amount of ranges.
+     * @return The bounds between the ranges, one less than the amount of ranges.
+     */
+    private static List<UUID> splitKeySpace(int parts) {
+        BigInteger space = BigInteger.ONE.shiftLeft(64);
+        List<UUID> bounds = new ArrayList<>();
+
+        //longValue keeps the unsigned bit pattern, which is what the database compares
+        for(int i = 1; i < parts; i++)
+            bounds.add(new UUID(space.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(parts)).longValue(), 0));
+
+        return bounds;
+    }
+
+    /**
+     * This method waits for a worker to finish, rethrowing its error.
+     *
+     * @param future Result of the worker.
+     * @param <T> Type of the result.
+     * @return The result of the worker.
+     * @throws IOException Will happen if the worker failed with an IO error or was interrupted.
+     */
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("The parallel backup was interrupted");
+        }
+        catch (ExecutionException e) {
+            if(e.getCause() instanceof IOException ioException) throw ioException;
+            if(e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * This method creates a new empty file inside a directory.
+     *
+     * @param directory Directory of the file.
+     * @param name Name of the file.
+     * @return The created file.
+     * @throws IOException Will happen if the file already exists or cannot be created.
+     */
+    private static File newFile(File directory, String name) throws IOException {
+        return newFile(new File(directory, name));
+    }
+
+    /**
+     * This method creates a new empty file.
+     *
+     * @param file File to be created.
+     * @return The created file.
+     * @throws IOException Will happen if the file already exists or cannot be created.
+     */
+    private static File newFile(File file) throws IOException {
+        if(!file.createNewFile()) throw new IOException("Backup file " + file.getName() + " already exists");
+
+        return file;
+    }
+
+    /**
+     * This method creates the mapper used for the manifest.
+     *
+     * @return The object mapper.
+     */
+    private static ObjectMapper createMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.findAndRegisterModules(); //This is used for TypeHandling
+        mapper.enable(SerializationFeature.INDENT_OUTPUT);
+
+        return mapper;
+    }
+}
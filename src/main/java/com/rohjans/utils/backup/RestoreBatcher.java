@@ -0,0 +1,195 @@
+package com.rohjans.utils.backup;
+
+import com.rohjans.models.File.FileDTO;
+import com.rohjans.models.File.FileRepository;
+import com.rohjans.models.Folder.FolderDTO;
+import com.rohjans.models.Folder.FolderMapper;
+import com.rohjans.models.Folder.FolderRepository;
+import com.rohjans.public_.tables.File;
+import com.rohjans.public_.tables.Folder;
+import org.jooq.DSLContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * This is a class that collects the items read from a backup and writes them in fixed-size batches,
+ * so only one batch is ever held in memory.
+ * <p>
+ * Full backups are inserted into empty tables, while incremental backups are upserted on top of the
+ * existing data and have their deletions replayed.
+ *
+ * @author Raul Rohjans 202100518
+ */
+public class RestoreBatcher implements BackupRecordHandler {
+    /**
+     * Database context the batches are inserted with.
+     */
+    private final DSLContext ctx;
+
+    /**
+     * Amount of items inserted per batch.
+     */
+    private final int batchSize;
+
+    /**
+     * Whether the items should be upserted instead of inserted.
+     */
+    private final boolean upsert;
+
+    /**
+     * Listener that is notified after every batch, can be null.
+     */
+    private final Consumer<BackupProgress> progressListener;
+
+    /**
+     * Supplier of the amount of backup bytes read so far.
+     */
+    private final LongSupplier bytesRead;
+
+    /**
+     * Total size of the backup in bytes, or 0 if unknown.
+     */
+    private final long totalBytes;
+
+    /**
+     * Folders and files waiting to be written.
+     */
+    private final List<FolderDTO> folders = new ArrayList<>();
+    private final List<FileDTO> files = new ArrayList<>();
+
+    /**
+     * IDs of the folders and files waiting to be deleted.
+     */
+    private final List<UUID> deletedFolders = new ArrayList<>();
+    private final List<UUID> deletedFiles = new ArrayList<>();
+
+    /**
+     * Amount of items inserted so far.
+     */
+    private long items;
+
+    /**
+     * Time at which the restore started, in nanoseconds.
+     */
+    private final long startNanos;
+
+    /**
+     * Constructs the batcher.
+     *
+     * @param ctx Database context the batches are inserted with.
+     * @param batchSize Amount of items inserted per batch.
+     * @param upsert Whether the items should be upserted instead of inserted (for incremental backups).
+     * @param progressListener Listener notified after every batch, can be null.
+     * @param bytesRead Supplier of the amount of backup bytes read so far.
+     * @param totalBytes Total size of the backup in bytes, or 0 if unknown.
+     */
+    public RestoreBatcher(DSLContext ctx, int batchSize, boolean upsert, Consumer<BackupProgress> progressListener,
+                          LongSupplier bytesRead, long totalBytes) {
+        this.ctx = ctx;
+        this.batchSize = batchSize;
+        this.upsert = upsert;
+        this.progressListener = progressListener;
+        this.bytesRead = bytesRead;
+        this.totalBytes = totalBytes;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * This method queues a folder for insertion.
+     *
+     * @param folder Folder data object that was read.
+     */
+    @Override
+    public void onFolder(FolderDTO folder) {
+        folders.add(folder);
+        if(getPendingCount() >= batchSize) flush();
+    }
+
+    /**
+     * This method queues a file for insertion.
+     *
+     * @param file File data object that was read.
+     */
+    @Override
+    public void onFile(FileDTO file) {
+        files.add(file);
+        if(getPendingCount() >= batchSize) flush();
+    }
+
+    /**
+     * This method queues an item for deletion.
+     *
+     * @param tombstone Deleted item that was read.
+     */
+    @Override
+    public void onDeleted(BackupTombstone tombstone) {
+        if(tombstone.isFolder()) deletedFolders.add(tombstone.id());
+        else deletedFiles.add(tombstone.id());
+
+        if(getPendingCount() >= batchSize) flush();
+    }
+
+    /**
+     * This method writes the pending items and reports the progress.
+     */
+    public void flush() {
+        long pending = getPendingCount();
+        if(pending == 0) return;
+
+        //Folders have to be first due to FKs
+        if(upsert) {
+            new FolderRepository(ctx).upsertAll(folders);
+            new FileRepository(ctx).upsertAll(files);
+        }
+        else {
+            if(!folders.isEmpty()) ctx.batchInsert(FolderMapper.toFolderRecord(folders)).execute();
+            new FileRepository(ctx).createAll(files);
+        }
+
+        //Deleting a folder also deletes everything inside it
+        if(!deletedFiles.isEmpty()) ctx.deleteFrom(File.FILE).where(File.FILE.ID.in(deletedFiles)).execute();
+        if(!deletedFolders.isEmpty()) ctx.deleteFrom(Folder.FOLDER).where(Folder.FOLDER.ID.in(deletedFolders)).execute();
+
+        items += pending;
+        folders.clear();
+        files.clear();
+        deletedFolders.clear();
+        deletedFiles.clear();
+
+        if(progressListener != null) progressListener.accept(getProgress());
+    }
+
+    /**
+     * This method inserts whatever is still pending.
+     *
+     * @return The final progress of the restore.
+     */
+    public BackupProgress finish() {
+        flush();
+
+        return getProgress();
+    }
+
+    /**
+     * This method gets the amount of items waiting to be written.
+     *
+     * @return Amount of pending items.
+     */
+    private int getPendingCount() {
+        return folders.size() + files.size() + deletedFolders.size() + deletedFiles.size();
+    }
+
+    /**
+     * This method takes a snapshot of the restore progress.
+     *
+     * @return The current progress.
+     */
+    public BackupProgress getProgress() {
+        return new BackupProgress(items, bytesRead.getAsLong(), totalBytes,
+                (System.nanoTime() - startNanos) / 1_000_000);
+    }
+}
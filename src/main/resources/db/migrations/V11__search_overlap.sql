@@ -0,0 +1,3 @@
+-- The search vector of a chunk now also covers the end of the chunk before it, so the words and phrases
+-- split between two chunks can be found. The chunks after the first are indexed again in the background.
+UPDATE blob_chunk SET search = NULL WHERE seq > 0;
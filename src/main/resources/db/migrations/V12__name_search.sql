@@ -0,0 +1,24 @@
+-- Finds the folders and files whose name contains a text (matching case, like the tree did), so the tree doesn't
+-- have to be loaded whole to search it. Each match comes with its path from the root.
+-- The names are short and a single table scan each, so they aren't indexed.
+CREATE FUNCTION search_names(query TEXT, max_results INT)
+    RETURNS TABLE(id UUID, parent UUID, path TEXT) AS $$
+    WITH RECURSIVE hits AS (
+        SELECT i.id, i.parent, i.name
+        FROM (
+            SELECT fo.id, fo.parent, fo.name FROM folder fo WHERE strpos(fo.name, query) > 0
+            UNION ALL
+            SELECT f.id, f.parent, f.name FROM file f WHERE strpos(f.name, query) > 0
+        ) i
+        ORDER BY i.name, i.id
+        LIMIT max_results
+    ),
+    ancestors(id, folder, path) AS (
+        SELECT h.id, h.parent, h.name::TEXT FROM hits h
+        UNION ALL
+        SELECT a.id, fo.parent, fo.name || '/' || a.path FROM ancestors a JOIN folder fo ON fo.id = a.folder
+    )
+    SELECT h.id, h.parent, '/' || a.path
+    FROM hits h JOIN ancestors a ON a.id = h.id AND a.folder IS NULL
+    ORDER BY 3;
+$$ LANGUAGE sql STABLE;
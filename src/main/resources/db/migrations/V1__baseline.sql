@@ -0,0 +1,207 @@
+CREATE TABLE IF NOT EXISTS folder (
+    id UUID NOT NULL,
+    parent UUID,
+    name VARCHAR(50) NOT NULL,
+    created TIMESTAMP NOT NULL,
+    changed TIMESTAMP,
+    changecounter INT NOT NULL DEFAULT 0,
+    childcount INT NOT NULL DEFAULT 0,
+    PRIMARY KEY(id),
+    CONSTRAINT fk_folder
+        FOREIGN KEY(parent)
+            REFERENCES folder(id) ON DELETE CASCADE
+            DEFERRABLE INITIALLY IMMEDIATE
+);
+
+-- File content is stored once per distinct value, keyed by its SHA-256 (hex of the UTF-8 bytes)
+CREATE TABLE IF NOT EXISTS blob (
+    hash CHAR(64) NOT NULL,
+    content TEXT NOT NULL,
+    refcount INT NOT NULL DEFAULT 0,
+    PRIMARY KEY(hash)
+);
+
+CREATE TABLE IF NOT EXISTS file (
+    id UUID NOT NULL,
+    parent UUID,
+    name VARCHAR(50) NOT NULL,
+    created TIMESTAMP NOT NULL,
+    changed TIMESTAMP,
+    changecounter INT NOT NULL DEFAULT 0,
+    extension VARCHAR(10) NOT NULL,
+    islocked BOOL NOT NULL DEFAULT 'f',
+    filesize DECIMAL NOT NULL DEFAULT 0,
+    importance INT NOT NULL DEFAULT 0,
+    password VARCHAR(64),
+    contenthash CHAR(64),
+    PRIMARY KEY(id),
+    CONSTRAINT fk_folder
+        FOREIGN KEY(parent)
+            REFERENCES folder(id) ON DELETE CASCADE
+            DEFERRABLE INITIALLY IMMEDIATE,
+    CONSTRAINT fk_blob
+        FOREIGN KEY(contenthash)
+            REFERENCES blob(hash)
+            DEFERRABLE INITIALLY IMMEDIATE
+);
+
+-- Databases created before the parent foreign keys were deferrable still have the old constraints,
+-- which a restore that inserts children before their parents can't defer
+ALTER TABLE folder ALTER CONSTRAINT fk_folder DEFERRABLE INITIALLY IMMEDIATE;
+ALTER TABLE file ALTER CONSTRAINT fk_folder DEFERRABLE INITIALLY IMMEDIATE;
+
+-- Moves the content of databases created before the blob table into it
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns WHERE table_name = 'file' AND column_name = 'content') THEN
+        ALTER TABLE file ADD COLUMN IF NOT EXISTS contenthash CHAR(64);
+
+        UPDATE file SET contenthash = encode(sha256(convert_to(content, 'UTF8')), 'hex') WHERE content IS NOT NULL;
+
+        INSERT INTO blob(hash, content, refcount)
+            SELECT contenthash, min(content), count(*) FROM file WHERE contenthash IS NOT NULL GROUP BY contenthash
+            ON CONFLICT (hash) DO NOTHING;
+
+        ALTER TABLE file DROP COLUMN content;
+        ALTER TABLE file ADD CONSTRAINT fk_blob FOREIGN KEY(contenthash) REFERENCES blob(hash)
+            DEFERRABLE INITIALLY IMMEDIATE;
+    END IF;
+END;
+$$;
+
+CREATE TABLE IF NOT EXISTS tombstone (
+    seq BIGSERIAL NOT NULL,
+    id UUID NOT NULL,
+    kind VARCHAR(10) NOT NULL,
+    deleted TIMESTAMP NOT NULL DEFAULT LOCALTIMESTAMP,
+    PRIMARY KEY(seq)
+);
+
+-- Records every deleted item (including cascaded ones), so incremental backups can replay deletions
+CREATE OR REPLACE FUNCTION record_tombstone() RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO tombstone(id, kind) VALUES (OLD.id, TG_TABLE_NAME);
+    RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE TRIGGER folder_tombstone AFTER DELETE ON folder
+    FOR EACH ROW EXECUTE FUNCTION record_tombstone();
+
+CREATE OR REPLACE TRIGGER file_tombstone AFTER DELETE ON file
+    FOR EACH ROW EXECUTE FUNCTION record_tombstone();
+
+-- Keeps the blob reference counts up to date and removes the blobs nobody references anymore
+CREATE OR REPLACE FUNCTION adjust_blob_refs(added CHAR(64)[], removed CHAR(64)[]) RETURNS VOID AS $$
+    UPDATE blob SET refcount = blob.refcount + refs.delta
+        FROM (SELECT hash, sum(delta) AS delta
+              FROM (SELECT unnest(added) AS hash, 1 AS delta
+                    UNION ALL
+                    SELECT unnest(removed), -1) AS changes
+              WHERE hash IS NOT NULL
+              GROUP BY hash
+              HAVING sum(delta) <> 0) AS refs
+        WHERE blob.hash = refs.hash;
+
+    DELETE FROM blob WHERE hash = ANY(removed) AND refcount <= 0;
+$$ LANGUAGE sql;
+
+-- Statement level, so a batch of files only touches each blob once
+CREATE OR REPLACE FUNCTION count_blob_refs() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM adjust_blob_refs(ARRAY(SELECT contenthash FROM new_files), NULL);
+    ELSIF TG_OP = 'UPDATE' THEN
+        PERFORM adjust_blob_refs(ARRAY(SELECT contenthash FROM new_files), ARRAY(SELECT contenthash FROM old_files));
+    ELSE
+        PERFORM adjust_blob_refs(NULL, ARRAY(SELECT contenthash FROM old_files));
+    END IF;
+
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE TRIGGER file_blob_insert AFTER INSERT ON file
+    REFERENCING NEW TABLE AS new_files
+    FOR EACH STATEMENT EXECUTE FUNCTION count_blob_refs();
+
+CREATE OR REPLACE TRIGGER file_blob_update AFTER UPDATE ON file
+    REFERENCING OLD TABLE AS old_files NEW TABLE AS new_files
+    FOR EACH STATEMENT EXECUTE FUNCTION count_blob_refs();
+
+CREATE OR REPLACE TRIGGER file_blob_delete AFTER DELETE ON file
+    REFERENCING OLD TABLE AS old_files
+    FOR EACH STATEMENT EXECUTE FUNCTION count_blob_refs();
+
+-- Amount of direct sub folders and files of each folder, so the tree can tell if a folder is empty without loading it
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM information_schema.columns WHERE table_name = 'folder' AND column_name = 'childcount') THEN
+        ALTER TABLE folder ADD COLUMN childcount INT NOT NULL DEFAULT 0;
+
+        UPDATE folder SET childcount = (SELECT count(*) FROM folder c WHERE c.parent = folder.id)
+                                     + (SELECT count(*) FROM file f WHERE f.parent = folder.id);
+    END IF;
+END;
+$$;
+
+-- Counts again instead of adding deltas, so it doesn't matter if children are inserted before their parent
+CREATE OR REPLACE FUNCTION refresh_child_counts(folders UUID[]) RETURNS VOID AS $$
+    UPDATE folder SET childcount = (SELECT count(*) FROM folder c WHERE c.parent = folder.id)
+                                 + (SELECT count(*) FROM file f WHERE f.parent = folder.id)
+        WHERE id = ANY(folders);
+$$ LANGUAGE sql;
+
+CREATE OR REPLACE FUNCTION count_children() RETURNS TRIGGER AS $$
+DECLARE
+    affected UUID[];
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        affected := ARRAY(SELECT parent FROM new_items);
+
+        --New folders may already have children when the foreign keys are deferred
+        IF TG_TABLE_NAME = 'folder' THEN
+            affected := affected || ARRAY(SELECT id FROM new_items);
+        END IF;
+    ELSIF TG_OP = 'UPDATE' THEN
+        --Only moved items change a count, this also stops the update below from triggering itself forever
+        affected := ARRAY(SELECT n.parent FROM new_items n JOIN old_items o ON o.id = n.id
+                          WHERE n.parent IS DISTINCT FROM o.parent
+                          UNION
+                          SELECT o.parent FROM new_items n JOIN old_items o ON o.id = n.id
+                          WHERE n.parent IS DISTINCT FROM o.parent);
+    ELSE
+        affected := ARRAY(SELECT parent FROM old_items);
+    END IF;
+
+    IF cardinality(affected) > 0 THEN
+        PERFORM refresh_child_counts(affected);
+    END IF;
+
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE TRIGGER folder_children_insert AFTER INSERT ON folder
+    REFERENCING NEW TABLE AS new_items
+    FOR EACH STATEMENT EXECUTE FUNCTION count_children();
+
+CREATE OR REPLACE TRIGGER folder_children_update AFTER UPDATE ON folder
+    REFERENCING OLD TABLE AS old_items NEW TABLE AS new_items
+    FOR EACH STATEMENT EXECUTE FUNCTION count_children();
+
+CREATE OR REPLACE TRIGGER folder_children_delete AFTER DELETE ON folder
+    REFERENCING OLD TABLE AS old_items
+    FOR EACH STATEMENT EXECUTE FUNCTION count_children();
+
+CREATE OR REPLACE TRIGGER file_children_insert AFTER INSERT ON file
+    REFERENCING NEW TABLE AS new_items
+    FOR EACH STATEMENT EXECUTE FUNCTION count_children();
+
+CREATE OR REPLACE TRIGGER file_children_update AFTER UPDATE ON file
+    REFERENCING OLD TABLE AS old_items NEW TABLE AS new_items
+    FOR EACH STATEMENT EXECUTE FUNCTION count_children();
+
+CREATE OR REPLACE TRIGGER file_children_delete AFTER DELETE ON file
+    REFERENCING OLD TABLE AS old_items
+    FOR EACH STATEMENT EXECUTE FUNCTION count_children();
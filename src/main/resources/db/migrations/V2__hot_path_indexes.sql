@@ -0,0 +1,7 @@
+-- Child listings, cascading deletes and the child count triggers look items up by their parent
+CREATE INDEX IF NOT EXISTS folder_parent_idx ON folder(parent);
+CREATE INDEX IF NOT EXISTS file_parent_idx ON file(parent);
+
+-- Clean by date and clean by importance select files by range
+CREATE INDEX IF NOT EXISTS file_created_idx ON file(created);
+CREATE INDEX IF NOT EXISTS file_importance_idx ON file(importance);
@@ -0,0 +1,165 @@
+-- Usage of each folder's whole subtree, kept up to date by triggers so reading it doesn't need to walk the subtree
+CREATE TABLE folder_aggregate (
+    folder UUID NOT NULL,
+    totalsize DECIMAL NOT NULL DEFAULT 0,
+    filecount INT NOT NULL DEFAULT 0,
+    foldercount INT NOT NULL DEFAULT 0,
+    lastchange TIMESTAMP,
+    PRIMARY KEY(folder),
+    CONSTRAINT fk_folder
+        FOREIGN KEY(folder)
+            REFERENCES folder(id) ON DELETE CASCADE
+);
+
+-- Change to the aggregates of a folder and all its ancestors
+CREATE TYPE folder_delta AS (
+    folder UUID,
+    totalsize DECIMAL,
+    filecount INT,
+    foldercount INT,
+    lastchange TIMESTAMP
+);
+
+-- Calculates the aggregates of the given folders from scratch
+CREATE FUNCTION calculate_folder_aggregates(roots UUID[]) RETURNS SETOF folder_aggregate AS $$
+    WITH RECURSIVE subtree(root, id) AS (
+        SELECT id, id FROM folder WHERE id = ANY(roots)
+        UNION ALL
+        SELECT s.root, f.id FROM folder f JOIN subtree s ON f.parent = s.id
+    ),
+    files AS (
+        SELECT s.root, sum(fi.filesize) AS totalsize, count(*) AS filecount,
+               max(coalesce(fi.changed, fi.created)) AS lastchange
+        FROM subtree s JOIN file fi ON fi.parent = s.id
+        GROUP BY s.root
+    ),
+    folders AS (
+        SELECT s.root, count(*) - 1 AS foldercount, max(coalesce(fo.changed, fo.created)) AS lastchange
+        FROM subtree s JOIN folder fo ON fo.id = s.id
+        GROUP BY s.root
+    )
+    SELECT fo.root, coalesce(fi.totalsize, 0), coalesce(fi.filecount, 0)::INT, fo.foldercount::INT,
+           greatest(fo.lastchange, fi.lastchange)
+    FROM folders fo LEFT JOIN files fi ON fi.root = fo.root;
+$$ LANGUAGE sql STABLE;
+
+-- Adds the deltas to each folder and its ancestors, the walk up stops at the folders in "stop"
+CREATE FUNCTION adjust_folder_aggregates(deltas folder_delta[], stop UUID[]) RETURNS VOID AS $$
+    WITH RECURSIVE starts AS (
+        SELECT folder, sum(totalsize) AS totalsize, sum(filecount) AS filecount,
+               sum(foldercount) AS foldercount, max(lastchange) AS lastchange
+        FROM unnest(deltas)
+        WHERE folder IS NOT NULL
+        GROUP BY folder
+    ),
+    chain(id, parent, totalsize, filecount, foldercount, lastchange) AS (
+        SELECT f.id, f.parent, s.totalsize, s.filecount, s.foldercount, s.lastchange
+        FROM starts s JOIN folder f ON f.id = s.folder
+        WHERE f.id <> ALL(stop)
+        UNION ALL
+        SELECT f.id, f.parent, c.totalsize, c.filecount, c.foldercount, c.lastchange
+        FROM chain c JOIN folder f ON f.id = c.parent
+        WHERE f.id <> ALL(stop)
+    )
+    UPDATE folder_aggregate a SET totalsize = a.totalsize + t.totalsize,
+                                  filecount = a.filecount + t.filecount,
+                                  foldercount = a.foldercount + t.foldercount,
+                                  lastchange = greatest(a.lastchange, t.lastchange)
+        FROM (SELECT id, sum(totalsize) AS totalsize, sum(filecount) AS filecount,
+                     sum(foldercount) AS foldercount, max(lastchange) AS lastchange
+              FROM chain
+              GROUP BY id) AS t
+        WHERE a.folder = t.id;
+$$ LANGUAGE sql;
+
+CREATE FUNCTION aggregate_files() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM adjust_folder_aggregates(ARRAY(
+            SELECT ROW(parent, filesize, 1, 0, coalesce(changed, created))::folder_delta FROM new_items), '{}');
+    ELSIF TG_OP = 'UPDATE' THEN
+        --Files that didn't move, change size or get edited don't change any aggregate
+        PERFORM adjust_folder_aggregates(ARRAY(
+            SELECT ROW(o.parent, -o.filesize, -1, 0, NULL)::folder_delta
+            FROM old_items o JOIN new_items n ON n.id = o.id
+            WHERE (n.parent, n.filesize, n.changed) IS DISTINCT FROM (o.parent, o.filesize, o.changed)
+            UNION ALL
+            SELECT ROW(n.parent, n.filesize, 1, 0, coalesce(n.changed, n.created))::folder_delta
+            FROM old_items o JOIN new_items n ON n.id = o.id
+            WHERE (n.parent, n.filesize, n.changed) IS DISTINCT FROM (o.parent, o.filesize, o.changed)), '{}');
+    ELSE
+        --Files deleted together with their folder find no parent, the folder's own delete already took them out
+        PERFORM adjust_folder_aggregates(ARRAY(
+            SELECT ROW(parent, -filesize, -1, 0, LOCALTIMESTAMP)::folder_delta FROM old_items), '{}');
+    END IF;
+
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE FUNCTION aggregate_folders() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        --Calculated from scratch, since children may already exist when the foreign keys are deferred
+        INSERT INTO folder_aggregate SELECT * FROM calculate_folder_aggregates(ARRAY(SELECT id FROM new_items));
+
+        --The walk up stops at other new folders, which already counted this one
+        PERFORM adjust_folder_aggregates(ARRAY(
+            SELECT ROW(n.parent, a.totalsize, a.filecount, a.foldercount + 1, a.lastchange)::folder_delta
+            FROM new_items n JOIN folder_aggregate a ON a.folder = n.id), ARRAY(SELECT id FROM new_items));
+    ELSE
+        --Moved folders take their whole subtree along, edited ones only update the last change
+        PERFORM adjust_folder_aggregates(ARRAY(
+            SELECT ROW(o.parent, -a.totalsize, -a.filecount, -(a.foldercount + 1), NULL)::folder_delta
+            FROM old_items o JOIN new_items n ON n.id = o.id JOIN folder_aggregate a ON a.folder = n.id
+            WHERE n.parent IS DISTINCT FROM o.parent
+            UNION ALL
+            SELECT ROW(n.parent, a.totalsize, a.filecount, a.foldercount + 1, a.lastchange)::folder_delta
+            FROM old_items o JOIN new_items n ON n.id = o.id JOIN folder_aggregate a ON a.folder = n.id
+            WHERE n.parent IS DISTINCT FROM o.parent
+            UNION ALL
+            SELECT ROW(n.id, 0, 0, 0, n.changed)::folder_delta
+            FROM old_items o JOIN new_items n ON n.id = o.id
+            WHERE n.changed IS DISTINCT FROM o.changed), '{}');
+    END IF;
+
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Row level and before the delete, so the aggregate of the folder can still be read and its ancestors still exist
+CREATE FUNCTION remove_folder_aggregate() RETURNS TRIGGER AS $$
+BEGIN
+    PERFORM adjust_folder_aggregates(ARRAY(
+        SELECT ROW(OLD.parent, -totalsize, -filecount, -(foldercount + 1), LOCALTIMESTAMP)::folder_delta
+        FROM folder_aggregate WHERE folder = OLD.id), '{}');
+
+    RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER file_aggregate_insert AFTER INSERT ON file
+    REFERENCING NEW TABLE AS new_items
+    FOR EACH STATEMENT EXECUTE FUNCTION aggregate_files();
+
+CREATE TRIGGER file_aggregate_update AFTER UPDATE ON file
+    REFERENCING OLD TABLE AS old_items NEW TABLE AS new_items
+    FOR EACH STATEMENT EXECUTE FUNCTION aggregate_files();
+
+CREATE TRIGGER file_aggregate_delete AFTER DELETE ON file
+    REFERENCING OLD TABLE AS old_items
+    FOR EACH STATEMENT EXECUTE FUNCTION aggregate_files();
+
+CREATE TRIGGER folder_aggregate_insert AFTER INSERT ON folder
+    REFERENCING NEW TABLE AS new_items
+    FOR EACH STATEMENT EXECUTE FUNCTION aggregate_folders();
+
+CREATE TRIGGER folder_aggregate_update AFTER UPDATE ON folder
+    REFERENCING OLD TABLE AS old_items NEW TABLE AS new_items
+    FOR EACH STATEMENT EXECUTE FUNCTION aggregate_folders();
+
+CREATE TRIGGER folder_aggregate_delete BEFORE DELETE ON folder
+    FOR EACH ROW EXECUTE FUNCTION remove_folder_aggregate();
+
+-- Aggregates of the folders that already exist
+INSERT INTO folder_aggregate SELECT * FROM calculate_folder_aggregates(ARRAY(SELECT id FROM folder));
@@ -0,0 +1,66 @@
+-- Moves every file under the sub folders of a folder into the folder itself and removes the sub folders,
+-- in a single statement, so a failure can't leave the folder half flattened.
+-- Files whose name is already taken are renamed to "(n) name", like the application does, the ones closer
+-- to the folder keep their name. A null folder flattens the root. Returns the moved files with their final name.
+CREATE FUNCTION flatten_folder(target UUID) RETURNS TABLE(id UUID, name VARCHAR) AS $$
+#variable_conflict use_column
+DECLARE
+    clash RECORD;
+    candidate VARCHAR;
+    copy_count INT;
+BEGIN
+    CREATE TEMP TABLE IF NOT EXISTS flatten_move (
+        id UUID PRIMARY KEY,
+        name VARCHAR NOT NULL,
+        depth INT NOT NULL,
+        clash BOOLEAN NOT NULL
+    ) ON COMMIT DROP;
+    CREATE TEMP TABLE IF NOT EXISTS flatten_name (name VARCHAR PRIMARY KEY) ON COMMIT DROP;
+
+    --Another flatten in the same transaction may have left rows behind
+    DELETE FROM flatten_move;
+    DELETE FROM flatten_name;
+
+    INSERT INTO flatten_name SELECT DISTINCT f.name FROM file f
+        WHERE f.parent = target OR (target IS NULL AND f.parent IS NULL);
+
+    INSERT INTO flatten_move
+        WITH RECURSIVE subtree(id, depth) AS (
+            SELECT fo.id, 1 FROM folder fo WHERE fo.parent = target OR (target IS NULL AND fo.parent IS NULL)
+            UNION ALL
+            SELECT fo.id, s.depth + 1 FROM folder fo JOIN subtree s ON fo.parent = s.id
+        )
+        SELECT f.id, f.name, s.depth,
+               row_number() OVER (PARTITION BY f.name ORDER BY s.depth, f.id) > 1
+                   OR EXISTS (SELECT 1 FROM flatten_name n WHERE n.name = f.name)
+        FROM file f JOIN subtree s ON f.parent = s.id;
+
+    --Names that don't clash are kept all at once, only the clashing ones look for a free name
+    INSERT INTO flatten_name SELECT m.name FROM flatten_move m WHERE NOT m.clash;
+
+    FOR clash IN SELECT m.id, m.name FROM flatten_move m WHERE m.clash ORDER BY m.depth, m.id LOOP
+        copy_count := 1;
+        LOOP
+            candidate := '(' || copy_count || ') ' || clash.name;
+            EXIT WHEN NOT EXISTS (SELECT 1 FROM flatten_name n WHERE n.name = candidate);
+
+            copy_count := copy_count + 1;
+            IF copy_count > 1000 THEN
+                RAISE EXCEPTION 'Too many files in the directory';
+            END IF;
+        END LOOP;
+
+        INSERT INTO flatten_name VALUES (candidate);
+        UPDATE flatten_move m SET name = candidate WHERE m.id = clash.id;
+    END LOOP;
+
+    UPDATE file f SET parent = target, name = m.name, changed = LOCALTIMESTAMP
+        FROM flatten_move m
+        WHERE f.id = m.id;
+
+    --The sub folders are empty now, removing the direct ones takes the rest along
+    DELETE FROM folder fo WHERE fo.parent = target OR (target IS NULL AND fo.parent IS NULL);
+
+    RETURN QUERY SELECT m.id, m.name FROM flatten_move m ORDER BY m.depth, m.name;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,77 @@
+-- Publishes the changes to files and folders on the pfs_changes channel, so every client can patch its tree
+-- instead of reloading it. Each notification holds the changes of a statement as a JSON array of compact events:
+-- {"kind": "file", "op": "insert" | "update" | "move" | "delete", "id": ..., "parent": ..., "version": changecounter}
+-- Notifications are only delivered when the transaction commits, and a notification can only hold 8000 bytes,
+-- so statements that change too many rows, and truncates (like a restore), send a single {"op": "reload"} event instead.
+CREATE FUNCTION notify_changes() RETURNS TRIGGER AS $$
+DECLARE
+    max_events CONSTANT INT := 40;
+    events JSON;
+BEGIN
+    IF TG_OP = 'TRUNCATE' THEN
+        events := json_build_array(json_build_object('op', 'reload'));
+    ELSIF TG_OP = 'INSERT' THEN
+        SELECT json_agg(json_build_object('kind', TG_TABLE_NAME, 'op', 'insert',
+                                          'id', n.id, 'parent', n.parent, 'version', n.changecounter))
+            INTO events
+            FROM (SELECT * FROM new_items LIMIT max_events + 1) n;
+    ELSIF TG_OP = 'UPDATE' THEN
+        --Updates only made by the triggers (like the amount of children) aren't changes the clients show
+        SELECT json_agg(json_build_object('kind', TG_TABLE_NAME,
+                                          'op', CASE WHEN n.parent IS DISTINCT FROM o.parent THEN 'move' ELSE 'update' END,
+                                          'id', n.id, 'parent', n.parent, 'version', n.changecounter))
+            INTO events
+            FROM (SELECT n.* FROM old_items o JOIN new_items n ON n.id = o.id
+                  WHERE (n.parent, n.name, n.changecounter) IS DISTINCT FROM (o.parent, o.name, o.changecounter)
+                  LIMIT max_events + 1) n
+            JOIN old_items o ON o.id = n.id;
+    ELSE
+        --Items deleted together with their folder go along with it, only the folder's delete is published
+        SELECT json_agg(json_build_object('kind', TG_TABLE_NAME, 'op', 'delete',
+                                          'id', o.id, 'parent', o.parent, 'version', o.changecounter))
+            INTO events
+            FROM (SELECT * FROM old_items o
+                  WHERE o.parent IS NULL OR EXISTS (SELECT 1 FROM folder f WHERE f.id = o.parent)
+                  LIMIT max_events + 1) o;
+    END IF;
+
+    IF events IS NULL THEN
+        RETURN NULL;
+    END IF;
+
+    IF json_array_length(events) > max_events THEN
+        events := json_build_array(json_build_object('op', 'reload'));
+    END IF;
+
+    PERFORM pg_notify('pfs_changes', events::TEXT);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER file_notify_insert AFTER INSERT ON file
+    REFERENCING NEW TABLE AS new_items
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_changes();
+
+CREATE TRIGGER file_notify_update AFTER UPDATE ON file
+    REFERENCING OLD TABLE AS old_items NEW TABLE AS new_items
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_changes();
+
+CREATE TRIGGER file_notify_delete AFTER DELETE ON file
+    REFERENCING OLD TABLE AS old_items
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_changes();
+
+CREATE TRIGGER folder_notify_insert AFTER INSERT ON folder
+    REFERENCING NEW TABLE AS new_items
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_changes();
+
+CREATE TRIGGER folder_notify_update AFTER UPDATE ON folder
+    REFERENCING OLD TABLE AS old_items NEW TABLE AS new_items
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_changes();
+
+CREATE TRIGGER folder_notify_delete AFTER DELETE ON folder
+    REFERENCING OLD TABLE AS old_items
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_changes();
+
+-- Truncating the folders takes the files along
+CREATE TRIGGER folder_notify_truncate AFTER TRUNCATE ON folder
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_changes();
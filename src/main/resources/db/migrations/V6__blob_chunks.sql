@@ -0,0 +1,29 @@
+-- File contents are stored as fixed-size chunks of their UTF-8 bytes instead of a single value,
+-- so they can be streamed in and out without ever holding a whole content in memory.
+CREATE TABLE blob_chunk (
+    hash CHAR(64) NOT NULL,
+    seq INT NOT NULL,
+    data BYTEA NOT NULL,
+    PRIMARY KEY(hash, seq),
+    CONSTRAINT fk_blob
+        FOREIGN KEY(hash)
+            REFERENCES blob(hash) ON DELETE CASCADE
+            DEFERRABLE INITIALLY IMMEDIATE
+);
+
+-- Size of the content in bytes, so it can be checked without reading the chunks
+ALTER TABLE blob ADD COLUMN size BIGINT NOT NULL DEFAULT 0;
+
+-- Splits a content into chunks, for the contents that arrive whole (like the ones stored before the chunks)
+CREATE FUNCTION split_content(content TEXT, chunk_size INT) RETURNS TABLE(seq INT, data BYTEA) AS $$
+    SELECT n, substring(bytes FROM n * chunk_size + 1 FOR chunk_size)
+    FROM convert_to(content, 'UTF8') AS bytes,
+         generate_series(0, (length(bytes) + chunk_size - 1) / chunk_size - 1) AS n;
+$$ LANGUAGE sql IMMUTABLE;
+
+INSERT INTO blob_chunk(hash, seq, data)
+    SELECT b.hash, c.seq, c.data FROM blob b, split_content(b.content, 262144) c;
+
+UPDATE blob SET size = octet_length(convert_to(content, 'UTF8'));
+
+ALTER TABLE blob DROP COLUMN content;
@@ -0,0 +1,7 @@
+-- Contents can be compressed, every chunk on its own so they can still be streamed a chunk at a time.
+-- codec: 0 = stored as is, 1 = Deflate. size stays the size of the content, stored_size is what its chunks take up.
+ALTER TABLE blob ADD COLUMN codec SMALLINT NOT NULL DEFAULT 0;
+ALTER TABLE blob ADD COLUMN stored_size BIGINT NOT NULL DEFAULT 0;
+
+-- The contents stored so far were never compressed
+UPDATE blob SET stored_size = size;
@@ -0,0 +1,42 @@
+-- Contents are searched with full text search, on an index of the words of each chunk.
+-- The chunks can be compressed by the application, so their text can't be read by a generated column:
+-- the application sends the text of each chunk along with it, which content_search_vector turns into the vector.
+-- The 'simple' configuration matches words as they are (lowercased), since the contents can be in any language.
+ALTER TABLE blob_chunk ADD COLUMN search TSVECTOR;
+
+CREATE INDEX blob_chunk_search_idx ON blob_chunk USING GIN (search);
+
+CREATE FUNCTION content_search_vector(content TEXT) RETURNS TSVECTOR AS $$
+    SELECT to_tsvector('simple', content);
+$$ LANGUAGE sql IMMUTABLE;
+
+-- The chunks stored before this script have no vector yet, the application fills them in when it starts.
+-- This index lets it find them without going through every chunk.
+CREATE INDEX blob_chunk_unindexed_idx ON blob_chunk (hash) WHERE search IS NULL;
+
+-- Finds the files whose content matches a search (in web search syntax: words, "quoted phrases", OR, -excluded),
+-- the best matches first, ranked by how often the words show up. Each match comes with its path from the root.
+-- A content is ranked by its best chunk, and the words of a search are matched within a single chunk.
+CREATE FUNCTION search_contents(query TEXT, max_results INT)
+    RETURNS TABLE(id UUID, parent UUID, path TEXT, rank REAL) AS $$
+    WITH RECURSIVE matches AS (
+        SELECT c.hash, max(ts_rank(c.search, q.terms)) AS rank
+        FROM blob_chunk c, websearch_to_tsquery('simple', query) AS q(terms)
+        WHERE c.search @@ q.terms
+        GROUP BY c.hash
+    ),
+    hits AS (
+        SELECT f.id, f.parent, f.name, m.rank
+        FROM file f JOIN matches m ON m.hash = f.contenthash
+        ORDER BY m.rank DESC, f.id
+        LIMIT max_results
+    ),
+    ancestors(id, folder, path) AS (
+        SELECT h.id, h.parent, h.name::TEXT FROM hits h
+        UNION ALL
+        SELECT a.id, fo.parent, fo.name || '/' || a.path FROM ancestors a JOIN folder fo ON fo.id = a.folder
+    )
+    SELECT h.id, h.parent, '/' || a.path, h.rank
+    FROM hits h JOIN ancestors a ON a.id = h.id AND a.folder IS NULL
+    ORDER BY h.rank DESC, h.id;
+$$ LANGUAGE sql STABLE;
@@ -0,0 +1,27 @@
+-- Incremental backups find the rows written since the previous backup by the transaction that wrote them,
+-- which the server assigns, instead of by the change dates the clients set from their own clocks.
+-- A backup records the oldest transaction still running when its snapshot was taken and the next one starts
+-- from there, so transactions that commit while a backup is being made are picked up by the next one.
+ALTER TABLE folder ADD COLUMN changetxid BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE file ADD COLUMN changetxid BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE tombstone ADD COLUMN deletetxid BIGINT NOT NULL DEFAULT 0;
+
+-- The rows that already exist keep 0, only a full backup has them
+ALTER TABLE tombstone ALTER COLUMN deletetxid SET DEFAULT txid_current();
+
+CREATE FUNCTION stamp_change_txid() RETURNS TRIGGER AS $$
+BEGIN
+    NEW.changetxid := txid_current();
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER folder_change_txid BEFORE INSERT OR UPDATE ON folder
+    FOR EACH ROW EXECUTE FUNCTION stamp_change_txid();
+
+CREATE TRIGGER file_change_txid BEFORE INSERT OR UPDATE ON file
+    FOR EACH ROW EXECUTE FUNCTION stamp_change_txid();
+
+CREATE INDEX folder_changetxid_idx ON folder(changetxid);
+CREATE INDEX file_changetxid_idx ON file(changetxid);
+CREATE INDEX tombstone_deletetxid_idx ON tombstone(deletetxid);
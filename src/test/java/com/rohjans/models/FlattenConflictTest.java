@@ -0,0 +1,182 @@
+package com.rohjans.models;
+
+import com.rohjans.models.File.FileDTO;
+import com.rohjans.models.File.FileRepository;
+import com.rohjans.models.Folder.FolderDTO;
+import com.rohjans.models.Folder.FolderRepository;
+import com.rohjans.utils.SchemaMigrator;
+import org.jooq.CloseableDSLContext;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * This is an integration test that checks that updates made over the version of an item from before a flatten
+ * are rejected, instead of undoing the flatten.
+ * <p>
+ * It needs a PostgreSQL database (the one in docker-compose.yml by default, or the one given with the
+ * "pfs.test.url", "pfs.test.user" and "pfs.test.password" system properties), and is skipped if there is none.
+ * Every test runs in a transaction that is rolled back, so the database is left untouched.
+ *
+ * @author Raul Rohjans 202100518
+ */
+class FlattenConflictTest {
+    /**
+     * JDBC url of the test database.
+     */
+    private static final String URL = System.getProperty("pfs.test.url", "jdbc:postgresql://localhost:5432/pfs");
+
+    /**
+     * Username of the test database.
+     */
+    private static final String USER = System.getProperty("pfs.test.user", "admin");
+
+    /**
+     * Password of the test database.
+     */
+    private static final String PASSWORD = System.getProperty("pfs.test.password", "1234");
+
+    /**
+     * Database context instance, bound to a single connection.
+     */
+    private static CloseableDSLContext ctx;
+
+    /**
+     * This method connects to the test database and brings its schema up to date, skipping the tests
+     * if the database can't be reached.
+     *
+     * @throws SQLException Will happen if the migrations fail.
+     */
+    @BeforeAll
+    static void connect() throws SQLException {
+        try(Connection ignored = DriverManager.getConnection(URL, USER, PASSWORD)) {
+            //Reachable
+        }
+        catch (SQLException e) {
+            assumeTrue(false, "No test database at " + URL);
+        }
+
+        ctx = DSL.using(URL, USER, PASSWORD);
+        SchemaMigrator.migrate(ctx);
+    }
+
+    /**
+     * This method closes the connection to the test database.
+     */
+    @AfterAll
+    static void disconnect() {
+        if(ctx != null) ctx.close();
+    }
+
+    /**
+     * Tests that renaming a moved file with the version read before the flatten fails as a conflict.
+     */
+    @Test
+    void staleFileUpdateAfterFlattenIsRejected() {
+        inRolledBackTransaction(tx -> {
+            FolderDTO target = createFolder(tx, null, "Flatten target");
+            FolderDTO sub = createFolder(tx, target.getId(), "Sub folder");
+            FileDTO file = createFile(tx, sub.getId(), "Moved file");
+
+            new FolderRepository(tx).flatten(target.getId());
+
+            //The client still holds the file as it was before the flatten
+            int expected = file.getChangeCounter();
+            file.setName("Renamed");
+
+            StaleItemException e = assertThrows(StaleItemException.class,
+                    () -> new FileRepository(tx).update(file, expected));
+            assertEquals(file.getId(), e.getId());
+            assertFalse(e.isRemoved());
+        });
+    }
+
+    /**
+     * Tests that renaming a sub folder removed by the flatten fails as a conflict on a removed item.
+     */
+    @Test
+    void staleFolderUpdateAfterFlattenIsRejected() {
+        inRolledBackTransaction(tx -> {
+            FolderDTO target = createFolder(tx, null, "Flatten target");
+            FolderDTO sub = createFolder(tx, target.getId(), "Sub folder");
+            createFile(tx, sub.getId(), "Moved file");
+
+            new FolderRepository(tx).flatten(target.getId());
+
+            int expected = sub.getChangeCounter();
+            sub.setName("Renamed");
+
+            StaleItemException e = assertThrows(StaleItemException.class,
+                    () -> new FolderRepository(tx).update(sub, expected));
+            assertEquals(sub.getId(), e.getId());
+            assertTrue(e.isRemoved());
+        });
+    }
+
+    /**
+     * This method creates a folder in the database.
+     *
+     * @param tx Database context bound to the test transaction.
+     * @param parent ID of the parent folder, or null for the root.
+     * @param name Name of the folder.
+     * @return The created folder.
+     */
+    private static FolderDTO createFolder(DSLContext tx, UUID parent, String name) {
+        FolderDTO folder = new FolderDTO(UUID.randomUUID(), parent, name, LocalDateTime.now(), null, 0);
+        new FolderRepository(tx).create(folder);
+
+        return folder;
+    }
+
+    /**
+     * This method creates a file without content in the database.
+     *
+     * @param tx Database context bound to the test transaction.
+     * @param parent ID of the parent folder.
+     * @param name Name of the file.
+     * @return The created file.
+     */
+    private static FileDTO createFile(DSLContext tx, UUID parent, String name) {
+        FileDTO file = new FileDTO(UUID.randomUUID(), parent, name, LocalDateTime.now(), null, 0, "txt",
+                false, BigDecimal.ZERO, 0, null, null);
+        new FileRepository(tx).create(file);
+
+        return file;
+    }
+
+    /**
+     * This method runs a test inside a transaction that is always rolled back.
+     *
+     * @param test Test to be run, it gets the database context bound to the transaction.
+     */
+    private static void inRolledBackTransaction(Consumer<DSLContext> test) {
+        try {
+            ctx.transaction(cfg -> {
+                test.accept(cfg.dsl());
+                throw new Rollback();
+            });
+        }
+        catch (Rollback ignored) {
+            //Expected, it's how the transaction is undone
+        }
+    }
+
+    /**
+     * This is an exception thrown at the end of every test to roll its transaction back.
+     */
+    private static final class Rollback extends RuntimeException {
+    }
+}
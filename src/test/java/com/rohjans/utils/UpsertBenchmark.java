@@ -0,0 +1,167 @@
+package com.rohjans.utils;
+
+import com.rohjans.models.Folder.FolderDTO;
+import com.rohjans.models.Folder.FolderMapper;
+import com.rohjans.models.Folder.FolderRepository;
+import org.jooq.CloseableDSLContext;
+import org.jooq.DSLContext;
+import org.jooq.ExecuteContext;
+import org.jooq.ExecuteListener;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultConfiguration;
+import org.jooq.impl.DefaultExecuteListenerProvider;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * This is a small command line tool that compares the round trips and the time taken to create and then update
+ * items, looking each one up before writing it (how it was done before the upserts) against upserting them
+ * in batches.
+ * <p>
+ * It needs a PFS database with its schema up to date. Everything runs in a transaction that is rolled back,
+ * so the database is left untouched.
+ * <p>
+ * It lives with the tests so it isn't shipped with the application, run it from the test classpath
+ * (like with {@code mvn exec:java -Dexec.classpathScope=test}).
+ * <p>
+ * Usage: {@code UpsertBenchmark <jdbcUrl> <username> <password> [folders]}
+ *
+ * @author Raul Rohjans 202100518
+ */
+public class UpsertBenchmark {
+    /**
+     * Amount of items upserted per statement, the same as a backup restore.
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args Connection URL, username, password and amount of folders written.
+     */
+    public static void main(String[] args) {
+        if(args.length < 3) {
+            System.out.println("Usage: UpsertBenchmark <jdbcUrl> <username> <password> [folders]");
+            return;
+        }
+
+        int count = args.length > 3 ? Integer.parseInt(args[3]) : 5_000;
+        long[] statements = new long[1];
+        ExecuteListener counter = new ExecuteListener() {
+            @Override
+            public void executeStart(ExecuteContext ctx) {
+                statements[0]++;
+            }
+        };
+
+        try(CloseableDSLContext db = DSL.using(args[0], args[1], args[2])) {
+            db.connection(conn -> {
+                conn.setAutoCommit(false);
+                DSLContext tx = DSL.using(new DefaultConfiguration()
+                        .set(conn)
+                        .set(SQLDialect.POSTGRES)
+                        .set(new DefaultExecuteListenerProvider(counter)));
+
+                try {
+                    System.out.printf("%d folders, %d per upsert%n", count, BATCH_SIZE);
+
+                    List<FolderDTO> looked = generate(count);
+                    measure("Lookup", "create", statements, count, () -> lookupAndWrite(tx, looked));
+                    measure("Lookup", "update", statements, count, () -> lookupAndWrite(tx, rename(looked)));
+
+                    List<FolderDTO> upserted = generate(count);
+                    measure("Upsert", "create", statements, count, () -> upsert(tx, upserted));
+                    measure("Upsert", "update", statements, count, () -> upsert(tx, rename(upserted)));
+                }
+                finally {
+                    conn.rollback();
+                }
+            });
+        }
+    }
+
+    /**
+     * This method runs a scenario and prints its round trips per item and the time it took.
+     *
+     * @param approach Name of the approach.
+     * @param operation Name of the operation.
+     * @param statements Counter of the statements sent to the database.
+     * @param count Amount of items written.
+     * @param scenario Scenario to be measured.
+     */
+    private static void measure(String approach, String operation, long[] statements, int count, Runnable scenario) {
+        long before = statements[0];
+        long start = System.nanoTime();
+        scenario.run();
+        long nanos = System.nanoTime() - start;
+
+        System.out.printf("%-6s %-6s %,10d statements   %6.3f per item   %8.1f ms%n", approach, operation,
+                statements[0] - before, (double) (statements[0] - before) / count, nanos / 1e6);
+    }
+
+    /**
+     * This method writes the folders the way it was done before the upserts, looking each one up
+     * to decide if it's created or updated.
+     *
+     * @param tx Database context bound to the benchmark transaction.
+     * @param folders Folders to be written.
+     */
+    private static void lookupAndWrite(DSLContext tx, List<FolderDTO> folders) {
+        FolderRepository repository = new FolderRepository(tx);
+
+        for(FolderDTO folder : folders) {
+            if(repository.findById(folder.getId()) == null) repository.create(folder);
+            else tx.executeUpdate(FolderMapper.toFolderRecord(folder));
+        }
+    }
+
+    /**
+     * This method writes the folders with one upsert per batch.
+     *
+     * @param tx Database context bound to the benchmark transaction.
+     * @param folders Folders to be written.
+     */
+    private static void upsert(DSLContext tx, List<FolderDTO> folders) {
+        FolderRepository repository = new FolderRepository(tx);
+
+        for(int i = 0; i < folders.size(); i += BATCH_SIZE)
+            repository.upsertAll(folders.subList(i, Math.min(folders.size(), i + BATCH_SIZE)));
+    }
+
+    /**
+     * This method generates folders on the root.
+     *
+     * @param count Amount of folders to be generated.
+     * @return The generated folders.
+     */
+    private static List<FolderDTO> generate(int count) {
+        List<FolderDTO> folders = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+
+        for(int i = 0; i < count; i++)
+            folders.add(new FolderDTO(UUID.randomUUID(), null, "Benchmark " + i, now, null, 0));
+
+        return folders;
+    }
+
+    /**
+     * This method makes a changed copy of the folders, to be written over them.
+     *
+     * @param folders Folders to be changed.
+     * @return The changed folders.
+     */
+    private static List<FolderDTO> rename(List<FolderDTO> folders) {
+        List<FolderDTO> renamed = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+
+        for(FolderDTO folder : folders)
+            renamed.add(new FolderDTO(folder.getId(), null, folder.getName() + " (renamed)", folder.getCreated(), now,
+                    folder.getChangeCounter() + 1));
+
+        return renamed;
+    }
+}
@@ -0,0 +1,200 @@
+package com.rohjans.utils.backup;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.rohjans.models.File.FileDTO;
+import com.rohjans.models.Folder.FolderDTO;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * This is a small command line tool that compares the size and the encoding and decoding speed of the JSON
+ * and binary backup formats, using generated data so no database is needed.
+ * <p>
+ * It lives with the tests so it isn't shipped with the application, run it from the test classpath
+ * (like with {@code mvn exec:java -Dexec.classpathScope=test}).
+ * <p>
+ * Usage: {@code BackupFormatBenchmark [files] [contentLength] [iterations]}
+ *
+ * @author Raul Rohjans 202100518
+ */
+public class BackupFormatBenchmark {
+    /**
+     * Amount of files per generated folder.
+     */
+    private static final int FILES_PER_FOLDER = 20;
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args Amount of files, length of their content and amount of measured iterations.
+     * @throws IOException Will happen if a backup cannot be encoded or decoded.
+     */
+    public static void main(String[] args) throws IOException {
+        int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int contentLength = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        List<FolderDTO> folders = new ArrayList<>();
+        List<FileDTO> files = new ArrayList<>();
+        generate(fileCount, contentLength, folders, files);
+
+        System.out.printf("%d folders, %d files, %d chars of content each%n", folders.size(), files.size(), contentLength);
+
+        //The first iteration warms up the JIT and is not measured
+        long[] json = new long[3];
+        long[] binary = new long[3];
+        for(int i = 0; i <= iterations; i++) {
+            measure(encodeJson(folders, files), json, i > 0, true);
+            measure(encodeBinary(folders, files), binary, i > 0, false);
+        }
+
+        report("JSON", json, iterations);
+        report("Binary", binary, iterations);
+    }
+
+    /**
+     * This method decodes an encoded backup and accumulates its size and timings.
+     *
+     * @param encoded Encoded backup with its encoding time.
+     * @param totals Accumulated size, encoding time and decoding time.
+     * @param count Whether this iteration is measured.
+     * @param isJson Whether the backup is in the JSON format.
+     * @throws IOException Will happen if the backup cannot be decoded.
+     */
+    private static void measure(Encoded encoded, long[] totals, boolean count, boolean isJson) throws IOException {
+        long[] items = new long[1];
+        BackupRecordHandler handler = new BackupRecordHandler() {
+            @Override
+            public void onFolder(FolderDTO folder) { items[0]++; }
+
+            @Override
+            public void onFile(FileDTO file) { items[0]++; }
+        };
+
+        long start = System.nanoTime();
+        ByteArrayInputStream in = new ByteArrayInputStream(encoded.bytes());
+        try(BackupReader reader = isJson ? new JsonBackupReader(in) : new BinaryBackupReader(in)) {
+            reader.read(handler);
+        }
+        long decodeNanos = System.nanoTime() - start;
+
+        if(!count) return;
+        totals[0] = encoded.bytes().length;
+        totals[1] += encoded.nanos();
+        totals[2] += decodeNanos;
+    }
+
+    /**
+     * This method prints the results of a format.
+     *
+     * @param name Name of the format.
+     * @param totals Size, accumulated encoding time and accumulated decoding time.
+     * @param iterations Amount of measured iterations.
+     */
+    private static void report(String name, long[] totals, int iterations) {
+        System.out.printf("%-6s %,14d bytes   encode %8.1f ms   decode %8.1f ms%n", name, totals[0],
+                totals[1] / 1e6 / iterations, totals[2] / 1e6 / iterations);
+    }
+
+    /**
+     * This method encodes the items as a JSON backup, the same way {@link JsonBackupWriter} does.
+     *
+     * @param folders Folders to be encoded.
+     * @param files Files to be encoded.
+     * @return The encoded backup with its encoding time.
+     * @throws IOException Will happen if the backup cannot be encoded.
+     */
+    private static Encoded encodeJson(List<FolderDTO> folders, List<FileDTO> files) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.findAndRegisterModules();
+        mapper.disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        long start = System.nanoTime();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try(JsonGenerator generator = mapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.useDefaultPrettyPrinter();
+            generator.writeStartObject();
+
+            generator.writeArrayFieldStart("folders");
+            for(FolderDTO folder : folders) mapper.writeValue(generator, folder);
+            generator.writeEndArray();
+
+            generator.writeArrayFieldStart("files");
+            for(FileDTO file : files) mapper.writeValue(generator, file);
+            generator.writeEndArray();
+        }
+
+        return new Encoded(out.toByteArray(), System.nanoTime() - start);
+    }
+
+    /**
+     * This method encodes the items as a binary backup.
+     *
+     * @param folders Folders to be encoded.
+     * @param files Files to be encoded.
+     * @return The encoded backup with its encoding time.
+     * @throws IOException Will happen if the backup cannot be encoded.
+     */
+    private static Encoded encodeBinary(List<FolderDTO> folders, List<FileDTO> files) throws IOException {
+        long start = System.nanoTime();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try(BinaryBackupWriter writer = new BinaryBackupWriter(out)) {
+            writer.writeHeader(BackupHeader.LEGACY);
+            for(FolderDTO folder : folders) writer.writeFolder(folder);
+            for(FileDTO file : files) writer.writeFile(file);
+        }
+
+        return new Encoded(out.toByteArray(), System.nanoTime() - start);
+    }
+
+    /**
+     * This method generates a folder tree with files in it.
+     *
+     * @param fileCount Amount of files to be generated.
+     * @param contentLength Length of the content of each file.
+     * @param folders List the generated folders are added to.
+     * @param files List the generated files are added to.
+     */
+    private static void generate(int fileCount, int contentLength, List<FolderDTO> folders, List<FileDTO> files) {
+        Random random = new Random(42);
+        LocalDateTime now = LocalDateTime.now();
+        FolderDTO folder = null;
+
+        for(int i = 0; i < fileCount; i++) {
+            if(i % FILES_PER_FOLDER == 0) {
+                UUID parent = folder == null ? null : folder.getId();
+                folder = new FolderDTO(UUID.randomUUID(), parent, "Folder " + folders.size(),
+                        now.minusDays(random.nextInt(365)), null, 0);
+                folders.add(folder);
+            }
+
+            StringBuilder content = new StringBuilder(contentLength);
+            for(int c = 0; c < contentLength; c++) content.append((char) ('a' + random.nextInt(26)));
+
+            files.add(new FileDTO(UUID.randomUUID(), folder.getId(), "File " + i + ".txt",
+                    now.minusDays(random.nextInt(365)), now, random.nextInt(10), "txt", false,
+                    BigDecimal.valueOf(contentLength), random.nextInt(5), null, content.toString()));
+        }
+    }
+
+    /**
+     * This is a "class" (it's defined as a record) that represents an encoded backup.
+     *
+     * @param bytes Encoded backup.
+     * @param nanos Time (in nanoseconds) it took to encode.
+     *
+     * @author Raul Rohjans 202100518
+     */
+    private record Encoded(byte[] bytes, long nanos) {}
+}
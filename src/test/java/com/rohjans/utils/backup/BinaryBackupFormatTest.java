@@ -0,0 +1,342 @@
+package com.rohjans.utils.backup;
+
+import com.rohjans.models.File.FileDTO;
+import com.rohjans.models.Folder.FolderDTO;
+import com.rohjans.utils.backup.BinaryRecordLayout.Field;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This is a test that checks that binary backups are read back as they were written, and that backups
+ * written with a different record layout (like by an older or newer version of the app) are still read.
+ * <p>
+ * Everything is written to and read from memory, so it doesn't need a database.
+ *
+ * @author Raul Rohjans 202100518
+ */
+class BinaryBackupFormatTest {
+    /**
+     * Header written to every backup of the tests.
+     */
+    private static final BackupHeader HEADER = new BackupHeader(BackupHeader.INCREMENTAL, "1700000000000_PFS_BK.pfsb",
+            41, 42, LocalDateTime.of(2024, 3, 1, 12, 30, 15, 123_456_000));
+
+    /**
+     * Tag of a kind of record the reader doesn't know about.
+     */
+    private static final int UNKNOWN_TAG = 42;
+
+    /**
+     * Tests that the header, folders and files come back with every field, including the null ones.
+     *
+     * @throws IOException Will happen if the backup can't be written or read.
+     */
+    @Test
+    void roundTripKeepsEveryField() throws IOException {
+        FolderDTO root = new FolderDTO(UUID.randomUUID(), null, "Root", LocalDateTime.of(2024, 1, 2, 3, 4, 5), null, 0);
+        FolderDTO sub = new FolderDTO(UUID.randomUUID(), root.getId(), "Sub folder",
+                LocalDateTime.of(2024, 1, 2, 3, 4, 5, 999_000), LocalDateTime.of(2024, 2, 3, 4, 5, 6), 7);
+        FileDTO text = new FileDTO(UUID.randomUUID(), sub.getId(), "notes.txt", LocalDateTime.of(2024, 1, 3, 0, 0),
+                LocalDateTime.of(2024, 1, 4, 0, 0), 3, "txt", true, new BigDecimal("12.50"), 4, "hash",
+                "Some content, with accents: çãé");
+        FileDTO empty = new FileDTO(UUID.randomUUID(), root.getId(), "empty.csv", LocalDateTime.of(2024, 1, 5, 0, 0),
+                null, 0, "csv", false, BigDecimal.ZERO, 0, null, null);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(BinaryBackupWriter writer = new BinaryBackupWriter(bytes)) {
+            writer.writeHeader(HEADER);
+            writer.writeFolder(root);
+            writer.writeFolder(sub);
+            writer.writeFile(text);
+            writer.writeFile(empty);
+        }
+
+        ReadBackup backup = read(bytes.toByteArray());
+
+        assertEquals(HEADER, backup.header);
+        assertEquals(2, backup.folders.size());
+        assertFolderEquals(root, backup.folders.get(0));
+        assertFolderEquals(sub, backup.folders.get(1));
+        assertEquals(2, backup.files.size());
+        assertFileEquals(text, backup.files.get(0));
+        assertFileEquals(empty, backup.files.get(1));
+        assertTrue(backup.deleted.isEmpty());
+    }
+
+    /**
+     * Tests that fields the current version doesn't know about (like the ones added by a newer version)
+     * are skipped, without breaking the fields that come after them.
+     *
+     * @throws IOException Will happen if the backup can't be written or read.
+     */
+    @Test
+    void extraFieldsAreSkipped() throws IOException {
+        BinaryRecordLayout<FolderDTO> layout = new BinaryRecordLayout<>(List.of(
+                new Field<>("id", BinaryFieldType.UUID, FolderDTO::getId),
+                new Field<>("color", BinaryFieldType.STRING, folder -> "blue"),
+                new Field<>("parent", BinaryFieldType.UUID, FolderDTO::getParent),
+                new Field<>("name", BinaryFieldType.STRING, FolderDTO::getName),
+                new Field<>("pinned", BinaryFieldType.BOOL, folder -> true),
+                new Field<>("created", BinaryFieldType.TIMESTAMP, FolderDTO::getCreated),
+                new Field<>("changed", BinaryFieldType.TIMESTAMP, FolderDTO::getChanged),
+                new Field<>("changeCounter", BinaryFieldType.INT, FolderDTO::getChangeCounter),
+                new Field<>("position", BinaryFieldType.LONG, folder -> 123_456_789_000L)
+        ), values -> null);
+        FolderDTO folder = new FolderDTO(UUID.randomUUID(), UUID.randomUUID(), "Folder",
+                LocalDateTime.of(2024, 1, 2, 3, 4, 5), LocalDateTime.of(2024, 1, 3, 3, 4, 5), 5);
+
+        ReadBackup backup = read(writeFolderBackup(layout, folder));
+
+        assertEquals(1, backup.folders.size());
+        assertFolderEquals(folder, backup.folders.get(0));
+    }
+
+    /**
+     * Tests that fields missing from the backup (like the ones added after it was written) get their default
+     * value, and that a field whose type changed is treated as missing.
+     *
+     * @throws IOException Will happen if the backup can't be written or read.
+     */
+    @Test
+    void missingFieldsGetTheirDefaults() throws IOException {
+        BinaryRecordLayout<FolderDTO> layout = new BinaryRecordLayout<>(List.of(
+                new Field<>("id", BinaryFieldType.UUID, FolderDTO::getId),
+                new Field<>("parent", BinaryFieldType.UUID, FolderDTO::getParent),
+                new Field<>("name", BinaryFieldType.STRING, FolderDTO::getName),
+                new Field<>("created", BinaryFieldType.TIMESTAMP, FolderDTO::getCreated),
+                new Field<>("changeCounter", BinaryFieldType.LONG, folder -> 9L)
+        ), values -> null);
+        FolderDTO folder = new FolderDTO(UUID.randomUUID(), null, "Old folder",
+                LocalDateTime.of(2020, 5, 6, 7, 8, 9), LocalDateTime.of(2021, 1, 1, 0, 0), 9);
+
+        ReadBackup backup = read(writeFolderBackup(layout, folder));
+
+        assertEquals(1, backup.folders.size());
+        FolderDTO restored = backup.folders.get(0);
+        assertEquals(folder.getId(), restored.getId());
+        assertNull(restored.getParent());
+        assertEquals(folder.getName(), restored.getName());
+        assertEquals(folder.getCreated(), restored.getCreated());
+        assertNull(restored.getChanged());
+        assertEquals(0, restored.getChangeCounter());
+    }
+
+    /**
+     * Tests that deleted items are read back, and that records of a kind the reader doesn't know are skipped.
+     *
+     * @throws IOException Will happen if the backup can't be written or read.
+     */
+    @Test
+    void deletedItemsAreReadAndUnknownRecordsSkipped() throws IOException {
+        BinaryRecordLayout<String> unknown = new BinaryRecordLayout<>(List.of(
+                new Field<>("label", BinaryFieldType.STRING, value -> value),
+                new Field<>("missing", BinaryFieldType.STRING, value -> null),
+                new Field<>("amount", BinaryFieldType.DECIMAL, value -> new BigDecimal("1.5"))
+        ), values -> null);
+        BackupTombstone tombstone = new BackupTombstone(UUID.randomUUID(), "folder");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(DataOutputStream out = new DataOutputStream(bytes)) {
+            writePreamble(out, 3);
+            out.writeByte(BinaryBackupFormat.TAG_HEADER);
+            BinaryBackupFormat.HEADER.writeLayout(out);
+            out.writeByte(BinaryBackupFormat.TAG_DELETED);
+            BinaryBackupFormat.DELETED.writeLayout(out);
+            out.writeByte(UNKNOWN_TAG);
+            unknown.writeLayout(out);
+
+            BinaryBackupFormat.HEADER.write(out, HEADER);
+            out.writeByte(UNKNOWN_TAG);
+            unknown.write(out, "From a newer version");
+            out.writeByte(BinaryBackupFormat.TAG_DELETED);
+            BinaryBackupFormat.DELETED.write(out, tombstone);
+            out.writeByte(BinaryBackupFormat.TAG_END);
+        }
+
+        ReadBackup backup = read(bytes.toByteArray());
+
+        assertEquals(List.of(tombstone), backup.deleted);
+        assertTrue(backup.deleted.get(0).isFolder());
+        assertTrue(backup.folders.isEmpty());
+        assertTrue(backup.files.isEmpty());
+    }
+
+    /**
+     * Tests that files that aren't binary backups, or were written by a newer format version, are rejected.
+     *
+     * @throws IOException Will happen if the test backup can't be written.
+     */
+    @Test
+    void unsupportedFilesAreRejected() throws IOException {
+        assertThrows(IOException.class, () -> read("{\"header\":{}}".getBytes()));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(BinaryBackupFormat.MAGIC);
+            out.writeShort(BinaryBackupFormat.FORMAT_VERSION + 1);
+            BinaryFieldType.writeVarLong(out, 0);
+        }
+
+        assertThrows(IOException.class, () -> read(bytes.toByteArray()));
+    }
+
+    /**
+     * This method writes a backup with a single folder, using the given folder layout instead of the current one.
+     *
+     * @param layout Layout the folder is written with.
+     * @param folder Folder to be written.
+     * @return The bytes of the backup.
+     * @throws IOException Will happen if the backup can't be written.
+     */
+    private static byte[] writeFolderBackup(BinaryRecordLayout<FolderDTO> layout, FolderDTO folder) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try(DataOutputStream out = new DataOutputStream(bytes)) {
+            writePreamble(out, 2);
+            out.writeByte(BinaryBackupFormat.TAG_HEADER);
+            BinaryBackupFormat.HEADER.writeLayout(out);
+            out.writeByte(BinaryBackupFormat.TAG_FOLDER);
+            layout.writeLayout(out);
+
+            BinaryBackupFormat.HEADER.write(out, HEADER);
+            out.writeByte(BinaryBackupFormat.TAG_FOLDER);
+            layout.write(out, folder);
+            out.writeByte(BinaryBackupFormat.TAG_END);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * This method writes the magic number, the format version and the amount of layouts that follow.
+     *
+     * @param out Stream the backup is written to.
+     * @param layouts Amount of layouts that follow.
+     * @throws IOException Will happen if the stream cannot be written to.
+     */
+    private static void writePreamble(DataOutputStream out, int layouts) throws IOException {
+        out.writeInt(BinaryBackupFormat.MAGIC);
+        out.writeShort(BinaryBackupFormat.FORMAT_VERSION);
+        BinaryFieldType.writeVarLong(out, layouts);
+    }
+
+    /**
+     * This method reads a whole backup into memory.
+     *
+     * @param bytes Bytes of the backup.
+     * @return Everything that was read.
+     * @throws IOException Will happen if the backup isn't valid.
+     */
+    private static ReadBackup read(byte[] bytes) throws IOException {
+        ReadBackup backup = new ReadBackup();
+
+        try(BinaryBackupReader reader = new BinaryBackupReader(new ByteArrayInputStream(bytes))) {
+            backup.header = reader.readHeader();
+            reader.read(backup);
+        }
+
+        return backup;
+    }
+
+    /**
+     * This method checks that a folder was read back with the same fields it was written with.
+     *
+     * @param expected Folder that was written.
+     * @param actual Folder that was read.
+     */
+    private static void assertFolderEquals(FolderDTO expected, FolderDTO actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getParent(), actual.getParent());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getCreated(), actual.getCreated());
+        assertEquals(expected.getChanged(), actual.getChanged());
+        assertEquals(expected.getChangeCounter(), actual.getChangeCounter());
+    }
+
+    /**
+     * This method checks that a file was read back with the same fields it was written with.
+     *
+     * @param expected File that was written.
+     * @param actual File that was read.
+     */
+    private static void assertFileEquals(FileDTO expected, FileDTO actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getParent(), actual.getParent());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getCreated(), actual.getCreated());
+        assertEquals(expected.getChanged(), actual.getChanged());
+        assertEquals(expected.getChangeCounter(), actual.getChangeCounter());
+        assertEquals(expected.getExtension(), actual.getExtension());
+        assertEquals(expected.isLocked(), actual.isLocked());
+        assertEquals(expected.getFilesize(), actual.getFilesize());
+        assertEquals(expected.getImportance(), actual.getImportance());
+        assertEquals(expected.getPassword(), actual.getPassword());
+        assertEquals(expected.getContent(), actual.getContent());
+    }
+
+    /**
+     * This is a class that collects everything read from a backup.
+     */
+    private static final class ReadBackup implements BackupRecordHandler {
+        /**
+         * Header of the backup.
+         */
+        private BackupHeader header;
+
+        /**
+         * Folders in the order they were read.
+         */
+        private final List<FolderDTO> folders = new ArrayList<>();
+
+        /**
+         * Files in the order they were read.
+         */
+        private final List<FileDTO> files = new ArrayList<>();
+
+        /**
+         * Deleted items in the order they were read.
+         */
+        private final List<BackupTombstone> deleted = new ArrayList<>();
+
+        /**
+         * This method collects a folder read from the backup.
+         *
+         * @param folder Folder data object that was read.
+         */
+        @Override
+        public void onFolder(FolderDTO folder) {
+            folders.add(folder);
+        }
+
+        /**
+         * This method collects a file read from the backup.
+         *
+         * @param file File data object that was read.
+         */
+        @Override
+        public void onFile(FileDTO file) {
+            files.add(file);
+        }
+
+        /**
+         * This method collects a deleted item read from the backup.
+         *
+         * @param tombstone Deleted item that was read.
+         */
+        @Override
+        public void onDeleted(BackupTombstone tombstone) {
+            deleted.add(tombstone);
+        }
+    }
+}